@@ -0,0 +1,77 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Aggregated outcome of starting or stopping all peers of a group.
+ */
+@XmlRootElement
+public class GroupActionReport {
+    private String action;
+    private long elapsed;
+    private long gid;
+    private List<PeerActionResult> peers = new ArrayList<PeerActionResult>();
+
+    public void addPeer(final PeerActionResult par) {
+        this.peers.add(par);
+    }
+
+    public int count(final int result) {
+        int n = 0;
+        for (PeerActionResult par : this.peers) {
+            if (par.getResult() == result) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public String getAction() {
+        return this.action;
+    }
+
+    public long getElapsed() {
+        return this.elapsed;
+    }
+
+    public long getGid() {
+        return this.gid;
+    }
+
+    public List<PeerActionResult> getPeers() {
+        return this.peers;
+    }
+
+    public void setAction(final String action) {
+        this.action = action;
+    }
+
+    public void setElapsed(final long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public void setGid(final long gid) {
+        this.gid = gid;
+    }
+
+    public void setPeers(final List<PeerActionResult> peers) {
+        this.peers = peers;
+    }
+}
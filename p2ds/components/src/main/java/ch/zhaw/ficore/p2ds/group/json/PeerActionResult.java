@@ -0,0 +1,65 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.json;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Outcome of a start or stop request sent to a single peer.
+ */
+@XmlRootElement
+public class PeerActionResult {
+    public final static int RESULT_FAILED = 2;
+    public final static int RESULT_SKIPPED = 3;
+    public final static int RESULT_SUCCESS = 1;
+    public final static int RESULT_TIMEOUT = 4;
+
+    private long elapsed;
+    private String message;
+    private String peerName;
+    private int result;
+
+    public long getElapsed() {
+        return this.elapsed;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public String getPeerName() {
+        return this.peerName;
+    }
+
+    public int getResult() {
+        return this.result;
+    }
+
+    public void setElapsed(final long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public void setMessage(final String message) {
+        this.message = message;
+    }
+
+    public void setPeerName(final String peerName) {
+        this.peerName = peerName;
+    }
+
+    public void setResult(final int result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,51 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A batch of status updates. Sent by the peers to the group management and
+ * returned by the status stream, where version is the highest version
+ * contained (to be passed as <code>since</code> in the next poll).
+ */
+@XmlRootElement
+public class PeerStatusList {
+    private List<PeerStatusUpdate> updates = new ArrayList<PeerStatusUpdate>();
+    private long version;
+
+    public void addUpdate(final PeerStatusUpdate update) {
+        this.updates.add(update);
+    }
+
+    public List<PeerStatusUpdate> getUpdates() {
+        return this.updates;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setUpdates(final List<PeerStatusUpdate> updates) {
+        this.updates = updates;
+    }
+
+    public void setVersion(final long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,51 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Answer of the group management to a batch of status updates: the number of
+ * applied updates and the names of the peers whose updates were rejected
+ * (unknown peer or invalid registration code).
+ */
+@XmlRootElement
+public class PeerStatusResult {
+    private int accepted;
+    private List<String> rejected = new ArrayList<String>();
+
+    public void addRejected(final String peerName) {
+        this.rejected.add(peerName);
+    }
+
+    public int getAccepted() {
+        return this.accepted;
+    }
+
+    public List<String> getRejected() {
+        return this.rejected;
+    }
+
+    public void setAccepted(final int accepted) {
+        this.accepted = accepted;
+    }
+
+    public void setRejected(final List<String> rejected) {
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,100 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.json;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Status and progress of a peer as reported to the group management. The
+ * status is one of the PEER_STATUS_* codes of {@link PeerInfo}. The round is
+ * the time slot the peer is currently processing, the time slot is the number
+ * of completed time slots. The version is assigned by the group management
+ * when the update is received.
+ */
+@XmlRootElement
+public class PeerStatusUpdate {
+    private String peerName;
+    private int queueDepth;
+    private String registrationCode;
+    private int round;
+    private int status;
+    private int timeSlot;
+    private long version;
+    private long when;
+
+    public String getPeerName() {
+        return this.peerName;
+    }
+
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    public String getRegistrationCode() {
+        return this.registrationCode;
+    }
+
+    public int getRound() {
+        return this.round;
+    }
+
+    public int getStatus() {
+        return this.status;
+    }
+
+    public int getTimeSlot() {
+        return this.timeSlot;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public long getWhen() {
+        return this.when;
+    }
+
+    public void setPeerName(final String peerName) {
+        this.peerName = peerName;
+    }
+
+    public void setQueueDepth(final int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public void setRegistrationCode(final String registrationCode) {
+        this.registrationCode = registrationCode;
+    }
+
+    public void setRound(final int round) {
+        this.round = round;
+    }
+
+    public void setStatus(final int status) {
+        this.status = status;
+    }
+
+    public void setTimeSlot(final int timeSlot) {
+        this.timeSlot = timeSlot;
+    }
+
+    public void setVersion(final long version) {
+        this.version = version;
+    }
+
+    public void setWhen(final long when) {
+        this.when = when;
+    }
+}
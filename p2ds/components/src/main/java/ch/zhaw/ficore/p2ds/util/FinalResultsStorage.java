@@ -14,7 +14,23 @@
  */
 package ch.zhaw.ficore.p2ds.util;
 
+/**
+ * Storage for the final results of the peers of this node, one result line per
+ * peer, run and time slot.
+ */
 public interface FinalResultsStorage {
     public void addResult(final String peerName, final int run,
             final int timeslot, final String csvData) throws Exception;
+
+    /**
+     * Returns the number of the next run of a peer, one more than the largest
+     * run stored for the peer so far (1 for a new peer).
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return the run number
+     * @throws Exception
+     *             If the stored runs could not be read.
+     */
+    public int nextRun(final String peerName) throws Exception;
 }
@@ -21,6 +21,7 @@ import javax.xml.bind.JAXBContext;
 import ch.zhaw.ficore.p2ds.group.json.GroupInfo;
 import ch.zhaw.ficore.p2ds.group.json.GroupMembers;
 import ch.zhaw.ficore.p2ds.group.json.PeerInfo;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusResult;
 
 import com.sun.jersey.api.json.JSONConfiguration;
 import com.sun.jersey.api.json.JSONJAXBContext;
@@ -29,7 +30,7 @@ import com.sun.jersey.api.json.JSONJAXBContext;
 public class JAXBContextResolver implements ContextResolver<JAXBContext> {
     private final JAXBContext context;
     private final Class<?>[] types = { GroupInfo.class, GroupMembers.class,
-            PeerInfo.class };
+            PeerInfo.class, PeerStatusResult.class };
 
     public JAXBContextResolver() throws Exception {
         this.context = new JSONJAXBContext(JSONConfiguration.natural().build(),
@@ -0,0 +1,378 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+/**
+ * Stores final results in per-peer tables through a JDBC connection pool
+ * (tomcat-jdbc, SQLite by default). Results are collected in memory and
+ * written with one prepared statement batch per table and committed once
+ * <code>batchSize</code> results are pending or every
+ * <code>commitInterval</code> milliseconds, whichever comes first, instead of
+ * using one transaction per result. A connection is only borrowed from the
+ * pool while a batch is written.
+ * <p>
+ * The table of a peer is named <code>TBL_RESULTS_&lt;peerName&gt;</code> with
+ * the peer name escaped by {@link #getTableName(String)}. Since table names
+ * can not be bound as statement parameters the peer name must only consist of
+ * ASCII letters, digits and underscores, otherwise an
+ * {@link UnsafeTableNameException} is thrown.
+ */
+public class JDBCFinalResultsStorage implements FinalResultsStorage {
+
+    /**
+     * A result that has not been written yet.
+     */
+    private static class PendingResult {
+        private final String csvData;
+        private final long created;
+        private final int run;
+        private final int timeslot;
+
+        PendingResult(final int run, final int timeslot, final String csvData) {
+            this.run = run;
+            this.timeslot = timeslot;
+            this.created = System.currentTimeMillis();
+            this.csvData = csvData;
+        }
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public static final long DEFAULT_COMMIT_INTERVAL = 1000;
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(JDBCFinalResultsStorage.class));
+
+    private static final String TABLE_PREFIX = "TBL_RESULTS_";
+
+    /**
+     * Returns the (unquoted) table of a peer. Table names are not case
+     * sensitive in SQL (and SQLite ignores the case even of quoted names), so
+     * the case of the peer name is encoded: an underscore becomes "__" and an
+     * upper case letter X becomes "_x". The encoding can be reversed and only
+     * produces lower case letters, digits and underscores, so two peer names
+     * never share a table.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return the table name
+     * @throws UnsafeTableNameException
+     *             If the peer name is not safe (see
+     *             {@link #isSafeTableName(String)}).
+     */
+    public static String getTableName(final String peerName)
+            throws UnsafeTableNameException {
+        if (!isSafeTableName(peerName)) {
+            throw new UnsafeTableNameException(peerName);
+        }
+
+        StringBuilder sb = new StringBuilder(TABLE_PREFIX);
+        for (int i = 0; i < peerName.length(); i++) {
+            char c = peerName.charAt(i);
+            if (c == '_') {
+                sb.append("__");
+            } else if (c >= 'A' && c <= 'Z') {
+                sb.append('_').append(Character.toLowerCase(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks whether a peer name can safely be used as part of a table name.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return true or false
+     */
+    public static boolean isSafeTableName(final String peerName) {
+        return peerName != null && peerName.matches("[A-Za-z0-9_]+");
+    }
+
+    private final int batchSize;
+
+    /* tables known to exist */
+    private final Set<String> createdTables = new HashSet<String>();
+
+    private final DataSource dataSource;
+
+    /* table name -> results not written yet */
+    private final Map<String, List<PendingResult>> pending = new LinkedHashMap<String, List<PendingResult>>();
+
+    private int pendingCount = 0;
+
+    private final ScheduledExecutorService scheduler;
+
+    public JDBCFinalResultsStorage(final String url) throws StorageException {
+        this("org.sqlite.JDBC", url, DEFAULT_BATCH_SIZE,
+                DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * @param driverClassName
+     *            JDBC driver
+     * @param url
+     *            JDBC url
+     * @param batchSize
+     *            number of pending results that triggers a commit
+     * @param commitInterval
+     *            maximal time (in ms) a result stays uncommitted
+     * @throws StorageException
+     *             If the database can not be opened.
+     */
+    public JDBCFinalResultsStorage(final String driverClassName,
+            final String url, final int batchSize, final long commitInterval)
+            throws StorageException {
+        this.batchSize = batchSize;
+
+        /*
+         * all database access is synchronized on this storage, so a single
+         * connection is enough
+         */
+        PoolProperties p = new PoolProperties();
+        p.setUrl(url);
+        p.setDriverClassName(driverClassName);
+        p.setDefaultAutoCommit(false);
+        p.setMaxActive(1);
+        p.setInitialSize(1);
+        p.setTestOnBorrow(true);
+        p.setValidationQuery("SELECT 1");
+        this.dataSource = new DataSource(p);
+
+        /* open the database right away to report a wrong url */
+        Connection connection = getConnection();
+        release(connection);
+
+        this.scheduler = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread t = new Thread(r, "FinalResultsStorage-commit");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (StorageException e) {
+                    LOGGER.catching(e);
+                }
+            }
+        }, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void addResult(final String peerName, final int run,
+            final int timeslot, final String csvData)
+            throws UnsafeTableNameException, StorageException {
+        String tableName = getTableName(peerName);
+        List<PendingResult> results = this.pending.get(tableName);
+        if (results == null) {
+            results = new ArrayList<PendingResult>();
+            this.pending.put(tableName, results);
+        }
+        results.add(new PendingResult(run, timeslot, csvData));
+
+        this.pendingCount++;
+        if (this.pendingCount >= this.batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes pending results and closes the connection pool.
+     *
+     * @throws StorageException
+     *             If pending results could not be written.
+     */
+    public void close() throws StorageException {
+        this.scheduler.shutdown();
+        synchronized (this) {
+            try {
+                flush();
+            } finally {
+                this.dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * Writes and commits all pending results.
+     *
+     * @throws StorageException
+     *             If writing failed. The pending results are discarded.
+     */
+    public synchronized void flush() throws StorageException {
+        if (this.pendingCount == 0) {
+            return;
+        }
+
+        Connection connection = getConnection();
+        List<String> newTables = new ArrayList<String>();
+        try {
+            for (Map.Entry<String, List<PendingResult>> e : this.pending
+                    .entrySet()) {
+                String tableName = e.getKey();
+                if (!this.createdTables.contains(tableName)) {
+                    createTable(connection, tableName);
+                    newTables.add(tableName);
+                }
+
+                PreparedStatement insert = connection
+                        .prepareStatement("INSERT INTO \"" + tableName
+                                + "\" (ATTR_RUN, ATTR_TIMESLOT, ATTR_CREATED, "
+                                + "ATTR_DATA) VALUES (?, ?, ?, ?)");
+                try {
+                    for (PendingResult r : e.getValue()) {
+                        insert.setInt(1, r.run);
+                        insert.setInt(2, r.timeslot);
+                        insert.setLong(3, r.created);
+                        insert.setString(4, r.csvData);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                } finally {
+                    insert.close();
+                }
+            }
+            connection.commit();
+            this.createdTables.addAll(newTables);
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            try {
+                connection.rollback();
+            } catch (SQLException e1) {
+                LOGGER.catching(e1);
+            }
+            throw new StorageException(e.getMessage());
+        } finally {
+            this.pending.clear();
+            this.pendingCount = 0;
+            release(connection);
+        }
+    }
+
+    @Override
+    public synchronized int nextRun(final String peerName)
+            throws UnsafeTableNameException, StorageException {
+        String tableName = getTableName(peerName);
+        int run = 0;
+
+        List<PendingResult> results = this.pending.get(tableName);
+        if (results != null) {
+            for (PendingResult r : results) {
+                run = Math.max(run, r.run);
+            }
+        }
+
+        Connection connection = getConnection();
+        try {
+            if (!this.createdTables.contains(tableName)) {
+                createTable(connection, tableName);
+                connection.commit();
+                this.createdTables.add(tableName);
+            }
+
+            Statement stmt = connection.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT MAX(ATTR_RUN) FROM \""
+                        + tableName + "\"");
+                try {
+                    if (rs.next()) {
+                        run = Math.max(run, rs.getInt(1));
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        } finally {
+            release(connection);
+        }
+        return run + 1;
+    }
+
+    /**
+     * @return the number of connections borrowed from the pool
+     */
+    int getActiveConnections() {
+        return this.dataSource.getNumActive();
+    }
+
+    private void createTable(final Connection connection,
+            final String tableName) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS \"" + tableName
+                    + "\" (ATTR_RUN INTEGER NOT NULL, "
+                    + "ATTR_TIMESLOT INTEGER NOT NULL, "
+                    + "ATTR_CREATED INTEGER NOT NULL, "
+                    + "ATTR_DATA TEXT NOT NULL)");
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private Connection getConnection() throws StorageException {
+        try {
+            return this.dataSource.getConnection();
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.
+     */
+    private void release(final Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+        }
+    }
+}
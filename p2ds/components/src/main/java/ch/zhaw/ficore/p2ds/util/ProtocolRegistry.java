@@ -0,0 +1,193 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import ch.ethz.sepia.mpc.additive.AdditiveMessage;
+import ch.ethz.sepia.mpc.additive.AdditivePeer;
+import ch.ethz.sepia.mpc.additive.AdditivePrivacyPeer;
+import ch.ethz.sepia.mpc.entropy.EntropyPeer;
+import ch.ethz.sepia.mpc.entropy.EntropyPrivacyPeer;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesMessage;
+import ch.ethz.sepia.mpc.setoperations.SetOperationMessage;
+import ch.ethz.sepia.mpc.setoperations.SetOperationPeer;
+import ch.ethz.sepia.mpc.setoperations.SetOperationPrivacyPeer;
+import ch.ethz.sepia.mpc.topk.Hash;
+import ch.ethz.sepia.mpc.topk.TopkBase;
+import ch.ethz.sepia.mpc.topk.TopkMessage;
+import ch.ethz.sepia.mpc.topk.TopkPeer;
+import ch.ethz.sepia.mpc.topk.TopkPrivacyPeer;
+
+/**
+ * Registry of the MPC protocols that can be run over the REST transport. A
+ * protocol maps the name used in the group configuration (e.g. "additive") to
+ * the SEPIA input peer and privacy peer classes and to default properties that
+ * the group configuration does not carry. The message types map the type name
+ * used in the message URLs (see <code>PeerService.message</code>) to the
+ * message classes that are (de-)serialized as JSON.
+ * <p>
+ * The additive, entropy, top-k and set operation protocols are registered by
+ * default. Other
+ * protocols can be added with {@link #register(Protocol)} and
+ * {@link #registerMessageType(Class)}.
+ */
+public class ProtocolRegistry {
+    /**
+     * An MPC protocol: its peer classes and its default properties.
+     */
+    public static class Protocol {
+        private final Properties defaultProperties = new Properties();
+        private final String inputPeerClass;
+        private final String name;
+        private final String privacyPeerClass;
+
+        public Protocol(final String name, final String inputPeerClass,
+                final String privacyPeerClass) {
+            this.name = name;
+            this.inputPeerClass = inputPeerClass;
+            this.privacyPeerClass = privacyPeerClass;
+        }
+
+        /**
+         * Copies the default properties into the given properties, unless
+         * they are already set there.
+         * 
+         * @param props
+         *            the properties of the peer
+         */
+        public void applyDefaultProperties(final Properties props) {
+            for (String key : this.defaultProperties.stringPropertyNames()) {
+                if (!props.containsKey(key)) {
+                    props.put(key, this.defaultProperties.getProperty(key));
+                }
+            }
+        }
+
+        public String getInputPeerClass() {
+            return this.inputPeerClass;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getPrivacyPeerClass() {
+            return this.privacyPeerClass;
+        }
+
+        /**
+         * Sets a default property of this protocol.
+         * 
+         * @return this protocol
+         */
+        public Protocol setDefaultProperty(final String key, final String value) {
+            this.defaultProperties.setProperty(key, value);
+            return this;
+        }
+    }
+
+    public final static String PROTOCOL_ADDITIVE = "additive";
+    public final static String PROTOCOL_ENTROPY = "entropy";
+    public final static String PROTOCOL_SETOP = "setop";
+    public final static String PROTOCOL_TOPK = "topk";
+
+    private final static Map<String, Class<?>> messageTypes = new HashMap<String, Class<?>>();
+    private final static Map<String, Protocol> protocols = new HashMap<String, Protocol>();
+
+    static {
+        register(new Protocol(PROTOCOL_ADDITIVE, AdditivePeer.class.getName(),
+                AdditivePrivacyPeer.class.getName()));
+        register(new Protocol(PROTOCOL_ENTROPY, EntropyPeer.class.getName(),
+                EntropyPrivacyPeer.class.getName()));
+        /*
+         * The group configuration has no top-k parameters. The input is a list
+         * of key weight pairs per time slot (key;weight;key;weight;...). All
+         * peers of a group get the same defaults, so their sketches agree with
+         * the faster tabulation hash.
+         */
+        register(new Protocol(PROTOCOL_TOPK, TopkPeer.class.getName(),
+                TopkPrivacyPeer.class.getName())
+                .setDefaultProperty(TopkBase.PROP_TOPK_K, "10")
+                .setDefaultProperty(TopkBase.PROP_TOPK_S, "3")
+                .setDefaultProperty(TopkBase.PROP_TOPK_H, "1024")
+                .setDefaultProperty(TopkPeer.PROP_TOPK_SEED, "1")
+                .setDefaultProperty(TopkPeer.PROP_TOPK_HASH,
+                        Hash.ALGORITHM_TABULATION)
+                .setDefaultProperty(TopkPeer.PROP_TOPK_INPUT_TYPE,
+                        "TopkKeyWeightData")
+                .setDefaultProperty(TopkPrivacyPeer.PROP_TOPK_MAXTAU, "65536"));
+        /*
+         * The input is a list of set elements per time slot (item;item;...).
+         * The number of items of the group configuration is the filter size.
+         */
+        register(new Protocol(PROTOCOL_SETOP, SetOperationPeer.class.getName(),
+                SetOperationPrivacyPeer.class.getName()));
+
+        registerMessageType(AdditiveMessage.class);
+        registerMessageType(PrimitivesMessage.class);
+        registerMessageType(SetOperationMessage.class);
+        registerMessageType(TopkMessage.class);
+    }
+
+    /**
+     * @param type
+     *            the type name of a message (the simple class name)
+     * @return the message class or null if the type is not registered
+     */
+    public static synchronized Class<?> getMessageClass(final String type) {
+        return messageTypes.get(type);
+    }
+
+    /**
+     * @param obj
+     *            a message
+     * @return the type name of the message or null if its class is not
+     *         registered
+     */
+    public static synchronized String getMessageType(final Object obj) {
+        String type = obj.getClass().getSimpleName();
+        return messageTypes.get(type) == obj.getClass() ? type : null;
+    }
+
+    /**
+     * @param name
+     *            the name of the protocol
+     * @return the protocol or null if no protocol with this name is
+     *         registered
+     */
+    public static synchronized Protocol getProtocol(final String name) {
+        return protocols.get(name);
+    }
+
+    /**
+     * Registers (or replaces) a protocol.
+     */
+    public static synchronized void register(final Protocol protocol) {
+        protocols.put(protocol.getName(), protocol);
+    }
+
+    /**
+     * Registers a message class. Its simple name is used as the type name.
+     */
+    public static synchronized void registerMessageType(final Class<?> clazz) {
+        messageTypes.put(clazz.getSimpleName(), clazz);
+    }
+
+    private ProtocolRegistry() {
+    }
+}
@@ -18,6 +18,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.naming.NamingException;
 import javax.net.ssl.HostnameVerifier;
@@ -42,6 +45,23 @@ import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
 public class RESTHelper {
+
+    /** Maximal number of responses kept for conditional GETs. */
+    private static final int CONDITIONAL_CACHE_SIZE = 256;
+
+    /* url -> { ETag, body } of the last response carrying an ETag */
+    private static final Map<String, String[]> conditionalCache = Collections
+            .synchronizedMap(new LinkedHashMap<String, String[]>(16, 0.75f,
+                    true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, String[]> eldest) {
+                    return size() > CONDITIONAL_CACHE_SIZE;
+                }
+            });
+
     public static Object deleteRequest(final String url)
             throws ClientHandlerException, UniformInterfaceException,
             JAXBException, NamingException {
@@ -152,9 +172,77 @@ public class RESTHelper {
         return response.getEntity(clazz);
     }
 
+    /**
+     * Performs a conditional get request. If an earlier response for the same
+     * URL carried an ETag it is sent as If-None-Match and the cached body is
+     * used if the server answers with 304 Not Modified. Every call returns a
+     * freshly deserialized object.
+     * 
+     * @param url
+     *            URL
+     * @param clazz
+     *            Class of the (application/json) response
+     * @return the response object
+     */
+    public static Object getRequestConditional(final String url,
+            final Class<?> clazz) throws ClientHandlerException,
+            UniformInterfaceException, JAXBException, NamingException {
+        Client client = getSSLClient();
+
+        WebResource.Builder builder = client.resource(url).accept(
+                MediaType.APPLICATION_JSON);
+
+        String[] cached = conditionalCache.get(url);
+        if (cached != null) {
+            builder = builder.header("If-None-Match", cached[0]);
+        }
+
+        ClientResponse response = builder.get(ClientResponse.class);
+
+        if (response.getStatus() == 304 && cached != null) {
+            response.close();
+            return fromJSON(clazz, cached[1]);
+        }
+
+        if (response.getStatus() != 200) {
+            throw new RESTException("getRequest failed for: " + url + " got "
+                    + response.getStatus() + "|"
+                    + response.getEntity(String.class), response.getStatus());
+        }
+
+        String body = response.getEntity(String.class);
+        String etag = response.getHeaders().getFirst("ETag");
+        if (etag != null) {
+            conditionalCache.put(url, new String[] { etag, body });
+        } else {
+            conditionalCache.remove(url);
+        }
+
+        return fromJSON(clazz, body);
+    }
+
     public static Client getSSLClient() {
+        return getSSLClient(0);
+    }
+
+    /**
+     * Creates a client that gives up on connecting and reading after the
+     * given timeout.
+     * 
+     * @param timeout
+     *            connect and read timeout in milliseconds (0 = infinite)
+     * @return the client
+     */
+    public static Client getSSLClient(final int timeout) {
         ClientConfig config = new DefaultClientConfig();
 
+        if (timeout > 0) {
+            config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT,
+                    timeout);
+            config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT,
+                    timeout);
+        }
+
         config.getProperties().put(HTTPSProperties.PROPERTY_HTTPS_PROPERTIES,
                 new HTTPSProperties(getHostnameVerifier(), getSSLContext()));
 
@@ -227,6 +315,35 @@ public class RESTHelper {
         return response.getEntity(String.class);
     }
 
+    /**
+     * Performs an empty post request that fails if the peer does not respond
+     * within the given timeout.
+     * 
+     * @param url
+     *            URL
+     * @param timeout
+     *            connect and read timeout in milliseconds
+     * @return the response as string
+     */
+    public static Object postRequest(final String url, final int timeout)
+            throws ClientHandlerException, UniformInterfaceException,
+            JAXBException, NamingException {
+        Client client = getSSLClient(timeout);
+
+        WebResource webResource = client.resource(url);
+
+        ClientResponse response = webResource.type("application/xml").post(
+                ClientResponse.class);
+
+        if (response.getStatus() != 200) {
+            throw new RESTException("postRequest failed for: " + url + " got "
+                    + response.getStatus() + "|"
+                    + response.getEntity(String.class), response.getStatus());
+        }
+
+        return response.getEntity(String.class);
+    }
+
     public static Object postRequest(final String url, final Class<?> clazz)
             throws ClientHandlerException, UniformInterfaceException,
             JAXBException, NamingException {
@@ -15,7 +15,6 @@
 package ch.zhaw.ficore.p2ds.util;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -23,7 +22,6 @@ import java.security.Provider;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
@@ -37,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 import ch.ethz.sepia.connections.ConnectionManager;
+import ch.ethz.sepia.connections.FinalResultsWriter;
 import ch.ethz.sepia.connections.InputPeerConnectionManager;
 import ch.ethz.sepia.connections.PrivacyPeerConnectionManager;
 import ch.ethz.sepia.services.Stopper;
@@ -45,45 +44,34 @@ import ch.ethz.sepia.startup.PeerStarter;
 import ch.zhaw.ficore.p2ds.group.json.GroupConfigurationInfo;
 import ch.zhaw.ficore.p2ds.group.json.GroupInfo;
 import ch.zhaw.ficore.p2ds.group.json.PeerInfo;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
 
 import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
 public class SEPIALauncher implements Observer {
-    private final static Map<String, String> inputPeerProtocolMappings = new HashMap<String, String>();
-
-    private final static Map<String, String> privacyPeerProtocolMappings = new HashMap<String, String>();
-
-    static {
-        /*
-         * ch.ethz.sepia.mpc.additive.AdditivePeer
-         * ch.ethz.sepia.mpc.additive.AdditivePrivacyPeer
-         */
-        inputPeerProtocolMappings.put("additive",
-                "ch.ethz.sepia.mpc.additive.AdditivePeer");
-        privacyPeerProtocolMappings.put("additive",
-                "ch.ethz.sepia.mpc.additive.AdditivePrivacyPeer");
-    }
     private final Configuration cfg;
 
     Stopper globalStopper = new Stopper();
-    private final String groupMgmtUrl;
     /** The logger. */
     private final XLogger LOGGER = new XLogger(
             LoggerFactory.getLogger(SEPIALauncher.class));
     Stopper mpcStopper = new Stopper();
-    private final PeerInfo peerInfo;
+    private final PeerStarter peerStarter;
 
     private final String peerName;
     private final String regCode;
+    private final StatusReporter reporter;
     private final Map<String, SEPIALauncher> sepiaInstances;
+    private volatile int status = PeerInfo.PEER_STATUS_UNKNOWN;
     Stopper stopper = new Stopper();
 
     public SEPIALauncher(final PeerInfo pi, final GroupInfo gi,
             final GroupConfigurationInfo rc,
             final Map<String, SEPIALauncher> sepiaInstances,
             final String regCode, final String groupMgmtUrl,
-            final PrivateKey privateKey, final String finalResultsURL)
+            final PrivateKey privateKey, final String finalResultsURL,
+            final FinalResultsStorage finalResultsStorage)
             throws NamingException, UnsupportedEncodingException,
             ClientHandlerException, UniformInterfaceException, JAXBException,
             NoSuchAlgorithmException, InvalidKeySpecException {
@@ -91,10 +79,16 @@ public class SEPIALauncher implements Observer {
 
         this.LOGGER.info("Launching for " + pi.getPeerName());
 
-        this.peerInfo = pi;
+        ProtocolRegistry.Protocol protocol = ProtocolRegistry.getProtocol(rc
+                .getMpcProtocol());
+        if (protocol == null) {
+            throw new IllegalArgumentException("Unknown MPC protocol: "
+                    + rc.getMpcProtocol());
+        }
+
         this.regCode = regCode;
 
-        this.groupMgmtUrl = groupMgmtUrl;
+        this.reporter = StatusReporter.getInstance(groupMgmtUrl);
 
         this.peerName = pi.getPeerName();
 
@@ -113,7 +107,19 @@ public class SEPIALauncher implements Observer {
         RESTFinalResultsWriter fsw = new RESTFinalResultsWriter(
                 finalResultsURL, this.peerName);
         fsw.setMaxSize(rc.getResultBufferSize());
-        this.cfg.setFinalResultsWriter(fsw);
+        FinalResultsWriter writer = fsw;
+        if (finalResultsStorage != null) {
+            try {
+                writer = new StoringFinalResultsWriter(fsw,
+                        finalResultsStorage, this.peerName,
+                        finalResultsStorage.nextRun(this.peerName), this);
+            } catch (Exception ex) {
+                this.LOGGER.catching(ex);
+                this.LOGGER.error("Could not read the runs of "
+                        + this.peerName + ". Final results are not stored.");
+            }
+        }
+        this.cfg.setFinalResultsWriter(writer);
 
         if (pi.getPeerType() == PeerInfo.PEER_TYPE_INPUT) {
             this.cfg.setConnectionManager(new InputPeerConnectionManager(pi
@@ -193,9 +199,9 @@ public class SEPIALauncher implements Observer {
         props.put(Configuration.PROP_ACTIVE_INPUT_PEERS, activeInputPeers);
 
         props.put(Configuration.PROP_MPC_CUSTOM_PEER_CLASS,
-                inputPeerProtocolMappings.get(rc.getMpcProtocol()));
+                protocol.getInputPeerClass());
         props.put(Configuration.PROP_MPC_CUSTOM_PRIVACYPEER_CLASS,
-                privacyPeerProtocolMappings.get(rc.getMpcProtocol()));
+                protocol.getPrivacyPeerClass());
 
         props.put(Configuration.PROP_FIELD, rc.getField());
         props.put(Configuration.PROP_MAXELEMENT, rc.getMaxElement());
@@ -208,6 +214,7 @@ public class SEPIALauncher implements Observer {
                 Integer.toString(numPrivacyPeers));
         props.put(Configuration.PROP_MIN_INPUTPEERS,
                 Integer.toString(numInputPeers));
+        protocol.applyDefaultProperties(props);
 
         Stopper stopListener = new Stopper();
         stopListener.addObserver(this);
@@ -215,22 +222,51 @@ public class SEPIALauncher implements Observer {
         this.cfg.setStopListener(stopListener);
         this.cfg.setGlobalStopper(this.globalStopper);
 
-        PeerStarter ps = new PeerStarter(peerName, this.stopper, isInputPeer,
-                this.mpcStopper);
+        this.peerStarter = new PeerStarter(peerName, this.stopper,
+                isInputPeer, this.mpcStopper);
 
-        Thread t = new Thread(ps);
+        Thread t = new Thread(this.peerStarter);
         t.start();
 
-        String statusUrl = this.groupMgmtUrl + "/status/"
-                + URLEncoder.encode(this.peerInfo.getPeerName(), "UTF-8")
-                + "?registrationCode=" + regCode + "&status=";
-        RESTHelper.postRequest(statusUrl + PeerInfo.PEER_STATUS_STARTED);
+        this.status = PeerInfo.PEER_STATUS_STARTED;
+        this.reporter.track(this);
+        this.reporter.reportNow(getProgress());
     }
 
     public void addInputData(final String csvData) throws InterruptedException {
         ((RESTInputDataReader) this.cfg.getInputDataReader()).write(csvData);
     }
 
+    /**
+     * Samples the status and progress of this peer.
+     * 
+     * @return the update to send to the group management
+     */
+    public PeerStatusUpdate getProgress() {
+        PeerStatusUpdate u = new PeerStatusUpdate();
+        u.setPeerName(this.peerName);
+        u.setRegistrationCode(this.regCode);
+        u.setStatus(this.status);
+        u.setWhen(System.currentTimeMillis());
+        if (this.peerStarter != null) {
+            u.setTimeSlot(this.peerStarter.getCompletedTimeSlots());
+            u.setRound(this.peerStarter.getCurrentTimeSlot());
+        }
+        ConnectionManager cm = this.cfg.getConnectionManager();
+        if (cm != null) {
+            u.setQueueDepth(cm.getQueueDepth());
+        }
+        return u;
+    }
+
+    /**
+     * @return the time slot the peer is currently processing
+     */
+    public int getCurrentTimeSlot() {
+        return this.peerStarter != null ? this.peerStarter
+                .getCurrentTimeSlot() : 0;
+    }
+
     public Stopper getStopper() {
         return this.stopper;
     }
@@ -255,34 +291,19 @@ public class SEPIALauncher implements Observer {
             this.sepiaInstances.remove(this.peerName);
         }
 
-        try {
-            String statusUrl = this.groupMgmtUrl + "/status/"
-                    + URLEncoder.encode(this.peerInfo.getPeerName(), "UTF-8")
-                    + "?registrationCode=" + this.regCode + "&status=";
-            RESTHelper.postRequest(statusUrl + PeerInfo.PEER_STATUS_STOPPED);
-        } catch (ClientHandlerException | UniformInterfaceException
-                | JAXBException | NamingException e) {
-            this.LOGGER.catching(e);
-        } catch (UnsupportedEncodingException e) {
-            // TODO Auto-generated catch block
-            this.LOGGER.catching(e);
-        }
+        reportStatus(PeerInfo.PEER_STATUS_STOPPED);
+    }
+
+    private void reportStatus(final int status) {
+        this.status = status;
+        this.reporter.untrack(this.peerName);
+        this.reporter.reportNow(getProgress());
     }
 
     @Override
     public void update(final Observable o, final Object arg) {
         this.LOGGER.info("update");
 
-        String statusUrl = null;
-        try {
-            statusUrl = this.groupMgmtUrl + "/status/"
-                    + URLEncoder.encode(this.peerInfo.getPeerName(), "UTF-8")
-                    + "?registrationCode=" + this.regCode + "&status=";
-        } catch (UnsupportedEncodingException e1) {
-            this.LOGGER.catching(e1);
-        }
-        this.LOGGER.info(statusUrl);
-
         Stopper stopper = (Stopper) o;
         if (stopper.isStopped() && !stopper.hasException()) {
             this.LOGGER.info("SEPIA has stopped!");
@@ -290,24 +311,13 @@ public class SEPIALauncher implements Observer {
                 this.sepiaInstances.remove(this.peerName);
             }
 
-            try {
-                RESTHelper
-                        .postRequest(statusUrl + PeerInfo.PEER_STATUS_STOPPED);
-            } catch (ClientHandlerException | UniformInterfaceException
-                    | JAXBException | NamingException e) {
-                this.LOGGER.catching(e);
-            }
+            reportStatus(PeerInfo.PEER_STATUS_STOPPED);
         } else if (stopper.isStopped() && stopper.hasException()) {
             this.LOGGER.info("SEPIA has stopped WITH exceptions!");
             if (stopper.getException() != null) {
                 this.LOGGER.catching(stopper.getException());
             }
-            try {
-                RESTHelper.postRequest(statusUrl + PeerInfo.PEER_STATUS_ERROR);
-            } catch (ClientHandlerException | UniformInterfaceException
-                    | JAXBException | NamingException e) {
-                this.LOGGER.catching(e);
-            }
+            reportStatus(PeerInfo.PEER_STATUS_ERROR);
         }
     }
 }
@@ -26,8 +26,9 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+import ch.ethz.sepia.connections.CommunicationStatistics;
+import ch.ethz.sepia.connections.ConnectionManager;
 import ch.ethz.sepia.connections.OutputStrategy;
-import ch.ethz.sepia.mpc.additive.AdditiveMessage;
 import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesMessage;
 import ch.ethz.sepia.startup.Configuration;
 import ch.zhaw.ficore.p2ds.group.json.PeerInfo;
@@ -58,6 +59,24 @@ public class SEPIAOutputStrategy implements OutputStrategy {
         RESTHelper.postRequestPlain(url, params);
     }
 
+    /**
+     * Records the size of a serialized message in the communication statistics
+     * of the sender (used for the field size cost model).
+     */
+    private void recordStatistics(final Object obj, final int bytes) {
+        ConnectionManager cm = Configuration.getInstance(this.senderId)
+                .getConnectionManager();
+        if (cm == null) {
+            return;
+        }
+        CommunicationStatistics statistics = cm.getCommunicationStatistics();
+        statistics.incMessagesSent(bytes);
+        if (obj instanceof PrimitivesMessage) {
+            statistics.incSerializedShares(
+                    ((PrimitivesMessage) obj).countShares(), bytes);
+        }
+    }
+
     @Override
     public void send(final Object obj) throws IOError, InterruptedException {
 
@@ -73,15 +92,12 @@ public class SEPIAOutputStrategy implements OutputStrategy {
              * bos.toByteArray(); out.close(); bos.close(); String data =
              * Base64.encodeBase64String(rawData);
              */
-            String type = "";
-            Class<?> clazz = null;
-            if (obj instanceof AdditiveMessage) {
-                type = "AdditiveMessage";
-                clazz = AdditiveMessage.class;
-            } else if (obj instanceof PrimitivesMessage) {
-                type = "PrimitivesMessage";
-                clazz = PrimitivesMessage.class;
+            String type = ProtocolRegistry.getMessageType(obj);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown message type: "
+                        + obj.getClass().getName());
             }
+            Class<?> clazz = obj.getClass();
 
             data = RESTHelper.toJSON(clazz, obj);
 
@@ -89,7 +105,9 @@ public class SEPIAOutputStrategy implements OutputStrategy {
             Signature dsa = Signature.getInstance("SHA512withECDSA", provider);
             dsa.initSign(Configuration.getInstance(this.senderId)
                     .getPrivateKey());
-            dsa.update(data.getBytes("UTF-8"));
+            byte[] rawData = data.getBytes("UTF-8");
+            dsa.update(rawData);
+            recordStatistics(obj, rawData.length);
             byte[] sig = dsa.sign();
             String signature = Certificates.encodeBase64(sig);
 
@@ -0,0 +1,229 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusList;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusResult;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
+
+/**
+ * Sends status and progress updates of the peers running in this process to
+ * a group management in batches (POST /status) instead of one request per
+ * event. Updates are coalesced per peer, so only the latest update of a peer
+ * is sent. The progress of tracked peers is sampled every
+ * {@link #REPORT_INTERVAL} milliseconds and sent if it has changed.
+ */
+public class StatusReporter {
+
+    /** Time (ms) between two batches. */
+    public static final long REPORT_INTERVAL = 2000;
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(StatusReporter.class));
+
+    private static final Map<String, StatusReporter> reporters = new HashMap<String, StatusReporter>();
+
+    private static final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r, "StatusReporter");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /**
+     * Returns the reporter for a group management.
+     *
+     * @param groupMgmtUrl
+     *            base URL of the group management
+     * @return the reporter
+     */
+    public static synchronized StatusReporter getInstance(
+            final String groupMgmtUrl) {
+        StatusReporter reporter = reporters.get(groupMgmtUrl);
+        if (reporter == null) {
+            reporter = new StatusReporter(groupMgmtUrl + "/status");
+            reporters.put(groupMgmtUrl, reporter);
+        }
+        return reporter;
+    }
+
+    private static boolean differs(final PeerStatusUpdate a,
+            final PeerStatusUpdate b) {
+        return a == null || a.getStatus() != b.getStatus()
+                || a.getRound() != b.getRound()
+                || a.getTimeSlot() != b.getTimeSlot()
+                || a.getQueueDepth() != b.getQueueDepth();
+    }
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            /*
+             * an exception escaping the task would make the executor cancel
+             * all further runs silently
+             */
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOGGER.catching(e);
+            }
+        }
+    };
+
+    /* last update sent per peer, only used by the scheduler thread */
+    private final Map<String, PeerStatusUpdate> lastSent = new HashMap<String, PeerStatusUpdate>();
+
+    /* guarded by this */
+    private final Map<String, PeerStatusUpdate> pending = new LinkedHashMap<String, PeerStatusUpdate>();
+
+    /* guarded by this */
+    private final Map<String, SEPIALauncher> tracked = new HashMap<String, SEPIALauncher>();
+
+    private final String url;
+
+    private StatusReporter(final String url) {
+        this.url = url;
+        scheduler.scheduleWithFixedDelay(this.flushTask, REPORT_INTERVAL,
+                REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<PeerStatusUpdate> batch;
+        synchronized (this) {
+            for (SEPIALauncher launcher : this.tracked.values()) {
+                PeerStatusUpdate u = launcher.getProgress();
+                if (!this.pending.containsKey(u.getPeerName())
+                        && differs(this.lastSent.get(u.getPeerName()), u)) {
+                    this.pending.put(u.getPeerName(), u);
+                }
+            }
+
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<PeerStatusUpdate>(this.pending.values());
+            this.pending.clear();
+        }
+
+        PeerStatusList list = new PeerStatusList();
+        list.setUpdates(batch);
+
+        Set<String> rejected = new HashSet<String>();
+        try {
+            String answer = (String) RESTHelper.postRequestJSON(this.url,
+                    RESTHelper.toJSON(PeerStatusList.class, list));
+            PeerStatusResult result = (PeerStatusResult) RESTHelper.fromJSON(
+                    PeerStatusResult.class, answer);
+            rejected.addAll(result.getRejected());
+        } catch (RESTException e) {
+            LOGGER.catching(e);
+            if (e.getStatusCode() >= 400 && e.getStatusCode() < 500) {
+                /* rejected as a whole, sending it again won't help */
+                return;
+            }
+            requeue(batch);
+            return;
+        } catch (Exception e) {
+            LOGGER.catching(e);
+            requeue(batch);
+            return;
+        }
+
+        for (PeerStatusUpdate u : batch) {
+            if (rejected.contains(u.getPeerName())) {
+                /* unknown peer or invalid registration code, drop it */
+                LOGGER.warn("Status update of " + u.getPeerName()
+                        + " was rejected by the group management");
+            }
+            /* rejected ones too, such that unchanged progress isn't resent */
+            this.lastSent.put(u.getPeerName(), u);
+        }
+    }
+
+    /**
+     * Queues the updates of a failed batch again, unless newer updates of the
+     * same peers are pending.
+     *
+     * @param batch
+     *            the updates
+     */
+    private synchronized void requeue(final List<PeerStatusUpdate> batch) {
+        for (PeerStatusUpdate u : batch) {
+            if (!this.pending.containsKey(u.getPeerName())) {
+                this.pending.put(u.getPeerName(), u);
+            }
+        }
+    }
+
+    /**
+     * Queues an update. It is sent with the next batch.
+     *
+     * @param update
+     *            the update
+     */
+    public synchronized void report(final PeerStatusUpdate update) {
+        this.pending.put(update.getPeerName(), update);
+    }
+
+    /**
+     * Queues an update and sends the pending updates as soon as possible
+     * (used for status changes).
+     *
+     * @param update
+     *            the update
+     */
+    public void reportNow(final PeerStatusUpdate update) {
+        report(update);
+        scheduler.execute(this.flushTask);
+    }
+
+    /**
+     * Starts sampling the progress of a peer.
+     *
+     * @param launcher
+     *            the peer
+     */
+    public synchronized void track(final SEPIALauncher launcher) {
+        this.tracked.put(launcher.getProgress().getPeerName(), launcher);
+    }
+
+    /**
+     * Stops sampling the progress of a peer.
+     *
+     * @param peerName
+     *            Name of the peer
+     */
+    public synchronized void untrack(final String peerName) {
+        this.tracked.remove(peerName);
+    }
+}
@@ -0,0 +1,45 @@
+package ch.zhaw.ficore.p2ds.util;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.FinalResultsWriter;
+
+/**
+ * Passes final results on to another writer and additionally keeps them in a
+ * {@link FinalResultsStorage}, tagged with the run of the peer and the time
+ * slot the result belongs to. Storage failures are logged and do not stop the
+ * delivery of the results.
+ */
+public class StoringFinalResultsWriter implements FinalResultsWriter {
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(StoringFinalResultsWriter.class));
+
+    private final FinalResultsWriter delegate;
+    private final SEPIALauncher launcher;
+    private final String peerName;
+    private final int run;
+    private final FinalResultsStorage storage;
+
+    public StoringFinalResultsWriter(final FinalResultsWriter delegate,
+            final FinalResultsStorage storage, final String peerName,
+            final int run, final SEPIALauncher launcher) {
+        this.delegate = delegate;
+        this.storage = storage;
+        this.peerName = peerName;
+        this.run = run;
+        this.launcher = launcher;
+    }
+
+    @Override
+    public void write(final String csvData) {
+        try {
+            this.storage.addResult(this.peerName, this.run,
+                    this.launcher.getCurrentTimeSlot(), csvData);
+        } catch (Exception ex) {
+            LOGGER.catching(ex);
+            LOGGER.error("Could not store final result of " + this.peerName);
+        }
+        this.delegate.write(csvData);
+    }
+}
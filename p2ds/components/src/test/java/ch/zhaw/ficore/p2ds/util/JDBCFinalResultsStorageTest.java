@@ -0,0 +1,147 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+public class JDBCFinalResultsStorageTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.file = File.createTempFile("final-results", ".db");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.file.delete();
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + this.file.getAbsolutePath();
+    }
+
+    private JDBCFinalResultsStorage open(final int batchSize) throws Exception {
+        /* a long interval so that only the batch size triggers commits */
+        return new JDBCFinalResultsStorage("org.sqlite.JDBC", url(),
+                batchSize, 3600000);
+    }
+
+    private int countRows(final String peerName) throws Exception {
+        Connection c = DriverManager.getConnection(url());
+        try {
+            Statement stmt = c.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM \""
+                    + JDBCFinalResultsStorage.getTableName(peerName) + "\"");
+            rs.next();
+            int count = rs.getInt(1);
+            rs.close();
+            stmt.close();
+            return count;
+        } finally {
+            c.close();
+        }
+    }
+
+    private boolean hasTable(final String peerName) throws Exception {
+        Connection c = DriverManager.getConnection(url());
+        try {
+            ResultSet rs = c.getMetaData().getTables(null, null,
+                    JDBCFinalResultsStorage.getTableName(peerName), null);
+            boolean found = rs.next();
+            rs.close();
+            return found;
+        } finally {
+            c.close();
+        }
+    }
+
+    public void testBatchIsWrittenWhenFull() throws Exception {
+        JDBCFinalResultsStorage storage = open(3);
+        storage.addResult("peer1", 1, 0, "1;2");
+        storage.addResult("peer1", 1, 1, "3;4");
+        /* nothing is written and no connection is held between batches */
+        assertEquals(0, storage.getActiveConnections());
+        assertFalse(hasTable("peer1"));
+
+        storage.addResult("peer1", 1, 2, "5;6");
+        assertEquals(0, storage.getActiveConnections());
+        assertEquals(3, countRows("peer1"));
+        storage.close();
+    }
+
+    public void testCloseFlushes() throws Exception {
+        JDBCFinalResultsStorage storage = open(100);
+        storage.addResult("peer1", 1, 0, "1;2");
+        storage.close();
+        assertEquals(1, countRows("peer1"));
+    }
+
+    public void testTableNamesAreCaseSensitive() throws Exception {
+        assertFalse(JDBCFinalResultsStorage.getTableName("Alice")
+                .equalsIgnoreCase(JDBCFinalResultsStorage.getTableName("alice")));
+        assertFalse(JDBCFinalResultsStorage.getTableName("a_b")
+                .equalsIgnoreCase(JDBCFinalResultsStorage.getTableName("aB")));
+
+        JDBCFinalResultsStorage storage = open(1);
+        storage.addResult("Alice", 1, 0, "1");
+        storage.addResult("alice", 1, 0, "2");
+        storage.addResult("alice", 1, 1, "3");
+        storage.close();
+        assertEquals(1, countRows("Alice"));
+        assertEquals(2, countRows("alice"));
+    }
+
+    public void testUnsafeNameIsRejected() throws Exception {
+        JDBCFinalResultsStorage storage = open(1);
+        try {
+            storage.addResult("peer\"; DROP TABLE x; --", 1, 0, "1");
+            fail("Expected UnsafeTableNameException");
+        } catch (UnsafeTableNameException e) {
+        }
+        try {
+            storage.nextRun("");
+            fail("Expected UnsafeTableNameException");
+        } catch (UnsafeTableNameException e) {
+        }
+        storage.close();
+    }
+
+    public void testNextRun() throws Exception {
+        JDBCFinalResultsStorage storage = open(2);
+        assertEquals(1, storage.nextRun("peer1"));
+        storage.addResult("peer1", 1, 0, "1");
+        storage.addResult("peer1", 1, 1, "2");
+        assertEquals(2, storage.nextRun("peer1"));
+
+        /* pending results count as well */
+        storage.addResult("peer1", 2, 0, "3");
+        assertEquals(3, storage.nextRun("peer1"));
+        assertEquals(1, storage.nextRun("peer2"));
+        assertEquals(0, storage.getActiveConnections());
+        storage.close();
+
+        storage = open(2);
+        assertEquals(3, storage.nextRun("peer1"));
+        storage.close();
+    }
+}
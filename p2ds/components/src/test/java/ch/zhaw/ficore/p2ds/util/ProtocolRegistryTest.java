@@ -0,0 +1,108 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.additive.AdditiveMessage;
+import ch.ethz.sepia.mpc.additive.AdditivePeer;
+import ch.ethz.sepia.mpc.additive.AdditivePrivacyPeer;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesMessage;
+import ch.ethz.sepia.mpc.setoperations.SetOperationMessage;
+import ch.ethz.sepia.mpc.setoperations.SetOperationPeer;
+import ch.ethz.sepia.mpc.setoperations.SetOperationPrivacyPeer;
+import ch.ethz.sepia.mpc.topk.Hash;
+import ch.ethz.sepia.mpc.topk.TopkBase;
+import ch.ethz.sepia.mpc.topk.TopkMessage;
+import ch.ethz.sepia.mpc.topk.TopkPeer;
+import ch.ethz.sepia.mpc.topk.TopkPrivacyPeer;
+
+/**
+ * Test cases for the protocol and message type lookups of
+ * {@link ProtocolRegistry}.
+ */
+public class ProtocolRegistryTest extends TestCase {
+
+    public void testProtocols() {
+        ProtocolRegistry.Protocol additive = ProtocolRegistry
+                .getProtocol(ProtocolRegistry.PROTOCOL_ADDITIVE);
+        assertEquals(AdditivePeer.class.getName(),
+                additive.getInputPeerClass());
+        assertEquals(AdditivePrivacyPeer.class.getName(),
+                additive.getPrivacyPeerClass());
+
+        ProtocolRegistry.Protocol topk = ProtocolRegistry
+                .getProtocol(ProtocolRegistry.PROTOCOL_TOPK);
+        assertEquals(TopkPeer.class.getName(), topk.getInputPeerClass());
+        assertEquals(TopkPrivacyPeer.class.getName(),
+                topk.getPrivacyPeerClass());
+
+        assertNotNull(ProtocolRegistry
+                .getProtocol(ProtocolRegistry.PROTOCOL_ENTROPY));
+        assertNull(ProtocolRegistry.getProtocol("unknown"));
+    }
+
+    public void testSetOperationProtocol() {
+        ProtocolRegistry.Protocol setop = ProtocolRegistry
+                .getProtocol(ProtocolRegistry.PROTOCOL_SETOP);
+        assertEquals(SetOperationPeer.class.getName(),
+                setop.getInputPeerClass());
+        assertEquals(SetOperationPrivacyPeer.class.getName(),
+                setop.getPrivacyPeerClass());
+        assertEquals(SetOperationMessage.class,
+                ProtocolRegistry.getMessageClass("SetOperationMessage"));
+    }
+
+    public void testTopkDefaultProperties() {
+        ProtocolRegistry.Protocol topk = ProtocolRegistry
+                .getProtocol(ProtocolRegistry.PROTOCOL_TOPK);
+        Properties props = new Properties();
+        props.setProperty(TopkBase.PROP_TOPK_K, "5");
+        topk.applyDefaultProperties(props);
+
+        /* properties of the peer are not overwritten */
+        assertEquals("5", props.getProperty(TopkBase.PROP_TOPK_K));
+        assertEquals("3", props.getProperty(TopkBase.PROP_TOPK_S));
+        assertEquals("1024", props.getProperty(TopkBase.PROP_TOPK_H));
+        assertEquals("1", props.getProperty(TopkPeer.PROP_TOPK_SEED));
+        assertEquals(Hash.ALGORITHM_TABULATION,
+                props.getProperty(TopkPeer.PROP_TOPK_HASH));
+        assertEquals("TopkKeyWeightData",
+                props.getProperty(TopkPeer.PROP_TOPK_INPUT_TYPE));
+        assertEquals("65536",
+                props.getProperty(TopkPrivacyPeer.PROP_TOPK_MAXTAU));
+
+        /* the additive protocol has no defaults */
+        props = new Properties();
+        ProtocolRegistry.getProtocol(ProtocolRegistry.PROTOCOL_ADDITIVE)
+                .applyDefaultProperties(props);
+        assertTrue(props.isEmpty());
+    }
+
+    public void testMessageTypes() {
+        assertEquals(TopkMessage.class,
+                ProtocolRegistry.getMessageClass("TopkMessage"));
+        assertEquals(AdditiveMessage.class,
+                ProtocolRegistry.getMessageClass("AdditiveMessage"));
+        assertEquals(PrimitivesMessage.class,
+                ProtocolRegistry.getMessageClass("PrimitivesMessage"));
+        assertNull(ProtocolRegistry.getMessageClass("UnknownMessage"));
+
+        assertEquals("TopkMessage",
+                ProtocolRegistry.getMessageType(new TopkMessage("peer1", 0)));
+        assertNull(ProtocolRegistry.getMessageType("not a message"));
+    }
+}
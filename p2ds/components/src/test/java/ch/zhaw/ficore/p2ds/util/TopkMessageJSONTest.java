@@ -0,0 +1,76 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.topk.TopkMessage;
+
+/**
+ * Test cases for the JSON (de-)serialization of {@link TopkMessage} as used
+ * by {@link SEPIAOutputStrategy} and <code>PeerService.message</code>.
+ */
+public class TopkMessageJSONTest extends TestCase {
+
+    private static TopkMessage roundTrip(final TopkMessage message)
+            throws Exception {
+        String json = RESTHelper.toJSON(TopkMessage.class, message);
+        return (TopkMessage) RESTHelper.fromJSON(TopkMessage.class, json);
+    }
+
+    public void testInitialSharesMessage() throws Exception {
+        TopkMessage message = new TopkMessage("peer1", 2);
+        message.setIsInitialSharesMessage(true);
+        message.setKeysAreIpAddresses(true);
+        message.setRoundNumber(5);
+        message.setTimeSlotCount(3);
+        message.setInitialKeyShares(new long[][] { { 1, 2, 3 },
+                { Long.MAX_VALUE, 0, -1 } });
+        message.setInitialValueShares(new long[][] { { 4, 5, 6 }, { 7, 8, 9 } });
+
+        TopkMessage copy = roundTrip(message);
+        assertEquals("peer1", copy.getSenderID());
+        assertEquals(2, copy.getSenderIndex());
+        assertEquals(5, copy.getRoundNumber());
+        assertEquals(3, copy.getTimeSlotCount());
+        assertTrue(copy.isInitialSharesMessage());
+        assertFalse(copy.isFinalResultMessage());
+        assertTrue(copy.areKeysIpAddresses());
+        assertTrue(Arrays.deepEquals(message.getInitialKeyShares(),
+                copy.getInitialKeyShares()));
+        assertTrue(Arrays.deepEquals(message.getInitialValueShares(),
+                copy.getInitialValueShares()));
+        assertNull(copy.getFinalResults());
+    }
+
+    public void testFinalResultMessage() throws Exception {
+        HashMap<Long, Long> finalResults = new HashMap<Long, Long>();
+        finalResults.put(3232235777L, 42L);
+        finalResults.put(-7L, Long.MAX_VALUE);
+
+        TopkMessage message = new TopkMessage("privacy1", 0);
+        message.setIsFinalResultMessage(true);
+        message.setFinalResults(finalResults);
+
+        TopkMessage copy = roundTrip(message);
+        assertTrue(copy.isFinalResultMessage());
+        assertFalse(copy.isInitialSharesMessage());
+        assertFalse(copy.areKeysIpAddresses());
+        assertEquals(finalResults, copy.getFinalResults());
+        assertNull(copy.getInitialKeyShares());
+    }
+}
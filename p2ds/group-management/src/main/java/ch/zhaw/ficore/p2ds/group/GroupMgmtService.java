@@ -16,46 +16,65 @@ package ch.zhaw.ficore.p2ds.group;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.TypedQuery;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import javax.xml.bind.JAXBException;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 import ch.zhaw.ficore.p2ds.group.json.DataSets;
+import ch.zhaw.ficore.p2ds.group.json.GroupActionReport;
 import ch.zhaw.ficore.p2ds.group.json.GroupConfigurationInfo;
-import ch.zhaw.ficore.p2ds.group.json.GroupInfo;
 import ch.zhaw.ficore.p2ds.group.json.GroupName;
+import ch.zhaw.ficore.p2ds.group.json.PeerActionResult;
 import ch.zhaw.ficore.p2ds.group.json.PeerInfo;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusList;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusResult;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
 import ch.zhaw.ficore.p2ds.group.storage.Group;
 import ch.zhaw.ficore.p2ds.group.storage.GroupConfiguration;
+import ch.zhaw.ficore.p2ds.group.storage.GroupSnapshot;
+import ch.zhaw.ficore.p2ds.group.storage.GroupSnapshots;
 import ch.zhaw.ficore.p2ds.group.storage.Manager;
 import ch.zhaw.ficore.p2ds.group.storage.Peer;
 import ch.zhaw.ficore.p2ds.group.storage.Registration;
+import ch.zhaw.ficore.p2ds.group.storage.StatusBoard;
 import ch.zhaw.ficore.p2ds.util.Certificates;
 import ch.zhaw.ficore.p2ds.util.RESTHelper;
 
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.UniformInterfaceException;
-
 @Path("/group-mgmt")
 public class GroupMgmtService {
 
@@ -69,10 +88,35 @@ public class GroupMgmtService {
     private static final String ERR_SERVER = "ERR_SERVER";
     private static final String ERR_SUCCESS = "ERR_SUCCESS";
 
+    /** Maximal number of peers contacted at the same time by start/stop. */
+    private static final int FAN_OUT_THREADS = 32;
+
     /** The logger. */
     private static final XLogger LOGGER = new XLogger(
             LoggerFactory.getLogger(GroupMgmtService.class));
 
+    private static final ExecutorService FAN_OUT_EXECUTOR = Executors
+            .newFixedThreadPool(FAN_OUT_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r, "GroupMgmtService-fan-out");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /** Maximal time (ms) a status stream request waits for updates. */
+    public static final long MAX_POLL_TIMEOUT = 60000;
+
+    /** Connect/read timeout (ms) for start/stop requests sent to a peer. */
+    private static final int PEER_TIMEOUT = 30000;
+
+    /**
+     * Maximal duration (ms) of a start/stop request: the connect and the read
+     * timeout of the client may both expire.
+     */
+    private static final long PEER_REQUEST_TIMEOUT = 2L * PEER_TIMEOUT;
+
     /**
      * Helper method to set GroupConfiguration based on GroupConfigurationInfo
      * 
@@ -130,125 +174,249 @@ public class GroupMgmtService {
             em.persist(g);
         }
 
-        et.commit();
+        try {
+            et.commit();
+        } finally {
+            em.close();
+        }
+        GroupSnapshots.invalidate(gid);
 
         return true;
     }
 
     /**
-     * Helper method to start all peers of a group
+     * Builds a 200 response carrying the entity and its ETag or a 304 response
+     * if the client already has the current version.
+     * 
+     * @param req
+     *            the request
+     * @param entity
+     *            the (application/json) entity
+     * @param tag
+     *            value of the entity tag
+     * @return the response
+     */
+    private static Response conditionalOk(final Request req,
+            final Object entity, final String tag) {
+        EntityTag etag = new EntityTag(tag);
+        CacheControl cc = new CacheControl();
+        cc.setNoCache(true);
+        cc.setPrivate(true);
+
+        ResponseBuilder rb = req.evaluatePreconditions(etag);
+        if (rb == null) {
+            rb = Response.ok(entity, MediaType.APPLICATION_JSON);
+        }
+        return rb.tag(etag).cacheControl(cc).build();
+    }
+
+    /**
+     * Sends the start or stop request to all peers of a group concurrently
+     * and waits until every peer has answered, failed or timed out.
      * 
      * @param gid
      *            Id of the group
-     * @throws UnsupportedEncodingException
-     *             If something went wrong.
-     * @throws ClientHandlerException
-     *             If something went wrong.
-     * @throws UniformInterfaceException
-     *             If something else went wrong.
-     * @throws JAXBException
-     *             If something went seriously wrong.
-     * @throws NamingException
-     *             If something went wrong but not really wrong but just a
-     *             little bit wrong.
+     * @param action
+     *            "start" or "stop"
+     * @param onlyVerified
+     *            skip peers that are not verified
+     * @return the report
      */
-    public static void startPeers(final long gid)
-            throws UnsupportedEncodingException, ClientHandlerException,
-            UniformInterfaceException, JAXBException, NamingException {
-        LOGGER.info("Starting peers for group " + gid);
-        EntityManager em = Manager.getEntityManager();
-        TypedQuery<Long> members = em.createQuery(
-                "SELECT c.pid FROM TBL_PEER c WHERE c.gid =" + gid, Long.class);
+    private static GroupActionReport fanOut(final long gid,
+            final String action, final boolean onlyVerified) {
+        long begin = System.currentTimeMillis();
 
-        int i = 0;
+        GroupActionReport report = new GroupActionReport();
+        report.setGid(gid);
+        report.setAction(action);
 
-        for (Long memberId : members.getResultList()) {
+        EntityManager em = Manager.getEntityManager();
+        List<Peer> members;
+        try {
+            TypedQuery<Peer> query = em.createQuery(
+                    "SELECT c FROM TBL_PEER c WHERE c.gid = :gid", Peer.class);
+            query.setParameter("gid", gid);
+            members = query.getResultList();
+        } finally {
+            em.close();
+        }
 
-            Peer peer = em.find(Peer.class, memberId);
-            if (!peer.isVerified()) {
+        /*
+         * Peers that are not contacted get their result right away, the others
+         * get it from their future. Every task builds and returns its own
+         * result, so a task that keeps running after a timeout cannot change
+         * the report.
+         */
+        List<PeerActionResult> results = new ArrayList<PeerActionResult>();
+        List<Future<PeerActionResult>> futures = new ArrayList<Future<PeerActionResult>>();
+
+        for (final Peer peer : members) {
+            final String peerName = peer.getPeerName();
+
+            if (onlyVerified && !peer.isVerified()) {
+                results.add(peerActionResult(peerName,
+                        PeerActionResult.RESULT_SKIPPED, "not verified", 0));
+                futures.add(null);
                 continue;
             }
 
-            String urlSuffix = "/start/";
-            urlSuffix += URLEncoder.encode(peer.getPeerName(), "UTF-8") + "/";
-            urlSuffix += "?registrationCode="
-                    + URLEncoder.encode(peer.getRegistrationCode(), "UTF-8");
+            final String url;
             try {
-                RESTHelper.postRequest(peer.getUrl() + urlSuffix);
-                i++;
-            } catch (Exception e) {
+                url = peer.getUrl() + "/" + action + "/"
+                        + URLEncoder.encode(peerName, "UTF-8")
+                        + "?registrationCode="
+                        + URLEncoder.encode(peer.getRegistrationCode(), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
                 LOGGER.catching(e);
+                results.add(peerActionResult(peerName,
+                        PeerActionResult.RESULT_FAILED, e.toString(), 0));
+                futures.add(null);
+                continue;
             }
+
+            results.add(null);
+            futures.add(FAN_OUT_EXECUTOR.submit(new Callable<PeerActionResult>() {
+                @Override
+                public PeerActionResult call() {
+                    long t = System.currentTimeMillis();
+                    try {
+                        RESTHelper.postRequest(url, PEER_TIMEOUT);
+                        return peerActionResult(peerName,
+                                PeerActionResult.RESULT_SUCCESS, null,
+                                System.currentTimeMillis() - t);
+                    } catch (Exception e) {
+                        LOGGER.catching(e);
+                        return peerActionResult(peerName,
+                                PeerActionResult.RESULT_FAILED, e.getMessage(),
+                                System.currentTimeMillis() - t);
+                    }
+                }
+            }));
         }
-        LOGGER.info("Started " + i + " peers!");
 
+        /*
+         * Requests queued behind others in the executor may have to wait for
+         * up to (requests / threads) request timeouts before they are even
+         * sent. A peer only times out here if its request could not have
+         * ended by the timeouts of the client.
+         */
+        int requests = 0;
+        for (Future<PeerActionResult> f : futures) {
+            if (f != null) {
+                requests++;
+            }
+        }
+        int waves = (requests + FAN_OUT_THREADS - 1) / FAN_OUT_THREADS;
+        long deadline = System.currentTimeMillis() + PEER_REQUEST_TIMEOUT
+                * waves + 1000;
+
+        for (int i = 0; i < futures.size(); i++) {
+            Future<PeerActionResult> f = futures.get(i);
+            PeerActionResult par = results.get(i);
+            if (f != null) {
+                String peerName = members.get(i).getPeerName();
+                try {
+                    par = f.get(Math.max(0, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    f.cancel(true);
+                    par = peerActionResult(peerName,
+                            PeerActionResult.RESULT_TIMEOUT, "no response",
+                            System.currentTimeMillis() - begin);
+                } catch (InterruptedException e) {
+                    f.cancel(true);
+                    Thread.currentThread().interrupt();
+                    par = peerActionResult(peerName,
+                            PeerActionResult.RESULT_FAILED, "interrupted",
+                            System.currentTimeMillis() - begin);
+                } catch (ExecutionException e) {
+                    par = peerActionResult(peerName,
+                            PeerActionResult.RESULT_FAILED, e.getCause()
+                                    .toString(), System.currentTimeMillis()
+                                    - begin);
+                }
+            }
+            report.addPeer(par);
+        }
+
+        report.setElapsed(System.currentTimeMillis() - begin);
+        return report;
+    }
+
+    /**
+     * Stops the threads that send the start/stop requests to the peers.
+     * Requests still running are interrupted. Called when the web application
+     * is shut down (see {@link GroupMgmtContextListener}).
+     */
+    public static void shutdownFanOut() {
+        FAN_OUT_EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * Creates the outcome of a start or stop request for one peer.
+     * 
+     * @param peerName
+     *            name of the peer
+     * @param result
+     *            one of the PeerActionResult.RESULT_* constants
+     * @param message
+     *            error message or null
+     * @param elapsed
+     *            time in ms until the outcome was known
+     * @return the result
+     */
+    private static PeerActionResult peerActionResult(final String peerName,
+            final int result, final String message, final long elapsed) {
+        PeerActionResult par = new PeerActionResult();
+        par.setPeerName(peerName);
+        par.setResult(result);
+        par.setMessage(message);
+        par.setElapsed(elapsed);
+        return par;
     }
 
     /**
-     * Helper method to stop all peers of a group.
+     * Helper method to start all (verified) peers of a group. The peers are
+     * contacted concurrently.
+     * 
+     * @param gid
+     *            Id of the group
+     * @return the report containing the outcome for every peer
+     */
+    public static GroupActionReport startPeers(final long gid) {
+        LOGGER.info("Starting peers for group " + gid);
+        GroupActionReport report = fanOut(gid, "start", true);
+        LOGGER.info("Started "
+                + report.count(PeerActionResult.RESULT_SUCCESS) + " of "
+                + report.getPeers().size() + " peers in "
+                + report.getElapsed() + "ms!");
+        return report;
+    }
+
+    /**
+     * Helper method to stop all peers of a group. The peers are contacted
+     * concurrently.
      * 
      * @param gid
      *            Id of the group.
-     * @throws UnsupportedEncodingException
-     *             If something went horribly wrong.
-     * @throws ClientHandlerException
-     *             If something went wrong.
-     * @throws UniformInterfaceException
-     *             If something absolutely went wrong.
-     * @throws JAXBException
-     *             If your Java is messed up.
-     * @throws NamingException
-     *             If something went a little bit wrong.
+     * @return the report containing the outcome for every peer
      */
-    public static void stopPeers(final long gid)
-            throws UnsupportedEncodingException, ClientHandlerException,
-            UniformInterfaceException, JAXBException, NamingException {
+    public static GroupActionReport stopPeers(final long gid) {
         LOGGER.info("Stopping peers for group " + gid);
-        EntityManager em = Manager.getEntityManager();
-        TypedQuery<Long> members = em.createQuery(
-                "SELECT c.pid FROM TBL_PEER c WHERE c.gid =" + gid, Long.class);
-
-        int i = 0;
-
-        for (Long memberId : members.getResultList()) {
-            Peer peer = em.find(Peer.class, memberId);
-            String urlSuffix = "/stop/";
-            urlSuffix += URLEncoder.encode(peer.getPeerName(), "UTF-8");
-            urlSuffix += "?registrationCode="
-                    + URLEncoder.encode(peer.getRegistrationCode(), "UTF-8");
-            try {
-                RESTHelper.postRequest(peer.getUrl() + urlSuffix);
-                i++;
-            } catch (Exception e) {
-                LOGGER.catching(e);
-            }
-        }
-        LOGGER.info("Stopped " + i + " peers!");
-
+        GroupActionReport report = fanOut(gid, "stop", false);
+        LOGGER.info("Stopped "
+                + report.count(PeerActionResult.RESULT_SUCCESS) + " of "
+                + report.getPeers().size() + " peers in "
+                + report.getElapsed() + "ms!");
+        return report;
     }
 
     private String adminKey = null;
 
-    private final TypedQuery<GroupConfiguration> getConfiguration;
-
-    private final TypedQuery<Long> getGroupMembers;
-
-    private final TypedQuery<Peer> getPeers;
-
     @Context
     HttpServletRequest request;
 
     public GroupMgmtService() throws Exception {
-        EntityManager em = Manager.getEntityManager();
-
-        this.getConfiguration = em.createQuery(
-                "SELECT g FROM TBL_CONFIGURATION g WHERE g.gid = :gid",
-                GroupConfiguration.class);
-        this.getPeers = em.createQuery(
-                "SELECT c FROM TBL_PEER c WHERE c.gid = :gid", Peer.class);
-        this.getGroupMembers = em.createQuery(
-                "SELECT c.pid FROM TBL_PEER c WHERE c.gid = :gid", Long.class);
-
         LOGGER.info("New PeerService Instance");
 
         InitialContext ic = new InitialContext();
@@ -315,6 +483,7 @@ public class GroupMgmtService {
             p.setPublicKey(publicKey);
             p.setVerified(false);
             et.commit();
+            GroupSnapshots.invalidate(p.getGid());
 
             return LOGGER.exit(Response.ok(Peer.toPeerInfo(p),
                     MediaType.APPLICATION_JSON).build());
@@ -487,15 +656,21 @@ public class GroupMgmtService {
                     "SELECT c.pid FROM TBL_PEER c WHERE c.gid =" + gid,
                     Long.class);
 
+            List<String> peerNames = new ArrayList<String>();
             for (Long memberId : members.getResultList()) {
                 Peer peer = em.find(Peer.class, memberId);
                 if (peer != null) {
+                    peerNames.add(peer.getPeerName());
                     em.remove(peer);
                 }
             }
 
             em.remove(g);
             et.commit();
+            GroupSnapshots.invalidate(gid);
+            for (String peerName : peerNames) {
+                StatusBoard.remove(peerName);
+            }
 
             return LOGGER.exit(Response.ok(ERR_SUCCESS).build());
         } catch (Exception e) {
@@ -544,6 +719,8 @@ public class GroupMgmtService {
 
             em.remove(p);
             et.commit();
+            GroupSnapshots.invalidate(p.getGid());
+            StatusBoard.remove(peerName);
             return LOGGER.exit(Response.ok(ERR_SUCCESS).build());
         } catch (Exception ex) {
             if (et != null && et.isActive()) {
@@ -605,121 +782,92 @@ public class GroupMgmtService {
 
     /**
      * GET /configuration/{peerName}: Used by the peers to download the group
-     * configuration.
+     * configuration. The configuration is served from the group snapshot and
+     * tagged with an ETag; a request with a matching If-None-Match header is
+     * answered with 304 Not Modified.
      * 
      * @param peerName
      *            Name of the peer
      * @param registrationCode
      *            Registration code
+     * @param req
+     *            the request (for conditional GETs)
      * @return (application/json) GroupConfigurationInfo
      */
     @GET
     @Path("/configuration/{peerName}")
     public Response getConfiguration(
             @PathParam("peerName") final String peerName,
-            @QueryParam("registrationCode") final String registrationCode) {
+            @QueryParam("registrationCode") final String registrationCode,
+            @Context final Request req) {
         LOGGER.entry(peerName, registrationCode);
 
-        EntityManager em = null;
-
         try {
-            em = Manager.getEntityManager();
-
-            Peer p = Peer.find(em, peerName);
-            if (p == null) {
+            GroupSnapshot s = GroupSnapshots.forPeer(peerName);
+            if (s == null) {
                 return LOGGER.exit(Response.status(404).entity(ERR_NO_PEER)
                         .type(MediaType.TEXT_PLAIN).build());
             }
 
-            if (!p.getRegistrationCode().equals(registrationCode)) {
+            if (!s.isValidRegistrationCode(peerName, registrationCode)) {
                 return LOGGER.exit(Response.status(400)
                         .entity(ERR_INV_REG_CODE).type(MediaType.TEXT_PLAIN)
                         .build());
             }
 
-            long gid = p.getGid();
-
-            this.getConfiguration.setParameter("gid", gid);
-            List<GroupConfiguration> results = this.getConfiguration
-                    .getResultList();
-
-            GroupConfiguration g = null;
-
-            if (results.size() > 0) {
-                g = results.get(0);
-            }
-
-            if (g == null) {
+            if (s.getConfiguration() == null) {
                 return LOGGER.exit(Response.status(404)
                         .entity(ERR_NO_GROUP_CONFIG).type(MediaType.TEXT_PLAIN)
                         .build());
             }
 
-            return LOGGER.exit(Response.ok(
-                    GroupConfiguration.toGroupConfigurationInfo(g),
-                    MediaType.APPLICATION_JSON).build());
+            return LOGGER.exit(conditionalOk(req, s.getConfiguration(),
+                    s.getConfigurationTag()));
         } catch (Exception e) {
             LOGGER.catching(e);
             return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
-        } finally {
-            if (em != null) {
-                em.close();
-            }
         }
     }
 
     /**
      * GET /groupInfo/{peerName}: Used by the peers to download information
-     * about a group.
+     * about a group. The information is served from the group snapshot and
+     * tagged with an ETag; a request with a matching If-None-Match header is
+     * answered with 304 Not Modified.
      * 
      * @param peerName
      *            Name of the peer
      * @param registrationCode
      *            registration code
+     * @param req
+     *            the request (for conditional GETs)
      * @return (application/json) GroupInfo
      */
     @GET
     @Path("/groupInfo/{peerName}")
     public Response getGroupInfo(@PathParam("peerName") final String peerName,
-            @QueryParam("registrationCode") final String registrationCode) {
+            @QueryParam("registrationCode") final String registrationCode,
+            @Context final Request req) {
         LOGGER.entry(peerName, registrationCode);
 
-        EntityManager em = null;
-
         try {
-            em = Manager.getEntityManager();
-
-            Peer p = Peer.find(em, peerName);
-
-            if (p == null) {
+            GroupSnapshot s = GroupSnapshots.forPeer(peerName);
+            if (s == null) {
                 return LOGGER.exit(Response.status(404).entity(ERR_NO_PEER)
                         .type(MediaType.TEXT_PLAIN).build());
             }
 
-            if (!p.getRegistrationCode().equals(registrationCode)) {
+            if (!s.isValidRegistrationCode(peerName, registrationCode)) {
                 return LOGGER.exit(Response.status(400)
                         .entity(ERR_INV_REG_CODE).type(MediaType.TEXT_PLAIN)
                         .build());
             }
 
-            this.getPeers.setParameter("gid", p.getGid());
-
-            List<Peer> peers = this.getPeers.getResultList();
-
-            GroupInfo g = new GroupInfo();
-            for (Peer peer : peers) {
-                g.addPeer(Peer.toPeerInfo(peer));
-            }
-
-            return LOGGER.exit(Response.ok(g, MediaType.APPLICATION_JSON)
-                    .build());
+            return LOGGER.exit(conditionalOk(req, s.getGroupInfo(),
+                    s.getGroupInfoTag()));
         } catch (Exception e) {
             LOGGER.catching(e);
             return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
-        } finally {
-            if (em != null) {
-                em.close();
-            }
         }
     }
 
@@ -866,6 +1014,7 @@ public class GroupMgmtService {
             em.persist(p);
             em.remove(reg);
             et.commit();
+            GroupSnapshots.invalidate(p.getGid());
             return LOGGER.exit(Response.ok(Peer.toPeerInfo(p),
                     MediaType.APPLICATION_JSON).build());
         } catch (Exception e) {
@@ -884,13 +1033,14 @@ public class GroupMgmtService {
     }
 
     /**
-     * POST /start/{gid}: Start all peers of the group.
+     * POST /start/{gid}: Start all peers of the group. The outcome per peer is
+     * only logged, use POST /v2/start/{gid} to get it.
      * 
      * @param gid
      *            Id of the group
      * @param adminKey
      *            admin key
-     * @return (text/plain) OK or ERROR
+     * @return ERR_SUCCESS
      */
     @POST
     @Path("/start/{gid}")
@@ -905,7 +1055,6 @@ public class GroupMgmtService {
 
         try {
             startPeers(gid);
-
             return LOGGER.exit(Response.ok(ERR_SUCCESS).build());
         } catch (Exception e) {
 
@@ -915,13 +1064,45 @@ public class GroupMgmtService {
     }
 
     /**
-     * POST /stop/{gid}: Stop all peers of the group.
+     * POST /v2/start/{gid}: Start all peers of the group and report the
+     * outcome for every peer.
+     * 
+     * @param gid
+     *            Id of the group
+     * @param adminKey
+     *            admin key
+     * @return (application/json) GroupActionReport
+     */
+    @POST
+    @Path("/v2/start/{gid}")
+    public Response restStartPeersReport(@PathParam("gid") final long gid,
+            @QueryParam("adminKey") final String adminKey) {
+        LOGGER.entry(gid);
+
+        if (!verifyAdminKey(adminKey)) {
+            return LOGGER.exit(Response.status(403).entity(ERR_INV_ADMIN_KEY)
+                    .build());
+        }
+
+        try {
+            return LOGGER.exit(Response.ok(startPeers(gid),
+                    MediaType.APPLICATION_JSON).build());
+        } catch (Exception e) {
+
+            LOGGER.catching(e);
+            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+        }
+    }
+
+    /**
+     * POST /stop/{gid}: Stop all peers of the group. The outcome per peer is
+     * only logged, use POST /v2/stop/{gid} to get it.
      * 
      * @param gid
      *            Id of the group.
      * @param adminKey
      *            admin key
-     * @return (text/plain) OK or ERROR
+     * @return ERR_SUCCESS
      */
     @POST
     @Path("/stop/{gid}")
@@ -936,7 +1117,6 @@ public class GroupMgmtService {
 
         try {
             stopPeers(gid);
-
             return LOGGER.exit(Response.ok(ERR_SUCCESS).build());
         } catch (Exception e) {
 
@@ -945,6 +1125,37 @@ public class GroupMgmtService {
         }
     }
 
+    /**
+     * POST /v2/stop/{gid}: Stop all peers of the group and report the outcome
+     * for every peer.
+     * 
+     * @param gid
+     *            Id of the group.
+     * @param adminKey
+     *            admin key
+     * @return (application/json) GroupActionReport
+     */
+    @POST
+    @Path("/v2/stop/{gid}")
+    public Response restStopPeersReport(@PathParam("gid") final long gid,
+            @QueryParam("adminKey") final String adminKey) {
+        LOGGER.entry(gid);
+
+        if (!verifyAdminKey(adminKey)) {
+            return LOGGER.exit(Response.status(403).entity(ERR_INV_ADMIN_KEY)
+                    .build());
+        }
+
+        try {
+            return LOGGER.exit(Response.ok(stopPeers(gid),
+                    MediaType.APPLICATION_JSON).build());
+        } catch (Exception e) {
+
+            LOGGER.catching(e);
+            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+        }
+    }
+
     /**
      * POST /configuration: Set group configuration. Consumes application/json.
      * 
@@ -980,9 +1191,12 @@ public class GroupMgmtService {
             et = em.getTransaction();
             et.begin();
 
-            this.getConfiguration.setParameter("gid", gid);
+            TypedQuery<GroupConfiguration> getConfiguration = em.createQuery(
+                    "SELECT g FROM TBL_CONFIGURATION g WHERE g.gid = :gid",
+                    GroupConfiguration.class);
+            getConfiguration.setParameter("gid", gid);
 
-            List<GroupConfiguration> results = this.getConfiguration
+            List<GroupConfiguration> results = getConfiguration
                     .getResultList();
 
             GroupConfiguration g = null;
@@ -1010,6 +1224,7 @@ public class GroupMgmtService {
             }
 
             et.commit();
+            GroupSnapshots.invalidate(gid);
             return LOGGER.exit(Response.ok(g, MediaType.APPLICATION_JSON)
                     .build());
 
@@ -1046,32 +1261,125 @@ public class GroupMgmtService {
         LOGGER.entry(peerName, status, registrationCode);
         LOGGER.info(peerName + " status " + status);
 
-        EntityManager em = null;
-        EntityTransaction et = null;
+        PeerStatusUpdate u = new PeerStatusUpdate();
+        u.setPeerName(peerName);
+        u.setRegistrationCode(registrationCode);
+        u.setStatus(status);
+
+        String error = validateStatus(u);
+        if (ERR_NO_PEER.equals(error)) {
+            return LOGGER.exit(Response.status(404).entity(ERR_NO_PEER)
+                    .type(MediaType.TEXT_PLAIN).build());
+        } else if (error != null) {
+            return LOGGER.exit(Response.status(400).entity(error).build());
+        }
 
-        try {
-            em = Manager.getEntityManager();
+        if (!storeStatuses(Collections.singletonList(u))) {
+            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+        }
+        return LOGGER.exit(Response.ok(ERR_SUCCESS, MediaType.TEXT_PLAIN)
+                .build());
+    }
 
-            Peer p = Peer.find(em, peerName);
-            if (p == null) {
-                return LOGGER.exit(Response.status(404).entity(ERR_NO_PEER)
-                        .type(MediaType.TEXT_PLAIN).build());
+    /**
+     * POST /status: Used by the peers to report a batch of status and
+     * progress updates. The updates are kept in memory (see
+     * {@link #statusStream(String, long, long)}); only changes of the status
+     * code are written to the database. Every update is validated on its own:
+     * updates of unknown peers or with an invalid registration code are
+     * rejected, the others are applied. Consumes application/json.
+     * 
+     * @param updates
+     *            PeerStatusList
+     * @return (application/json) PeerStatusResult listing the rejected peers
+     *         or (text/plain) ERROR
+     */
+    @POST
+    @Path("/status")
+    @Consumes({ MediaType.APPLICATION_JSON })
+    public Response setStatuses(final PeerStatusList updates) {
+        LOGGER.entry(updates.getUpdates().size());
+
+        PeerStatusResult result = new PeerStatusResult();
+        List<PeerStatusUpdate> valid = new ArrayList<PeerStatusUpdate>();
+        for (PeerStatusUpdate u : updates.getUpdates()) {
+            String error = validateStatus(u);
+            if (error == null) {
+                valid.add(u);
+            } else {
+                LOGGER.warn("Rejected status of " + u.getPeerName() + ": "
+                        + error);
+                result.addRejected(u.getPeerName());
             }
+        }
 
-            if (!p.getRegistrationCode().equals(registrationCode)) {
-                return LOGGER.exit(Response.status(400)
-                        .entity(ERR_INV_REG_CODE).build());
+        if (!storeStatuses(valid)) {
+            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+        }
+        result.setAccepted(valid.size());
+        return LOGGER.exit(Response.ok(result, MediaType.APPLICATION_JSON)
+                .build());
+    }
+
+    /**
+     * Checks that the peer of a status update exists and that the
+     * registration code is valid.
+     * 
+     * @param u
+     *            the update
+     * @return null if the update is valid, otherwise ERR_NO_PEER or
+     *         ERR_INV_REG_CODE
+     */
+    private String validateStatus(final PeerStatusUpdate u) {
+        GroupSnapshot s = GroupSnapshots.forPeer(u.getPeerName());
+        if (s == null) {
+            return ERR_NO_PEER;
+        }
+        if (!s.isValidRegistrationCode(u.getPeerName(),
+                u.getRegistrationCode())) {
+            return ERR_INV_REG_CODE;
+        }
+        return null;
+    }
+
+    /**
+     * Applies validated status updates to the status board and writes the
+     * changes of the status codes to the database.
+     * 
+     * @param updates
+     *            the valid updates
+     * @return false if the database could not be updated
+     */
+    private boolean storeStatuses(final List<PeerStatusUpdate> updates) {
+        Map<String, Integer> changed = new HashMap<String, Integer>();
+        for (PeerStatusUpdate u : updates) {
+            PeerStatusUpdate previous = StatusBoard.update(u);
+            if (previous == null || previous.getStatus() != u.getStatus()) {
+                changed.put(u.getPeerName(), u.getStatus());
             }
+        }
+
+        if (changed.isEmpty()) {
+            return true;
+        }
 
+        EntityManager em = null;
+        EntityTransaction et = null;
+
+        try {
+            em = Manager.getEntityManager();
             et = em.getTransaction();
             et.begin();
 
-            p.setLastStatus(status);
+            for (Map.Entry<String, Integer> e : changed.entrySet()) {
+                Peer p = Peer.find(em, e.getKey());
+                if (p != null) {
+                    p.setLastStatus(e.getValue());
+                }
+            }
 
             et.commit();
-
-            return LOGGER.exit(Response.ok(ERR_SUCCESS, MediaType.TEXT_PLAIN)
-                    .build());
+            return true;
         } catch (Exception e) {
 
             if (et != null && et.isActive()) {
@@ -1079,11 +1387,12 @@ public class GroupMgmtService {
             }
 
             LOGGER.catching(e);
-            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+            return false;
         } finally {
-            em.close();
+            if (em != null) {
+                em.close();
+            }
         }
-
     }
 
     @POST
@@ -1099,6 +1408,45 @@ public class GroupMgmtService {
         return LOGGER.exit(Response.ok(ERR_SUCCESS).build());
     }
 
+    /**
+     * GET /statusStream: Long-poll for status updates of the peers. Returns
+     * immediately if there are updates newer than <code>since</code>,
+     * otherwise waits up to <code>timeout</code> milliseconds (at most 60s)
+     * for new ones. Clients pass the returned version as <code>since</code> of
+     * their next request.
+     * 
+     * @param adminKey
+     *            admin key
+     * @param since
+     *            last version seen by the client (0 for all)
+     * @param timeout
+     *            maximal time to wait in milliseconds
+     * @return (application/json) PeerStatusList
+     */
+    @GET
+    @Path("/statusStream")
+    public Response statusStream(@QueryParam("adminKey") final String adminKey,
+            @QueryParam("since") final long since,
+            @QueryParam("timeout") @DefaultValue("25000") final long timeout) {
+        LOGGER.entry(since, timeout);
+
+        if (!verifyAdminKey(adminKey)) {
+            return LOGGER.exit(Response.status(403).entity(ERR_INV_ADMIN_KEY)
+                    .build());
+        }
+
+        try {
+            PeerStatusList updates = StatusBoard.waitForUpdates(since,
+                    Math.max(0, Math.min(timeout, MAX_POLL_TIMEOUT)));
+            return LOGGER.exit(Response.ok(updates,
+                    MediaType.APPLICATION_JSON).build());
+        } catch (InterruptedException e) {
+            LOGGER.catching(e);
+            Thread.currentThread().interrupt();
+            return LOGGER.exit(Response.status(500).entity(ERR_SERVER).build());
+        }
+    }
+
     /**
      * POST /verify/{peerName}: Mark peer as verified or unverified
      * 
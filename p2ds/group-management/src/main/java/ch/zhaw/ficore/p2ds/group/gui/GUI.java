@@ -14,12 +14,10 @@
  */
 package ch.zhaw.ficore.p2ds.group.gui;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import javax.naming.NamingException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.TypedQuery;
@@ -30,17 +28,23 @@ import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.xml.bind.JAXBException;
 
 import ch.zhaw.ficore.p2ds.group.GroupMgmtService;
+import ch.zhaw.ficore.p2ds.group.json.GroupActionReport;
 import ch.zhaw.ficore.p2ds.group.json.GroupConfigurationInfo;
+import ch.zhaw.ficore.p2ds.group.json.PeerActionResult;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
 import ch.zhaw.ficore.p2ds.group.storage.Group;
 import ch.zhaw.ficore.p2ds.group.storage.GroupConfiguration;
+import ch.zhaw.ficore.p2ds.group.storage.GroupSnapshots;
 import ch.zhaw.ficore.p2ds.group.storage.Manager;
 import ch.zhaw.ficore.p2ds.group.storage.Peer;
 import ch.zhaw.ficore.p2ds.group.storage.Registration;
+import ch.zhaw.ficore.p2ds.group.storage.StatusBoard;
 
 import com.hp.gagawa.java.elements.A;
 import com.hp.gagawa.java.elements.B;
@@ -62,14 +66,13 @@ import com.hp.gagawa.java.elements.Link;
 import com.hp.gagawa.java.elements.P;
 import com.hp.gagawa.java.elements.Pre;
 import com.hp.gagawa.java.elements.Script;
+import com.hp.gagawa.java.elements.Span;
 import com.hp.gagawa.java.elements.Table;
 import com.hp.gagawa.java.elements.Td;
 import com.hp.gagawa.java.elements.Text;
 import com.hp.gagawa.java.elements.Title;
 import com.hp.gagawa.java.elements.Tr;
 import com.hp.gagawa.java.elements.Ul;
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.UniformInterfaceException;
 
 @Path("/")
 public class GUI {
@@ -77,6 +80,7 @@ public class GUI {
     private static char[] chars = null;
     private static String cssURL = "/res/style.css";
     private static String jsURL = "/res/js.js";
+    private static final long LIVE_STATUS_TIMEOUT = 25000;
     private static final int MAX_TOKENS = 2048;
     private static Random rand = new Random();
 
@@ -135,6 +139,66 @@ public class GUI {
         return ((String) o).equals(token);
     }
 
+    /**
+     * Text shown as status of a peer: the live status if the peer has
+     * reported since the group management was started, otherwise the last
+     * status stored in the database.
+     */
+    public static String liveStatusText(final Peer peer,
+            final PeerStatusUpdate live) {
+        if (live == null) {
+            return "" + peer.getLastStatus();
+        }
+        return live.getStatus() + " (round " + live.getRound() + ", time slot "
+                + live.getTimeSlot() + ", queue depth " + live.getQueueDepth()
+                + ")";
+    }
+
+    public static Html reportPage(final String title, final String message,
+            final GroupActionReport report, final HttpServletRequest req) {
+        Html html = getHtml(title, req);
+        Div mainDiv = new Div();
+        Body body = getBody(mainDiv);
+        html.appendChild(body);
+        P p = new P().appendChild(new Text(message + " ("
+                + report.count(PeerActionResult.RESULT_SUCCESS) + " of "
+                + report.getPeers().size() + " peers succeeded in "
+                + report.getElapsed() + "ms)"));
+        mainDiv.appendChild(p);
+
+        Table tbl = new Table();
+        for (PeerActionResult par : report.getPeers()) {
+            String result;
+            switch (par.getResult()) {
+            case PeerActionResult.RESULT_SUCCESS:
+                result = "OK";
+                break;
+            case PeerActionResult.RESULT_SKIPPED:
+                result = "SKIPPED";
+                break;
+            case PeerActionResult.RESULT_TIMEOUT:
+                result = "TIMEOUT";
+                break;
+            default:
+                result = "FAILED";
+                break;
+            }
+            Tr tr = new Tr();
+            tr.appendChild(new Td().appendChild(new Text(par.getPeerName())));
+            tr.appendChild(new Td().appendChild(new Text(result)));
+            tr.appendChild(new Td().appendChild(new Text(par.getElapsed()
+                    + "ms")));
+            tr.appendChild(new Td().appendChild(new Text(
+                    par.getMessage() == null ? "" : par.getMessage())));
+            tbl.appendChild(tr);
+        }
+        mainDiv.appendChild(tbl);
+
+        A a = new A().setHref("./").appendChild(new Text("Go to overview!"));
+        mainDiv.appendChild(a);
+        return html;
+    }
+
     public static Html simplePage(final String title, final String message,
             final HttpServletRequest req) {
         Html html = getHtml(title, req);
@@ -297,15 +361,21 @@ public class GUI {
                     "SELECT c.pid FROM TBL_PEER c WHERE c.gid =" + gid,
                     Long.class);
 
+            List<String> peerNames = new ArrayList<String>();
             for (Long memberId : members.getResultList()) {
                 Peer peer = em.find(Peer.class, memberId);
                 if (peer != null) {
+                    peerNames.add(peer.getPeerName());
                     em.remove(peer);
                 }
             }
 
             em.remove(g);
             et.commit();
+            GroupSnapshots.invalidate(gid);
+            for (String peerName : peerNames) {
+                StatusBoard.remove(peerName);
+            }
 
             return Response.ok(
                     simplePage("Delete group", "Group has been deleted!",
@@ -352,6 +422,8 @@ public class GUI {
 
             em.remove(p);
             et.commit();
+            GroupSnapshots.invalidate(p.getGid());
+            StatusBoard.remove(p.getPeerName());
             return Response.ok(
                     simplePage("Delete peer", "Peer has been deleted!",
                             this.request).write()).build();
@@ -444,17 +516,15 @@ public class GUI {
     @Path("/startPeers")
     @POST
     public Response startPeers(@FormParam("gid") final long gid,
-            @FormParam("token") final String token)
-            throws UnsupportedEncodingException, ClientHandlerException,
-            UniformInterfaceException, JAXBException, NamingException {
+            @FormParam("token") final String token) {
 
         if (!isCSRFTokenValid(token, this.request)) {
             return csrfError();
         }
 
-        GroupMgmtService.startPeers(gid);
-        Html html = simplePage("Start peers", "Peers have been started!",
-                this.request);
+        GroupActionReport report = GroupMgmtService.startPeers(gid);
+        Html html = reportPage("Start peers", "Peers have been started!",
+                report, this.request);
         return Response.ok(html.write()).build();
     }
 
@@ -463,6 +533,7 @@ public class GUI {
     public Response status() {
 
         String token = genCSRFToken(this.request);
+        long liveVersion = StatusBoard.getVersion();
 
         Html html = getHtml("Status", this.request);
         Div mainDiv = new Div();
@@ -646,9 +717,12 @@ public class GUI {
                 Peer peer = em.find(Peer.class, memberId);
                 peerDiv.appendChild(new H5().appendChild(new Text(peer
                         .getPeerName())));
+                PeerStatusUpdate live = StatusBoard.get(peer.getPeerName());
                 Ul ul = new Ul();
-                ul.appendChild(new Li().appendChild(new Text("Last status: "
-                        + peer.getLastStatus())));
+                ul.appendChild(new Li().appendChild(new Text("Last status: "))
+                        .appendChild(new Span().setId(
+                                "live-" + peer.getPeerName()).appendChild(
+                                new Text(liveStatusText(peer, live)))));
                 ul.appendChild(new Li().appendChild(new Text("PeerType: "
                         + peer.getPeerType())));
                 ul.appendChild(new Li().appendChild(new Text("Pid: "
@@ -664,7 +738,8 @@ public class GUI {
                 peerDiv.appendChild(new B().appendChild(new Text("PublicKey")));
                 peerDiv.appendChild(new Br());
                 peerDiv.appendChild(pre);
-                stati.add(peer.getLastStatus());
+                stati.add(live == null ? peer.getLastStatus() : live
+                        .getStatus());
                 Form fdel = new Form("./deletePeer").setMethod("post");
                 fdel.appendChild(new Input().setType("hidden").setName("pid")
                         .setValue(memberId.toString()));
@@ -758,23 +833,45 @@ public class GUI {
 
         }
 
+        mainDiv.appendChild(new Script("text/javascript").appendChild(new Text(
+                "liveStatus('./liveStatus', " + liveVersion + ");")));
+
         return Response.ok(html.write()).build();
     }
 
+    /**
+     * Long-poll used by the status page to update the status of the peers
+     * in place (see liveStatus in js.js).
+     * 
+     * @param since
+     *            last version seen by the page
+     * @return (application/json) PeerStatusList
+     */
+    @Path("/liveStatus")
+    @GET()
+    public Response liveStatus(@QueryParam("since") final long since) {
+        try {
+            return Response.ok(
+                    StatusBoard.waitForUpdates(since, LIVE_STATUS_TIMEOUT),
+                    MediaType.APPLICATION_JSON).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(500).build();
+        }
+    }
+
     @Path("/stopPeers")
     @POST
     public Response stopPeers(@FormParam("gid") final long gid,
-            @FormParam("token") final String token)
-            throws UnsupportedEncodingException, ClientHandlerException,
-            UniformInterfaceException, JAXBException, NamingException {
+            @FormParam("token") final String token) {
 
         if (!isCSRFTokenValid(token, this.request)) {
             return csrfError();
         }
 
-        GroupMgmtService.stopPeers(gid);
-        Html html = simplePage("Stop peers", "Peers have been stopped!",
-                this.request);
+        GroupActionReport report = GroupMgmtService.stopPeers(gid);
+        Html html = reportPage("Stop peers", "Peers have been stopped!",
+                report, this.request);
         return Response.ok(html.write()).build();
     }
 
@@ -25,6 +25,9 @@ import ch.zhaw.ficore.p2ds.group.json.GroupConfigurationInfo;
 @Entity(name = "TBL_CONFIGURATION")
 public class GroupConfiguration {
     public final static String MPC_PRC_ADDITIVE = "additive";
+    public final static String MPC_PRC_ENTROPY = "entropy";
+    public final static String MPC_PRC_SETOP = "setop";
+    public final static String MPC_PRC_TOPK = "topk";
 
     public static GroupConfigurationInfo toGroupConfigurationInfo(
             final GroupConfiguration gc) {
@@ -50,7 +53,7 @@ public class GroupConfiguration {
     @Column(name = "ATTR_MAXELEMENT", nullable = false)
     private String maxElement;
 
-    /* this is the protocol to be used (i.e. additive) */
+    /* this is the protocol to be used (i.e. additive, entropy, topk or setop) */
     @Column(name = "ATTR_MPCPROTOCOL", nullable = false)
     private String mpcProtocol;
 
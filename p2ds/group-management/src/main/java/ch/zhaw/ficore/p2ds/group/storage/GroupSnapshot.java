@@ -0,0 +1,134 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.storage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.zhaw.ficore.p2ds.group.json.GroupConfigurationInfo;
+import ch.zhaw.ficore.p2ds.group.json.GroupInfo;
+
+/**
+ * Read-only view of a group (members, their keys and the group configuration)
+ * as it was in the database at a certain point in time. Snapshots are never
+ * modified after they have been created; a write to the group replaces the
+ * snapshot by a new one with a higher version (see {@link GroupSnapshots}).
+ * The beans returned by {@link #getGroupInfo()} and
+ * {@link #getConfiguration()} are shared between requests and must not be
+ * modified.
+ */
+public class GroupSnapshot {
+
+    private final GroupConfigurationInfo configuration;
+
+    private final long gid;
+
+    private final GroupInfo groupInfo;
+
+    /* peerName -> registrationCode */
+    private final Map<String, String> registrationCodes;
+
+    private final long version;
+
+    GroupSnapshot(final long gid, final long version, final List<Peer> peers,
+            final GroupConfiguration gc) {
+        this.gid = gid;
+        this.version = version;
+
+        Map<String, String> codes = new HashMap<String, String>();
+        GroupInfo gi = new GroupInfo();
+        for (Peer peer : peers) {
+            gi.addPeer(Peer.toPeerInfo(peer));
+            codes.put(peer.getPeerName(), peer.getRegistrationCode());
+        }
+        this.groupInfo = gi;
+        this.registrationCodes = Collections.unmodifiableMap(codes);
+
+        this.configuration = gc == null ? null : GroupConfiguration
+                .toGroupConfigurationInfo(gc);
+    }
+
+    /**
+     * @return the configuration of the group or null if none has been set
+     */
+    public GroupConfigurationInfo getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Entity tag of the configuration of this snapshot.
+     *
+     * @return the tag value (without quotes)
+     */
+    public String getConfigurationTag() {
+        return "c" + this.gid + "-" + this.version;
+    }
+
+    public long getGid() {
+        return this.gid;
+    }
+
+    public GroupInfo getGroupInfo() {
+        return this.groupInfo;
+    }
+
+    /**
+     * Entity tag of the group info of this snapshot.
+     *
+     * @return the tag value (without quotes)
+     */
+    public String getGroupInfoTag() {
+        return "g" + this.gid + "-" + this.version;
+    }
+
+    /**
+     * @return names of the members of the group
+     */
+    public Iterable<String> getPeerNames() {
+        return this.registrationCodes.keySet();
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Checks whether a peer is a member of this group.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return true or false
+     */
+    public boolean hasPeer(final String peerName) {
+        return this.registrationCodes.containsKey(peerName);
+    }
+
+    /**
+     * Checks the registration code of a member of this group.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @param registrationCode
+     *            registration code
+     * @return true if the peer is a member and the code matches
+     */
+    public boolean isValidRegistrationCode(final String peerName,
+            final String registrationCode) {
+        String code = this.registrationCodes.get(peerName);
+        return code != null && code.equals(registrationCode);
+    }
+}
@@ -0,0 +1,165 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.storage;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+/**
+ * In-memory cache of {@link GroupSnapshot}s. Snapshots are loaded from the
+ * database on first use and served from memory until a write to the group
+ * invalidates them. Every method that modifies a group, its members or its
+ * configuration must call {@link #invalidate(long)} after committing.
+ */
+public class GroupSnapshots {
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(GroupSnapshots.class));
+
+    /* incremented by every invalidation, guarded by LOCK */
+    private static long generation = 0;
+
+    private static final Object LOCK = new Object();
+
+    /* peerName -> gid of the cached snapshots, guarded by LOCK for writes */
+    private static final ConcurrentHashMap<String, Long> PEER_GROUPS = new ConcurrentHashMap<String, Long>();
+
+    private static final ConcurrentHashMap<Long, GroupSnapshot> SNAPSHOTS = new ConcurrentHashMap<Long, GroupSnapshot>();
+
+    /*
+     * Versions start at the current time so that entity tags handed out
+     * before a restart are not reused afterwards.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong(
+            System.currentTimeMillis());
+
+    /**
+     * Returns the current snapshot of a group.
+     *
+     * @param gid
+     *            Id of the group
+     * @return the snapshot or null if the group does not exist
+     */
+    public static GroupSnapshot get(final long gid) {
+        GroupSnapshot s = SNAPSHOTS.get(gid);
+        if (s != null) {
+            return s;
+        }
+        return load(gid);
+    }
+
+    /**
+     * Returns the current snapshot of the group a peer belongs to.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return the snapshot or null if there is no such peer
+     */
+    public static GroupSnapshot forPeer(final String peerName) {
+        Long gid = PEER_GROUPS.get(peerName);
+
+        if (gid == null) {
+            EntityManager em = Manager.getEntityManager();
+            try {
+                Peer p = Peer.find(em, peerName);
+                if (p == null) {
+                    return null;
+                }
+                gid = p.getGid();
+            } finally {
+                em.close();
+            }
+        }
+
+        GroupSnapshot s = get(gid);
+        if (s == null || !s.hasPeer(peerName)) {
+            return null;
+        }
+        return s;
+    }
+
+    /**
+     * Drops the snapshot of a group. The next lookup reloads it from the
+     * database.
+     *
+     * @param gid
+     *            Id of the group
+     */
+    public static void invalidate(final long gid) {
+        synchronized (LOCK) {
+            generation++;
+            GroupSnapshot s = SNAPSHOTS.remove(gid);
+            if (s != null) {
+                for (String peerName : s.getPeerNames()) {
+                    PEER_GROUPS.remove(peerName);
+                }
+            }
+        }
+    }
+
+    private static GroupSnapshot load(final long gid) {
+        long gen;
+        synchronized (LOCK) {
+            gen = generation;
+        }
+
+        GroupSnapshot s;
+        EntityManager em = Manager.getEntityManager();
+        try {
+            if (em.find(Group.class, gid) == null) {
+                return null;
+            }
+
+            TypedQuery<Peer> peers = em.createQuery(
+                    "SELECT c FROM TBL_PEER c WHERE c.gid = :gid", Peer.class);
+            peers.setParameter("gid", gid);
+
+            TypedQuery<GroupConfiguration> configuration = em.createQuery(
+                    "SELECT g FROM TBL_CONFIGURATION g WHERE g.gid = :gid",
+                    GroupConfiguration.class);
+            configuration.setParameter("gid", gid);
+            List<GroupConfiguration> results = configuration.getResultList();
+
+            s = new GroupSnapshot(gid, VERSIONS.incrementAndGet(),
+                    peers.getResultList(), results.size() > 0 ? results.get(0)
+                            : null);
+        } finally {
+            em.close();
+        }
+
+        synchronized (LOCK) {
+            /*
+             * Only cache the snapshot if nothing has been written while it
+             * was loaded, otherwise it might already be outdated.
+             */
+            if (gen == generation) {
+                SNAPSHOTS.put(gid, s);
+                for (String peerName : s.getPeerNames()) {
+                    PEER_GROUPS.put(peerName, gid);
+                }
+            }
+        }
+
+        LOGGER.info("Loaded snapshot " + s.getVersion() + " of group " + gid);
+        return s;
+    }
+}
@@ -0,0 +1,135 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusList;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
+
+/**
+ * Live status of the peers, kept in memory. Every update is assigned a new
+ * version so that clients of the status stream can wait for and fetch only
+ * the updates they have not seen yet.
+ */
+public class StatusBoard {
+
+    /* peerName -> latest update, guarded by LOCK */
+    private static final Map<String, PeerStatusUpdate> LATEST = new HashMap<String, PeerStatusUpdate>();
+
+    private static final Object LOCK = new Object();
+
+    /* guarded by LOCK */
+    private static long version = 0;
+
+    /**
+     * Returns the latest update of a peer.
+     *
+     * @param peerName
+     *            Name of the peer
+     * @return the update or null if the peer has not reported since the group
+     *         management was started
+     */
+    public static PeerStatusUpdate get(final String peerName) {
+        synchronized (LOCK) {
+            return LATEST.get(peerName);
+        }
+    }
+
+    /**
+     * @return the current version
+     */
+    public static long getVersion() {
+        synchronized (LOCK) {
+            return version;
+        }
+    }
+
+    /**
+     * Forgets a peer (e.g. because it has been deleted).
+     *
+     * @param peerName
+     *            Name of the peer
+     */
+    public static void remove(final String peerName) {
+        synchronized (LOCK) {
+            LATEST.remove(peerName);
+        }
+    }
+
+    /**
+     * Records the latest update of a peer and wakes up all waiting stream
+     * clients. The registration code of the update is not stored.
+     *
+     * @param update
+     *            the update
+     * @return the previous update of the peer or null
+     */
+    public static PeerStatusUpdate update(final PeerStatusUpdate update) {
+        PeerStatusUpdate u = new PeerStatusUpdate();
+        u.setPeerName(update.getPeerName());
+        u.setStatus(update.getStatus());
+        u.setRound(update.getRound());
+        u.setTimeSlot(update.getTimeSlot());
+        u.setQueueDepth(update.getQueueDepth());
+        u.setWhen(update.getWhen() == 0 ? System.currentTimeMillis() : update
+                .getWhen());
+
+        synchronized (LOCK) {
+            u.setVersion(++version);
+            PeerStatusUpdate previous = LATEST.put(u.getPeerName(), u);
+            LOCK.notifyAll();
+            return previous;
+        }
+    }
+
+    /**
+     * Returns all updates newer than <code>since</code>. If there are none,
+     * waits until there are or the timeout expires.
+     *
+     * @param since
+     *            version the client has already seen (0 for everything)
+     * @param timeout
+     *            maximal time to wait in milliseconds
+     * @return the updates (possibly none) and the version to continue from
+     * @throws InterruptedException
+     *             if the waiting thread is interrupted
+     */
+    public static PeerStatusList waitForUpdates(final long since,
+            final long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        PeerStatusList list = new PeerStatusList();
+
+        synchronized (LOCK) {
+            /* the group management has been restarted since the last poll */
+            long from = since > version ? 0 : since;
+
+            long remaining = timeout;
+            while (version <= from && remaining > 0) {
+                LOCK.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            for (PeerStatusUpdate u : LATEST.values()) {
+                if (u.getVersion() > from) {
+                    list.addUpdate(u);
+                }
+            }
+            list.setVersion(version);
+        }
+        return list;
+    }
+}
@@ -7,3 +7,33 @@ function toggle(eid) {
 		div.style.display = 'none';
     }
 }
+
+function liveStatus(url, since) {
+	var req = new XMLHttpRequest();
+	req.onreadystatechange = function() {
+		if(req.readyState != 4) {
+			return;
+		}
+		if(req.status != 200) {
+			setTimeout(function() { liveStatus(url, since); }, 5000);
+			return;
+		}
+		var list = JSON.parse(req.responseText);
+		var updates = list.updates || [];
+		if(!(updates instanceof Array)) {
+			updates = [updates];
+		}
+		for(var i = 0; i < updates.length; i++) {
+			var u = updates[i];
+			var span = document.getElementById('live-' + u.peerName);
+			if(span) {
+				span.textContent = u.status + ' (round ' + u.round
+					+ ', time slot ' + u.timeSlot
+					+ ', queue depth ' + u.queueDepth + ')';
+			}
+		}
+		liveStatus(url, list.version);
+	};
+	req.open('GET', url + '?since=' + since, true);
+	req.send();
+}
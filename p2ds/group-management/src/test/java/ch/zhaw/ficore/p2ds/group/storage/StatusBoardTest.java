@@ -0,0 +1,62 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.group.storage;
+
+import junit.framework.TestCase;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusList;
+import ch.zhaw.ficore.p2ds.group.json.PeerStatusUpdate;
+
+/**
+ * Test cases for {@link StatusBoard}.
+ */
+public class StatusBoardTest extends TestCase {
+
+    private static PeerStatusUpdate update(final String peerName,
+            final int round, final int timeSlot) {
+        PeerStatusUpdate u = new PeerStatusUpdate();
+        u.setPeerName(peerName);
+        u.setRegistrationCode("secret");
+        u.setRound(round);
+        u.setTimeSlot(timeSlot);
+        u.setQueueDepth(7);
+        return u;
+    }
+
+    public void testUpdateKeepsRoundAndDropsRegistrationCode() {
+        long since = StatusBoard.getVersion();
+        StatusBoard.update(update("board-peer1", 3, 2));
+
+        PeerStatusUpdate u = StatusBoard.get("board-peer1");
+        assertEquals(3, u.getRound());
+        assertEquals(2, u.getTimeSlot());
+        assertEquals(7, u.getQueueDepth());
+        assertNull(u.getRegistrationCode());
+        assertTrue(u.getVersion() > since);
+        StatusBoard.remove("board-peer1");
+    }
+
+    public void testRemovedPeersAreNotStreamed() throws Exception {
+        long since = StatusBoard.getVersion();
+        StatusBoard.update(update("board-peer2", 1, 0));
+        StatusBoard.update(update("board-peer3", 1, 0));
+        StatusBoard.remove("board-peer2");
+
+        assertNull(StatusBoard.get("board-peer2"));
+        PeerStatusList list = StatusBoard.waitForUpdates(since, 0);
+        assertEquals(1, list.getUpdates().size());
+        assertEquals("board-peer3", list.getUpdates().get(0).getPeerName());
+        StatusBoard.remove("board-peer3");
+    }
+}
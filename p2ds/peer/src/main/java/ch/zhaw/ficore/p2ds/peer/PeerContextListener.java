@@ -0,0 +1,43 @@
+/* Copyright 2015 Zürcher Hochschule der Angewandten Wissenschaften
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.zhaw.ficore.p2ds.peer;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.zhaw.ficore.p2ds.peer.storage.Manager;
+
+/**
+ * Flushes the pending final results of the peers when the web application is
+ * shut down or redeployed.
+ */
+public class PeerContextListener implements ServletContextListener {
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(PeerContextListener.class));
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        LOGGER.info("Closing the final results storage");
+        Manager.closeFinalResultsStorage();
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+    }
+}
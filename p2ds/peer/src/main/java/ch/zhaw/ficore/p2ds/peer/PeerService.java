@@ -44,8 +44,6 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 import ch.ethz.sepia.connections.ConnectionManager;
-import ch.ethz.sepia.mpc.additive.AdditiveMessage;
-import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesMessage;
 import ch.ethz.sepia.startup.Configuration;
 import ch.zhaw.ficore.p2ds.group.json.DataSet;
 import ch.zhaw.ficore.p2ds.group.json.DataSets;
@@ -56,6 +54,7 @@ import ch.zhaw.ficore.p2ds.peer.storage.Manager;
 import ch.zhaw.ficore.p2ds.peer.storage.PeerConfiguration;
 import ch.zhaw.ficore.p2ds.peers.json.PeerConfigurationInfo;
 import ch.zhaw.ficore.p2ds.util.Certificates;
+import ch.zhaw.ficore.p2ds.util.ProtocolRegistry;
 import ch.zhaw.ficore.p2ds.util.RESTHelper;
 import ch.zhaw.ficore.p2ds.util.SEPIALauncher;
 
@@ -319,9 +318,10 @@ public class PeerService {
      * integrity and source of the message. The signature algorithm used is
      * SHA512withECDSA. Messages are only deliverable to peers having a running
      * MPC instance. Additionally the type of the message must be specified.
-     * Currently the following types are supported: AdditiveMessage,
-     * PrimitivesMessage. This method responds with (500, ERR_INV_SIGNATURE) if
-     * the signature check fails.
+     * The supported types are the message types of the ProtocolRegistry
+     * (AdditiveMessage, PrimitivesMessage, TopkMessage). This method responds
+     * with (500, ERR_INV_SIGNATURE) if the signature check fails and with
+     * (400, ERR_INV_DATA) if the type is unknown.
      * 
      * @param data
      *            base64 encoded message
@@ -374,12 +374,11 @@ public class PeerService {
                         .build());
             }
 
-            Class<?> clazz = null;
-
-            if (type.equals("AdditiveMessage")) {
-                clazz = AdditiveMessage.class;
-            } else if (type.equals("PrimitivesMessage")) {
-                clazz = PrimitivesMessage.class;
+            Class<?> clazz = ProtocolRegistry.getMessageClass(type);
+            if (clazz == null) {
+                return LOGGER.exit(Response.status(400)
+                        .type(MediaType.TEXT_PLAIN).entity(ERR_INV_DATA)
+                        .build());
             }
 
             Object obj = RESTHelper.fromJSON(clazz, data);
@@ -515,8 +514,8 @@ public class PeerService {
                         + "?registrationCode="
                         + URLEncoder.encode(registrationCode, "UTF-8");
 
-                GroupInfo gi = (GroupInfo) RESTHelper.getRequest(url,
-                        GroupInfo.class);
+                GroupInfo gi = (GroupInfo) RESTHelper.getRequestConditional(
+                        url, GroupInfo.class);
 
                 url = baseURL + "/configuration/"
                         + URLEncoder.encode(peerName, "UTF-8")
@@ -524,7 +523,8 @@ public class PeerService {
                         + URLEncoder.encode(registrationCode, "UTF-8");
 
                 GroupConfigurationInfo gc = (GroupConfigurationInfo) RESTHelper
-                        .getRequest(url, GroupConfigurationInfo.class);
+                        .getRequestConditional(url,
+                                GroupConfigurationInfo.class);
 
                 PeerInfo myPeerInfo = null;
                 for (PeerInfo piGroup : gi.getPeers()) {
@@ -551,7 +551,8 @@ public class PeerService {
                         peerName,
                         new SEPIALauncher(myPeerInfo, gi, gc, sepiaInstances,
                                 registrationCode, baseURL, pk, pci
-                                        .getFinalResultsURL()));
+                                        .getFinalResultsURL(), Manager
+                                        .getFinalResultsStorage()));
 
                 return LOGGER.exit(Response.ok(myPeerInfo,
                         MediaType.APPLICATION_JSON).build());
@@ -14,6 +14,7 @@
  */
 package ch.zhaw.ficore.p2ds.peer.storage;
 
+import javax.naming.InitialContext;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
@@ -21,10 +22,13 @@ import javax.persistence.Persistence;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+import ch.zhaw.ficore.p2ds.util.JDBCFinalResultsStorage;
+
 public class Manager {
 
     private static EntityManager em;
     private static EntityManagerFactory entityManagerFactory;
+    private static JDBCFinalResultsStorage finalResultsStorage;
 
     private static final XLogger LOGGER = new XLogger(
             LoggerFactory.getLogger(Manager.class));
@@ -39,9 +43,52 @@ public class Manager {
             LOGGER.catching(ex);
             ex.printStackTrace();
         }
+
+        /*
+         * final results are only stored locally if peer/resultsDatabase (a
+         * JDBC url such as jdbc:sqlite:/var/lib/p2ds/peer-results.db) is
+         * configured in the web.xml
+         */
+        String url = null;
+        try {
+            InitialContext ic = new InitialContext();
+            url = (String) ic.lookup("java:/comp/env/peer/resultsDatabase");
+        } catch (Exception ex) {
+            LOGGER.info("peer/resultsDatabase not set. Final results are not stored.");
+        }
+        if (url != null) {
+            try {
+                finalResultsStorage = new JDBCFinalResultsStorage(url);
+            } catch (Exception ex) {
+                LOGGER.catching(ex);
+                LOGGER.error("Could not open " + url
+                        + ". Final results are not stored.");
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the final results storage.
+     */
+    public static void closeFinalResultsStorage() {
+        if (finalResultsStorage != null) {
+            try {
+                finalResultsStorage.close();
+            } catch (Exception ex) {
+                LOGGER.catching(ex);
+            }
+            finalResultsStorage = null;
+        }
     }
 
     public static EntityManager getEntityManager() {
         return em = entityManagerFactory.createEntityManager();
     }
+
+    /**
+     * @return the storage for final results or null if none is configured
+     */
+    public static JDBCFinalResultsStorage getFinalResultsStorage() {
+        return finalResultsStorage;
+    }
 }
@@ -1,14 +1,18 @@
 package ch.zhaw.ficore.p2ds.receiver;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -17,7 +21,11 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 import ch.zhaw.ficore.p2ds.group.json.DataSets;
+import ch.zhaw.ficore.p2ds.receiver.storage.Manager;
+import ch.zhaw.ficore.p2ds.receiver.storage.ResultStore;
+import ch.zhaw.ficore.p2ds.util.StorageException;
 
+import com.hp.gagawa.java.elements.A;
 import com.hp.gagawa.java.elements.Body;
 import com.hp.gagawa.java.elements.Div;
 import com.hp.gagawa.java.elements.H1;
@@ -35,10 +43,12 @@ public class GUI {
 
     private static String cssURL = "/res/style.css";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private static final XLogger LOGGER = new XLogger(
             LoggerFactory.getLogger(GUI.class));
 
-    private final static List<Result> results = new ArrayList<Result>();
+    private final static ResultStore results = Manager.getResultStore();
 
     public static Body getBody(final Div mainDiv) {
         mainDiv.setCSSClass("mainDiv");
@@ -71,26 +81,176 @@ public class GUI {
     @Path("/receive")
     @Consumes({ MediaType.APPLICATION_JSON })
     public Response receive(final DataSets ds) {
-        synchronized (GUI.results) {
-            for (String s : ds.getData()) {
-                Result r = new Result();
-                r.data = s;
-                r.from = this.request.getRemoteAddr();
-                r.when = new Date().toGMTString();
-                GUI.results.add(r);
-                LOGGER.info("data set received: " + r.data);
-            }
+        List<Result> received = new ArrayList<Result>(ds.getData().size());
+        long now = System.currentTimeMillis();
+        for (String s : ds.getData()) {
+            Result r = new Result();
+            r.data = s;
+            r.from = this.request.getRemoteAddr();
+            r.when = now;
+            received.add(r);
+            LOGGER.info("data set received: " + r.data);
+        }
+
+        try {
+            GUI.results.addAll(received);
+        } catch (StorageException e) {
+            LOGGER.catching(e);
+            return Response.status(500).entity("ERR_SERVER").build();
         }
         return Response.ok("OK").build();
     }
 
+    /**
+     * GET /results: Returns a page of the received results as JSON. Results
+     * are ordered by arrival time. Without a key the first page is returned.
+     * 
+     * @param afterWhen
+     *            with afterId: return the results after this result (the last
+     *            result of the previous page)
+     * @param afterId
+     *            see afterWhen
+     * @param beforeWhen
+     *            with beforeId: return the results before this result (the
+     *            first result of the next page)
+     * @param beforeId
+     *            see beforeWhen
+     * @param limit
+     *            page size (at most 1000)
+     * @param from
+     *            only results received at or after this time (ms since epoch)
+     * @param to
+     *            only results received at or before this time (ms since epoch)
+     * @return (application/json) ResultPage
+     */
+    @GET()
+    @Path("/results")
+    public Response getResults(@QueryParam("afterWhen") final Long afterWhen,
+            @QueryParam("afterId") final Long afterId,
+            @QueryParam("beforeWhen") final Long beforeWhen,
+            @QueryParam("beforeId") final Long beforeId,
+            @QueryParam("limit") @DefaultValue("100") final int limit,
+            @QueryParam("from") @DefaultValue("0") final long from,
+            @QueryParam("to") @DefaultValue("9223372036854775807") final long to) {
+        try {
+            ResultPage page;
+            if (afterWhen != null && afterId != null) {
+                page = getPageAfter(afterWhen, afterId, limit, from, to);
+            } else if (beforeWhen != null && beforeId != null) {
+                page = getPageBefore(beforeWhen, beforeId, limit, from, to);
+            } else {
+                page = getPageAfter(Long.MIN_VALUE, Long.MIN_VALUE, limit,
+                        from, to);
+            }
+            return Response.ok(page, MediaType.APPLICATION_JSON).build();
+        } catch (StorageException e) {
+            LOGGER.catching(e);
+            return Response.status(500).entity("ERR_SERVER").build();
+        }
+    }
+
+    /**
+     * Returns the page after the result (afterWhen, afterId). One result more
+     * than the page size is fetched to find out whether there is a next page.
+     */
+    private ResultPage getPageAfter(final long afterWhen, final long afterId,
+            final int limit, final long from, final long to)
+            throws StorageException {
+        ResultPage page = new ResultPage();
+        page.setLimit(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        page.setTotal(GUI.results.count(from, to));
+        List<Result> found = GUI.results.findAfter(from, to, afterWhen,
+                afterId, page.getLimit() + 1);
+        if (found.size() > page.getLimit()) {
+            found.remove(found.size() - 1);
+            page.setNext(true);
+        }
+        if (!found.isEmpty()) {
+            Result first = found.get(0);
+            page.setPrevious(!GUI.results.findBefore(from, to, first.when,
+                    first.id, 1).isEmpty());
+        }
+        page.setResults(found);
+        return page;
+    }
+
+    /**
+     * Returns the page before the result (beforeWhen, beforeId). One result
+     * more than the page size is fetched to find out whether there is a
+     * previous page.
+     */
+    private ResultPage getPageBefore(final long beforeWhen,
+            final long beforeId, final int limit, final long from,
+            final long to) throws StorageException {
+        ResultPage page = new ResultPage();
+        page.setLimit(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        page.setTotal(GUI.results.count(from, to));
+        List<Result> found = GUI.results.findBefore(from, to, beforeWhen,
+                beforeId, page.getLimit() + 1);
+        if (found.size() > page.getLimit()) {
+            found.remove(0);
+            page.setPrevious(true);
+        }
+        if (!found.isEmpty()) {
+            Result last = found.get(found.size() - 1);
+            page.setNext(!GUI.results.findAfter(from, to, last.when, last.id,
+                    1).isEmpty());
+        }
+        page.setResults(found);
+        return page;
+    }
+
+    private A pageLink(final String text, final String direction,
+            final Result key, final int limit, final long from, final long to) {
+        String href = this.request.getContextPath() + "/receiver/show?"
+                + direction + "When=" + key.when + "&" + direction + "Id="
+                + key.id + "&limit=" + limit;
+        if (from != 0) {
+            href += "&from=" + from;
+        }
+        if (to != Long.MAX_VALUE) {
+            href += "&to=" + to;
+        }
+        A a = new A().setHref(href);
+        a.appendChild(new Text(text));
+        return a;
+    }
+
+    /**
+     * GET /show: Renders one page of the received results as HTML. Without a
+     * key (see GET /results) the most recent page is shown.
+     */
     @GET()
     @Path("/show")
-    public Response showResults() {
+    public Response showResults(@QueryParam("afterWhen") final Long afterWhen,
+            @QueryParam("afterId") final Long afterId,
+            @QueryParam("beforeWhen") final Long beforeWhen,
+            @QueryParam("beforeId") final Long beforeId,
+            @QueryParam("limit") @DefaultValue("100") final int limit,
+            @QueryParam("from") @DefaultValue("0") final long from,
+            @QueryParam("to") @DefaultValue("9223372036854775807") final long to) {
         Html html = getHtml("Results", this.request);
         Div mainDiv = new Div();
         html.appendChild(getBody(mainDiv));
 
+        ResultPage page;
+        try {
+            if (afterWhen != null && afterId != null) {
+                page = getPageAfter(afterWhen, afterId, limit, from, to);
+            } else if (beforeWhen != null && beforeId != null) {
+                page = getPageBefore(beforeWhen, beforeId, limit, from, to);
+            } else {
+                page = getPageBefore(Long.MAX_VALUE, Long.MAX_VALUE, limit,
+                        from, to);
+            }
+        } catch (StorageException e) {
+            LOGGER.catching(e);
+            return Response.status(500).entity("ERR_SERVER").build();
+        }
+
+        SimpleDateFormat df = new SimpleDateFormat("d MMM yyyy HH:mm:ss 'GMT'");
+        df.setTimeZone(TimeZone.getTimeZone("GMT"));
+
         Table tbl = new Table();
         Tr tr = new Tr();
         tr.appendChild(new Td().appendChild(new Text("FROM")));
@@ -98,16 +258,32 @@ public class GUI {
         tr.appendChild(new Td().appendChild(new Text("DATA")));
         tbl.appendChild(tr);
 
-        for (Result r : GUI.results) {
+        for (Result r : page.getResults()) {
             tr = new Tr();
             tr.appendChild(new Td().appendChild(new Text(r.from)));
-            tr.appendChild(new Td().appendChild(new Text(r.when)));
+            tr.appendChild(new Td().appendChild(new Text(df.format(new Date(
+                    r.when)))));
             tr.appendChild(new Td().appendChild(new Text(r.data)));
             tbl.appendChild(tr);
         }
 
         mainDiv.appendChild(tbl);
 
+        Div navDiv = new Div();
+        List<Result> shown = page.getResults();
+        if (page.isPrevious()) {
+            navDiv.appendChild(pageLink("previous", "before", shown.get(0),
+                    page.getLimit(), from, to));
+            navDiv.appendChild(new Text(" "));
+        }
+        navDiv.appendChild(new Text(shown.size() + " of " + page.getTotal()));
+        if (page.isNext()) {
+            navDiv.appendChild(new Text(" "));
+            navDiv.appendChild(pageLink("next", "after",
+                    shown.get(shown.size() - 1), page.getLimit(), from, to));
+        }
+        mainDiv.appendChild(navDiv);
+
         return Response.ok(html.write()).type(MediaType.TEXT_HTML).build();
     }
 }
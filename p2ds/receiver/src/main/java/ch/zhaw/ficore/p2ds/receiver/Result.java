@@ -1,7 +1,13 @@
 package ch.zhaw.ficore.p2ds.receiver;
 
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement
 public class Result {
     public String data;
     public String from;
-    public String when;
+    /* sequence number assigned by the result store */
+    public long id;
+    /* time of arrival in milliseconds since the epoch (UTC) */
+    public long when;
 }
@@ -0,0 +1,69 @@
+package ch.zhaw.ficore.p2ds.receiver;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * One page of results as returned by GET /receiver/results. The next page
+ * starts after the last result, the previous page ends before the first
+ * result (see the afterWhen/afterId and beforeWhen/beforeId parameters).
+ */
+@XmlRootElement
+public class ResultPage {
+    private int limit;
+
+    private boolean next;
+
+    private boolean previous;
+
+    private List<Result> results;
+
+    private long total;
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    public List<Result> getResults() {
+        return this.results;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @return whether there are results after this page
+     */
+    public boolean isNext() {
+        return this.next;
+    }
+
+    /**
+     * @return whether there are results before this page
+     */
+    public boolean isPrevious() {
+        return this.previous;
+    }
+
+    public void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+    public void setNext(final boolean next) {
+        this.next = next;
+    }
+
+    public void setPrevious(final boolean previous) {
+        this.previous = previous;
+    }
+
+    public void setResults(final List<Result> results) {
+        this.results = results;
+    }
+
+    public void setTotal(final long total) {
+        this.total = total;
+    }
+}
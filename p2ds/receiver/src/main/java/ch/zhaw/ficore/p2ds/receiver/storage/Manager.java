@@ -0,0 +1,63 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import javax.naming.InitialContext;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+/**
+ * Creates the result store of the receiver. If receiver/resultsDatabase is
+ * configured in the web.xml (a JDBC url such as
+ * <code>jdbc:sqlite:/var/lib/p2ds/results.db</code>) the results are persisted
+ * in SQLite, otherwise the most recent receiver/resultsCapacity results
+ * (default 100000) are kept in memory.
+ */
+public class Manager {
+
+    private static final int DEFAULT_CAPACITY = 100000;
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(Manager.class));
+
+    private static ResultStore resultStore;
+
+    static {
+        String url = null;
+        int capacity = DEFAULT_CAPACITY;
+
+        try {
+            InitialContext ic = new InitialContext();
+            try {
+                url = (String) ic.lookup("java:/comp/env/receiver/resultsDatabase");
+            } catch (Exception ex) {
+                LOGGER.info("receiver/resultsDatabase not set. Keeping results in memory.");
+            }
+            try {
+                capacity = Integer.parseInt((String) ic
+                        .lookup("java:/comp/env/receiver/resultsCapacity"));
+            } catch (Exception ex) {
+                capacity = DEFAULT_CAPACITY;
+            }
+        } catch (Exception ex) {
+            LOGGER.catching(ex);
+        }
+
+        if (url != null) {
+            try {
+                resultStore = new SQLiteResultStore(url);
+            } catch (Exception ex) {
+                LOGGER.catching(ex);
+                LOGGER.error("Could not open " + url
+                        + ". Keeping results in memory.");
+            }
+        }
+
+        if (resultStore == null) {
+            resultStore = new MemoryResultStore(capacity);
+        }
+    }
+
+    public static ResultStore getResultStore() {
+        return resultStore;
+    }
+}
@@ -0,0 +1,146 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.zhaw.ficore.p2ds.receiver.Result;
+
+/**
+ * Keeps the most recent results in a fixed-size ring buffer. Once the capacity
+ * is reached the oldest results are dropped. Arrival times are kept
+ * non-decreasing and ids increasing, so that time ranges and page keys can be
+ * located by binary search.
+ */
+public class MemoryResultStore implements ResultStore {
+
+    private final Result[] buffer;
+
+    /* index of the oldest result in buffer */
+    private int head = 0;
+
+    private long lastWhen = Long.MIN_VALUE;
+
+    private long nextId = 1;
+
+    private int size = 0;
+
+    public MemoryResultStore(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.buffer = new Result[capacity];
+    }
+
+    @Override
+    public synchronized void addAll(final List<Result> results) {
+        for (Result r : results) {
+            r.id = this.nextId++;
+            if (r.when < this.lastWhen) {
+                r.when = this.lastWhen;
+            }
+            this.lastWhen = r.when;
+
+            if (this.size < this.buffer.length) {
+                this.buffer[(this.head + this.size) % this.buffer.length] = r;
+                this.size++;
+            } else {
+                this.buffer[this.head] = r;
+                this.head = (this.head + 1) % this.buffer.length;
+            }
+        }
+    }
+
+    @Override
+    public synchronized long count(final long from, final long to) {
+        int lo = lowerBound(from);
+        int hi = lowerBound(to == Long.MAX_VALUE ? to : to + 1);
+        return Math.max(0, hi - lo);
+    }
+
+    @Override
+    public synchronized List<Result> findAfter(final long from,
+            final long to, final long afterWhen, final long afterId,
+            final int limit) {
+        int lo = Math.max(lowerBound(from), upperBound(afterWhen, afterId));
+        int hi = lowerBound(to == Long.MAX_VALUE ? to : to + 1);
+        return page(lo, (int) Math.min(hi, (long) lo + limit));
+    }
+
+    @Override
+    public synchronized List<Result> findBefore(final long from,
+            final long to, final long beforeWhen, final long beforeId,
+            final int limit) {
+        int lo = lowerBound(from);
+        int hi = Math.min(lowerBound(to == Long.MAX_VALUE ? to : to + 1),
+                lowerBound(beforeWhen, beforeId));
+        return page((int) Math.max(lo, (long) hi - limit), hi);
+    }
+
+    private Result get(final int i) {
+        return this.buffer[(this.head + i) % this.buffer.length];
+    }
+
+    /**
+     * Returns the logical index of the first result whose (when, id) key is
+     * not smaller than the given key.
+     */
+    private int lowerBound(final long when, final long id) {
+        int lo = 0;
+        int hi = this.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Result r = get(mid);
+            if (r.when < when || (r.when == when && r.id < id)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the logical index of the first result received at or after
+     * <code>when</code>.
+     */
+    private int lowerBound(final long when) {
+        int lo = 0;
+        int hi = this.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (get(mid).when < when) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private List<Result> page(final int lo, final int hi) {
+        List<Result> page = new ArrayList<Result>();
+        for (int i = lo; i < hi; i++) {
+            page.add(get(i));
+        }
+        return page;
+    }
+
+    /**
+     * Returns the logical index of the first result whose (when, id) key is
+     * greater than the given key.
+     */
+    private int upperBound(final long when, final long id) {
+        int lo = 0;
+        int hi = this.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Result r = get(mid);
+            if (r.when < when || (r.when == when && r.id <= id)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
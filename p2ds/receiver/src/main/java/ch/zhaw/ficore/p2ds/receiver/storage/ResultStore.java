@@ -0,0 +1,88 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import java.util.List;
+
+import ch.zhaw.ficore.p2ds.receiver.Result;
+import ch.zhaw.ficore.p2ds.util.StorageException;
+
+/**
+ * Storage for the final results received by the receiver. Results are kept in
+ * arrival order and can be queried page-wise, optionally restricted to a time
+ * range, without touching the rest of the store. Pages are addressed by the
+ * (when, id) key of a neighbouring result instead of an offset, so a page
+ * costs the same wherever it is in the store.
+ */
+public interface ResultStore {
+
+    /**
+     * Appends results to the store. Implementations assign the
+     * <code>id</code> of each result.
+     *
+     * @param results
+     *            results in arrival order
+     * @throws StorageException
+     *             if the results could not be stored
+     */
+    public void addAll(final List<Result> results) throws StorageException;
+
+    /**
+     * Counts the results received in the time range [from, to].
+     *
+     * @param from
+     *            lower bound (inclusive, milliseconds since the epoch)
+     * @param to
+     *            upper bound (inclusive, milliseconds since the epoch)
+     * @return number of results
+     * @throws StorageException
+     *             if the store could not be queried
+     */
+    public long count(final long from, final long to) throws StorageException;
+
+    /**
+     * Returns a page of results received in the time range [from, to] that
+     * follow the result (afterWhen, afterId) in arrival order, i.e. the results
+     * ordered by (when, id) that are greater than that key. The page is in
+     * arrival order. Pass Long.MIN_VALUE as key for the first page.
+     *
+     * @param from
+     *            lower bound (inclusive, milliseconds since the epoch)
+     * @param to
+     *            upper bound (inclusive, milliseconds since the epoch)
+     * @param afterWhen
+     *            arrival time of the last result of the previous page
+     * @param afterId
+     *            id of the last result of the previous page
+     * @param limit
+     *            maximum number of results to return
+     * @return the results
+     * @throws StorageException
+     *             if the store could not be queried
+     */
+    public List<Result> findAfter(final long from, final long to,
+            final long afterWhen, final long afterId, final int limit)
+            throws StorageException;
+
+    /**
+     * Returns the last <code>limit</code> results received in the time range
+     * [from, to] that precede the result (beforeWhen, beforeId) in arrival
+     * order. The page is in arrival order. Pass Long.MAX_VALUE as key for the
+     * most recent page.
+     *
+     * @param from
+     *            lower bound (inclusive, milliseconds since the epoch)
+     * @param to
+     *            upper bound (inclusive, milliseconds since the epoch)
+     * @param beforeWhen
+     *            arrival time of the first result of the next page
+     * @param beforeId
+     *            id of the first result of the next page
+     * @param limit
+     *            maximum number of results to return
+     * @return the results
+     * @throws StorageException
+     *             if the store could not be queried
+     */
+    public List<Result> findBefore(final long from, final long to,
+            final long beforeWhen, final long beforeId, final int limit)
+            throws StorageException;
+}
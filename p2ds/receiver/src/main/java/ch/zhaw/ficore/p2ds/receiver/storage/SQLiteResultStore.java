@@ -0,0 +1,240 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.zhaw.ficore.p2ds.receiver.Result;
+import ch.zhaw.ficore.p2ds.util.StorageException;
+
+/**
+ * Stores results in an embedded SQLite database. The table is indexed on the
+ * arrival time so that time range queries and pagination only touch the
+ * requested rows. Results of one POST are inserted as a single batch in one
+ * transaction. As in {@link MemoryResultStore}, arrival times are kept
+ * non-decreasing and every result gets the id of its row.
+ */
+public class SQLiteResultStore implements ResultStore {
+
+    private static final XLogger LOGGER = new XLogger(
+            LoggerFactory.getLogger(SQLiteResultStore.class));
+
+    private final Connection connection;
+
+    private final PreparedStatement count;
+    private final PreparedStatement findAfter;
+    private final PreparedStatement findBefore;
+    private final PreparedStatement insert;
+    private final PreparedStatement lastId;
+
+    private long lastWhen = Long.MIN_VALUE;
+
+    public SQLiteResultStore(final String url) throws StorageException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            this.connection = DriverManager.getConnection(url);
+
+            Statement stmt = this.connection.createStatement();
+            try {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS TBL_RESULT ("
+                        + "ATTR_ID INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + "ATTR_WHEN INTEGER NOT NULL, "
+                        + "ATTR_FROM TEXT, ATTR_DATA TEXT)");
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS IDX_RESULT_WHEN "
+                        + "ON TBL_RESULT (ATTR_WHEN, ATTR_ID)");
+            } finally {
+                stmt.close();
+            }
+
+            stmt = this.connection.createStatement();
+            try {
+                ResultSet rs = stmt
+                        .executeQuery("SELECT MAX(ATTR_WHEN) FROM TBL_RESULT");
+                try {
+                    if (rs.next()) {
+                        long when = rs.getLong(1);
+                        if (!rs.wasNull()) {
+                            this.lastWhen = when;
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+
+            this.connection.setAutoCommit(false);
+
+            this.insert = this.connection
+                    .prepareStatement("INSERT INTO TBL_RESULT "
+                            + "(ATTR_WHEN, ATTR_FROM, ATTR_DATA) VALUES (?, ?, ?)");
+            this.lastId = this.connection
+                    .prepareStatement("SELECT last_insert_rowid()");
+            this.count = this.connection
+                    .prepareStatement("SELECT COUNT(*) FROM TBL_RESULT "
+                            + "WHERE ATTR_WHEN BETWEEN ? AND ?");
+            /*
+             * keyset pagination on (ATTR_WHEN, ATTR_ID): the range on ATTR_WHEN
+             * is searched in the index, the condition on ATTR_ID only filters
+             * the results that arrived in the same millisecond as the key
+             */
+            this.findAfter = this.connection
+                    .prepareStatement("SELECT ATTR_ID, ATTR_WHEN, ATTR_FROM, ATTR_DATA "
+                            + "FROM TBL_RESULT WHERE ATTR_WHEN BETWEEN ? AND ? "
+                            + "AND (ATTR_WHEN > ? OR ATTR_ID > ?) "
+                            + "ORDER BY ATTR_WHEN, ATTR_ID LIMIT ?");
+            this.findBefore = this.connection
+                    .prepareStatement("SELECT ATTR_ID, ATTR_WHEN, ATTR_FROM, ATTR_DATA "
+                            + "FROM TBL_RESULT WHERE ATTR_WHEN BETWEEN ? AND ? "
+                            + "AND (ATTR_WHEN < ? OR ATTR_ID < ?) "
+                            + "ORDER BY ATTR_WHEN DESC, ATTR_ID DESC LIMIT ?");
+        } catch (ClassNotFoundException | SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void addAll(final List<Result> results)
+            throws StorageException {
+        if (results.isEmpty()) {
+            return;
+        }
+        long when = this.lastWhen;
+        try {
+            for (Result r : results) {
+                if (r.when < when) {
+                    r.when = when;
+                }
+                when = r.when;
+                this.insert.setLong(1, r.when);
+                this.insert.setString(2, r.from);
+                this.insert.setString(3, r.data);
+                this.insert.addBatch();
+            }
+            this.insert.executeBatch();
+
+            /*
+             * the rows of the batch are inserted by this connection within one
+             * transaction, so they got consecutive ids ending at the last one
+             */
+            long id;
+            ResultSet rs = this.lastId.executeQuery();
+            try {
+                rs.next();
+                id = rs.getLong(1) - results.size() + 1;
+            } finally {
+                rs.close();
+            }
+            this.connection.commit();
+
+            for (Result r : results) {
+                r.id = id++;
+            }
+            this.lastWhen = when;
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            try {
+                this.connection.rollback();
+            } catch (SQLException e1) {
+                LOGGER.catching(e1);
+            }
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the database connection.
+     */
+    public synchronized void close() throws StorageException {
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized long count(final long from, final long to)
+            throws StorageException {
+        try {
+            this.count.setLong(1, from);
+            this.count.setLong(2, to);
+            ResultSet rs = this.count.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : 0;
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized List<Result> findAfter(final long from,
+            final long to, final long afterWhen, final long afterId,
+            final int limit) throws StorageException {
+        try {
+            this.findAfter.setLong(1, Math.max(from, afterWhen));
+            this.findAfter.setLong(2, to);
+            this.findAfter.setLong(3, afterWhen);
+            this.findAfter.setLong(4, afterId);
+            this.findAfter.setInt(5, limit);
+            return readPage(this.findAfter);
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized List<Result> findBefore(final long from,
+            final long to, final long beforeWhen, final long beforeId,
+            final int limit) throws StorageException {
+        try {
+            this.findBefore.setLong(1, from);
+            this.findBefore.setLong(2, Math.min(to, beforeWhen));
+            this.findBefore.setLong(3, beforeWhen);
+            this.findBefore.setLong(4, beforeId);
+            this.findBefore.setInt(5, limit);
+            List<Result> page = readPage(this.findBefore);
+            Collections.reverse(page);
+            return page;
+        } catch (SQLException e) {
+            LOGGER.catching(e);
+            throw new StorageException(e.getMessage());
+        }
+    }
+
+    private static List<Result> readPage(final PreparedStatement find)
+            throws SQLException {
+        List<Result> page = new ArrayList<Result>();
+        ResultSet rs = find.executeQuery();
+        try {
+            while (rs.next()) {
+                Result r = new Result();
+                r.id = rs.getLong(1);
+                r.when = rs.getLong(2);
+                r.from = rs.getString(3);
+                r.data = rs.getString(4);
+                page.add(r);
+            }
+        } finally {
+            rs.close();
+        }
+        return page;
+    }
+}
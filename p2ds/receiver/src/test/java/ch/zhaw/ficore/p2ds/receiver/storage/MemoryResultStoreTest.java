@@ -0,0 +1,89 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.zhaw.ficore.p2ds.receiver.Result;
+
+public class MemoryResultStoreTest extends TestCase {
+
+    private static final long MAX = Long.MAX_VALUE;
+
+    private static final long MIN = Long.MIN_VALUE;
+
+    private static void assertIds(final List<Result> page, final long... ids) {
+        assertEquals(ids.length, page.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], page.get(i).id);
+        }
+    }
+
+    /**
+     * Checks the pages of a store that holds the results with ids 1 to 7
+     * received at 10, 10, 10, 20, 20, 30 and 40.
+     */
+    static void checkKeysetPagination(final ResultStore store)
+            throws Exception {
+        long first = store.findAfter(0, MAX, MIN, MIN, 1).get(0).id - 1;
+
+        assertIds(store.findAfter(0, MAX, MIN, MIN, 3), first + 1, first + 2,
+                first + 3);
+        assertIds(store.findAfter(0, MAX, 10, first + 3, 3), first + 4,
+                first + 5, first + 6);
+        /* the key may be in the middle of results of the same millisecond */
+        assertIds(store.findAfter(0, MAX, 10, first + 2, 2), first + 3,
+                first + 4);
+        assertIds(store.findAfter(0, MAX, 30, first + 6, 3), first + 7);
+        assertIds(store.findAfter(0, MAX, 40, first + 7, 3));
+
+        assertIds(store.findBefore(0, MAX, MAX, MAX, 3), first + 5,
+                first + 6, first + 7);
+        assertIds(store.findBefore(0, MAX, 20, first + 5, 3), first + 2,
+                first + 3, first + 4);
+        assertIds(store.findBefore(0, MAX, 10, first + 1, 3));
+
+        /* time range [15, 30] */
+        assertIds(store.findAfter(15, 30, MIN, MIN, 10), first + 4,
+                first + 5, first + 6);
+        assertIds(store.findAfter(15, 30, 20, first + 4, 10), first + 5,
+                first + 6);
+        assertIds(store.findBefore(15, 30, MAX, MAX, 2), first + 5, first + 6);
+        assertIds(store.findBefore(15, 30, 20, first + 4, 2));
+
+        /* walking forward visits every result once */
+        List<Result> all = new ArrayList<Result>();
+        List<Result> page = store.findAfter(0, MAX, MIN, MIN, 2);
+        while (!page.isEmpty()) {
+            all.addAll(page);
+            Result last = page.get(page.size() - 1);
+            page = store.findAfter(0, MAX, last.when, last.id, 2);
+        }
+        assertIds(all, first + 1, first + 2, first + 3, first + 4, first + 5,
+                first + 6, first + 7);
+    }
+
+    private static List<Result> results(final long... whens) {
+        List<Result> results = new ArrayList<Result>();
+        for (long when : whens) {
+            Result r = new Result();
+            r.when = when;
+            results.add(r);
+        }
+        return results;
+    }
+
+    public void testKeysetPagination() throws Exception {
+        MemoryResultStore store = new MemoryResultStore(100);
+        store.addAll(results(10, 10, 10, 20, 20, 30, 40));
+        checkKeysetPagination(store);
+    }
+
+    public void testOldestResultsAreDropped() throws Exception {
+        MemoryResultStore store = new MemoryResultStore(3);
+        store.addAll(results(10, 20, 30, 40, 50));
+        assertEquals(3, store.count(0, MAX));
+        assertIds(store.findAfter(0, MAX, MIN, MIN, 10), 3, 4, 5);
+        assertIds(store.findBefore(0, MAX, MAX, MAX, 2), 4, 5);
+    }
+}
@@ -0,0 +1,87 @@
+package ch.zhaw.ficore.p2ds.receiver.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.zhaw.ficore.p2ds.receiver.Result;
+
+public class SQLiteResultStoreTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.file = File.createTempFile("results", ".db");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.file.delete();
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + this.file.getAbsolutePath();
+    }
+
+    private static List<Result> results(final long... whens) {
+        List<Result> results = new ArrayList<Result>();
+        for (long when : whens) {
+            Result r = new Result();
+            r.when = when;
+            r.from = "peer";
+            r.data = "data" + when;
+            results.add(r);
+        }
+        return results;
+    }
+
+    public void testAddAllSetsIds() throws Exception {
+        SQLiteResultStore store = new SQLiteResultStore(url());
+        List<Result> first = results(10, 20, 30);
+        store.addAll(first);
+        List<Result> second = results(40, 50);
+        store.addAll(second);
+
+        List<Result> page = store.findAfter(0, Long.MAX_VALUE, Long.MIN_VALUE,
+                Long.MIN_VALUE, 10);
+        assertEquals(5, page.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(page.get(i).id, first.get(i).id);
+        }
+        for (int i = 0; i < second.size(); i++) {
+            assertEquals(page.get(first.size() + i).id, second.get(i).id);
+        }
+        assertEquals(first.get(2).id + 1, second.get(0).id);
+        store.close();
+    }
+
+    public void testAddAllKeepsArrivalTimesMonotonic() throws Exception {
+        SQLiteResultStore store = new SQLiteResultStore(url());
+        List<Result> first = results(100, 50, 200);
+        store.addAll(first);
+        assertEquals(100, first.get(1).when);
+        assertEquals(200, first.get(2).when);
+        assertEquals(0, store.count(50, 99));
+        assertEquals(2, store.count(100, 100));
+
+        store.close();
+
+        /* the last arrival time is restored from the database */
+        store = new SQLiteResultStore(url());
+        List<Result> second = results(150);
+        store.addAll(second);
+        assertEquals(200, second.get(0).when);
+        assertEquals(2, store.count(200, 200));
+        assertEquals(first.get(2).id + 1, second.get(0).id);
+        store.close();
+    }
+
+    public void testKeysetPagination() throws Exception {
+        SQLiteResultStore store = new SQLiteResultStore(url());
+        store.addAll(results(10, 10, 10, 20, 20, 30, 40));
+        MemoryResultStoreTest.checkKeysetPagination(store);
+        store.close();
+    }
+}
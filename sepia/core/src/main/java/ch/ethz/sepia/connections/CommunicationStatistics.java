@@ -3,21 +3,41 @@ package ch.ethz.sepia.connections;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+/**
+ * Collects communication statistics of a peer: messages and bytes, the
+ * duration of the MPC communication rounds and the serialized size of the
+ * shares. The round durations are fitted to
+ * <code>duration = latency + sharesSent * timePerShare</code> by least squares
+ * (see {@link #getRoundLatency()} and {@link #getTimePerShare()}).
+ * <p>
+ * The methods are synchronized, as the statistics are updated by all protocol
+ * threads of a peer.
+ */
 public class CommunicationStatistics {
     private static final XLogger logger = new XLogger(LoggerFactory
             .getLogger(CommunicationStatistics.class));
 
     private long numberOfFinishedRounds;
+    private long serializedBytes;
+    private long serializedShares;
+    /** sums for the least squares fit of the round durations */
+    private double sumShares, sumSharesSquared, sumDurationTimesShares;
     private long thisRoundBytesReceived;
     private long thisRoundBytesSent;
+    private long thisRoundCommunicationRounds;
+    private long thisRoundCommunicationTime;
     private long thisRoundMessagesReceived;
     private long thisRoundMessagesSent;
+    private long thisRoundSharesSent;
     private long thisRoundUncompressedBytesReceived;
     private long thisRoundUncompressedBytesSent;
     private long totalBytesReceived;
     private long totalBytesSent;
+    private long totalCommunicationRounds;
+    private long totalCommunicationTime;
     private long totalMessagesReceived;
     private long totalMessagesSent;
+    private long totalSharesSent;
     private long totalUncompressedBytesReceived;
     private long totalUncompressedBytesSent;
 
@@ -37,26 +57,126 @@ public class CommunicationStatistics {
          totalUncompressedBytesSent = 0;
     }
 
-    public void incMessagesReceived(final int length) {
+    /**
+     * Returns the average number of bytes a share takes in the serialized
+     * messages.
+     *
+     * @return the bytes per share or -1 if no shares were serialized yet
+     */
+    public synchronized double getBytesPerShare() {
+        if (serializedShares == 0) {
+            return -1;
+        }
+        return (double) serializedBytes / serializedShares;
+    }
+
+    /**
+     * Returns the fixed part of the duration of an MPC communication round,
+     * i.e. the duration of a round without shares. If the number of shares
+     * sent did not vary between the rounds, this is the average duration.
+     *
+     * @return the round latency in milliseconds
+     */
+    public synchronized double getRoundLatency() {
+        if (totalCommunicationRounds == 0) {
+            return 0;
+        }
+        final double averageDuration = (double) totalCommunicationTime
+                / totalCommunicationRounds;
+        final double averageShares = sumShares / totalCommunicationRounds;
+        return Math.max(0, averageDuration - getTimePerShare()
+                * averageShares);
+    }
+
+    public synchronized long getThisRoundCommunicationRounds() {
+        return thisRoundCommunicationRounds;
+    }
+
+    public synchronized long getThisRoundCommunicationTime() {
+        return thisRoundCommunicationTime;
+    }
+
+    public synchronized long getThisRoundSharesSent() {
+        return thisRoundSharesSent;
+    }
+
+    /**
+     * Returns the additional duration of an MPC communication round per share
+     * sent.
+     *
+     * @return the time per share in milliseconds (0 if unknown)
+     */
+    public synchronized double getTimePerShare() {
+        final long n = totalCommunicationRounds;
+        if (n < 2) {
+            return 0;
+        }
+        final double variance = n * sumSharesSquared - sumShares * sumShares;
+        if (variance <= 0) {
+            return 0;
+        }
+        final double slope = (n * sumDurationTimesShares - sumShares
+                * totalCommunicationTime)
+                / variance;
+        return Math.max(0, slope);
+    }
+
+    /**
+     * Records an MPC communication round, i.e. one exchange of shares with
+     * another privacy peer.
+     *
+     * @param duration
+     *            the duration of the round in milliseconds
+     * @param sharesSent
+     *            the number of shares sent in the round
+     */
+    public synchronized void incCommunicationRound(final long duration,
+            final int sharesSent) {
+        thisRoundCommunicationRounds++;
+        totalCommunicationRounds++;
+        thisRoundCommunicationTime += duration;
+        totalCommunicationTime += duration;
+        thisRoundSharesSent += sharesSent;
+        totalSharesSent += sharesSent;
+        sumShares += sharesSent;
+        sumSharesSquared += (double) sharesSent * sharesSent;
+        sumDurationTimesShares += (double) duration * sharesSent;
+    }
+
+    public synchronized void incMessagesReceived(final int length) {
         thisRoundMessagesReceived++;
         totalMessagesReceived++;
         thisRoundBytesReceived += length;
         totalBytesReceived += length;
     }
 
-    public void incMessagesSent(final int length) {
+    public synchronized void incMessagesSent(final int length) {
         thisRoundMessagesSent++;
         totalMessagesSent++;
         thisRoundBytesSent += length;
         totalBytesSent += length;
     }
 
-    public void incUncompressedBytesReceived(final int totalOut) {
+    /**
+     * Records the size of a serialized message containing shares.
+     *
+     * @param shares
+     *            the number of shares in the message
+     * @param bytes
+     *            the size of the serialized message
+     */
+    public synchronized void incSerializedShares(final int shares,
+            final int bytes) {
+        serializedShares += shares;
+        serializedBytes += bytes;
+    }
+
+    public synchronized void incUncompressedBytesReceived(final int totalOut) {
         thisRoundUncompressedBytesReceived += totalOut;
         totalUncompressedBytesReceived += totalOut;
     }
 
-    public void incUncompressedBytesSent(final int totalIn) {
+    public synchronized void incUncompressedBytesSent(final int totalIn) {
         thisRoundUncompressedBytesSent += totalIn;
         totalUncompressedBytesSent += totalIn;
     }
@@ -64,7 +184,7 @@ public class CommunicationStatistics {
     /**
      * Logs the connection statistics (messages, bytes).
      */
-    public void logStatistics() {
+    public synchronized void logStatistics() {
         logger.info("ConnectionManager statistics:");
         logger.info("--- Total      : MR=" + totalMessagesReceived + ", MS="
                 + totalMessagesSent + ", BR=" + totalBytesReceived + ", UBR="
@@ -84,18 +204,29 @@ public class CommunicationStatistics {
                 + ", BS=" + totalBytesSent / (numberOfFinishedRounds + 1)
                 + ", UBS=" + totalUncompressedBytesSent
                 / (numberOfFinishedRounds + 1));
+        logger.info("--- MPC rounds : this round=" + thisRoundCommunicationRounds
+                + " (" + thisRoundSharesSent + " shares, "
+                + thisRoundCommunicationTime + " ms), total="
+                + totalCommunicationRounds + " (" + totalSharesSent
+                + " shares, " + totalCommunicationTime + " ms), latency="
+                + getRoundLatency() + " ms, time per share="
+                + getTimePerShare() + " ms, bytes per share="
+                + getBytesPerShare());
     }
 
     /**
      * Resets the current round statistics.
      */
-    public void newStatisticsRound() {
+    public synchronized void newStatisticsRound() {
         thisRoundMessagesReceived = 0;
         thisRoundMessagesSent = 0;
         thisRoundBytesReceived = 0;
         thisRoundUncompressedBytesReceived = 0;
         thisRoundBytesSent = 0;
         thisRoundUncompressedBytesSent = 0;
+        thisRoundCommunicationRounds = 0;
+        thisRoundCommunicationTime = 0;
+        thisRoundSharesSent = 0;
         numberOfFinishedRounds++;
     }
 
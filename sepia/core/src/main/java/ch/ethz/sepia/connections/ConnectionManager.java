@@ -17,11 +17,11 @@ package ch.ethz.sepia.connections;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.slf4j.LoggerFactory;
@@ -68,11 +68,17 @@ public abstract class ConnectionManager {
     private static final XLogger logger = new XLogger(
             LoggerFactory.getLogger(ConnectionManager.class));
 
-    private final Map<String, BlockingQueue<Object>> inputQueues = new HashMap<String, BlockingQueue<Object>>();
+    /**
+     * the input queues per sender; concurrent, since the queue depth is read by
+     * other threads (e.g. a status reporter) while the queues are created
+     */
+    private final Map<String, BlockingQueue<Object>> inputQueues = new ConcurrentHashMap<String, BlockingQueue<Object>>();
 
     protected String myId;
 
-    private final Map<String, OutputStrategy> outputQueues = new HashMap<String, OutputStrategy>();
+    private final Map<String, OutputStrategy> outputQueues = new ConcurrentHashMap<String, OutputStrategy>();
+
+    private final CommunicationStatistics statistics = new CommunicationStatistics();
 
     public ConnectionManager(final String myId) {
         this.myId = myId;
@@ -99,6 +105,13 @@ public abstract class ConnectionManager {
         }
     }
 
+    /**
+     * @return the communication statistics of this peer
+     */
+    public CommunicationStatistics getCommunicationStatistics() {
+        return this.statistics;
+    }
+
     public List<String> getConfiguredInputPeerIDs() {
         logger.entry();
         final List<String> inputPeerIDs = new ArrayList<String>();
@@ -145,6 +158,20 @@ public abstract class ConnectionManager {
         return this.inputQueues.get(senderId);
     }
 
+    /**
+     * Returns the number of received messages that have not been processed
+     * yet (summed over all input queues).
+     * 
+     * @return the number of queued messages
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final BlockingQueue<Object> queue : this.inputQueues.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
     public int getNumberOfConnectedPeers(final boolean privacyPeersOnly) {
         return getActivePeers(privacyPeersOnly).size();
     }
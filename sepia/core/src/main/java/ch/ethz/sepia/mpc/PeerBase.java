@@ -61,7 +61,8 @@ public abstract class PeerBase extends Observable {
     public static final String SKIP_INPUT_VERIFICATION_FLAG = "SKIP_INPUT_VERIFICATION_FLAG";
 
     protected ConnectionManager connectionManager = null;
-    protected int currentTimeSlot = 0;
+    /* read without holding the lock of this (see getCurrentTimeSlot) */
+    protected volatile int currentTimeSlot = 0;
     protected int finalResultsToDo = 0;
     protected int goodbyesReceivedToDo = 0;
 
@@ -129,7 +130,7 @@ public abstract class PeerBase extends Observable {
         return this.connectionManager;
     }
 
-    public synchronized int getCurrentTimeSlot() {
+    public int getCurrentTimeSlot() {
         return this.currentTimeSlot;
     }
 
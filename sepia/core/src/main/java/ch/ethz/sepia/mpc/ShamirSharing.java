@@ -726,4 +726,60 @@ public class ShamirSharing {
         }
         return result;
     }
+
+
+    /**
+     * adds the vectors to the sum in place, for the items in [from, to).
+     * <p>
+     * The modular reduction is lazy: the items are only reduced when another
+     * addition could overflow, i.e. once per Long.MAX_VALUE/(fieldSize-1)
+     * vectors. For a 31 bit field, this means once at the end. The vectors
+     * are traversed sequentially in the given range, s.t. ranges that fit
+     * into the cache are added efficiently. Different ranges can be added
+     * concurrently.
+     *
+     * @param sum		the sum (all items in [0, fieldSize))
+     * @param vectors	the vectors to add (all items in [0, fieldSize))
+     * @param from		the first item to add (inclusive)
+     * @param to		the last item to add (exclusive)
+     *
+     * @throws			IllegalArgumentException if the lengths of the vectors do not match.
+     */
+    public void vectorAddInPlace(final long[] sum, final long[][] vectors, final int from, final int to) {
+        for(final long[] vector : vectors) {
+            if(vector.length != sum.length) {
+                throw new IllegalArgumentException("vector lengths do not match!");
+            }
+        }
+        // the number of vectors that can be added to a reduced sum without overflow
+        final long headroom = Long.MAX_VALUE/(fieldSize-1) - 1;
+        if(headroom < 1) {
+            // a+b might overflow: a+b-p = a-(p-b)
+            for(final long[] vector : vectors) {
+                for(int j = from; j < to; j++) {
+                    final long complement = fieldSize - vector[j];
+                    sum[j] = sum[j] >= complement ? sum[j] - complement : sum[j] + vector[j];
+                }
+            }
+            return;
+        }
+        long pending = 0;
+        for(final long[] vector : vectors) {
+            if(pending == headroom) {
+                for(int j = from; j < to; j++) {
+                    sum[j] %= fieldSize;
+                }
+                pending = 0;
+            }
+            for(int j = from; j < to; j++) {
+                sum[j] += vector[j];
+            }
+            pending++;
+        }
+        if(pending > 0) {
+            for(int j = from; j < to; j++) {
+                sum[j] %= fieldSize;
+            }
+        }
+    }
 }
@@ -0,0 +1,297 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute 
+// it and/or modify it under the terms of the GNU Lesser General Public 
+// License as published by the Free Software Foundation, either version 3 
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives;
+
+import ch.ethz.sepia.connections.CommunicationStatistics;
+
+/**
+ * Cost model for the selection of the field size. The computation effort of
+ * {@link FieldSizeCandidate} is combined with the measured communication
+ * cost of a peer (see {@link CommunicationStatistics}):
+ * <p>
+ * cost = rounds * roundLatency + shares * timePerShare * (bits / referenceBits)
+ * <p>
+ * The time per share was measured in the field with
+ * <code>referenceBits</code> bits; as the serialized size of a share grows
+ * with its bit length, it is scaled to the bit length of the candidate field.
+ * The rounds and shares are predicted for a number of equal operations and
+ * bitwise shared random number generations, which are the operations whose
+ * cost depends most on the field size.
+ * <p>
+ * The model is diagnostic only. The privacy peers log its predictions after
+ * each round (see {@link PrimitivesEnabledPeer#logFieldSizeCost}). It does not
+ * select the field of a run, because all input and privacy peers have to use
+ * the same configured field and their measurements differ.
+ */
+public final class FieldSizeCostModel {
+    /** the size of a share in the binary encoding */
+    public static final int DEFAULT_BYTES_PER_SHARE = 8;
+
+    /**
+     * the probability with which the bitwise shared random numbers shall be
+     * generated
+     */
+    private static final float RANDOM_NUMBER_SUCCESS_PROBABILITY = 0.9F;
+
+    /** the default prime: biggest prime smaller than MAX_LONG */
+    private static final long DEFAULT_FIELD_SIZE = 9223372036854775783L;
+
+    /**
+     * Creates a cost model from the measured communication statistics.
+     * 
+     * @param statistics
+     *            the communication statistics of the peer
+     * @param referenceFieldSize
+     *            the field size in which the statistics were measured
+     * @return the cost model
+     */
+    public static FieldSizeCostModel fromStatistics(
+            final CommunicationStatistics statistics,
+            final long referenceFieldSize) {
+        double bytesPerShare = statistics.getBytesPerShare();
+        if (bytesPerShare < 0) {
+            bytesPerShare = DEFAULT_BYTES_PER_SHARE;
+        }
+        return new FieldSizeCostModel(statistics.getRoundLatency(),
+                statistics.getTimePerShare(), bytesPerShare,
+                referenceFieldSize);
+    }
+
+    private boolean bitwiseEqual = false;
+    private final double bytesPerShare;
+    private final long referenceFieldSize;
+    private final double roundLatency;
+    private final double timePerShare;
+
+    /**
+     * Creates a new cost model.
+     * 
+     * @param roundLatency
+     *            the fixed duration of a communication round (in ms)
+     * @param timePerShare
+     *            the additional duration of a round per share (in ms)
+     * @param bytesPerShare
+     *            the serialized size of a share
+     * @param referenceFieldSize
+     *            the field size in which timePerShare and bytesPerShare were
+     *            measured or 0 if they don't depend on the field size
+     */
+    public FieldSizeCostModel(final double roundLatency,
+            final double timePerShare, final double bytesPerShare,
+            final long referenceFieldSize) {
+        this.roundLatency = roundLatency;
+        this.timePerShare = timePerShare;
+        this.bytesPerShare = bytesPerShare;
+        this.referenceFieldSize = referenceFieldSize;
+    }
+
+    /**
+     * @return a description of the predicted cost in the given field
+     */
+    public String describe(final long fieldSize, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        return "field size="
+                + fieldSize
+                + ": rounds="
+                + getRounds(fieldSize, equalCount, bitwiseRandomNumbersCount)
+                + ", shares="
+                + getShares(fieldSize, equalCount, bitwiseRandomNumbersCount)
+                + ", bytes="
+                + getBytes(fieldSize, equalCount, bitwiseRandomNumbersCount)
+                + ", cost="
+                + Math.round(getCost(fieldSize, equalCount,
+                        bitwiseRandomNumbersCount)) + " ms";
+    }
+
+    /**
+     * predicts the number of bytes sent to each other privacy peer
+     * 
+     * @param fieldSize
+     *            the candidate field size
+     * @param equalCount
+     *            the number of equal operations
+     * @param bitwiseRandomNumbersCount
+     *            the number of bitwise shared random numbers generated
+     * @return the number of bytes
+     */
+    public long getBytes(final long fieldSize, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        return (long) (getShares(fieldSize, equalCount,
+                bitwiseRandomNumbersCount)
+                * this.bytesPerShare * getShareSizeScale(fieldSize));
+    }
+
+    /**
+     * predicts the communication cost of a given number of rounds and shares,
+     * e.g. of the rounds and shares observed in a whole round of the peer
+     * 
+     * @param fieldSize
+     *            the field size
+     * @param rounds
+     *            the number of communication rounds
+     * @param shares
+     *            the number of shares sent
+     * @return the predicted cost (in ms)
+     */
+    public double getCommunicationCost(final long fieldSize, final long rounds,
+            final long shares) {
+        return rounds * this.roundLatency + shares * this.timePerShare
+                * getShareSizeScale(fieldSize);
+    }
+
+    /**
+     * predicts the communication cost
+     * 
+     * @param fieldSize
+     *            the candidate field size
+     * @param equalCount
+     *            the number of equal operations
+     * @param bitwiseRandomNumbersCount
+     *            the number of bitwise shared random numbers generated
+     * @return the predicted cost (in ms)
+     */
+    public double getCost(final long fieldSize, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        return getCommunicationCost(fieldSize,
+                getRounds(fieldSize, equalCount, bitwiseRandomNumbersCount),
+                getShares(fieldSize, equalCount, bitwiseRandomNumbersCount));
+    }
+
+    /**
+     * @return the number of bitwise shared random numbers needed by the equal
+     *         and random number operations
+     */
+    private long getRandomNumbersCount(final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        return this.bitwiseEqual ? bitwiseRandomNumbersCount + equalCount
+                : bitwiseRandomNumbersCount;
+    }
+
+    /**
+     * predicts the number of communication rounds
+     * 
+     * @param fieldSize
+     *            the candidate field size
+     * @param equalCount
+     *            the number of equal operations
+     * @param bitwiseRandomNumbersCount
+     *            the number of bitwise shared random numbers generated
+     * @return the number of rounds
+     */
+    public long getRounds(final long fieldSize, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        final int bits = FieldSizeCandidate.getBitsCount(fieldSize);
+        long rounds = 0;
+        if (getRandomNumbersCount(equalCount, bitwiseRandomNumbersCount) > 0) {
+            // bit generation, number composition and the bitwise comparison
+            // with p
+            rounds += bits + 4;
+        }
+        if (equalCount > 0) {
+            if (this.bitwiseEqual) {
+                rounds += 1 + (32 - Integer.numberOfLeadingZeros(bits - 1));
+            } else {
+                rounds += (long) FieldSizeCandidate
+                        .computeEqualEffort(fieldSize);
+            }
+        }
+        return rounds;
+    }
+
+    /**
+     * predicts the number of shares sent to each other privacy peer
+     * 
+     * @param fieldSize
+     *            the candidate field size
+     * @param equalCount
+     *            the number of equal operations
+     * @param bitwiseRandomNumbersCount
+     *            the number of bitwise shared random numbers generated
+     * @return the number of shares
+     */
+    public long getShares(final long fieldSize, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        long shares = 0;
+        final long randomNumbersCount = getRandomNumbersCount(equalCount,
+                bitwiseRandomNumbersCount);
+        if (randomNumbersCount > 0) {
+            shares += FieldSizeCandidate
+                    .computeBitwiseRandomNumberGenerationEffort(fieldSize,
+                            randomNumbersCount,
+                            RANDOM_NUMBER_SUCCESS_PROBABILITY);
+        }
+        if (this.bitwiseEqual) {
+            // one reconstruction and bits-1 multiplications in the OR tree
+            shares += equalCount * FieldSizeCandidate.getBitsCount(fieldSize);
+        } else {
+            shares += equalCount
+                    * (long) FieldSizeCandidate.computeEqualEffort(fieldSize);
+        }
+        return shares;
+    }
+
+    /**
+     * @return the ratio of the serialized share size in the given field to the
+     *         one in the reference field
+     */
+    private double getShareSizeScale(final long fieldSize) {
+        if (this.referenceFieldSize <= 0) {
+            return 1;
+        }
+        return (double) FieldSizeCandidate.getBitsCount(fieldSize)
+                / FieldSizeCandidate.getBitsCount(this.referenceFieldSize);
+    }
+
+    /**
+     * Selects the field size with the lowest predicted cost among the
+     * candidates of {@link FieldSizeCandidate#getPrimes()} that are larger
+     * than maxValue.
+     * 
+     * @param maxValue
+     *            the largest value that has to fit into the field
+     * @param equalCount
+     *            the number of equal operations
+     * @param bitwiseRandomNumbersCount
+     *            the number of bitwise shared random numbers generated
+     * @return the selected field size
+     */
+    public long selectFieldSize(final long maxValue, final long equalCount,
+            final long bitwiseRandomNumbersCount) {
+        final long[] primes = FieldSizeCandidate.getPrimes();
+        double minCost = Double.MAX_VALUE;
+        long best = DEFAULT_FIELD_SIZE;
+        for (int i = 0; i < primes.length; i++) {
+            if (primes[i] > maxValue) {
+                final double cost = getCost(primes[i], equalCount,
+                        bitwiseRandomNumbersCount);
+                if (cost < minCost) {
+                    minCost = cost;
+                    best = primes[i];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param bitwiseEqual
+     *            true if the equal operations are computed by the bitwise
+     *            equal operation (see {@link Primitives#setEqualMethod(String)})
+     */
+    public void setBitwiseEqual(final boolean bitwiseEqual) {
+        this.bitwiseEqual = bitwiseEqual;
+    }
+}
@@ -0,0 +1,413 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache for shares of intermediate predicates (e.g. [a&lt;p/2] in
+ * {@link ch.ethz.sepia.mpc.protocolPrimitives.operations.LessThan}).
+ * <p>
+ * Entries are identified by a scope and a numeric id. Scopes are obtained once
+ * by name via {@link #scope(String)} and group the entries of one protocol
+ * phase, s.t. they can be dropped together with {@link #clear(int)}. Ids have
+ * to be in [0, {@link #MAX_ID}].
+ * <p>
+ * The entries are stored in segments using open addressing over primitive
+ * arrays, so lookups neither allocate nor box. Each segment has its own lock.
+ * The total number of entries is bounded over all segments; once the bound is
+ * reached, further entries are not cached (see {@link #getRejectedCount()}).
+ */
+public class PredicateCache {
+
+    /** default maximum number of entries */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 18;
+
+    /** largest id that can be used as a key */
+    public static final long MAX_ID = (1L << 48) - 1;
+
+    /** value of an id indicating that there is no key */
+    public static final long NO_KEY = -1L;
+
+    /** initial number of slots of a segment */
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    /** number of segments (power of two) */
+    private static final int SEGMENTS_COUNT = 16;
+
+    /** position of the scope in a key; the lower bits hold the id */
+    private static final int SCOPE_SHIFT = 48;
+
+    /** the maximum number of entries */
+    private final int maxEntries;
+
+    /** the number of entries in all segments */
+    private final AtomicInteger entries = new AtomicInteger();
+
+    /** scope name -> scope number */
+    private final Map<String, Integer> scopes = new HashMap<String, Integer>();
+
+    private final Segment[] segments;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_MAX_ENTRIES} entries.
+     */
+    public PredicateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries
+     *            the maximum number of entries
+     */
+    public PredicateCache(final int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.segments = new Segment[SEGMENTS_COUNT];
+        for (int i = 0; i < SEGMENTS_COUNT; i++) {
+            this.segments[i] = new Segment(this.entries);
+        }
+    }
+
+    /**
+     * Mixes the bits of a key (finalizer of MurmurHash3).
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static long toKey(final int scope, final long id) {
+        if (scope <= 0 || scope > 0xFFFF) {
+            throw new IllegalArgumentException("invalid scope: " + scope);
+        }
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("invalid id: " + id);
+        }
+        return (long) scope << SCOPE_SHIFT | id;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            segment.clear(0);
+        }
+    }
+
+    /**
+     * Removes all entries of a scope.
+     *
+     * @param scope
+     *            the scope
+     */
+    public void clear(final int scope) {
+        for (final Segment segment : this.segments) {
+            segment.clear(scope);
+        }
+    }
+
+    /**
+     * Looks up a cached share.
+     *
+     * @param scope
+     *            the scope of the entry
+     * @param id
+     *            the id of the entry
+     * @param defaultValue
+     *            value returned if there is no entry
+     * @return the cached share or defaultValue
+     */
+    public long get(final int scope, final long id, final long defaultValue) {
+        final long key = toKey(scope, id);
+        final long h = hash(key);
+        return segmentFor(h).get(key, h, defaultValue);
+    }
+
+    /**
+     * @return the number of lookups that found an entry
+     */
+    public long getHitCount() {
+        long hits = 0;
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return the ratio of lookups that found an entry (0 if there were no
+     *         lookups)
+     */
+    public double getHitRate() {
+        final long hits = getHitCount();
+        final long lookups = hits + getMissCount();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the number of lookups that found no entry
+     */
+    public long getMissCount() {
+        long misses = 0;
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * @return the number of entries that were not cached because the cache was
+     *         full
+     */
+    public long getRejectedCount() {
+        long rejected = 0;
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                rejected += segment.rejected;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Checks whether a share is cached.
+     *
+     * @param scope
+     *            the scope of the entry
+     * @param id
+     *            the id of the entry
+     * @return true if there is an entry
+     */
+    public boolean contains(final int scope, final long id) {
+        final long key = toKey(scope, id);
+        final long h = hash(key);
+        return segmentFor(h).contains(key, h);
+    }
+
+    /**
+     * Caches a share. If the cache is full, the share is not cached.
+     *
+     * @param scope
+     *            the scope of the entry
+     * @param id
+     *            the id of the entry
+     * @param share
+     *            the share to cache
+     */
+    public void put(final int scope, final long id, final long share) {
+        final long key = toKey(scope, id);
+        final long h = hash(key);
+        segmentFor(h).put(key, h, share, this.maxEntries);
+    }
+
+    /**
+     * Resets the hit, miss and rejection counters.
+     */
+    public void resetStatistics() {
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.hits = 0;
+                segment.misses = 0;
+                segment.rejected = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of a scope. The same name always yields the same
+     * number for this cache.
+     *
+     * @param name
+     *            the name of the scope
+     * @return the scope number
+     */
+    public synchronized int scope(final String name) {
+        Integer scope = this.scopes.get(name);
+        if (scope == null) {
+            scope = this.scopes.size() + 1;
+            if (scope > 0xFFFF) {
+                throw new IllegalStateException("too many scopes");
+            }
+            this.scopes.put(name, scope);
+        }
+        return scope;
+    }
+
+    private Segment segmentFor(final long hash) {
+        return this.segments[(int) (hash >>> 60) & (SEGMENTS_COUNT - 1)];
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "PredicateCache(size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", rejected="
+                + getRejectedCount() + ")";
+    }
+
+    /**
+     * Open addressing hash table with linear probing. A key of 0 marks an
+     * empty slot (valid keys always have a scope &gt; 0). The load factor is
+     * kept at or below 1/2.
+     */
+    private static final class Segment {
+        /** the number of entries in all segments of the cache */
+        final AtomicInteger entries;
+        long hits;
+        long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        long misses;
+        long rejected;
+        int size;
+        long[] values = new long[INITIAL_SEGMENT_CAPACITY];
+
+        Segment(final AtomicInteger entries) {
+            this.entries = entries;
+        }
+
+        synchronized void clear(final int scope) {
+            final int oldSize = this.size;
+            if (scope == 0) {
+                this.keys = new long[INITIAL_SEGMENT_CAPACITY];
+                this.values = new long[INITIAL_SEGMENT_CAPACITY];
+                this.size = 0;
+                this.entries.addAndGet(-oldSize);
+                return;
+            }
+            // rehash the entries of the other scopes (no tombstones needed)
+            final long[] oldKeys = this.keys;
+            final long[] oldValues = this.values;
+            this.keys = new long[oldKeys.length];
+            this.values = new long[oldValues.length];
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0 && oldKeys[i] >>> SCOPE_SHIFT != scope) {
+                    insert(oldKeys[i], hash(oldKeys[i]), oldValues[i]);
+                }
+            }
+            this.entries.addAndGet(this.size - oldSize);
+        }
+
+        synchronized boolean contains(final long key, final long hash) {
+            return indexOf(key, hash) >= 0;
+        }
+
+        synchronized long get(final long key, final long hash,
+                final long defaultValue) {
+            final int i = indexOf(key, hash);
+            if (i < 0) {
+                this.misses++;
+                return defaultValue;
+            }
+            this.hits++;
+            return this.values[i];
+        }
+
+        private int indexOf(final long key, final long hash) {
+            final int mask = this.keys.length - 1;
+            int i = (int) hash & mask;
+            long k;
+            while ((k = this.keys[i]) != 0) {
+                if (k == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(final long key, final long hash, final long value) {
+            final int mask = this.keys.length - 1;
+            int i = (int) hash & mask;
+            while (this.keys[i] != 0 && this.keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (this.keys[i] == 0) {
+                this.keys[i] = key;
+                this.size++;
+            }
+            this.values[i] = value;
+        }
+
+        synchronized void put(final long key, final long hash,
+                final long value, final int maxEntries) {
+            final int i = indexOf(key, hash);
+            if (i >= 0) {
+                this.values[i] = value;
+                return;
+            }
+            if (!reserve(maxEntries)) {
+                this.rejected++;
+                return;
+            }
+            if (2 * (this.size + 1) > this.keys.length) {
+                resize(this.keys.length * 2);
+            }
+            insert(key, hash, value);
+        }
+
+        /**
+         * Counts a new entry unless the cache already holds maxEntries entries.
+         */
+        private boolean reserve(final int maxEntries) {
+            int n;
+            do {
+                n = this.entries.get();
+                if (n >= maxEntries) {
+                    return false;
+                }
+            } while (!this.entries.compareAndSet(n, n + 1));
+            return true;
+        }
+
+        private void resize(final int capacity) {
+            final long[] oldKeys = this.keys;
+            final long[] oldValues = this.values;
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(oldKeys[i], hash(oldKeys[i]), oldValues[i]);
+                }
+            }
+        }
+    }
+}
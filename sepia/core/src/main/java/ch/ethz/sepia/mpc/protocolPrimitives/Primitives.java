@@ -16,22 +16,27 @@
 package ch.ethz.sepia.mpc.protocolPrimitives;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Random;
 import java.util.Stack;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
 import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArgExtremum;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayEqual;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayLessThan;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayMultiplication;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayPower;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayProduct;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.ArrayReconstruction;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.BatchGenerateBitwiseRandomNumbers;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.BitwiseEqual;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.BitwiseLessThan;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.BloomFilterCardinality;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.BloomFilterIntersection;
@@ -43,6 +48,7 @@ import ch.ethz.sepia.mpc.protocolPrimitives.operations.GenerateBitwiseRandomNumb
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.GenerateRandomBit;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.GenerateRandomNumber;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.IOperation;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.InnerProduct;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.LeastSignificantBit;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.LessThan;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.LinearPrefixOr;
@@ -135,10 +141,29 @@ import ch.ethz.sepia.mpc.protocolPrimitives.operations.Synchronization;
  */
 public class Primitives {
 
+    /** name of the bitwise equal method (see {@link #setEqualMethod(String)}) */
+    public static final String EQUAL_METHOD_BITWISE = "bitwise";
+
+    /** name of the Fermat equal method (see {@link #setEqualMethod(String)}) */
+    public static final String EQUAL_METHOD_FERMAT = "fermat";
+
     /** Logger to write log messages to */
     private static final XLogger logger = new XLogger(
             LoggerFactory.getLogger(Primitives.class));
 
+    /**
+     * number of chunks per worker thread a step is split into in work stealing
+     * mode. More chunks balance uneven operation costs better at the price of
+     * more tasks.
+     */
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    /**
+     * pool executing the steps in work stealing mode, shared by all instances
+     * and sized to the number of available processors
+     */
+    private static ForkJoinPool stepPool = null;
+
     /** Barrier instance to synchronize threads */
     private CyclicBarrier barrier = null;
 
@@ -168,14 +193,19 @@ public class Primitives {
     private ArrayList<IOperation> operations = null;
     /** stores the IDs of the running operations */
     private ArrayList<Integer> operationsIDs = null;
-    /** stores the queued operations */
-    private ArrayList<IOperation> operationsQueue = null;
+    /**
+     * stores the queued operations, indexed by id - parallelOperationsCount.
+     * Slots are cleared when the operation is started.
+     */
+    private IOperation[] operationsQueue = null;
+    /** the number of operations that were queued */
+    private int queuedOperationsCount = 0;
     /** stores the results of the operations */
     private long[][] operationsResults = null;
     /** the number of operations that shall be run in parallel */
     private int parallelOperationsCount = 0;
     /** used for caching intermediate results of operations */
-    private final Hashtable<Object, Long> predicateCache;
+    private final PredicateCache predicateCache;
 
     /** the number of protocol threads that execute the MPC computations */
     private int protocolThreadsCount = 0;
@@ -193,6 +223,26 @@ public class Primitives {
      */
     private int totalOperationsCount = 0;
 
+    /**
+     * if true, the steps of a round are executed in chunks on a shared
+     * {@link ForkJoinPool} instead of being partitioned over the protocol
+     * threads
+     */
+    private boolean workStealing = false;
+
+    /**
+     * if true, {@link #equal(int, long[])} uses {@link BitwiseEqual} instead of
+     * {@link Equal}
+     */
+    private boolean bitwiseEqual = false;
+
+    /**
+     * the number of equal operations and bitwise shared random numbers
+     * requested since the last {@link #resetOperationCounts()}; used to
+     * predict the cost of the protocol (see {@link FieldSizeCostModel})
+     */
+    private long equalCount = 0, bitwiseRandomNumbersCount = 0;
+
     /**
      * creates a new MpcShamirSharingProtocolPrimitives instance
      * 
@@ -233,7 +283,70 @@ public class Primitives {
         this.random = new Random();
 
         this.stateVariables = new Stack<Object>();
-        this.predicateCache = new Hashtable<Object, Long>();
+        this.predicateCache = new PredicateCache();
+    }
+
+    /**
+     * computes the maximum of secrets together with its payload
+     * <p>
+     * The final result is {maximum, payload of the maximum}. The values are
+     * compared in a tournament of ceil(log2(n)) levels where the selection of
+     * the winners is merged into the multiplication rounds of the comparisons
+     * (see {@link ArgExtremum}). On ties, the value with the lower index wins.
+     * 
+     * @param id
+     *            id of the operation
+     * @param values
+     *            the shares of the values
+     * @param payloads
+     *            the shares of the payloads (e.g. keys) belonging to the
+     *            values or null to get the index of the maximum
+     * @param knowledge
+     *            1 if all values are &lt;= fieldSize/2, 0 if all values are
+     *            &gt; fieldSize/2, -1 if neither is known
+     * @return true if the operation was created successfully
+     */
+    public boolean argMax(final int id, final long[] values,
+            final long[] payloads, final long knowledge) {
+        return addArgExtremum(id, values, payloads, knowledge, false);
+    }
+
+    /**
+     * computes the minimum of secrets together with its payload
+     * <p>
+     * Same as {@link #argMax(int, long[], long[], long)}, but for the minimum.
+     * 
+     * @param id
+     *            id of the operation
+     * @param values
+     *            the shares of the values
+     * @param payloads
+     *            the shares of the payloads (e.g. keys) belonging to the
+     *            values or null to get the index of the minimum
+     * @param knowledge
+     *            1 if all values are &lt;= fieldSize/2, 0 if all values are
+     *            &gt; fieldSize/2, -1 if neither is known
+     * @return true if the operation was created successfully
+     */
+    public boolean argMin(final int id, final long[] values,
+            final long[] payloads, final long knowledge) {
+        return addArgExtremum(id, values, payloads, knowledge, true);
+    }
+
+    private boolean addArgExtremum(final int id, final long[] values,
+            final long[] payloads, final long knowledge, final boolean minimum) {
+        if (values.length < 1) {
+            logger.warn("creation of argMax/argMin operation needs at least 1 operand!");
+            return false;
+        }
+        if (payloads != null && payloads.length != values.length) {
+            logger.warn("creation of argMax/argMin operation needs one payload per value!");
+            return false;
+        }
+
+        addOperation(id, new ArgExtremum(values, payloads, knowledge, minimum));
+
+        return true;
     }
 
     /**
@@ -245,6 +358,28 @@ public class Primitives {
         return this.completedOperationsCount >= this.totalOperationsCount;
     }
 
+    /**
+     * Adds an operation to the current operation set. Operations with an id
+     * below parallelOperationsCount are started right away, the others are
+     * put into their slot of the queue (in constant time, independent of the
+     * order in which they are added) and started as soon as the operation
+     * with id - parallelOperationsCount has completed.
+     * 
+     * @param id
+     *            id of the operation
+     * @param operation
+     *            the operation
+     */
+    private void addOperation(final int id, final IOperation operation) {
+        if (id < this.parallelOperationsCount) {
+            this.operations.add(operation);
+            this.operationsIDs.add(id);
+        } else {
+            this.operationsQueue[id - this.parallelOperationsCount] = operation;
+            this.queuedOperationsCount++;
+        }
+    }
+
     public boolean arrayEqual(final int id, final long[] data1,
             final long[] data2) {
         if (data1.length != data2.length) {
@@ -252,14 +387,46 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new ArrayEqual(data1, data2));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new ArrayEqual(data1, data2));
+        addOperation(id, new ArrayEqual(data1, data2));
+
+        return true;
+    }
+
+    /**
+     * compares two arrays of secrets position wise
+     * <p>
+     * The final result is an array holding a share of one at position i if
+     * a[i] &lt; b[i] and a share of zero otherwise. Compared to running one
+     * {@link #lessThan(int, long[])} per position, the bitwise shared random
+     * numbers are generated in one batch and the multiplications of all
+     * positions are done in one {@link ArrayMultiplication} per round.
+     * 
+     * @param id
+     *            id of the operation
+     * @param a
+     *            the shares of the first operands
+     * @param b
+     *            the shares of the second operands
+     * @param knowledge
+     *            the known values of [a&lt;p/2], [b&lt;p/2] and [a-b&lt;p/2] (-1
+     *            if unknown), either 3 values for all positions or 3 values
+     *            per position
+     * @return true if the operation was created successfully
+     */
+    public boolean arrayLessThan(final int id, final long[] a,
+            final long[] b, final long[] knowledge) {
+        if (a.length != b.length) {
+            logger.warn("creation of arrayLessThan operation needs arrays of equal length !");
+            return false;
+        }
+        if (knowledge.length != 3 && knowledge.length != 3 * a.length) {
+            logger.warn("creation of arrayLessThan operation needs 3 or "
+                    + (3 * a.length) + " knowledge values!");
+            return false;
         }
 
+        addOperation(id, new ArrayLessThan(a, b, knowledge));
+
         return true;
     }
 
@@ -283,13 +450,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new ArrayMultiplication(factor1, factor2));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new ArrayMultiplication(factor1, factor2));
-        }
+        addOperation(id, new ArrayMultiplication(factor1, factor2));
 
         return true;
     }
@@ -301,13 +462,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new ArrayPower(data, exponent));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new ArrayPower(data, exponent));
-        }
+        addOperation(id, new ArrayPower(data, exponent));
 
         return true;
     }
@@ -359,13 +514,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new ArrayProduct(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new ArrayProduct(data));
-        }
+        addOperation(id, new ArrayProduct(data));
 
         return true;
     }
@@ -408,12 +557,9 @@ public class Primitives {
 
         // create and store batch generate bitwise (shared) random numbers
         // operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BatchGenerateBitwiseRandomNumbers(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BatchGenerateBitwiseRandomNumbers(data));
+        addOperation(id, new BatchGenerateBitwiseRandomNumbers(data));
+        if (data != null) {
+            this.bitwiseRandomNumbersCount += data[0];
         }
 
         return true;
@@ -437,13 +583,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BloomFilterCardinality(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BloomFilterCardinality(data));
-        }
+        addOperation(id, new BloomFilterCardinality(data));
         return true;
     }
 
@@ -468,13 +608,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BloomFilterIntersection(data, isCounting));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BloomFilterIntersection(data, isCounting));
-        }
+        addOperation(id, new BloomFilterIntersection(data, isCounting));
         return true;
     }
 
@@ -499,14 +633,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BloomFilterThresholdUnion(data, T,
-                    learnCount));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BloomFilterThresholdUnion(data, T, learnCount));
-        }
+        addOperation(id, new BloomFilterThresholdUnion(data, T, learnCount));
         return true;
     }
 
@@ -530,13 +657,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BloomFilterUnion(data, isCounting));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BloomFilterIntersection(data, isCounting));
-        }
+        addOperation(id, new BloomFilterUnion(data, isCounting));
         return true;
     }
 
@@ -569,15 +690,8 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BloomFilterWeightedIntersection(Keys,
-                    Weights, Tk, Tw, learnWeight));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BloomFilterWeightedIntersection(Keys, Weights, Tk, Tw,
-                            learnWeight));
-        }
+        addOperation(id, new BloomFilterWeightedIntersection(Keys, Weights, Tk,
+                Tw, learnWeight));
         return true;
     }
 
@@ -625,13 +739,7 @@ public class Primitives {
         }
 
         // create and store bitwise less-than operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new BitwiseLessThan(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new BitwiseLessThan(data));
-        }
+        addOperation(id, new BitwiseLessThan(data));
 
         return true;
     }
@@ -669,7 +777,9 @@ public class Primitives {
      * <p>
      * Note: This operation only works if the fieldSize is a prime! Use
      * {@link #setOptimalFieldSizeForEqual(long)} to set the optimal field size,
-     * s.t. this operation runs as fast as possible.
+     * s.t. this operation runs as fast as possible. Depending on
+     * {@link #setEqualMethod(String)} the operation is computed by
+     * {@link Equal} or by {@link BitwiseEqual}.
      * 
      * @param id
      *            id of the operation
@@ -685,13 +795,12 @@ public class Primitives {
         }
 
         // create and store equal operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Equal(data));
-            this.operationsIDs.add(id);
+        if (this.bitwiseEqual) {
+            addOperation(id, new BitwiseEqual(data));
         } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Equal(data));
+            addOperation(id, new Equal(data));
         }
+        this.equalCount++;
 
         return true;
     }
@@ -730,13 +839,8 @@ public class Primitives {
         }
 
         // create and store bitwise (shared) random number generation operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new GenerateBitwiseRandomNumber(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new GenerateBitwiseRandomNumber(data));
-        }
+        addOperation(id, new GenerateBitwiseRandomNumber(data));
+        this.bitwiseRandomNumbersCount++;
 
         return true;
     }
@@ -764,13 +868,7 @@ public class Primitives {
         }
 
         // create and store random bit generation operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new GenerateRandomBit(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new GenerateRandomBit(data));
-        }
+        addOperation(id, new GenerateRandomBit(data));
 
         return true;
     }
@@ -792,13 +890,7 @@ public class Primitives {
         }
 
         // create and store random number generation operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new GenerateRandomNumber(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new GenerateRandomNumber(data));
-        }
+        addOperation(id, new GenerateRandomNumber(data));
 
         return true;
     }
@@ -844,6 +936,14 @@ public class Primitives {
         return this.bitsCount;
     }
 
+    /**
+     * @return the number of bitwise shared random numbers requested since the
+     *         last {@link #resetOperationCounts()}
+     */
+    public long getBitwiseRandomNumbersCount() {
+        return this.bitwiseRandomNumbersCount;
+    }
+
     /**
      * returns the data to send of the running operations for the specified
      * privacy peer
@@ -880,6 +980,14 @@ public class Primitives {
         return dataToSend;
     }
 
+    /**
+     * @return the number of equal operations created since the last
+     *         {@link #resetOperationCounts()}
+     */
+    public long getEqualCount() {
+        return this.equalCount;
+    }
+
     /**
      * @return the fieldSize
      */
@@ -972,7 +1080,7 @@ public class Primitives {
      * 
      * @return the predicateCache
      */
-    public Hashtable<Object, Long> getPredicateCache() {
+    public PredicateCache getPredicateCache() {
         return this.predicateCache;
     }
 
@@ -1010,6 +1118,7 @@ public class Primitives {
         this.operationsIDs = new ArrayList<Integer>(
                 this.parallelOperationsCount);
         this.operationsQueue = null;
+        this.queuedOperationsCount = 0;
         this.operationsResults = new long[this.totalOperationsCount][];
         this.completedOperationsCount = 0;
 
@@ -1047,8 +1156,9 @@ public class Primitives {
         this.totalOperationsCount = totalOperationsCount;
         this.operations = new ArrayList<IOperation>(parallelOperationsCount);
         this.operationsIDs = new ArrayList<Integer>(parallelOperationsCount);
-        this.operationsQueue = new ArrayList<IOperation>(totalOperationsCount
-                - parallelOperationsCount);
+        this.operationsQueue = new IOperation[totalOperationsCount
+                - parallelOperationsCount];
+        this.queuedOperationsCount = 0;
         this.operationsResults = new long[totalOperationsCount][];
         this.completedOperationsCount = 0;
 
@@ -1061,6 +1171,43 @@ public class Primitives {
         // operationLogs = new ArrayList<String>(parallelOperationsCount);
     }
 
+    /**
+     * Creates an inner product (sum of products) operation. The element-wise
+     * products are computed and summed up locally and the sum is reshared only
+     * once, so the operation costs a single multiplication round no matter how
+     * long the vectors are.
+     * <p>
+     * result: share of sum_i(factor1[i]*factor2[i])
+     * 
+     * @param id
+     *            the operation id
+     * @param factor1
+     *            shares of the first vector
+     * @param factor2
+     *            shares of the second vector (same length as factor1)
+     * @return true if the operation was created successfully
+     */
+    public boolean innerProduct(final int id, final long[] factor1,
+            final long[] factor2) {
+        // check input arguments
+        if (factor1.length == 0 || factor1.length != factor2.length) {
+            logger.warn("creation of inner product operation failed: vectors are empty or have different lengths!");
+            return false;
+        }
+
+        // create and store inner product operation
+        addOperation(id, new InnerProduct(factor1, factor2));
+
+        return true;
+    }
+
+    /**
+     * @return true if {@link #equal(int, long[])} uses {@link BitwiseEqual}
+     */
+    public boolean isBitwiseEqual() {
+        return this.bitwiseEqual;
+    }
+
     /**
      * computes the least significant bit of a shared number
      * <p>
@@ -1088,13 +1235,7 @@ public class Primitives {
         }
 
         // create and store least significant bit operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new LeastSignificantBit(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new LeastSignificantBit(data));
-        }
+        addOperation(id, new LeastSignificantBit(data));
 
         return true;
     }
@@ -1146,13 +1287,7 @@ public class Primitives {
         }
 
         // create and store less-than operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new LessThan(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new LessThan(data));
-        }
+        addOperation(id, new LessThan(data));
 
         return true;
     }
@@ -1160,7 +1295,7 @@ public class Primitives {
     /**
      * The same as {@link #lessThan(int, long[])}, but this variant enables
      * predicate caching. See
-     * {@link LessThan#setPredicateKeys(Object, Object, Object)}.
+     * {@link LessThan#setPredicateKeys(int, long, long, long)}.
      * 
      * @param id
      *            id of the operation
@@ -1168,17 +1303,23 @@ public class Primitives {
      *            a, b and three values indicating the knowledge about a, b, a-b
      *            and optionally the bit shares of the random numbers that shall
      *            be used
+     * @param predicateScope
+     *            the scope of the keys in the predicate cache (see
+     *            {@link PredicateCache#scope(String)})
      * @param predicateKeyA
-     *            Uniquely identifies secret [A].
+     *            Uniquely identifies secret [A] or
+     *            {@link PredicateCache#NO_KEY}.
      * @param predicateKeyB
-     *            Uniquely identifies secret [B].
+     *            Uniquely identifies secret [B] or
+     *            {@link PredicateCache#NO_KEY}.
      * @param predicateKeyAB
-     *            Uniquely identifies secret [A-B].
+     *            Uniquely identifies secret [A-B] or
+     *            {@link PredicateCache#NO_KEY}.
      * @return true if the operation was created successfully
      */
     public boolean lessThan(final int id, final long[] data,
-            final Object predicateKeyA, final Object predicateKeyB,
-            final Object predicateKeyAB) {
+            final int predicateScope, final long predicateKeyA,
+            final long predicateKeyB, final long predicateKeyAB) {
         // check number of input arguments
         if (data.length != 5 && data.length != 5 + this.bitsCount
                 && data.length != 5 + 2 * this.bitsCount
@@ -1191,13 +1332,9 @@ public class Primitives {
 
         // create and store less-than operation
         final LessThan lt = new LessThan(data);
-        lt.setPredicateKeys(predicateKeyA, predicateKeyB, predicateKeyAB);
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(lt);
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount, lt);
-        }
+        lt.setPredicateKeys(predicateScope, predicateKeyA, predicateKeyB,
+                predicateKeyAB);
+        addOperation(id, lt);
 
         return true;
     }
@@ -1226,13 +1363,7 @@ public class Primitives {
         }
 
         // create and store linear prefix-or operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new LinearPrefixOr(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new LinearPrefixOr(data));
-        }
+        addOperation(id, new LinearPrefixOr(data));
 
         return true;
     }
@@ -1324,13 +1455,7 @@ public class Primitives {
             return false;
         }
 
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Min(data, knowledge));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Min(data, knowledge, fewRounds));
-        }
+        addOperation(id, new Min(data, knowledge, fewRounds));
 
         return true;
     }
@@ -1352,13 +1477,7 @@ public class Primitives {
         }
 
         // create and store multiplication operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Multiplication(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Multiplication(data));
-        }
+        addOperation(id, new Multiplication(data));
 
         return true;
     }
@@ -1374,9 +1493,9 @@ public class Primitives {
             this.totalOperationsCount = (Integer) this.stateVariables.pop();
             this.parallelOperationsCount = (Integer) this.stateVariables.pop();
             this.operationsResults = (long[][]) this.stateVariables.pop();
-            /* These three cause "unchecked cast" warnings. */
-            this.operationsQueue = (ArrayList<IOperation>) this.stateVariables
-                    .pop();
+            this.queuedOperationsCount = (Integer) this.stateVariables.pop();
+            this.operationsQueue = (IOperation[]) this.stateVariables.pop();
+            /* These two cause "unchecked cast" warnings. */
             this.operationsIDs = (ArrayList<Integer>) this.stateVariables.pop();
             this.operations = (ArrayList<IOperation>) this.stateVariables.pop();
         }
@@ -1407,13 +1526,7 @@ public class Primitives {
         }
 
         // create and store power operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Power(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Power(data));
-        }
+        addOperation(id, new Power(data));
 
         return true;
     }
@@ -1430,14 +1543,13 @@ public class Primitives {
     public void processReceivedData() throws InterruptedException,
             BrokenBarrierException, PrimitivesException {
         if (!areOperationsCompleted()) {
-            IOperation state = null;
             final int arrivalNumber = this.barrier.await() + 1;
             if (this.operationsQueue != null) {
-                if (this.operations.size() + this.operationsQueue.size() < this.totalOperationsCount) {
+                if (this.operations.size() + this.queuedOperationsCount < this.totalOperationsCount) {
                     logger.warn("Not all operations of operation set submitted yet! (Running operations: "
                             + this.operations.size()
                             + "; queued: "
-                            + this.operationsQueue.size()
+                            + this.queuedOperationsCount
                             + "; expected total: "
                             + this.totalOperationsCount
                             + ")");
@@ -1451,58 +1563,32 @@ public class Primitives {
                 }
             }
 
-            // divide operations to process over the number of protocol threads
-            final int partitionSize = this.operations.size()
-                    / this.protocolThreadsCount;
-            int partitionStart = this.operations.size()
-                    - (this.protocolThreadsCount - arrivalNumber + 1)
-                    * partitionSize;
-            if (arrivalNumber == 1) {
-                logger.info("processing can begin now: (all data sent and received)");
-                partitionStart = 0;
-            }
-            final int partitionEnd = this.operations.size()
-                    - (this.protocolThreadsCount - arrivalNumber)
-                    * partitionSize;
-
-            // process the data for all the (non-completed) operations (if not
-            // done yet)
-            int nextOperationID;
             int myCompletedOperationsCount = 0;
-            for (int i = partitionStart; i < partitionEnd; i++) {
-                state = this.operations.get(i);
-                if (state != null) {
-                    /**
-                     * uncomment the following line if the logging functions are
-                     * used
-                     */
-                    // currentOperationID = ids[i];
-                    state.doStep(this);
-                    if (state.isOperationCompleted()) {
-                        // store result and get next operation from queue (if
-                        // any)
-                        this.operationsResults[this.operationsIDs.get(i)] = state
-                                .getFinalResult();
-                        myCompletedOperationsCount++;
-                        nextOperationID = this.operationsIDs.get(i)
-                                + this.parallelOperationsCount;
-                        // check if the next assigned operation id is valid...
-                        if (nextOperationID < this.totalOperationsCount) {
-                            // ... if so, dequeue, create and execute first step
-                            // of next operation
-                            state = this.operationsQueue.get(nextOperationID
-                                    - this.parallelOperationsCount);
-                            this.operationsQueue.set(nextOperationID
-                                    - this.parallelOperationsCount, null);
-                            state.doStep(this);
-                            this.operationsIDs.set(i, nextOperationID);
-                            this.operations.set(i, state);
-                        } else {
-                            this.operationsIDs.set(i, -1);
-                            this.operations.set(i, null);
-                        }
-                    }
+            if (this.workStealing) {
+                // the first thread runs all the steps on the pool, the others
+                // just wait for it at the barrier
+                if (arrivalNumber == 1) {
+                    logger.info("processing can begin now: (all data sent and received)");
+                    myCompletedOperationsCount = processOperationsInPool();
                 }
+            } else {
+                // divide operations to process over the number of protocol
+                // threads
+                final int partitionSize = this.operations.size()
+                        / this.protocolThreadsCount;
+                int partitionStart = this.operations.size()
+                        - (this.protocolThreadsCount - arrivalNumber + 1)
+                        * partitionSize;
+                if (arrivalNumber == 1) {
+                    logger.info("processing can begin now: (all data sent and received)");
+                    partitionStart = 0;
+                }
+                final int partitionEnd = this.operations.size()
+                        - (this.protocolThreadsCount - arrivalNumber)
+                        * partitionSize;
+
+                myCompletedOperationsCount = processOperations(partitionStart,
+                        partitionEnd);
             }
             synchronized (this) {
                 this.completedOperationsCount += myCompletedOperationsCount;
@@ -1513,6 +1599,84 @@ public class Primitives {
         }
     }
 
+    /**
+     * executes the current step of the running operations in the range
+     * [start, end) and starts the queued successors of the operations that
+     * completed.
+     * 
+     * @param start
+     *            index of the first operation slot to process
+     * @param end
+     *            index after the last operation slot to process
+     * @return the number of operations that completed
+     * @throws PrimitivesException
+     */
+    private int processOperations(final int start, final int end)
+            throws PrimitivesException {
+        // process the data for all the (non-completed) operations (if not
+        // done yet)
+        IOperation state = null;
+        int nextOperationID;
+        int myCompletedOperationsCount = 0;
+        for (int i = start; i < end; i++) {
+            state = this.operations.get(i);
+            if (state != null) {
+                /**
+                 * uncomment the following line if the logging functions are
+                 * used
+                 */
+                // currentOperationID = ids[i];
+                state.doStep(this);
+                if (state.isOperationCompleted()) {
+                    // store result and get next operation from queue (if
+                    // any)
+                    this.operationsResults[this.operationsIDs.get(i)] = state
+                            .getFinalResult();
+                    myCompletedOperationsCount++;
+                    nextOperationID = this.operationsIDs.get(i)
+                            + this.parallelOperationsCount;
+                    // check if the next assigned operation id is valid...
+                    if (nextOperationID < this.totalOperationsCount) {
+                        // ... if so, dequeue, create and execute first step
+                        // of next operation
+                        state = this.operationsQueue[nextOperationID
+                                - this.parallelOperationsCount];
+                        this.operationsQueue[nextOperationID
+                                - this.parallelOperationsCount] = null;
+                        state.doStep(this);
+                        this.operationsIDs.set(i, nextOperationID);
+                        this.operations.set(i, state);
+                    } else {
+                        this.operationsIDs.set(i, -1);
+                        this.operations.set(i, null);
+                    }
+                }
+            }
+        }
+        return myCompletedOperationsCount;
+    }
+
+    /**
+     * executes the current step of all running operations on the shared
+     * {@link ForkJoinPool}. The operation slots are split into chunks which
+     * idle workers can steal, so the parallelism is given by the number of
+     * processors and not by the number of privacy peers.
+     * 
+     * @return the number of operations that completed
+     * @throws PrimitivesException
+     */
+    private int processOperationsInPool() throws PrimitivesException {
+        final ForkJoinPool pool = getStepPool();
+        final int chunkSize = Math.max(1, this.operations.size()
+                / (pool.getParallelism() * CHUNKS_PER_WORKER));
+        try {
+            return pool.invoke(new StepTask(0, this.operations.size(),
+                    chunkSize));
+        } catch (StepException e) {
+            throw (PrimitivesException) e.getCause();
+        }
+    }
+
     /**
      * computes the product of several factors
      * <p>
@@ -1538,13 +1702,7 @@ public class Primitives {
         }
 
         // create and store product operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Product(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Product(data));
-        }
+        addOperation(id, new Product(data));
 
         return true;
     }
@@ -1556,12 +1714,35 @@ public class Primitives {
         this.stateVariables.push(this.operations);
         this.stateVariables.push(this.operationsIDs);
         this.stateVariables.push(this.operationsQueue);
+        this.stateVariables.push(this.queuedOperationsCount);
         this.stateVariables.push(this.operationsResults);
         this.stateVariables.push(this.parallelOperationsCount);
         this.stateVariables.push(this.totalOperationsCount);
         this.stateVariables.push(this.completedOperationsCount);
     }
 
+    /**
+     * reconstructs an array of shared secrets in one round. Cheaper than one
+     * {@link #reconstruct(int, long[])} operation per element for large
+     * arrays.
+     * 
+     * @param id
+     *            id of the operation
+     * @param data
+     *            array containing the shares to reconstruct
+     * @return true if function arguments are valid
+     */
+    public boolean arrayReconstruct(final int id, final long[] data) {
+        if (data.length == 0) {
+            logger.warn("creation of arrayReconstruct operation failed: no shares to reconstruct!");
+            return false;
+        }
+
+        addOperation(id, new ArrayReconstruction(data));
+
+        return true;
+    }
+
     /**
      * reconstructs a shared secret.
      * 
@@ -1579,17 +1760,21 @@ public class Primitives {
         }
 
         // create and store reconstruction operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Reconstruction(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Reconstruction(data));
-        }
+        addOperation(id, new Reconstruction(data));
 
         return true;
     }
 
+    /**
+     * Resets the counts of the equal operations and of the bitwise shared
+     * random numbers (see {@link #getEqualCount()} and
+     * {@link #getBitwiseRandomNumbersCount()}).
+     */
+    public void resetOperationCounts() {
+        this.equalCount = 0;
+        this.bitwiseRandomNumbersCount = 0;
+    }
+
     /**
      * sets the description of the specified operation
      * 
@@ -1624,31 +1809,15 @@ public class Primitives {
      */
     public long setOptimalFieldSize(final long maxValue, final long equalCount,
             final long bitwiseRandomNumbersCount) throws Exception {
-        // look in array for smallest prime which is larger than the input value
-        final long[] primes = FieldSizeCandidate.getPrimes();
-        float minEffort = Float.MAX_VALUE;
-        int best = -1;
-        float effort = Float.MAX_VALUE;
-        for (int i = 0; i < primes.length; i++) {
-            if (primes[i] > maxValue) {
-                effort = FieldSizeCandidate.computeEqualEffort(primes[i])
-                        * equalCount
-                        + FieldSizeCandidate
-                                .computeBitwiseRandomNumberGenerationEffort(i,
-                                        bitwiseRandomNumbersCount, 0.9F);
-                if (effort < minEffort) {
-                    minEffort = effort;
-                    best = i;
-                }
-            }
-        }
-
-        if (best < 0) {
-            // default prime: biggest prime smaller than MAX_LONG
-            this.fieldSize = 9223372036854775783L;
-        } else {
-            this.fieldSize = primes[best];
-        }
+        // ranks the candidates by their effort, i.e. by the number of shares
+        final FieldSizeCostModel costModel = new FieldSizeCostModel(0, 1,
+                FieldSizeCostModel.DEFAULT_BYTES_PER_SHARE, 0);
+        costModel.setBitwiseEqual(this.bitwiseEqual);
+        this.fieldSize = costModel.selectFieldSize(maxValue, equalCount,
+                bitwiseRandomNumbersCount);
+        logger.info("Selected "
+                + costModel.describe(this.fieldSize, equalCount,
+                        bitwiseRandomNumbersCount));
 
         this.bitsCount = Long.toBinaryString(this.fieldSize).length();
         this.mpcShamirSharing.setFieldSize(this.fieldSize);
@@ -1673,6 +1842,46 @@ public class Primitives {
         this.mpcShamirSharing.init();
     }
 
+    /**
+     * Enables or disables the work stealing mode. In this mode the steps of a
+     * round are not partitioned over the protocol threads but split into
+     * chunks that are executed on a {@link ForkJoinPool} with one worker per
+     * available processor. This helps if there are only few privacy peers
+     * or if the running operations have very different costs.
+     * 
+     * @param workStealing
+     *            true to enable the work stealing mode
+     */
+    public void setWorkStealing(final boolean workStealing) {
+        this.workStealing = workStealing;
+    }
+
+    /**
+     * Selects the implementation of {@link #equal(int, long[])}:
+     * <ul>
+     * <li>{@link #EQUAL_METHOD_FERMAT}: computes 1-(a-b)^(p-1) (see
+     * {@link Equal}); the number of rounds depends on the bits of p-1</li>
+     * <li>{@link #EQUAL_METHOD_BITWISE}: compares a-b to a bitwise shared
+     * random number (see {@link BitwiseEqual}); takes 1+ceil(log2(bitsCount))
+     * rounds once the random numbers are generated</li>
+     * </ul>
+     * 
+     * @param equalMethod
+     *            the name of the method
+     * @throws IllegalArgumentException
+     *             if the method is unknown
+     */
+    public void setEqualMethod(final String equalMethod) {
+        if (EQUAL_METHOD_FERMAT.equalsIgnoreCase(equalMethod)) {
+            this.bitwiseEqual = false;
+        } else if (EQUAL_METHOD_BITWISE.equalsIgnoreCase(equalMethod)) {
+            this.bitwiseEqual = true;
+        } else {
+            throw new IllegalArgumentException("unknown equal method: "
+                    + equalMethod);
+        }
+    }
+
     /**
      * sets the data received from the privacy peer for the running operations
      * 
@@ -1702,6 +1911,33 @@ public class Primitives {
         }
     }
 
+    /**
+     * sets the data of a message received from the privacy peer for the
+     * running operations; unpacks the data if it was packed by the sender
+     * (see {@link PrimitivesMessage#packOperationsData(int)})
+     * 
+     * @param privacyPeerIndex
+     *            the index of the peer for which to set the data
+     * @param message
+     *            the received message
+     */
+    public void setReceivedData(final int privacyPeerIndex,
+            final PrimitivesMessage message) {
+        long[] data = message.getOperationsData();
+        if (data == null && message.getPackedOperationsData() != null) {
+            if (message.getPackedBitsCount() != this.bitsCount) {
+                logger.warn("received shares packed with "
+                        + message.getPackedBitsCount()
+                        + " bits in a field with " + this.bitsCount + " bits");
+            }
+            data = PrimitivesMessage.unpackShares(
+                    message.getPackedOperationsData(),
+                    message.getPackedBitsCount(),
+                    message.getPackedSharesCount());
+        }
+        setReceivedData(privacyPeerIndex, data);
+    }
+
     /**
      * tests if a Shamir share (x) is in the specified publicly known interval:
      * x \in [l,u]
@@ -1735,13 +1971,7 @@ public class Primitives {
         }
 
         // create and store small interval test operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new SmallIntervalTest(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new SmallIntervalTest(data));
-        }
+        addOperation(id, new SmallIntervalTest(data));
 
         return true;
     }
@@ -1757,15 +1987,68 @@ public class Primitives {
      */
     public boolean synchronize(final int id, final long[] data) {
         // create and store multiplication operation
-        if (this.operations.size() < this.parallelOperationsCount) {
-            this.operations.add(new Synchronization(data));
-            this.operationsIDs.add(id);
-        } else {
-            this.operationsQueue.add(id - this.parallelOperationsCount,
-                    new Synchronization(data));
-        }
+        addOperation(id, new Synchronization(data));
 
         return true;
     }
 
+    /**
+     * @return the pool used in work stealing mode
+     */
+    private static synchronized ForkJoinPool getStepPool() {
+        if (stepPool == null) {
+            stepPool = new ForkJoinPool(Runtime.getRuntime()
+                    .availableProcessors());
+        }
+        return stepPool;
+    }
+
+    /**
+     * Wraps a {@link PrimitivesException} thrown by an operation executed on
+     * the pool.
+     */
+    private static class StepException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StepException(final PrimitivesException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Executes the current step of the operations in a range of slots,
+     * splitting the range in halves until it is no larger than the chunk
+     * size.
+     */
+    private class StepTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int chunkSize;
+        private final int end;
+        private final int start;
+
+        StepTask(final int start, final int end, final int chunkSize) {
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (this.end - this.start <= this.chunkSize) {
+                try {
+                    return processOperations(this.start, this.end);
+                } catch (PrimitivesException e) {
+                    throw new StepException(e);
+                }
+            }
+            final int middle = (this.start + this.end) >>> 1;
+            final StepTask left = new StepTask(this.start, middle,
+                    this.chunkSize);
+            left.fork();
+            final int right = new StepTask(middle, this.end, this.chunkSize)
+                    .compute();
+            return left.join() + right;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.CyclicBarrier;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+import ch.ethz.sepia.connections.CommunicationStatistics;
 import ch.ethz.sepia.connections.ConnectionManager;
 import ch.ethz.sepia.mpc.PeerBase;
 import ch.ethz.sepia.services.Stopper;
@@ -58,6 +59,12 @@ public abstract class PrimitivesEnabledPeer extends PeerBase implements
 
     /** MpcShamirSharingProtocolPrimitives instance to use basic operations */
     protected Primitives primitives = null;
+    /** execute the steps of the operations in work stealing mode? */
+    protected boolean workStealing = false;
+    /** the implementation of the equal operation (see {@link Primitives#setEqualMethod(String)}) */
+    protected String equalMethod = Primitives.EQUAL_METHOD_FERMAT;
+    /** the field size cost model fitted to the statistics of the previous rounds */
+    private FieldSizeCostModel costModel = null;
 
     /**
      * creates a new PrimitivesEnabledPeer instance
@@ -118,6 +125,61 @@ public abstract class PrimitivesEnabledPeer extends PeerBase implements
         return this.primitives;
     }
 
+    /**
+     * Logs the communication cost of this round as predicted by the
+     * {@link FieldSizeCostModel} of the previous rounds for the observed
+     * number of rounds and shares, next to the observed time. Then refits the
+     * cost model with the statistics of this round and logs the predicted
+     * cost of the equal and bitwise random number operations of this round in
+     * the current field and in the field the cost model would select for them
+     * among the fields that are at least as large as the current one. Resets
+     * the operation counts of the primitives.
+     * <p>
+     * (Should be called at the end of a round, before
+     * {@link CommunicationStatistics#newStatisticsRound()}.)
+     * 
+     * @param statistics
+     *            the communication statistics of this peer
+     */
+    public void logFieldSizeCost(final CommunicationStatistics statistics) {
+        if (this.primitives == null) {
+            return;
+        }
+        final long fieldSize = this.primitives.getFieldSize();
+        final long rounds = statistics.getThisRoundCommunicationRounds();
+        final long shares = statistics.getThisRoundSharesSent();
+        logger.info("Field size cost model:");
+        if (this.costModel != null) {
+            logger.info("--- This round      : field size=" + fieldSize
+                    + ": rounds=" + rounds + ", shares=" + shares
+                    + ", predicted time="
+                    + Math.round(this.costModel.getCommunicationCost(
+                            fieldSize, rounds, shares))
+                    + " ms, observed time="
+                    + statistics.getThisRoundCommunicationTime() + " ms");
+        }
+
+        final long equalCount = this.primitives.getEqualCount();
+        final long bitwiseRandomNumbersCount = this.primitives
+                .getBitwiseRandomNumbersCount();
+        this.costModel = FieldSizeCostModel.fromStatistics(statistics,
+                fieldSize);
+        this.costModel.setBitwiseEqual(this.primitives.isBitwiseEqual());
+        logger.info("--- Modelled ops    : " + equalCount + " equal, "
+                + bitwiseRandomNumbersCount + " bitwise random numbers");
+        logger.info("--- Predicted (now) : "
+                + this.costModel.describe(fieldSize, equalCount,
+                        bitwiseRandomNumbersCount));
+        final long bestFieldSize = this.costModel.selectFieldSize(
+                fieldSize - 1, equalCount, bitwiseRandomNumbersCount);
+        if (bestFieldSize != fieldSize) {
+            logger.info("--- Predicted (best): "
+                    + this.costModel.describe(bestFieldSize, equalCount,
+                            bitwiseRandomNumbersCount));
+        }
+        this.primitives.resetOperationCounts();
+    }
+
     /**
      * initializes all variables for new operation set: resets the operation
      * round variables (used for synchronization), the operation states and the
@@ -195,11 +257,11 @@ public abstract class PrimitivesEnabledPeer extends PeerBase implements
             final PrimitivesMessage mpcPrimitivesMessage) {
         final int senderPrivacyPeerIndex = mpcPrimitivesMessage
                 .getSenderIndex();
-        final long[] data = mpcPrimitivesMessage.getOperationsData();
 
         logger.info("setting data of operations from: "
                 + senderPrivacyPeerIndex);
-        this.primitives.setReceivedData(senderPrivacyPeerIndex, data);
+        this.primitives.setReceivedData(senderPrivacyPeerIndex,
+                mpcPrimitivesMessage);
     }
 
 }
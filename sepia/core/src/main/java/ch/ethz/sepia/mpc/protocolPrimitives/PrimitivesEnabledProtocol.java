@@ -26,7 +26,7 @@ import ch.ethz.sepia.connections.PrivacyPeerConnectionManager;
 import ch.ethz.sepia.connections.PrivacyViolationException;
 import ch.ethz.sepia.mpc.ProtocolBase;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.IOperation;
-import ch.ethz.sepia.mpc.protocolPrimitives.operations.LessThan;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.IBitwiseRandomNumbersConsumer;
 import ch.ethz.sepia.services.Stopper;
 
 /**
@@ -199,6 +199,9 @@ public abstract class PrimitivesEnabledProtocol extends ProtocolBase {
                 final long duration = stop - start;
                 thisRoundCommunicationTime += duration;
                 totalCommunicationTime += duration;
+                this.connectionManager.getCommunicationStatistics()
+                        .incCommunicationRound(duration,
+                                this.messageToSend.countShares());
             }
 
             if (amITakingTime) {
@@ -238,8 +241,8 @@ public abstract class PrimitivesEnabledProtocol extends ProtocolBase {
         final int bitsPerElement = this.primitives.getBitsCount();
         final List<IOperation> ops = this.primitives.getOperations();
         for (int i = 0; i < ops.size(); i++) {
-            if (ops.get(i) instanceof LessThan) {
-                randomNumbersNeeded += ((LessThan) ops.get(i))
+            if (ops.get(i) instanceof IBitwiseRandomNumbersConsumer) {
+                randomNumbersNeeded += ((IBitwiseRandomNumbersConsumer) ops.get(i))
                         .getRandomNumbersNeeded(this.primitives);
             }
         }
@@ -273,9 +276,9 @@ public abstract class PrimitivesEnabledProtocol extends ProtocolBase {
             this.primitives.popOperations();
             final List<IOperation> ppOps = this.primitives.getOperations();
             for (int op = 0; op < ppOps.size(); op++) {
-                if (ppOps.get(op) instanceof LessThan) {
+                if (ppOps.get(op) instanceof IBitwiseRandomNumbersConsumer) {
                     // set random bits
-                    final LessThan lt = (LessThan) ppOps.get(op);
+                    final IBitwiseRandomNumbersConsumer lt = (IBitwiseRandomNumbersConsumer) ppOps.get(op);
                     final int bitsNeeded = lt
                             .getRandomNumbersNeeded(this.primitives)
                             * bitsPerElement;
@@ -381,6 +384,7 @@ public abstract class PrimitivesEnabledProtocol extends ProtocolBase {
                     + recipientPrivacyPeerIndex + "!";
             throw new PrimitivesException(errorMessage);
         }
+        this.messageToSend.packOperationsData(this.primitives.getBitsCount());
 
         logger.info("Thread " + Thread.currentThread().getId()
                 + ": Send/receive Shamir Sharing Protocol Primitives message");
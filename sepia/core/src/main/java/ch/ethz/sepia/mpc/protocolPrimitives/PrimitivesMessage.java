@@ -38,6 +38,18 @@ public class PrimitivesMessage extends MessageBase implements Serializable {
      */
     long[] operationsData = null;
 
+    /**
+     * the data for the operations packed into {@link #packedBitsCount} bits
+     * per share (see {@link #packOperationsData(int)})
+     */
+    byte[] packedOperationsData = null;
+
+    /** the number of bits per share in {@link #packedOperationsData} */
+    int packedBitsCount = 0;
+
+    /** the number of shares in {@link #packedOperationsData} */
+    int packedSharesCount = 0;
+
     public PrimitivesMessage() { /* jaxb needs this */
     }
 
@@ -72,4 +84,139 @@ public class PrimitivesMessage extends MessageBase implements Serializable {
     public void setOperationsData(final long[] operationsData) {
         this.operationsData = operationsData;
     }
+
+    /**
+     * @return the number of shares in this message (packed or not)
+     */
+    public int countShares() {
+        if (this.operationsData != null) {
+            return this.operationsData.length;
+        }
+        return this.packedSharesCount;
+    }
+
+    /**
+     * @return the packed data for the operations or null if the data is not
+     *         packed
+     */
+    public byte[] getPackedOperationsData() {
+        return this.packedOperationsData;
+    }
+
+    /**
+     * @return the number of bits per share of the packed data
+     */
+    public int getPackedBitsCount() {
+        return this.packedBitsCount;
+    }
+
+    /**
+     * @return the number of shares of the packed data
+     */
+    public int getPackedSharesCount() {
+        return this.packedSharesCount;
+    }
+
+    /**
+     * Packs the data for the operations into bitsCount bits per share. The
+     * shares of a field with bitsCount bits are smaller than 2^bitsCount, so
+     * a message of a 31 bit field takes less than half the size of the
+     * unpacked shares. If a value does not fit into bitsCount bits, the data
+     * is left unpacked.
+     * <p>
+     * The receiver gets the unpacked data through
+     * {@link Primitives#setReceivedData(int, PrimitivesMessage)}.
+     * 
+     * @param bitsCount
+     *            the number of bits of the field size
+     */
+    public void packOperationsData(final int bitsCount) {
+        if (this.operationsData == null || bitsCount < 1 || bitsCount >= 64) {
+            return;
+        }
+        for (final long share : this.operationsData) {
+            if (share >>> bitsCount != 0) {
+                return;
+            }
+        }
+        this.packedOperationsData = packShares(this.operationsData, bitsCount);
+        this.packedBitsCount = bitsCount;
+        this.packedSharesCount = this.operationsData.length;
+        this.operationsData = null;
+    }
+
+    /**
+     * Packs the shares into a bit stream with bitsCount bits per share (least
+     * significant bits first).
+     * 
+     * @param shares
+     *            the shares (each smaller than 2^bitsCount)
+     * @param bitsCount
+     *            the number of bits per share
+     * @return the packed shares
+     */
+    public static byte[] packShares(final long[] shares, final int bitsCount) {
+        final byte[] packed = new byte[(int) (((long) shares.length
+                * bitsCount + 7) / 8)];
+        long bitIndex = 0;
+        for (final long share : shares) {
+            long value = share;
+            int remaining = bitsCount;
+            while (remaining > 0) {
+                final int byteIndex = (int) (bitIndex >>> 3);
+                final int offset = (int) (bitIndex & 7);
+                final int n = Math.min(8 - offset, remaining);
+                packed[byteIndex] |= (byte) ((value & ((1 << n) - 1)) << offset);
+                value >>>= n;
+                remaining -= n;
+                bitIndex += n;
+            }
+        }
+        return packed;
+    }
+
+    public void setPackedOperationsData(final byte[] packedOperationsData) {
+        this.packedOperationsData = packedOperationsData;
+    }
+
+    public void setPackedBitsCount(final int packedBitsCount) {
+        this.packedBitsCount = packedBitsCount;
+    }
+
+    public void setPackedSharesCount(final int packedSharesCount) {
+        this.packedSharesCount = packedSharesCount;
+    }
+
+    /**
+     * Unpacks shares packed by {@link #packShares(long[], int)}.
+     * 
+     * @param packed
+     *            the packed shares
+     * @param bitsCount
+     *            the number of bits per share
+     * @param sharesCount
+     *            the number of shares
+     * @return the shares
+     */
+    public static long[] unpackShares(final byte[] packed, final int bitsCount,
+            final int sharesCount) {
+        final long[] shares = new long[sharesCount];
+        long bitIndex = 0;
+        for (int i = 0; i < sharesCount; i++) {
+            long value = 0;
+            int filled = 0;
+            while (filled < bitsCount) {
+                final int byteIndex = (int) (bitIndex >>> 3);
+                final int offset = (int) (bitIndex & 7);
+                final int n = Math.min(8 - offset, bitsCount - filled);
+                final long chunk = ((packed[byteIndex] & 0xFF) >>> offset)
+                        & ((1 << n) - 1);
+                value |= chunk << filled;
+                filled += n;
+                bitIndex += n;
+            }
+            shares[i] = value;
+        }
+        return shares;
+    }
 }
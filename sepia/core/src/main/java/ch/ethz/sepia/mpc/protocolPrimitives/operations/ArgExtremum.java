@@ -0,0 +1,369 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.RandBitsPregenerationOperationState;
+
+/**
+ * ArgMax/ArgMin operation. Computes the maximum (or minimum) of n shared
+ * values together with the payload belonging to it, e.g. its index or a key.
+ * <p>
+ * The values are compared in a tournament of ceil(log2(n)) levels. In each
+ * level, candidates 2k and 2k+1 are compared and the winner is selected by
+ * <pre>
+ * winner = x0 + lt*(x1-x0)
+ * </pre>
+ * for both the value and the payload, where lt = [v0&lt;v1] for the maximum
+ * and lt = [v1&lt;v0] for the minimum (on ties, the first candidate wins). With
+ * w, x and y the predicates of the comparison as in {@link LessThan}, lt =
+ * w*(x+y-2xy) + 1-x-y+xy. Instead of computing lt first and then multiplying
+ * it with the differences d = x1-x0, the operation expands lt*d and computes
+ * the selection together with the comparison:
+ * <ul>
+ * <li>round 1: x*y, x*d, y*d and w*d</li>
+ * <li>round 2: (w*d)*(x+y-2xy) and (x*y)*d</li>
+ * </ul>
+ * If all values are known to be in the same half of the field, lt = 1-y and
+ * the selection lt*d = d-y*d takes a single round.
+ * <p>
+ * The products of all pairs of a level are computed by one
+ * {@link ArrayMultiplication} per round. The bitwise shared random numbers for
+ * all the levels are generated in one batch (or set from outside, see
+ * {@link IBitwiseRandomNumbersConsumer}).
+ * <p>
+ * The final result is {extreme value, payload} or {-1, -1} if the computation
+ * failed.
+ */
+public class ArgExtremum extends RandBitsPregenerationOperationState implements IBitwiseRandomNumbersConsumer {
+
+	/** products per pair in the first selection round if the predicates w and x are unknown */
+	private static final int FIRST_ROUND_PRODUCTS = 7;
+	/** products per pair in the second selection round if the predicates w and x are unknown */
+	private static final int SECOND_ROUND_PRODUCTS = 4;
+
+	/** offsets of the predicates w=[a&lt;p/2], x=[b&lt;p/2] and y=[a-b&lt;p/2] */
+	private static final int W = 0, X = 1, Y = 2;
+
+	/** true to compute the minimum, false to compute the maximum */
+	private final boolean minimum;
+	/** 1 if all values are &lt;= p/2, 0 if all values are &gt; p/2, -1 if unknown */
+	private final long knowledge;
+	/** the candidate values of the current level */
+	private long[] values;
+	/** the candidate payloads of the current level */
+	private long[] payloads;
+	/** shares of the predicates of the pairs of the current level; format: [3*k+{W,X,Y}] */
+	private long[] predicates;
+	/** the predicate computed by the LSB sub-operation with the same index */
+	private int[] lsbTargets;
+	/** the products of the first selection round */
+	private long[] firstRound;
+	/** true if an LSB computation failed */
+	private boolean failed = false;
+
+	/**
+	 * creates an ArgMax/ArgMin operation.
+	 *
+	 * @param values the shares of the values
+	 * @param payloads the shares of the payloads belonging to the values or
+	 *            null to use the indices of the values
+	 * @param knowledge 1 if all values are &lt;= p/2, 0 if all values are &gt;
+	 *            p/2 and -1 if neither is known
+	 * @param minimum true to compute the minimum, false to compute the maximum
+	 */
+	public ArgExtremum(long[] values, long[] payloads, long knowledge, boolean minimum) {
+		setInitialData(values);
+		this.values = values.clone();
+		if(payloads == null) {
+			this.payloads = new long[values.length];
+			for(int i = 0; i < values.length; i++) {
+				this.payloads[i] = i;
+			}
+		} else {
+			this.payloads = payloads.clone();
+		}
+		this.knowledge = knowledge;
+		this.minimum = minimum;
+	}
+
+	/**
+	 * @return the number of predicates computed per comparison
+	 */
+	private int getPredicatesPerComparison() {
+		return knowledge == -1 ? 3 : 1;
+	}
+
+	@Override
+	public int getRandomNumbersNeeded(Primitives primitives) {
+		if(randomnessAlreadySet()) {
+			return 0;
+		}
+		// a tournament over n values has n-1 comparisons
+		return (getInitialData().length-1)*getPredicatesPerComparison();
+	}
+
+	@Override
+	public void doStep(Primitives primitives) throws PrimitivesException {
+		// step1: generate the random numbers for all levels and start the first level
+		if(getCurrentStep() == 1) {
+			int randomNumbersNeeded = (getInitialData().length-1)*getPredicatesPerComparison();
+			if(randomNumbersNeeded > 0 && !generateRandomBits(randomNumbersNeeded, primitives)) {
+				return;
+			}
+			startLevel(primitives);
+			return;
+		}
+
+		// step2: finish the LSB computations and start the first selection round
+		if(getCurrentStep() == 2) {
+			if(!finishLsbComputations(primitives)) {
+				return;
+			}
+			ShamirSharing mpc = primitives.getMpcShamirSharing();
+			int pairs = values.length/2;
+			long[] factor1;
+			long[] factor2;
+			if(knowledge != -1) {
+				// lt*d = d - y*d
+				factor1 = new long[2*pairs];
+				factor2 = new long[2*pairs];
+				for(int k = 0; k < pairs; k++) {
+					factor1[2*k] = predicates[3*k+Y];
+					factor2[2*k] = valueDifference(mpc, k);
+					factor1[2*k+1] = predicates[3*k+Y];
+					factor2[2*k+1] = payloadDifference(mpc, k);
+				}
+			} else {
+				factor1 = new long[FIRST_ROUND_PRODUCTS*pairs];
+				factor2 = new long[FIRST_ROUND_PRODUCTS*pairs];
+				for(int k = 0; k < pairs; k++) {
+					long dv = valueDifference(mpc, k);
+					long dq = payloadDifference(mpc, k);
+					int offset = FIRST_ROUND_PRODUCTS*k;
+					// x*y, x*dv, y*dv, w*dv, x*dq, y*dq, w*dq
+					factor1[offset] = predicates[3*k+X];
+					factor2[offset] = predicates[3*k+Y];
+					for(int predicate = 0; predicate < 3; predicate++) {
+						int p = (predicate+1)%3; // X, Y, W
+						factor1[offset+1+predicate] = predicates[3*k+p];
+						factor2[offset+1+predicate] = dv;
+						factor1[offset+4+predicate] = predicates[3*k+p];
+						factor2[offset+4+predicate] = dq;
+					}
+				}
+			}
+			startMultiplication(primitives, factor1, factor2);
+			incrementCurrentStep();
+			return;
+		}
+
+		// step3: finish the first selection round and start the second one (if needed)
+		if(getCurrentStep() == 3) {
+			getSubOperations()[0].doStep(primitives);
+			if(!getSubOperations()[0].isOperationCompleted()) {
+				return;
+			}
+			ShamirSharing mpc = primitives.getMpcShamirSharing();
+			int pairs = values.length/2;
+			if(knowledge != -1) {
+				long[] products = getSubOperations()[0].getFinalResult();
+				long[] selectedValues = new long[pairs];
+				long[] selectedPayloads = new long[pairs];
+				for(int k = 0; k < pairs; k++) {
+					selectedValues[k] = mpc.modSubtract(valueDifference(mpc, k), products[2*k]);
+					selectedPayloads[k] = mpc.modSubtract(payloadDifference(mpc, k), products[2*k+1]);
+				}
+				finishLevel(primitives, selectedValues, selectedPayloads);
+				return;
+			}
+			firstRound = getSubOperations()[0].getFinalResult();
+			long[] factor1 = new long[SECOND_ROUND_PRODUCTS*pairs];
+			long[] factor2 = new long[SECOND_ROUND_PRODUCTS*pairs];
+			for(int k = 0; k < pairs; k++) {
+				int offset = FIRST_ROUND_PRODUCTS*k;
+				long xy = firstRound[offset];
+				long xor = mpc.modSubtract(mpc.modAdd(predicates[3*k+X], predicates[3*k+Y]), mpc.modMultiply(2, xy));
+				// (w*dv)*xor, xy*dv, (w*dq)*xor, xy*dq
+				factor1[SECOND_ROUND_PRODUCTS*k] = firstRound[offset+3];
+				factor2[SECOND_ROUND_PRODUCTS*k] = xor;
+				factor1[SECOND_ROUND_PRODUCTS*k+1] = xy;
+				factor2[SECOND_ROUND_PRODUCTS*k+1] = valueDifference(mpc, k);
+				factor1[SECOND_ROUND_PRODUCTS*k+2] = firstRound[offset+6];
+				factor2[SECOND_ROUND_PRODUCTS*k+2] = xor;
+				factor1[SECOND_ROUND_PRODUCTS*k+3] = xy;
+				factor2[SECOND_ROUND_PRODUCTS*k+3] = payloadDifference(mpc, k);
+			}
+			startMultiplication(primitives, factor1, factor2);
+			incrementCurrentStep();
+			return;
+		}
+
+		// step4: finish the second selection round
+		if(getCurrentStep() == 4) {
+			getSubOperations()[0].doStep(primitives);
+			if(!getSubOperations()[0].isOperationCompleted()) {
+				return;
+			}
+			ShamirSharing mpc = primitives.getMpcShamirSharing();
+			long[] products = getSubOperations()[0].getFinalResult();
+			int pairs = values.length/2;
+			long[] selectedValues = new long[pairs];
+			long[] selectedPayloads = new long[pairs];
+			for(int k = 0; k < pairs; k++) {
+				int offset = FIRST_ROUND_PRODUCTS*k;
+				int offset2 = SECOND_ROUND_PRODUCTS*k;
+				// lt*d = (w*d)*xor + d - x*d - y*d + (x*y)*d
+				selectedValues[k] = mpc.modAdd(mpc.modSubtract(mpc.modSubtract(mpc.modAdd(products[offset2], valueDifference(mpc, k)),
+						firstRound[offset+1]), firstRound[offset+2]), products[offset2+1]);
+				selectedPayloads[k] = mpc.modAdd(mpc.modSubtract(mpc.modSubtract(mpc.modAdd(products[offset2+2], payloadDifference(mpc, k)),
+						firstRound[offset+4]), firstRound[offset+5]), products[offset2+3]);
+			}
+			firstRound = null;
+			finishLevel(primitives, selectedValues, selectedPayloads);
+		}
+	}
+
+	/**
+	 * @return share of v1-v0 of pair k
+	 */
+	private long valueDifference(ShamirSharing mpc, int k) {
+		return mpc.modSubtract(values[2*k+1], values[2*k]);
+	}
+
+	/**
+	 * @return share of q1-q0 of pair k
+	 */
+	private long payloadDifference(ShamirSharing mpc, int k) {
+		return mpc.modSubtract(payloads[2*k+1], payloads[2*k]);
+	}
+
+	/**
+	 * Starts the comparisons of the current level, i.e. the LSB computations
+	 * of the unknown predicates, or sets the final result if only one
+	 * candidate is left.
+	 */
+	private void startLevel(Primitives primitives) throws PrimitivesException {
+		if(values.length == 1) {
+			setSubOperations(null);
+			setFinalResult(new long[]{values[0], payloads[0]});
+			setCurrentStep(5);
+			return;
+		}
+		ShamirSharing mpc = primitives.getMpcShamirSharing();
+		int pairs = values.length/2;
+		int bitsCount = primitives.getBitsCount();
+		predicates = new long[3*pairs];
+		lsbTargets = new int[pairs*getPredicatesPerComparison()];
+		IOperation[] subOperations = new IOperation[lsbTargets.length];
+		int lsbCount = 0;
+		for(int k = 0; k < pairs; k++) {
+			// lt = [a<b] selects the second candidate
+			long a = minimum ? values[2*k+1] : values[2*k];
+			long b = minimum ? values[2*k] : values[2*k+1];
+			for(int predicate = 0; predicate < 3; predicate++) {
+				long value;
+				if(predicate == Y) {
+					value = mpc.modSubtract(a, b);
+				} else if(knowledge != -1) {
+					predicates[3*k+predicate] = knowledge;
+					continue;
+				} else {
+					value = (predicate == W) ? a : b;
+				}
+				long[] data = new long[1+bitsCount];
+				data[0] = mpc.modMultiply(2, value);
+				System.arraycopy(getRandomnessForSubOperation(bitsCount), 0, data, 1, bitsCount);
+				subOperations[lsbCount] = new LeastSignificantBit(data);
+				subOperations[lsbCount].doStep(primitives);
+				lsbTargets[lsbCount] = 3*k+predicate;
+				lsbCount++;
+			}
+		}
+		setSubOperations(subOperations);
+		setCurrentStep(2);
+	}
+
+	/**
+	 * Does the next step of the running LSB computations and stores the
+	 * predicates of the completed ones.
+	 *
+	 * @return true if all the LSB computations are completed
+	 */
+	private boolean finishLsbComputations(Primitives primitives) throws PrimitivesException {
+		IOperation[] subOperations = getSubOperations();
+		boolean allCompleted = true;
+		for(int i = 0; i < subOperations.length; i++) {
+			if(subOperations[i].isOperationCompleted()) {
+				continue;
+			}
+			subOperations[i].doStep(primitives);
+			if(subOperations[i].isOperationCompleted()) {
+				long lsb = subOperations[i].getFinalResult()[0];
+				if(lsb == -1L) {
+					failed = true;
+				} else {
+					predicates[lsbTargets[i]] = primitives.getMpcShamirSharing().modSubtract(1, lsb);
+				}
+			} else {
+				allCompleted = false;
+			}
+		}
+		return allCompleted;
+	}
+
+	/**
+	 * Starts one ArrayMultiplication for all the products of a selection round.
+	 */
+	private void startMultiplication(Primitives primitives, long[] factor1, long[] factor2) throws PrimitivesException {
+		IOperation[] subOperations = {new ArrayMultiplication(factor1, factor2)};
+		subOperations[0].doStep(primitives);
+		setSubOperations(subOperations);
+	}
+
+	/**
+	 * Computes the winners of the current level (an odd candidate advances
+	 * without comparison) and starts the next level.
+	 *
+	 * @param selected lt*(v1-v0) of each pair
+	 * @param selectedPayloads lt*(q1-q0) of each pair
+	 */
+	private void finishLevel(Primitives primitives, long[] selected, long[] selectedPayloads) throws PrimitivesException {
+		if(failed) {
+			setSubOperations(null);
+			setFinalResult(new long[]{-1, -1});
+			setCurrentStep(5);
+			return;
+		}
+		ShamirSharing mpc = primitives.getMpcShamirSharing();
+		int pairs = selected.length;
+		long[] nextValues = new long[(values.length+1)/2];
+		long[] nextPayloads = new long[nextValues.length];
+		for(int k = 0; k < pairs; k++) {
+			nextValues[k] = mpc.modAdd(values[2*k], selected[k]);
+			nextPayloads[k] = mpc.modAdd(payloads[2*k], selectedPayloads[k]);
+		}
+		if(values.length % 2 == 1) {
+			nextValues[pairs] = values[values.length-1];
+			nextPayloads[pairs] = payloads[payloads.length-1];
+		}
+		values = nextValues;
+		payloads = nextPayloads;
+		startLevel(primitives);
+	}
+}
@@ -0,0 +1,309 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.RandBitsPregenerationOperationState;
+
+/**
+ * ArrayLessThan. Compares two arrays of secrets position wise, i.e. computes
+ * [a_i &lt; b_i] for all i. It uses the same protocol as {@link LessThan}, but
+ * for the whole array at once:
+ * <ul>
+ * <li>the bitwise shared random numbers for all the LSB computations are
+ * generated in one batch (or pregenerated by the protocol, see
+ * {@link IBitwiseRandomNumbersConsumer})</li>
+ * <li>the predicates w, x and y of all positions are kept in contiguous
+ * arrays</li>
+ * <li>the products x*y and w*(x+y-2*x*y) of all positions are each computed
+ * by one {@link ArrayMultiplication}</li>
+ * </ul>
+ * The final result is an array holding a share of 1 at position i if a_i &lt;
+ * b_i and a share of 0 otherwise (or -1 if the computation failed at that
+ * position).
+ */
+public class ArrayLessThan extends RandBitsPregenerationOperationState implements IBitwiseRandomNumbersConsumer {
+
+	/** offsets of the predicates w=[a&lt;p/2], x=[b&lt;p/2] and y=[a-b&lt;p/2] */
+	private static final int W = 0, X = 1, Y = 2;
+
+	/** the first operands */
+	private final long[] a;
+	/** the second operands */
+	private final long[] b;
+	/** the knowledge about the predicates; format: [3*i+{W,X,Y}], -1 if unknown */
+	private final long[] knowledge;
+	/** shares of the predicates; format: [3*i+{W,X,Y}] */
+	private long[] predicates;
+	/** the predicate computed by the LSB sub-operation with the same index */
+	private int[] lsbTargets;
+	/** shares of x*y */
+	private long[] xy;
+	/** positions which need an interactive multiplication in the current step */
+	private int[] multiplied;
+	/** positions at which an LSB computation failed */
+	private boolean[] failed;
+
+	/**
+	 * creates an array less-than operation.
+	 *
+	 * @param a the shares of the first operands
+	 * @param b the shares of the second operands
+	 * @param knowledge the known values of [a_i&lt;p/2], [b_i&lt;p/2] and
+	 *            [a_i-b_i&lt;p/2] (-1 if unknown); either 3 values that hold for
+	 *            all positions or 3 values per position
+	 */
+	public ArrayLessThan(long[] a, long[] b, long[] knowledge) {
+		this.a = a;
+		this.b = b;
+		if(knowledge.length == 3) {
+			this.knowledge = new long[3*a.length];
+			for(int i = 0; i < a.length; i++) {
+				System.arraycopy(knowledge, 0, this.knowledge, 3*i, 3);
+			}
+		} else {
+			this.knowledge = knowledge;
+		}
+	}
+
+	@Override
+	public int getRandomNumbersNeeded(Primitives primitives) {
+		if(randomnessAlreadySet()) {
+			return 0;
+		}
+		return getUnknownPredicatesCount();
+	}
+
+	/**
+	 * @return the number of predicates that have to be computed
+	 */
+	private int getUnknownPredicatesCount() {
+		int count = 0;
+		for(int i = 0; i < knowledge.length; i++) {
+			if(knowledge[i] == -1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void doStep(Primitives primitives) throws PrimitivesException {
+		ShamirSharing mpc = primitives.getMpcShamirSharing();
+		int n = a.length;
+
+		// step1: generate the random numbers and start the LSB computations
+		if(getCurrentStep() == 1) {
+			int lsbTotal = getUnknownPredicatesCount();
+			if(lsbTotal > 0 && !generateRandomBits(lsbTotal, primitives)) {
+				return;
+			}
+			predicates = new long[3*n];
+			failed = new boolean[n];
+			lsbTargets = new int[lsbTotal];
+			IOperation[] subOperations = new IOperation[lsbTotal];
+			int lsbCount = 0;
+			for(int j = 0; j < knowledge.length; j++) {
+				if(knowledge[j] != -1) {
+					predicates[j] = knowledge[j];
+					continue;
+				}
+				int i = j/3;
+				long value;
+				switch(j%3) {
+				case W:
+					value = a[i];
+					break;
+				case X:
+					value = b[i];
+					break;
+				default:
+					value = mpc.modSubtract(a[i], b[i]);
+					break;
+				}
+				long[] data = new long[1+primitives.getBitsCount()];
+				data[0] = mpc.modMultiply(2, value);
+				System.arraycopy(getRandomnessForSubOperation(primitives.getBitsCount()), 0, data, 1, primitives.getBitsCount());
+				subOperations[lsbCount] = new LeastSignificantBit(data);
+				subOperations[lsbCount].doStep(primitives);
+				lsbTargets[lsbCount] = j;
+				lsbCount++;
+			}
+			setSubOperations(subOperations);
+			incrementCurrentStep();
+			if(lsbCount > 0) {
+				return;
+			}
+		}
+
+		// step2: finish the LSB computations and start the x*y multiplications
+		if(getCurrentStep() == 2) {
+			IOperation[] subOperations = getSubOperations();
+			boolean allCompleted = true;
+			for(int k = 0; k < subOperations.length; k++) {
+				if(subOperations[k].isOperationCompleted()) {
+					continue;
+				}
+				subOperations[k].doStep(primitives);
+				if(subOperations[k].isOperationCompleted()) {
+					long lsb = subOperations[k].getFinalResult()[0];
+					if(lsb == -1L) {
+						failed[lsbTargets[k]/3] = true;
+					} else {
+						predicates[lsbTargets[k]] = mpc.modSubtract(1, lsb);
+					}
+				} else {
+					allCompleted = false;
+				}
+			}
+			if(!allCompleted) {
+				return;
+			}
+			// x*y can be computed locally if x or y is known
+			xy = new long[n];
+			int count = 0;
+			for(int i = 0; i < n; i++) {
+				if(knowledge[3*i+X] == -1 && knowledge[3*i+Y] == -1) {
+					count++;
+				} else {
+					xy[i] = mpc.modMultiply(predicates[3*i+X], predicates[3*i+Y]);
+				}
+			}
+			startMultiplication(primitives, count, false);
+			incrementCurrentStep();
+			if(count > 0) {
+				return;
+			}
+		}
+
+		// step3: finish the x*y multiplications and start the w*(x+y-2*x*y) multiplications
+		if(getCurrentStep() == 3) {
+			if(!finishMultiplication(primitives, xy)) {
+				return;
+			}
+			// w*(...) can be computed locally if w is known or if x and y are known
+			long[] wTerm = new long[n];
+			int count = 0;
+			for(int i = 0; i < n; i++) {
+				if(knowledge[3*i+W] == -1 && (knowledge[3*i+X] == -1 || knowledge[3*i+Y] == -1)) {
+					count++;
+				} else {
+					wTerm[i] = mpc.modMultiply(predicates[3*i+W], xorTerm(mpc, i));
+				}
+			}
+			// (the intermediary result holds w*(x+y-2*x*y))
+			setIntermediaryResult(wTerm);
+			startMultiplication(primitives, count, true);
+			incrementCurrentStep();
+			if(count > 0) {
+				return;
+			}
+		}
+
+		// step4: finish the w*(...) multiplications and compute the final result
+		if(getCurrentStep() == 4) {
+			long[] wTerm = getIntermediaryResult();
+			if(!finishMultiplication(primitives, wTerm)) {
+				return;
+			}
+			// result = w*(x+y-2*x*y) + 1 - y - x + x*y
+			long[] finalResult = new long[n];
+			for(int i = 0; i < n; i++) {
+				if(failed[i]) {
+					finalResult[i] = -1;
+					continue;
+				}
+				finalResult[i] = mpc.modAdd(mpc.modSubtract(mpc.modSubtract(mpc.modAdd(wTerm[i], 1), predicates[3*i+Y]), predicates[3*i+X]), xy[i]);
+			}
+			setSubOperations(null);
+			setFinalResult(finalResult);
+			incrementCurrentStep();
+		}
+	}
+
+	/**
+	 * @return share of x+y-2*x*y at position i
+	 */
+	private long xorTerm(ShamirSharing mpc, int i) {
+		return mpc.modSubtract(mpc.modAdd(predicates[3*i+X], predicates[3*i+Y]), mpc.modMultiply(2, xy[i]));
+	}
+
+	/**
+	 * Starts one ArrayMultiplication for all positions whose product can not
+	 * be computed locally.
+	 *
+	 * @param count the number of such positions
+	 * @param wTerm false to compute x*y, true to compute w*(x+y-2*x*y)
+	 */
+	private void startMultiplication(Primitives primitives, int count, boolean wTerm) throws PrimitivesException {
+		if(count == 0) {
+			multiplied = null;
+			setSubOperations(null);
+			return;
+		}
+		ShamirSharing mpc = primitives.getMpcShamirSharing();
+		multiplied = new int[count];
+		long[] factor1 = new long[count];
+		long[] factor2 = new long[count];
+		int k = 0;
+		for(int i = 0; i < a.length; i++) {
+			if(wTerm) {
+				if(knowledge[3*i+W] != -1 || (knowledge[3*i+X] != -1 && knowledge[3*i+Y] != -1)) {
+					continue;
+				}
+				factor1[k] = predicates[3*i+W];
+				factor2[k] = xorTerm(mpc, i);
+			} else {
+				if(knowledge[3*i+X] != -1 || knowledge[3*i+Y] != -1) {
+					continue;
+				}
+				factor1[k] = predicates[3*i+X];
+				factor2[k] = predicates[3*i+Y];
+			}
+			multiplied[k] = i;
+			k++;
+		}
+		IOperation[] subOperations = new IOperation[1];
+		subOperations[0] = new ArrayMultiplication(factor1, factor2);
+		subOperations[0].doStep(primitives);
+		setSubOperations(subOperations);
+	}
+
+	/**
+	 * Does the next step of the running ArrayMultiplication (if any) and
+	 * stores its results in the target array.
+	 *
+	 * @return true if there is no multiplication running anymore
+	 */
+	private boolean finishMultiplication(Primitives primitives, long[] target) throws PrimitivesException {
+		IOperation[] subOperations = getSubOperations();
+		if(subOperations == null) {
+			return true;
+		}
+		subOperations[0].doStep(primitives);
+		if(!subOperations[0].isOperationCompleted()) {
+			return false;
+		}
+		long[] products = subOperations[0].getFinalResult();
+		for(int k = 0; k < multiplied.length; k++) {
+			target[multiplied[k]] = products[k];
+		}
+		setSubOperations(null);
+		return true;
+	}
+}
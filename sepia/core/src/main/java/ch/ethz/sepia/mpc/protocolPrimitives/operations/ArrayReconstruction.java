@@ -0,0 +1,74 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.GenericOperationState;
+
+
+/**
+ * ArrayReconstruction. Reconstructs an array of shared secrets in one round,
+ * the same as one {@link Reconstruction} per element, but with a single
+ * operation state.
+ */
+public class ArrayReconstruction extends GenericOperationState implements IOperation {
+
+	/**
+	 * creates an ArrayReconstruction sub-operation.
+	 *
+	 * @param data	array containing the shares to reconstruct
+	 */
+	public ArrayReconstruction(long[] data) {
+		// store initial arguments
+		setInitialData(data);
+		return;
+	}
+
+
+	@Override
+	public void doStep(Primitives primitives) throws PrimitivesException {
+		// step1: copy my shares for everyone
+		if(getCurrentStep() == 1) {
+			long[][] sharesForPPs = new long[primitives.getNumberOfPrivacyPeers()][];
+			for(int j = 0; j < sharesForPPs.length; j++) {
+				sharesForPPs[j] = getInitialData();
+			}
+			setSharesForPrivacyPeers(sharesForPPs);
+			copyOwnShares(primitives.getMyPrivacyPeerIndex());
+			incrementCurrentStep();
+			return;
+		}
+
+		// step2: interpolate the secrets from the received shares
+		if(getCurrentStep() == 2) {
+			long[][] received = getSharesFromPrivacyPeers();
+			long[] shares = new long[received.length];
+			long[] result = new long[getInitialData().length];
+			for(int i = 0; i < result.length; i++) {
+				for(int j = 0; j < shares.length; j++) {
+					shares[j] = received[j][i];
+				}
+				result[i] = primitives.getMpcShamirSharing().interpolate(shares, false);
+			}
+			setFinalResult(result);
+			return;
+		}
+
+		return;
+	}
+
+}
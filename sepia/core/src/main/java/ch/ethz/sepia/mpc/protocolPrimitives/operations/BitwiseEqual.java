@@ -0,0 +1,146 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.RandBitsPregenerationOperationState;
+
+/**
+ * This equal operation uses a bitwise shared random number r to compute if
+ * two shared secret values a and b are equal:
+ * <ul>
+ * <li>c = (a-b)+r is reconstructed (c is uniformly distributed and reveals
+ * nothing about a-b)</li>
+ * <li>a == b iff c == r, i.e. iff all the bits c_i XOR r_i are 0</li>
+ * <li>the OR of the bits c_i XOR r_i is computed in a binary tree, where each
+ * level takes one {@link ArrayMultiplication}</li>
+ * </ul>
+ * The result is 1 - OR. Apart from the random number generation (which can
+ * be done in advance, see {@link IBitwiseRandomNumbersConsumer}), this takes
+ * 1 + ceil(log2(bitsCount)) rounds, whereas {@link Equal} needs a number of
+ * rounds that depends on the bit length and the number of ones of p-1.
+ */
+public class BitwiseEqual extends RandBitsPregenerationOperationState implements IBitwiseRandomNumbersConsumer {
+	/**
+	 * creates a bitwise equal operation.
+	 *
+	 * @param data	array containing the 2 shares to test for equality
+	 */
+	public BitwiseEqual(long[] data) {
+		setInitialData(data);
+	}
+
+	@Override
+	public int getRandomNumbersNeeded(Primitives primitives) {
+		if(randomnessAlreadySet()) {
+			return 0;
+		}
+		return 1;
+	}
+
+	/**
+	 * do the next step of the bitwise equal operation
+	 *
+	 * @param primitives the protocol primitives.
+	 * @throws PrimitivesException
+	 */
+	@Override
+	public void doStep(Primitives primitives) throws PrimitivesException {
+		ShamirSharing mpc = primitives.getMpcShamirSharing();
+		int bitsCount = primitives.getBitsCount();
+
+		// step1: generate the random number, compute c=(a-b)+r and start to reconstruct it
+		if(getCurrentStep() == 1) {
+			if(!generateRandomBits(1, primitives)) {
+				return;
+			}
+			// (the intermediary result holds the bits of r)
+			long[] rBits = getRandomnessForSubOperation(bitsCount);
+			setIntermediaryResult(rBits);
+			long[] data = {mpc.modAdd(mpc.modSubtract(getInitialData()[0], getInitialData()[1]), primitives.computeNumber(rBits))};
+			IOperation[] subOperations = {new Reconstruction(data)};
+			subOperations[0].doStep(primitives);
+			setSubOperations(subOperations);
+			incrementCurrentStep();
+			return;
+		}
+
+		// step2: finish the reconstruction, compute the bits c_i XOR r_i and start the OR tree
+		if(getCurrentStep() == 2) {
+			getSubOperations()[0].doStep(primitives);
+			if(!getSubOperations()[0].isOperationCompleted()) {
+				return;
+			}
+			long[] cBits = primitives.getBits(getSubOperations()[0].getFinalResult()[0]);
+			long[] rBits = getIntermediaryResult();
+			long[] xorBits = new long[bitsCount];
+			for(int i = 0; i < bitsCount; i++) {
+				xorBits[i] = (cBits[i] == 0) ? rBits[i] : mpc.modSubtract(1, rBits[i]);
+			}
+			// (from now on the intermediary result holds the current level of the OR tree)
+			setIntermediaryResult(xorBits);
+			incrementCurrentStep();
+			startOrLevel(primitives);
+			return;
+		}
+
+		// step3: compute the OR tree level by level and set the final result
+		if(getCurrentStep() == 3) {
+			IOperation multiplication = getSubOperations()[0];
+			multiplication.doStep(primitives);
+			if(!multiplication.isOperationCompleted()) {
+				return;
+			}
+			// x OR y = x + y - x*y
+			long[] level = getIntermediaryResult();
+			long[] products = multiplication.getFinalResult();
+			long[] nextLevel = new long[(level.length+1)/2];
+			for(int k = 0; k < products.length; k++) {
+				nextLevel[k] = mpc.modSubtract(mpc.modAdd(level[2*k], level[2*k+1]), products[k]);
+			}
+			if(level.length % 2 == 1) {
+				nextLevel[nextLevel.length-1] = level[level.length-1];
+			}
+			setIntermediaryResult(nextLevel);
+			startOrLevel(primitives);
+		}
+	}
+
+	/**
+	 * Starts the multiplications of the next level of the OR tree or sets the
+	 * final result if only the root is left.
+	 */
+	private void startOrLevel(Primitives primitives) throws PrimitivesException {
+		long[] level = getIntermediaryResult();
+		if(level.length == 1) {
+			setFinalResult(new long[]{primitives.getMpcShamirSharing().modSubtract(1, level[0])});
+			setSubOperations(null);
+			incrementCurrentStep();
+			return;
+		}
+		long[] factor1 = new long[level.length/2];
+		long[] factor2 = new long[level.length/2];
+		for(int k = 0; k < factor1.length; k++) {
+			factor1[k] = level[2*k];
+			factor2[k] = level[2*k+1];
+		}
+		IOperation[] subOperations = {new ArrayMultiplication(factor1, factor2)};
+		subOperations[0].doStep(primitives);
+		setSubOperations(subOperations);
+	}
+}
@@ -45,10 +45,11 @@ public class BloomFilterCardinality extends GenericOperationState{
 	public void doStep(Primitives primitives) {
 		// just sum up all true bits or counters respectively
 		if(getCurrentStep()==1){
+			long[] data = getInitialData();
 			long [] result = new long[1];
 			result[0] = 0;
-			for(int i = 0; i < getInitialData().length; i++){
-				result[0] = primitives.getMpcShamirSharing().modAdd(result[0], getInitialData()[i]);
+			for(int i = 0; i < data.length; i++){
+				result[0] = primitives.getMpcShamirSharing().modAdd(result[0], data[i]);
 			}
 			setFinalResult(result);
 			incrementCurrentStep();
@@ -23,6 +23,9 @@ import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.RandBitsPregeneratio
 /**
  * Set Intersection operation for shares of BloomFilter array positions.
  * Computes the bitwise AND for non-counting or minimum() for counting filters.
+ * The minimum is computed in rounds, each round compares pairs of filters at
+ * all positions with one {@link ArrayLessThan} and one
+ * {@link ArrayMultiplication} on contiguous buffers.
  * 
  * @author Manuel Widmer, ETH Zurich
  *
@@ -35,6 +38,18 @@ public class BloomFilterIntersection extends RandBitsPregenerationOperationState
 	/** shares of the Bloom filters which are to intersect, format: [Filter X][Position i]*/
 	private long [][] bfshares;
 	
+	/** number of positions per Bloom filter */
+	private int positions;
+	
+	/** number of filters left in the minimum computation of counting filters */
+	private int filters;
+	
+	/** minimums of the previous round, format: [Filter X * positions + Position i] */
+	private long[] minimums;
+	
+	/** first and second operands of the pairs compared in the current round */
+	private long[] lessThanA, lessThanB;
+	
 	/** state of the shared random bit generation needed for minimum in counting interseciton */
 	//private int generateRandomState = 0;
 	
@@ -73,18 +88,13 @@ public class BloomFilterIntersection extends RandBitsPregenerationOperationState
 					//subOperations = new IOperation[sum.length];
 					subOperations = new IOperation[1];
 					
-					for(int i = 0; i < bfshares[0].length; i++){
-						// compute sum of all negated input values
-						for(int j = 0; j < bfshares.length; j++){
-							long neg = primitives.getMpcShamirSharing().modSubtract(1, bfshares[j][i]);
+					// compute sum of all negated input values, filter by filter
+					for(int j = 0; j < bfshares.length; j++){
+						long[] filter = bfshares[j];
+						for(int i = 0; i < sum.length; i++){
+							long neg = primitives.getMpcShamirSharing().modSubtract(1, filter[i]);
 							sum[i] =  primitives.getMpcShamirSharing().modAdd(sum[i], neg);
 						}
-//						long data[]  = new long[2];
-//						data[0]= sum[i];
-//						data[1]= 0;
-//						// schedule equal operation
-//						subOperations[i] = new Equal(data);
-//						subOperations[i].doStep(primitives);
 					}
 					subOperations[0] = new ArrayEqual(sum, new long[bfshares[0].length]);
 					subOperations[0].doStep(primitives);
@@ -103,75 +113,74 @@ public class BloomFilterIntersection extends RandBitsPregenerationOperationState
 				// Pregeneration of bitwise shared random numbers
 				// randomness will be saved in IntermediaryResults
 				if(generateRandomBits(getRandomNumbersNeeded(primitives) , primitives)){
-
-					subOperations = new IOperation[bfshares[0].length];
-
-					for(int i=0; i<subOperations.length; i++){
-						// we need new memory or we will overwrite the previous operation
-						long[] temp = new long[bfshares.length]; 
-						// Min of position i of all filters
-						// collect shares from all Bloom filters for position i
-						for(int j = 0; j < bfshares.length; j++){
-							temp[j] = bfshares[j][i];
-						}
-						// ATTENTION: in case of counting Bloom filters it is assumed
-						// that every position is <= fieldsize/2
-						subOperations[i] = new Min(temp, 1, false);
-						
-						// set random bitshares for the minOperations
-						int bitsNeeded =((Min)subOperations[i]).getRandomNumbersNeeded(primitives)
-						* primitives.getBitsCount(); //numbers * bits per number
-						
-						//long[] bits = new long[bitsNeeded];
-						//System.arraycopy(getIntermediaryResult(), bitIndex, bits, 0, bitsNeeded);
-						
-						((Min)subOperations[i]).setRandomNumberBitShares(getRandomnessForSubOperation(bitsNeeded));
-						//bitIndex += bitsNeeded;
-						
-						// we have to do the first step also in this round
-						subOperations[i].doStep(primitives);
+					// copy the filters into one contiguous buffer, filter after filter
+					positions = bfshares[0].length;
+					minimums = new long[bfshares.length*positions];
+					for(int j = 0; j < bfshares.length; j++){
+						System.arraycopy(bfshares[j], 0, minimums, j*positions, positions);
+					}
+					filters = bfshares.length;
+					if(filters == 1){
+						setFinalResult(minimums);
+						setCurrentStep(99);
+					}else{
+						scheduleLessThanRound(primitives);
+						setCurrentStep(10);
 					}
-					setSubOperations(subOperations);
-					incrementCurrentStep();
 				}
 			}
 			break;
 		case 2:
 			// we can just do 1 step at a time until we are completed
 			subOperations = getSubOperations();
-			boolean all_complete = true;
-			for(int i=0; i<subOperations.length; i++){
-				// are we already finished ?!
-				if(!subOperations[i].isOperationCompleted()){
-					// do step only for those who aren't finished
-					subOperations[i].doStep(primitives);
-					if(!subOperations[i].isOperationCompleted()){
-						all_complete = false;
-					}
-				}	
+			subOperations[0].doStep(primitives);
+			if(subOperations[0].isOperationCompleted()){
+				// ArrayEqual or ArrayProduct directly return the full array
+				setFinalResult(subOperations[0].getFinalResult());
+				incrementCurrentStep();
 			}
-			if(all_complete){
-				if(b_isCounting){
-					// we have to collect each minimum
-					long[] result = new long[subOperations.length];
-					for(int i=0; i<subOperations.length; i++){
-						result[i] = subOperations[i].getFinalResult()[0];
-					}
-					setFinalResult(result);
-					incrementCurrentStep();
+			break;
+		case 10:
+			// counting: less than of all pairs of the current round
+			subOperations = getSubOperations();
+			subOperations[0].doStep(primitives);
+			if(subOperations[0].isOperationCompleted()){
+				// min(a,b) = b + [a<b]*(a-b)
+				long[] lessThan = subOperations[0].getFinalResult();
+				long[] difference = new long[lessThanB.length];
+				for(int i = 0; i < difference.length; i++){
+					difference[i] = primitives.getMpcShamirSharing().modSubtract(lessThanA[i], lessThanB[i]);
+				}
+				subOperations = new IOperation[1];
+				subOperations[0] = new ArrayMultiplication(lessThan, difference);
+				subOperations[0].doStep(primitives);
+				setSubOperations(subOperations);
+				incrementCurrentStep();
+			}
+			break;
+		case 11:
+			// counting: select the minimums of all pairs of the current round
+			subOperations = getSubOperations();
+			subOperations[0].doStep(primitives);
+			if(subOperations[0].isOperationCompleted()){
+				long[] product = subOperations[0].getFinalResult();
+				int pairs = filters/2;
+				// an odd filter is carried over to the next round
+				long[] next = new long[(filters - pairs)*positions];
+				for(int i = 0; i < product.length; i++){
+					next[i] = primitives.getMpcShamirSharing().modAdd(lessThanB[i], product[i]);
+				}
+				if(filters%2 == 1){
+					System.arraycopy(minimums, (filters-1)*positions, next, pairs*positions, positions);
+				}
+				minimums = next;
+				filters = filters - pairs;
+				if(filters == 1){
+					setFinalResult(minimums);
+					setCurrentStep(99);
 				}else{
-					// Use equal operation if 2 log fieldsize <= #players-1
-//					if(2*Services.log2(primitives.getFieldSize()) <= bfshares.length-1 ){
-//						long[] result = new long[subOperations.length];
-//						for(int i=0; i<subOperations.length; i++){
-//							result[i] = subOperations[i].getFinalResult()[0];
-//						}
-//						setFinalResult(result);
-//					} else {
-						// ArrayProduct was used
-						setFinalResult(subOperations[0].getFinalResult());
-//					}
-					incrementCurrentStep();
+					scheduleLessThanRound(primitives);
+					setCurrentStep(10);
 				}
 			}
 			break;
@@ -218,12 +227,35 @@ public class BloomFilterIntersection extends RandBitsPregenerationOperationState
 //	}
 
 
+	/**
+	 * Schedules one {@link ArrayLessThan} comparing the filters 2k and 2k+1
+	 * of the current round at all positions.
+	 * @param primitives the primitives
+	 * @throws PrimitivesException
+	 */
+	private void scheduleLessThanRound(Primitives primitives) throws PrimitivesException {
+		int pairs = filters/2;
+		lessThanA = new long[pairs*positions];
+		lessThanB = new long[pairs*positions];
+		for(int k = 0; k < pairs; k++){
+			System.arraycopy(minimums, 2*k*positions, lessThanA, k*positions, positions);
+			System.arraycopy(minimums, (2*k+1)*positions, lessThanB, k*positions, positions);
+		}
+		// ATTENTION: in case of counting Bloom filters it is assumed
+		// that every position is <= fieldsize/2
+		ArrayLessThan lessThan = new ArrayLessThan(lessThanA, lessThanB, new long[]{1, 1, -1});
+		int bitsNeeded = lessThan.getRandomNumbersNeeded(primitives) * primitives.getBitsCount(); //numbers * bits per number
+		lessThan.setRandomNumberBitShares(getRandomnessForSubOperation(bitsNeeded));
+		lessThan.doStep(primitives);
+		setSubOperations(new IOperation[]{lessThan});
+	}
+	
 	@Override
 	public int getRandomNumbersNeeded(Primitives primitives) {
 		if(b_isCounting && !randomnessAlreadySet()){
-			// we need 1 Min operation per BF position 
-			// the Min will use the condition a,b < fieldsize/2
-			// hence we need (#BF - 1) numbers per Min operation
+			// we need (#BF - 1) comparisons per BF position
+			// the less than uses the condition a,b < fieldsize/2
+			// hence we need 1 number per comparison
 			return (bfshares.length-1)*bfshares[0].length ;
 		}else{
 			return 0; // no randomness needed for non-counting
@@ -15,12 +15,16 @@
 
 package ch.ethz.sepia.mpc.protocolPrimitives.operations;
 
+import java.util.Arrays;
+
 import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
 import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
 import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.RandBitsPregenerationOperationState;
 
 /**
  * Threshold Union operation for shares of BloomFilter array positions.
+ * All positions are compared to the threshold with a single
+ * {@link ArrayLessThan}.
  * @author Manuel Widmer, ETH Zurich
  *
  */
@@ -63,43 +67,33 @@ public class BloomFilterThresholdUnion extends RandBitsPregenerationOperationSta
 				subOperations[0].doStep(primitives);
 				// counting union is local computation only so we are already finished here
 				setIntermediaryResult(subOperations[0].getFinalResult());
-				// now we schedule the less than operations
+				// now we schedule the less than operation on all positions
 				// we want to know whether BF(i) >= threshold
 				// -->    1 - LessThan(BF(i), threshold)
-				subOperations = new IOperation[bfshares[0].length];
-				for(int i = 0; i < subOperations.length; i++){
-					long[] data = new long[5];
-					data[0] = getIntermediaryResult()[i];
-					data[1] = d;
-					// TODO: change this if a,b < fieldsize/2 cannot be assumed
-					data[2] = 1;
-					data[3] = 1;
-					data[4] = -1;
-					subOperations[i] = new LessThan(data);
-					int bitsNeeded = ((LessThan)subOperations[i]).getRandomNumbersNeeded(primitives)* primitives.getBitsCount();
-					((LessThan)subOperations[i]).setRandomNumberBitShares(getRandomnessForSubOperation(bitsNeeded));
-					subOperations[i].doStep(primitives);
-				}
-				setSubOperations(subOperations);
+				long[] threshold = new long[bfshares[0].length];
+				Arrays.fill(threshold, d);
+				// TODO: change this if a,b < fieldsize/2 cannot be assumed
+				ArrayLessThan lessThan = new ArrayLessThan(getIntermediaryResult(), threshold, new long[]{1, 1, -1});
+				int bitsNeeded = lessThan.getRandomNumbersNeeded(primitives)* primitives.getBitsCount();
+				lessThan.setRandomNumberBitShares(getRandomnessForSubOperation(bitsNeeded));
+				lessThan.doStep(primitives);
+				setSubOperations(new IOperation[]{lessThan});
 				incrementCurrentStep();
 			}
 			break;
 		case 2:// do step until LessThan is finished
 			subOperations = getSubOperations();
-			boolean allFinished = true;
-			for(int i = 0; i < subOperations.length; i++){
-				subOperations[i].doStep(primitives);
-				allFinished = (allFinished && subOperations[i].isOperationCompleted());
-			}
+			subOperations[0].doStep(primitives);
 			
-			if(allFinished){
+			if(subOperations[0].isOperationCompleted()){
 				// save results in Initial Data
-				setInitialData(new long[subOperations.length]);
-				for(int i = 0; i < subOperations.length; i++){
+				long[] lessThanResult = subOperations[0].getFinalResult();
+				setInitialData(new long[lessThanResult.length]);
+				for(int i = 0; i < lessThanResult.length; i++){
 					// we want to know whether BF(i) >= threshold
 					// -->    1 - LessThan(BF(i), threshold)
 					getInitialData()[i] = primitives.getMpcShamirSharing()
-									.modSubtract(1, subOperations[i].getFinalResult()[0]);
+									.modSubtract(1, lessThanResult[i]);
 				}
 				
 				if(counting){// we need another multiplication
@@ -133,9 +127,9 @@ public class BloomFilterThresholdUnion extends RandBitsPregenerationOperationSta
 		if(randomnessAlreadySet()){
 			return 0;
 		}else{
-			// we need 1 lessThan operation per BF position
-			// the lassThan will use the condition a,b < fieldsize/2
-			// hence we only need 1 number per lessThan
+			// we need 1 comparison per BF position
+			// the lessThan will use the condition a,b < fieldsize/2
+			// hence we only need 1 number per comparison
 			return bfshares[0].length;
 		}
 	}
@@ -63,17 +63,12 @@ public class BloomFilterUnion extends GenericOperationState {
 					//subOperations = new IOperation[sum.length];
 					subOperations = new IOperation[1];
 					
-					for(int i = 0; i < bfshares[0].length; i++){
-						// compute sum of all input values
-						for(int j = 0; j < bfshares.length; j++){
-							sum[i] =  primitives.getMpcShamirSharing().modAdd(sum[i], bfshares[j][i]);
+					// compute sum of all input values, filter by filter
+					for(int j = 0; j < bfshares.length; j++){
+						long[] filter = bfshares[j];
+						for(int i = 0; i < sum.length; i++){
+							sum[i] =  primitives.getMpcShamirSharing().modAdd(sum[i], filter[i]);
 						}
-//						long data[]  = new long[2];
-//						data[0]= sum[i];
-//						data[1]= 0;
-//						// schedule equal operation
-//						subOperations[i] = new Equal(data);
-//						subOperations[i].doStep(primitives);
 					}
 					subOperations[0] = new ArrayEqual(sum, new long[bfshares[0].length]);
 					subOperations[0].doStep(primitives);
@@ -92,11 +87,9 @@ public class BloomFilterUnion extends GenericOperationState {
 					subOperations[0].doStep(primitives);
 					// compute and save a + b in IntermediaryResults
 					setIntermediaryResult(new long[bfshares[0].length]);
-					for(int i=0; i<bfshares[0].length; i++){
-						long[] data = new long[2];
-						data[0] = bfshares[0][i];
-						data[1] = bfshares[1][i];
-						getIntermediaryResult()[i] = primitives.getMpcShamirSharing().modAdd(data[0], data[1]);
+					long[] sum = getIntermediaryResult();
+					for(int i=0; i<sum.length; i++){
+						sum[i] = primitives.getMpcShamirSharing().modAdd(bfshares[0][i], bfshares[1][i]);
 					}
 					// set position to 2 because Bloom filter 0 and 1 are already done in this step
 					position = 2; 
@@ -108,12 +101,11 @@ public class BloomFilterUnion extends GenericOperationState {
 				// Sum of position i of all filters
 				long [] result = new long[bfshares[0].length];
 				
-				for(int j=0; j < bfshares[0].length; j++){
-					long sum = 0;
-					for(int i=0; i < bfshares.length; i++){
-						sum = primitives.getMpcShamirSharing().modAdd(sum, bfshares[i][j]);
+				for(int i=0; i < bfshares.length; i++){
+					long[] filter = bfshares[i];
+					for(int j=0; j < result.length; j++){
+						result[j] = primitives.getMpcShamirSharing().modAdd(result[j], filter[j]);
 					}
-					result[j] = sum;
 				}
 				// we are finished here step is incremented 2x so we don't reach case 2
 				setFinalResult(result);
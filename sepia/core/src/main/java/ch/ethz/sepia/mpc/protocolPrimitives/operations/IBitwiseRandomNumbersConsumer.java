@@ -0,0 +1,45 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute 
+// it and/or modify it under the terms of the GNU Lesser General Public 
+// License as published by the Free Software Foundation, either version 3 
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+
+
+/**
+ * This interface is implemented by operations that need bitwise shared random
+ * numbers and accept them from outside. The protocol then generates the random
+ * numbers of all the scheduled operations in one batch (see
+ * {@link mpc.protocolPrimitives.PrimitivesEnabledProtocol}) before the
+ * operations are started.
+ */
+public interface IBitwiseRandomNumbersConsumer extends IOperation {
+	/**
+	 * returns the number of bitwise shared random numbers the operation still needs
+	 *
+	 * @param primitives	the protocol primitives
+	 * @return				the number of random numbers needed (0 if they were already set)
+	 */
+	public int getRandomNumbersNeeded(Primitives primitives);
+
+
+	/**
+	 * sets the bitwise shared random numbers
+	 *
+	 * @param bitShares	the shares of the random number bits (primitives.getBitsCount() per number)
+	 */
+	public void setRandomNumberBitShares(long[] bitShares);
+}
@@ -0,0 +1,77 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute 
+// it and/or modify it under the terms of the GNU Lesser General Public 
+// License as published by the Free Software Foundation, either version 3 
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+
+/**
+ * Inner product (sum of products) of two vectors of shares. The products of
+ * the shares are computed locally and summed up, which yields a share of the
+ * inner product on a polynomial of degree 2t. Only this sum is reshared and
+ * interpolated as in {@link Multiplication}, so the whole inner product costs
+ * a single degree reduction (one share per privacy peer) instead of one per
+ * element.
+ */
+public class InnerProduct extends Multiplication {
+
+	/**
+	 * creates an inner product operation.
+	 *
+	 * @param factor1	the shares of the first vector
+	 * @param factor2	the shares of the second vector (same length)
+	 */
+	public InnerProduct(final long[] factor1, final long[] factor2) {
+		super(concat(factor1, factor2));
+	}
+
+	/**
+	 * @return	array containing the elements of a followed by the elements of b
+	 */
+	private static long[] concat(final long[] a, final long[] b) {
+		long[] data = new long[a.length + b.length];
+		System.arraycopy(a, 0, data, 0, a.length);
+		System.arraycopy(b, 0, data, a.length, b.length);
+		return data;
+	}
+
+	/**
+	 * do the next step of the inner product operation
+	 *
+	 * @param primitives	the protocol primitives.
+	 * @throws PrimitivesException
+	 */
+	@Override
+	public void doStep(final Primitives primitives) throws PrimitivesException {
+		// step1: sum up the local products and share the sum
+		if (getCurrentStep() == 1) {
+			ShamirSharing mpcShamirSharing = primitives.getMpcShamirSharing();
+			long[] data = getInitialData();
+			int n = data.length/2;
+			long sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum = mpcShamirSharing.modAdd(sum, mpcShamirSharing.modMultiply(data[i], data[n+i]));
+			}
+			setSharesForPrivacyPeers(mpcShamirSharing.generateShare(sum));
+			copyOwnShares(primitives.getMyPrivacyPeerIndex());
+			return;
+		}
+
+		// step2: interpolate the inner product (as in the multiplication)
+		super.doStep(primitives);
+	}
+}
@@ -16,6 +16,7 @@
 package ch.ethz.sepia.mpc.protocolPrimitives.operations;
 
 
+import ch.ethz.sepia.mpc.protocolPrimitives.PredicateCache;
 import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
 import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
 import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.GenericOperationState;
@@ -42,10 +43,11 @@ import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.GenericOperationStat
  * @author Dilip Many
  *
  */
-public class LessThan extends GenericOperationState implements IOperation {
-	private Object predicateKeyA;
-	private Object predicateKeyB;
-	private Object predicateKeyAB;
+public class LessThan extends GenericOperationState implements IBitwiseRandomNumbersConsumer {
+	private int predicateScope;
+	private long predicateKeyA = PredicateCache.NO_KEY;
+	private long predicateKeyB = PredicateCache.NO_KEY;
+	private long predicateKeyAB = PredicateCache.NO_KEY;
 	
 	private boolean b_randomDataWasSet;
 	
@@ -66,11 +68,13 @@ public class LessThan extends GenericOperationState implements IOperation {
 	 * The predicate keys are used for caching of intermediate results. In particular,
 	 * the results of [a<p/2], [b<p/2], and [a-b<p/2] are cached between subsequent
 	 * invocations of lessThan operations on the same secrets.
-	 * @param keyA Uniquely identifies secret [A].
-	 * @param keyB Uniquely identifies secret [B].
-	 * @param keyAB Uniquely identifies secret [A-B].
+	 * @param scope The scope of the keys (see {@link PredicateCache#scope(String)}).
+	 * @param keyA Uniquely identifies secret [A] within the scope, or {@link PredicateCache#NO_KEY}.
+	 * @param keyB Uniquely identifies secret [B] within the scope, or {@link PredicateCache#NO_KEY}.
+	 * @param keyAB Uniquely identifies secret [A-B] within the scope, or {@link PredicateCache#NO_KEY}.
 	 */
-	public void setPredicateKeys(Object keyA, Object keyB, Object keyAB) {
+	public void setPredicateKeys(int scope, long keyA, long keyB, long keyAB) {
+		predicateScope = scope;
 		predicateKeyA = keyA;
 		predicateKeyB = keyB;
 		predicateKeyAB = keyAB;
@@ -94,17 +98,17 @@ public class LessThan extends GenericOperationState implements IOperation {
 		long data[] = getInitialData();
 				
 		if(data[2]==-1) {
-			if (predicateKeyA == null || primitives.getPredicateCache().get(predicateKeyA)==null ) {
+			if (predicateKeyA == PredicateCache.NO_KEY || !primitives.getPredicateCache().contains(predicateScope, predicateKeyA)) {
 				predicateCount++;
 			}
 		}
 		if(data[3]==-1) {
-			if (predicateKeyB == null || primitives.getPredicateCache().get(predicateKeyB)==null ) {
+			if (predicateKeyB == PredicateCache.NO_KEY || !primitives.getPredicateCache().contains(predicateScope, predicateKeyB)) {
 				predicateCount++;
 			}
 		}
 		if(data[4]==-1) {
-			if (predicateKeyAB == null || primitives.getPredicateCache().get(predicateKeyAB)==null ) {
+			if (predicateKeyAB == PredicateCache.NO_KEY || !primitives.getPredicateCache().contains(predicateScope, predicateKeyAB)) {
 				predicateCount++;
 			}
 		}
@@ -164,9 +168,9 @@ public class LessThan extends GenericOperationState implements IOperation {
 			if(initialData[2] == -1L) {
 				// Do we have it in the predicate cache?
 				boolean shareSet = false;
-				if(predicateKeyA!=null) {
-					Long cachedShare = primitives.getPredicateCache().get(predicateKeyA);
-					if(cachedShare!=null) {
+				if(predicateKeyA!=PredicateCache.NO_KEY) {
+					long cachedShare = primitives.getPredicateCache().get(predicateScope, predicateKeyA, -1L);
+					if(cachedShare!=-1L) {
 						intermediaryResult[0] = cachedShare;
 						shareSet = true;
 					}
@@ -195,9 +199,9 @@ public class LessThan extends GenericOperationState implements IOperation {
 			if(initialData[3] == -1L) {
 				// Do we have it in the predicate cache?
 				boolean shareSet = false;
-				if(predicateKeyB!=null) {
-					Long cachedShare = primitives.getPredicateCache().get(predicateKeyB);
-					if(cachedShare!=null) {
+				if(predicateKeyB!=PredicateCache.NO_KEY) {
+					long cachedShare = primitives.getPredicateCache().get(predicateScope, predicateKeyB, -1L);
+					if(cachedShare!=-1L) {
 						intermediaryResult[1] = cachedShare;
 						shareSet = true;
 					}
@@ -226,9 +230,9 @@ public class LessThan extends GenericOperationState implements IOperation {
 			if(initialData[4] == -1L) {
 				// Do we have it in the predicate cache?
 				boolean shareSet = false;
-				if(predicateKeyAB!=null) {
-					Long cachedShare = primitives.getPredicateCache().get(predicateKeyAB);
-					if(cachedShare!=null) {
+				if(predicateKeyAB!=PredicateCache.NO_KEY) {
+					long cachedShare = primitives.getPredicateCache().get(predicateScope, predicateKeyAB, -1L);
+					if(cachedShare!=-1L) {
 						intermediaryResult[2] = cachedShare;
 						shareSet = true;
 					}
@@ -289,12 +293,12 @@ public class LessThan extends GenericOperationState implements IOperation {
 //							primitives.log("some LSB computation ("+subOperationIndex+") finished; intermediaryResult="+primitives.outputShares(getIntermediaryResult()));
 							
 							// Cache the result
-							if (predicateKeyA!=null && subOperationIndex==0) {
-								primitives.getPredicateCache().put(predicateKeyA, predicateShare);
-							} else if (predicateKeyB!=null && subOperationIndex==1) {
-								primitives.getPredicateCache().put(predicateKeyB, predicateShare);
-							} else if (predicateKeyAB!=null && subOperationIndex==2) {
-							  primitives.getPredicateCache().put(predicateKeyAB, predicateShare);
+							if (predicateKeyA!=PredicateCache.NO_KEY && subOperationIndex==0) {
+								primitives.getPredicateCache().put(predicateScope, predicateKeyA, predicateShare);
+							} else if (predicateKeyB!=PredicateCache.NO_KEY && subOperationIndex==1) {
+								primitives.getPredicateCache().put(predicateScope, predicateKeyB, predicateShare);
+							} else if (predicateKeyAB!=PredicateCache.NO_KEY && subOperationIndex==2) {
+							  primitives.getPredicateCache().put(predicateScope, predicateKeyAB, predicateShare);
 							}
 						}
 						lsbComputedCount++;
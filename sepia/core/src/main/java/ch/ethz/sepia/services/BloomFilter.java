@@ -17,6 +17,7 @@ package ch.ethz.sepia.services;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
 
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,9 @@ import org.slf4j.ext.XLogger;
 /**
  * Provides a (counting/spectral) BloomFilter structure of arbitrary Size, methods for filter
  * manipulations such as insert or element check, etc.
+ * <p>
+ * Counting filters store one int counter per position. Non-counting filters store one bit
+ * per position in 64 bit words, such that unions and intersections work on whole words.
  *
  * @author Manuel Widmer, ETH Zurich
  *
@@ -253,11 +257,7 @@ public class BloomFilter {
 		result = result.reduceBy(T);
 		if(!learnCount){
 			// set all values > 1 to 1
-			for(int i = 0; i < result.bf.length; i++){
-				if(result.bf[i] > 1){
-					result.bf[i] = 1;
-				}
-			}
+			result = result.toNonCounting();
 		}
 		return result;
 	}
@@ -274,25 +274,42 @@ public class BloomFilter {
 	public static BloomFilter weightedIntersection(final BloomFilter[] Keys, final BloomFilter[] Weights, final int Tk, final int Tw, final boolean learnCount){
 		final BloomFilter k = thresholdUnion(Keys, Tk, false);
 		final BloomFilter w = thresholdUnion(Weights, Tw, true);
-		final BloomFilter result = k;
-		result.b_cnt = learnCount;
-		for(int i = 0; i < result.bf.length; i++){
+		final BloomFilter result = k.emptyCopy(learnCount);
+		for(int i = 0; i < result.range; i++){
 			// cancel all key's that didn't reach both thresholds
-			result.bf[i] = result.bf[i]*w.bf[i];
-			if(!learnCount){
-				if(result.bf[i] > 1){
-					result.bf[i] = 1;
-				}
+			final int value = k.getValue(i)*w.getValue(i);
+			if(learnCount){
+				result.bf[i] = value;
+			}else if(value > 0){
+				result.setBit(i);
 			}
 		}
 		result.nonZeroCounter = result.arraySum();
 		return result;
 	}
 
+	/**
+	 * Returns the number of 64 bit words needed to store the given number of bits.
+	 * @param range number of bits
+	 * @return the number of words
+	 */
+	private static int wordCount(final int range){
+		return (range + 63) >>> 6;
+	}
+
 	private boolean b_cnt;
 
+	/** counters of a counting BloomFilter, null for non-counting filters */
 	private int [] bf;
 
+	/** bits of a non-counting BloomFilter, null for counting filters */
+	private long [] bits;
+
+	/** int view of the bits, created by {@link #getArray()} and dropped on changes */
+	private int [] bitsView;
+
+	private final int range;
+
 	private final MultiHash mhash;
 
 	private long nonZeroCounter;
@@ -305,66 +322,163 @@ public class BloomFilter {
 	 * @param counting true if a counting BloomFilter is needed
 	 */
 	public BloomFilter(final int hashes ,final int size, final boolean counting){
+		this(hashes, size, counting, MultiHash.ALGORITHM_HMAC_MD5);
+	}
+
+	/**
+	 * Constructor
+	 * @param hashes number of hash functions to use
+	 * @param size length of the BloomFilter array, if no power of 2 is specified the next lager
+	 * 		  power is assumed.
+	 * @param counting true if a counting BloomFilter is needed
+	 * @param algorithm the hash algorithm (see {@link MultiHash#MultiHash(int, int, String)})
+	 */
+	public BloomFilter(final int hashes ,final int size, final boolean counting, final String algorithm){
 		final int Range = getNextPowerOfTwo(size);
-		bf = new int[Range];
+		range = Range;
 		b_cnt = counting;
+		if(counting){
+			bf = new int[Range];
+		}else{
+			bits = new long[wordCount(Range)];
+		}
 		nonZeroCounter = 0;
-		mhash = new MultiHash(hashes, Range);
+		mhash = new MultiHash(hashes, Range, algorithm);
 	}
 
 	/**
 	 * Constructs a BloomFilter from an already present filter data array
 	 * @param hashes number of hash functions to use
-	 * @param filterarray underlying data structure
+	 * @param filterarray underlying data structure. For a non-counting filter,
+	 * 		  all positions greater than zero are set.
 	 * @param counting true if a counting BloomFilter is needed
 	 */
 	public BloomFilter(final int hashes, final int [] filterarray, final boolean counting){
-		final int size = filterarray.length;
-		// make sure filter has power of 2
-		final int Range = getNextPowerOfTwo(size);
-		bf = new int[Range];
+		this(hashes, filterarray.length, counting);
 		// copy array
 		for(int i = 0; i < filterarray.length; i++){
-			bf[i] = filterarray[i];
+			if(counting){
+				bf[i] = filterarray[i];
+			}else if(filterarray[i] > 0){
+				setBit(i);
+			}
 		}
-
-
-		b_cnt = counting;
 		nonZeroCounter = arraySum();
-		mhash = new MultiHash(hashes, bf.length);
 	}
 
 	/**
 	 * Constructs a BloomFilter from an already present filter data array
 	 * @param hashes number of hash functions to use
-	 * @param filterarray underlying data structure, (long) will be truncated to (int)
+	 * @param filterarray underlying data structure, (long) will be truncated to (int). For a
+	 * 		  non-counting filter, all positions greater than zero are set.
 	 * @param counting true if a counting BloomFilter is needed
 	 */
 	public BloomFilter(final int hashes, final long [] filterarray, final boolean counting){
-		final int size = filterarray.length;
-		// make sure filter has power of 2
-		final int Range = getNextPowerOfTwo(size);
-		bf = new int[Range];
+		this(hashes, filterarray, counting, MultiHash.ALGORITHM_HMAC_MD5);
+	}
+
+	/**
+	 * Constructs a BloomFilter from an already present filter data array
+	 * @param hashes number of hash functions to use
+	 * @param filterarray underlying data structure, (long) will be truncated to (int). For a
+	 * 		  non-counting filter, all positions greater than zero are set.
+	 * @param counting true if a counting BloomFilter is needed
+	 * @param algorithm the hash algorithm (see {@link MultiHash#MultiHash(int, int, String)})
+	 */
+	public BloomFilter(final int hashes, final long [] filterarray, final boolean counting, final String algorithm){
+		this(hashes, filterarray.length, counting, algorithm);
 		for(int i = 0; i < filterarray.length; i++){
-			bf[i] = (int)filterarray[i]; // truncate to int
+			if(counting){
+				bf[i] = (int)filterarray[i]; // truncate to int
+			}else if((int)filterarray[i] > 0){
+				setBit(i);
+			}
 		}
-		b_cnt = counting;
 		nonZeroCounter = arraySum();
-		mhash = new MultiHash(hashes, bf.length);
 	}
 
 	/**
-     * Iterates over the whole array and counts
+	 * Copy constructor
+	 * @param other the BloomFilter to copy
+	 */
+	private BloomFilter(final BloomFilter other){
+		range = other.range;
+		b_cnt = other.b_cnt;
+		bf = other.bf == null ? null : other.bf.clone();
+		bits = other.bits == null ? null : other.bits.clone();
+		nonZeroCounter = other.nonZeroCounter;
+		mhash = new MultiHash(other.getHashCount(), other.range, other.getHashAlgorithm());
+	}
+
+	/**
+     * Iterates over the whole array and counts. For a non-counting filter, this is
+     * the population count of the bit words.
      * @return the sum of all values in the internal array
      */
     private long arraySum(){
     	long sum = 0;
-    	for(final int a : bf){
-    		sum += a;
+    	if(bits != null){
+    		for(final long word : bits){
+    			sum += Long.bitCount(word);
+    		}
+    	}else{
+    		for(final int a : bf){
+    			sum += a;
+    		}
     	}
     	return sum;
     }
 
+	/**
+	 * @param index position in the filter
+	 * @return the value at the position (0 or 1 for non-counting filters)
+	 */
+	private int getValue(final int index){
+		if(bits != null){
+			return (int)((bits[index >>> 6] >>> index) & 1L);
+		}
+		return bf[index];
+	}
+
+	/**
+	 * Sets a bit of a non-counting filter (without updating the nonzero counter).
+	 * @param index position in the filter
+	 * @return true if the bit was already set
+	 */
+	private boolean setBit(final int index){
+		final long mask = 1L << index;
+		final boolean wasSet = (bits[index >>> 6] & mask) != 0;
+		bits[index >>> 6] |= mask;
+		bitsView = null;
+		return wasSet;
+	}
+
+	/**
+	 * @param counting true if a counting BloomFilter is needed
+	 * @return an empty BloomFilter with the same range and hash functions as this one
+	 */
+	private BloomFilter emptyCopy(final boolean counting){
+		return new BloomFilter(this.getHashCount(), range, counting, this.getHashAlgorithm());
+	}
+
+	/**
+	 * Converts this filter to a non-counting filter, where all positions greater than zero are set.
+	 * @return the non-counting filter (this, if the filter is already non-counting)
+	 */
+	private BloomFilter toNonCounting(){
+		if(bits != null){
+			return this;
+		}
+		final BloomFilter filt = emptyCopy(false);
+		for(int i = 0; i < range; i++){
+			if(bf[i] > 0){
+				filt.setBit(i);
+			}
+		}
+		filt.nonZeroCounter = filt.arraySum();
+		return filt;
+	}
+
 	/**
 	 * Checks if the specified byte array is already stored in the BloomFilter
 	 * @param val value to check
@@ -381,7 +495,7 @@ public class BloomFilter {
 
 			// if for any hash function the value is not inside
 			// then return false
-			if(bf[indices[i]] <= 0){
+			if(getValue(indices[i]) <= 0){
 				found = false;
 				break;
 			}
@@ -406,24 +520,37 @@ public class BloomFilter {
 	 * @return true if value was found
 	 */
 	public boolean check(final String val) {
-		boolean found = false;
-		try{
-			// use a specific encoding to guarantee the same outcome on all platforms
-			final byte [] msg = val.getBytes("ISO-8859-1");
-			found = check(msg);
-		}catch(final Exception e){
-			e.printStackTrace();
-		}
-		return found;
+		// use a specific encoding to guarantee the same outcome on all platforms
+		return check(MultiHash.toLatin1(val));
 	}
 
 
 
 	/**
-	 * @return the underlying array of the BloomFilter. Manipulations are possible.
+	 * @return the underlying array of the BloomFilter. Manipulations are possible for counting
+	 * 		   filters. For non-counting filters, this is a copy of the bits (one int per position).
 	 */
 	public int [] getArray(){
-		return bf;
+		if(bits == null){
+			return bf;
+		}
+		if(bitsView == null){
+			final int [] view = new int[range];
+			for(int i = 0; i < range; i++){
+				view[i] = getValue(i);
+			}
+			bitsView = view;
+		}
+		return bitsView;
+	}
+
+	/**
+	 * @return the bits of a non-counting BloomFilter in 64 bit words (position i is bit i%64 of
+	 * 		   word i/64), or null for a counting filter. Manipulations are possible.
+	 */
+	public long [] getWords(){
+		bitsView = null;
+		return bits;
 	}
 
 	/**
@@ -440,7 +567,7 @@ public class BloomFilter {
 
 		for(int i = 0; i < indices.length; i++){
 			// find the minimum of all counters
-			if(bf[indices[i]] <= result){
+			if(getValue(indices[i]) <= result){
 				result = indices[i];
 			}
 		}
@@ -459,6 +586,13 @@ public class BloomFilter {
 		return mhash.getHashCount();
 	}
 
+	/**
+	 * @return the hash algorithm (see {@link MultiHash#MultiHash(int, int, String)})
+	 */
+	public String getHashAlgorithm() {
+		return mhash.getAlgorithm();
+	}
+
 	/**
 	 * @return the sum of all array entries
 	 */
@@ -470,7 +604,7 @@ public class BloomFilter {
 	 * @return the range of the BloomFilter
 	 */
 	public int getRange(){
-		return bf.length;
+		return range;
 	}
 
 	public boolean insert(final byte [] val) {
@@ -503,10 +637,9 @@ public class BloomFilter {
 					nonZeroCounter -= count - temp;
 				}
 			}else{
-				if(bf[indices[i]] > 0){
+				if(setBit(indices[i])){
 					coll_count++;
 				}else{
-					bf[indices[i]] = 1;
 					nonZeroCounter++;
 				}
 			}
@@ -547,15 +680,8 @@ public class BloomFilter {
 	 * (either false positive, or value already present)
 	 */
 	public boolean insert(final String val, final int count) {
-		boolean collision = false;
-		try{
-			// use a specific encoding to guarantee the same outcome on all platforms
-			final byte [] msg = val.getBytes("ISO-8859-1");
-			collision = insert(msg, count);
-		}catch(final Exception e){
-			e.printStackTrace();
-		}
-		return collision;
+		// use a specific encoding to guarantee the same outcome on all platforms
+		return insert(MultiHash.toLatin1(val), count);
 	}
 
 	/**
@@ -566,17 +692,22 @@ public class BloomFilter {
 	 * @return a BloomFilter representing the intersection of this and rhs
 	 */
 	public BloomFilter intersect(final BloomFilter rhs, final boolean cnt){
-		final BloomFilter filt = new BloomFilter(this.getHashCount(), this.bf, cnt);
 		if(!isComparable(rhs)){
 			return null;
+		}
+		final BloomFilter filt = emptyCopy(cnt);
+		if(bits != null && !cnt){
+			// bitwise and of the words
+			for(int i = 0; i < bits.length; i++){
+				filt.bits[i] = bits[i] & rhs.bits[i];
+			}
 		}else{
-			// same for counting and non counting
-			for(int i = 0; i < bf.length; i++){
-				filt.bf[i] = Math.min(bf[i], rhs.getArray()[i]);
-				if(!cnt){
-					if(filt.bf[i] > 1){
-						filt.bf[i] = 1;
-					}
+			for(int i = 0; i < range; i++){
+				final int min = Math.min(getValue(i), rhs.getValue(i));
+				if(cnt){
+					filt.bf[i] = min;
+				}else if(min > 0){
+					filt.setBit(i);
 				}
 			}
 		}
@@ -604,8 +735,7 @@ public class BloomFilter {
 
 
 	public boolean isComparable(final BloomFilter rhs){
-		if(rhs.getRange() == this.getRange() &&
-		   rhs.getHashCount() == this.getHashCount() &&
+		if(hasSameDimensions(rhs) &&
 		   rhs.isCounting() == this.isCounting()){
 			return true;
 		}else{
@@ -613,6 +743,12 @@ public class BloomFilter {
 		}
 	}
 
+	private boolean hasSameDimensions(final BloomFilter rhs){
+		return rhs.getRange() == this.getRange() &&
+			   rhs.getHashCount() == this.getHashCount() &&
+			   rhs.getHashAlgorithm().equals(this.getHashAlgorithm());
+	}
+
 	public boolean isCounting(){
 		return b_cnt;
 	}
@@ -624,21 +760,26 @@ public class BloomFilter {
 	 *
 	 * @param rhs
 	 * 	 * @param cnt specify whether the resulting BloomFilter should be counting or not
-	 * @return a BloomFilter representing the union of this and rhs
+	 * @return a BloomFilter representing the union of this and rhs. The result is counting
+	 * 		   if this filter is counting or if the sum is requested.
 	 */
 	public BloomFilter join(final BloomFilter rhs, final boolean cnt){
-		final BloomFilter filt = new BloomFilter(this.getHashCount(), this.bf, this.isCounting());
-		if(!isComparable(rhs)){
+		// the sum is also defined for a counting and a non-counting filter
+		if(cnt ? !hasSameDimensions(rhs) : !isComparable(rhs)){
 			return null;
+		}
+		final BloomFilter filt = emptyCopy(cnt || this.isCounting());
+		if(cnt){ // sum
+			for(int i = 0; i < range; i++){
+				filt.bf[i] = getValue(i) + rhs.getValue(i);
+			}
+		}else if(bits != null){ // only 1 or 0, bitwise or of the words
+			for(int i = 0; i < bits.length; i++){
+				filt.bits[i] = bits[i] | rhs.bits[i];
+			}
 		}else{
-			if(cnt){ // sum
-				for(int i = 0; i < bf.length; i++){
-					filt.bf[i] = bf[i] + rhs.getArray()[i];
-				}
-			}else{ // only 1 or 0
-				for(int i = 0; i < bf.length; i++){
-					filt.bf[i] = Math.max(bf[i], rhs.getArray()[i]);
-				}
+			for(int i = 0; i < range; i++){
+				filt.bf[i] = Math.max(bf[i], rhs.bf[i]);
 			}
 		}
 		// update nonzerocounter
@@ -655,8 +796,14 @@ public class BloomFilter {
 	 * @return initial BloomFilter reduced by threshold
 	 */
 	public BloomFilter reduceBy(final int threshold){
-		final BloomFilter filt = new BloomFilter(this.getHashCount(), this.bf, this.isCounting());
-		for(int i = 0; i < filt.getArray().length; i++){
+		final BloomFilter filt = new BloomFilter(this);
+		if(filt.bits != null){
+			if(1 < threshold){
+				filt.reset();
+			}
+			return filt;
+		}
+		for(int i = 0; i < filt.bf.length; i++){
 			if(filt.bf[i] < threshold){
 				filt.bf[i] = 0;
 			}
@@ -695,22 +842,20 @@ public class BloomFilter {
 	 * @return true if remove was successful
 	 */
 	public boolean remove(final String val) {
-		boolean removed = false;
-		try{
-			// use a specific encoding to guarantee the same outcome on all platforms
-			final byte [] msg = val.getBytes("ISO-8859-1");
-			removed = remove(msg);
-		}catch(final Exception e){
-			e.printStackTrace();
-		}
-		return removed;
+		// use a specific encoding to guarantee the same outcome on all platforms
+		return remove(MultiHash.toLatin1(val));
 	}
 
 	/**
 	 * Resets the BloomFilter to all zeros
 	 */
 	public void reset(){
-		bf = new int[bf.length];
+		if(bits != null){
+			bits = new long[bits.length];
+			bitsView = null;
+		}else{
+			bf = new int[bf.length];
+		}
 		nonZeroCounter = 0;
 	}
 
@@ -719,13 +864,18 @@ public class BloomFilter {
 	 */
 	public String toString(){
 		final StringBuffer res = new StringBuffer();
-		for(int i = 0; i < bf.length; i++){
-			res.append(bf[i]).append(", ");
+		for(int i = 0; i < range; i++){
+			res.append(getValue(i)).append(", ");
 		}
 		return res.toString();
 	}
 
 
+	/**
+	 * Writes the BloomFilter in a text format (one line per position).
+	 * See {@link #writeToBinaryFile(String)} for a compact format.
+	 * @param fileName the file
+	 */
 	public void writeToFile(final String fileName) throws Exception {
 		// NOTE: changing this class or MultiHash may break the file format compatibility
 
@@ -736,14 +886,46 @@ public class BloomFilter {
 		pw.println("Bloom Filter parameters: isCounting, hash function count, filter length");
 		pw.println(b_cnt);
 		pw.println(mhash.getHashCount());
-		pw.println(bf.length);
+		pw.println(range);
 		// BF positions
-		for(int iPosition = 0; iPosition < bf.length; iPosition++) {
-			pw.println(bf[iPosition]);
+		for(int iPosition = 0; iPosition < range; iPosition++) {
+			pw.println(getValue(iPosition));
 		}
 		pw.close();
 		bw.close();
 		fw.close();
 	}
-}
 
+	/**
+	 * Writes the BloomFilter in the versioned binary format, which includes the hash
+	 * algorithm. Such files can be memory-mapped with {@link MappedBloomFilter}.
+	 * @param fileName the file
+	 * @throws IOException
+	 */
+	public void writeToBinaryFile(final String fileName) throws IOException {
+		MappedBloomFilter.write(this, fileName);
+	}
+
+	/**
+	 * Reads a BloomFilter written by {@link #writeToBinaryFile(String)}.
+	 * @param fileName the file
+	 * @return the BloomFilter
+	 * @throws IOException if the file cannot be read or has an unsupported format
+	 */
+	public static BloomFilter readFromBinaryFile(final String fileName) throws IOException {
+		final MappedBloomFilter mapped = new MappedBloomFilter(fileName);
+		try{
+			return mapped.toBloomFilter();
+		}finally{
+			mapped.close();
+		}
+	}
+
+	/**
+	 * Recomputes the sum of all positions after the array was changed in place.
+	 */
+	void updateNonZeros(){
+		bitsView = null;
+		nonZeroCounter = arraySum();
+	}
+}
@@ -0,0 +1,307 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.services;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view of a BloomFilter stored in the binary file format, which is memory-mapped
+ * instead of loaded on the heap. Elements can be checked and the filter can be merged into
+ * a BloomFilter on the heap position by position.
+ * <p>
+ * File format (version 1, big endian):
+ * <pre>
+ * int   magic "SBLF"
+ * int   version
+ * int   flags (bit 0: counting)
+ * int   hash function count
+ * int   range
+ * long  sum of all positions
+ * short length of the hash algorithm name, followed by the ISO-8859-1 name
+ *       (padded with zeros to a multiple of 8 bytes)
+ * data  non-counting: (range+63)/64 longs, position i is bit i%64 of word i/64
+ *       counting: range ints
+ * </pre>
+ */
+public class MappedBloomFilter implements Closeable {
+
+	/** "SBLF" */
+	public static final int MAGIC = 0x53424c46;
+	/** The current version of the file format */
+	public static final int VERSION = 1;
+	private static final int FLAG_COUNTING = 1;
+
+	/** size of a mapped chunk. Files larger than 2GB are mapped in several chunks. */
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer [] chunks;
+	private final boolean counting;
+	private final int range;
+	private final long nonZeros;
+	private final MultiHash mhash;
+
+	/**
+	 * Writes a BloomFilter in the binary file format.
+	 * @param filter the filter to write
+	 * @param fileName the file
+	 * @throws IOException
+	 */
+	public static void write(final BloomFilter filter, final String fileName) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		try {
+			final byte [] algorithm = filter.getHashAlgorithm().getBytes(StandardCharsets.ISO_8859_1);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(filter.isCounting() ? FLAG_COUNTING : 0);
+			out.writeInt(filter.getHashCount());
+			out.writeInt(filter.getRange());
+			out.writeLong(filter.getNonZeros());
+			out.writeShort(algorithm.length);
+			out.write(algorithm);
+			// align the data
+			while(out.size() % 8 != 0){
+				out.writeByte(0);
+			}
+
+			if(filter.isCounting()){
+				for(final int counter : filter.getArray()){
+					out.writeInt(counter);
+				}
+			}else{
+				for(final long word : filter.getWords()){
+					out.writeLong(word);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Maps a BloomFilter file.
+	 * @param fileName the file
+	 * @throws IOException if the file cannot be read or is not a BloomFilter file of a supported version
+	 */
+	public MappedBloomFilter(final String fileName) throws IOException {
+		file = new RandomAccessFile(fileName, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 16));
+			if(header.remaining() < 30 || header.getInt() != MAGIC){
+				throw new IOException(fileName + " is not a BloomFilter file");
+			}
+			final int version = header.getInt();
+			if(version != VERSION){
+				throw new IOException("Unsupported BloomFilter file version " + version + " in " + fileName);
+			}
+			counting = (header.getInt() & FLAG_COUNTING) != 0;
+			final int hashes = header.getInt();
+			range = header.getInt();
+			nonZeros = header.getLong();
+			final byte [] algorithm = new byte[header.getShort() & 0xffff];
+			if(header.remaining() < algorithm.length){
+				throw new IOException("Truncated BloomFilter file " + fileName);
+			}
+			header.get(algorithm);
+			final long dataOffset = (header.position() + 7) & ~7L;
+
+			final long dataSize = counting ? 4L*range : 8L*((range + 63) >>> 6);
+			if(channel.size() < dataOffset + dataSize){
+				throw new IOException("Truncated BloomFilter file " + fileName);
+			}
+			chunks = new MappedByteBuffer[(int)((dataSize + CHUNK_MASK) >>> CHUNK_BITS)];
+			for(int i = 0; i < chunks.length; i++){
+				final long start = (long)i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start,
+						Math.min(CHUNK_MASK + 1, dataSize - start));
+			}
+			mhash = new MultiHash(hashes, range, new String(algorithm, StandardCharsets.ISO_8859_1));
+		} catch (final IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param index position in the filter
+	 * @return the value at the position (0 or 1 for non-counting filters)
+	 */
+	public int getValue(final int index){
+		if(counting){
+			final long offset = 4L*index;
+			return chunks[(int)(offset >>> CHUNK_BITS)].getInt((int)(offset & CHUNK_MASK));
+		}
+		return (int)((getWord(index >>> 6) >>> index) & 1L);
+	}
+
+	private long getWord(final int word){
+		final long offset = 8L*word;
+		return chunks[(int)(offset >>> CHUNK_BITS)].getLong((int)(offset & CHUNK_MASK));
+	}
+
+	/**
+	 * Checks if the specified byte array is stored in the BloomFilter
+	 * @param val value to check
+	 * @return true if value was found
+	 */
+	public boolean check(final byte [] val){
+		for(final int index : mhash.hash(val)){
+			if(getValue(index) <= 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the specified String is stored in the BloomFilter
+	 * @param val string to check, assumes ISO-8859-1 encoding
+	 * @return true if value was found
+	 */
+	public boolean check(final String val){
+		return check(MultiHash.toLatin1(val));
+	}
+
+	/**
+	 * Merges this filter into a BloomFilter on the heap, like {@link BloomFilter#join(BloomFilter, boolean)}.
+	 * @param target the filter to update, which must have the same range and hash functions.
+	 * @param cnt true to add the values (target must be counting), false for the maximum
+	 * @throws IllegalArgumentException if the filters do not match
+	 */
+	public void joinInto(final BloomFilter target, final boolean cnt){
+		checkTarget(target, cnt);
+		if(!target.isCounting() && !counting){
+			final long [] words = target.getWords();
+			for(int i = 0; i < words.length; i++){
+				words[i] |= getWord(i);
+			}
+		}else if(target.isCounting()){
+			final int [] counters = target.getArray();
+			for(int i = 0; i < range; i++){
+				counters[i] = cnt ? counters[i] + getValue(i) : Math.max(counters[i], getValue(i));
+			}
+		}else{
+			final long [] words = target.getWords();
+			for(int i = 0; i < range; i++){
+				if(getValue(i) > 0){
+					words[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+		target.updateNonZeros();
+	}
+
+	/**
+	 * Intersects a BloomFilter on the heap with this filter, like {@link BloomFilter#intersect(BloomFilter, boolean)}.
+	 * @param target the filter to update, which must have the same range and hash functions.
+	 * @throws IllegalArgumentException if the filters do not match
+	 */
+	public void intersectInto(final BloomFilter target){
+		checkTarget(target, false);
+		if(!target.isCounting() && !counting){
+			final long [] words = target.getWords();
+			for(int i = 0; i < words.length; i++){
+				words[i] &= getWord(i);
+			}
+		}else if(target.isCounting()){
+			final int [] counters = target.getArray();
+			for(int i = 0; i < range; i++){
+				counters[i] = Math.min(counters[i], getValue(i));
+			}
+		}else{
+			final long [] words = target.getWords();
+			for(int i = 0; i < range; i++){
+				if(getValue(i) <= 0){
+					words[i >>> 6] &= ~(1L << i);
+				}
+			}
+		}
+		target.updateNonZeros();
+	}
+
+	private void checkTarget(final BloomFilter target, final boolean cnt){
+		if(target.getRange() != range || target.getHashCount() != getHashCount()
+				|| !target.getHashAlgorithm().equals(getHashAlgorithm())){
+			throw new IllegalArgumentException("BloomFilters do not match: range " + target.getRange() + "/" + range
+					+ ", hash count " + target.getHashCount() + "/" + getHashCount()
+					+ ", algorithm " + target.getHashAlgorithm() + "/" + getHashAlgorithm());
+		}
+		if(cnt && !target.isCounting()){
+			throw new IllegalArgumentException("The sum requires a counting BloomFilter");
+		}
+	}
+
+	/**
+	 * Loads the whole filter on the heap.
+	 * @return the BloomFilter
+	 */
+	public BloomFilter toBloomFilter(){
+		final BloomFilter filter = new BloomFilter(getHashCount(), range, counting, getHashAlgorithm());
+		joinInto(filter, counting);
+		return filter;
+	}
+
+	/**
+	 * @return the number of hash values computed per item
+	 */
+	public int getHashCount(){
+		return mhash.getHashCount();
+	}
+
+	/**
+	 * @return the hash algorithm
+	 */
+	public String getHashAlgorithm(){
+		return mhash.getAlgorithm();
+	}
+
+	/**
+	 * @return the range of the BloomFilter
+	 */
+	public int getRange(){
+		return range;
+	}
+
+	/**
+	 * @return the sum of all array entries, as stored in the header
+	 */
+	public long getNonZeros(){
+		return nonZeros;
+	}
+
+	public boolean isCounting(){
+		return counting;
+	}
+
+	/**
+	 * Closes the file. Note that the mapping itself is released only when this object
+	 * is garbage collected.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+}
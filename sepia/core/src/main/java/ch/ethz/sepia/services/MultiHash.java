@@ -15,6 +15,7 @@
 
 package ch.ethz.sepia.services;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Random;
 
 import javax.crypto.Mac;
@@ -24,13 +25,28 @@ import javax.crypto.spec.SecretKeySpec;
  * Hashing class for use with BloomFilters, provides methods to get multiple different
  * hash values for a single input value. It is based on javax.crypto.Mac and supports
  * either SHA1 or MD5 as hashing algorithms.
+ * <p>
+ * Alternatively, the non-cryptographic {@link #ALGORITHM_MURMUR3} strategy computes a single
+ * 128 bit MurmurHash3 per input and derives all hash values by double hashing
+ * (Kirsch and Mitzenmacher): h_i = h1 + i*h2. This is much faster, but the hash values
+ * are predictable for anyone who knows the seed.
  * 
  * @author Manuel Widmer, ETH Zurich
  *
  */
 public class MultiHash {
 	
-	private String ALGORITHM = "HmacMD5";
+	/** HMAC with MD5 (default) */
+	public static final String ALGORITHM_HMAC_MD5 = "HmacMD5";
+	/** HMAC with SHA1 */
+	public static final String ALGORITHM_HMAC_SHA1 = "HmacSHA1";
+	/** double hashing over a 128 bit MurmurHash3 (x64 variant) */
+	public static final String ALGORITHM_MURMUR3 = "Murmur3";
+
+	private static final long MURMUR_C1 = 0x87c37b91114253d5L;
+	private static final long MURMUR_C2 = 0x4cf5ad432745937fL;
+
+	private String ALGORITHM = ALGORITHM_HMAC_MD5;
 	/** used to generate the keys for the hmac functions */
 	private final static long seed = (0xabcdef01L<<32 | 0x23456789L);
 	private SecretKeySpec [] sks;
@@ -39,6 +55,28 @@ public class MultiHash {
 	private int nrHashes;
 	
 	private Mac [] manyHmac;
+
+	/** seed of the MurmurHash3 */
+	private int murmurSeed;
+
+	/**
+	 * Converts a String to ISO-8859-1 bytes, like String.getBytes("ISO-8859-1") but
+	 * without the charset lookup and encoder for the common case of pure ISO-8859-1 input.
+	 * @param val String to convert
+	 * @return the encoded bytes
+	 */
+	static byte[] toLatin1(String val) {
+		byte[] buffer = new byte[val.length()];
+		for(int i = 0; i < buffer.length; i++) {
+			char c = val.charAt(i);
+			if(c >= 256) {
+				// let the encoder replace the unmappable characters
+				return val.getBytes(StandardCharsets.ISO_8859_1);
+			}
+			buffer[i] = (byte) c;
+		}
+		return buffer;
+	}
 	
 	/**
 	 * Converts an integer to a byte array
@@ -85,12 +123,20 @@ public class MultiHash {
 		return ALGORITHM;
 	}
 	
+	/**
+	 * @return the seed of the MurmurHash3 (only used by the "Murmur3" algorithm)
+	 */
+	public int getMurmurSeed() {
+		return murmurSeed;
+	}
+	
 	/**
 	 * Creates and initializes a new MultiHashfunction.
 	 * @param HashCount Number of distinct hash values needed per query
 	 * @param Range Range of the hash values, if no power of 2 is specified the next lager
 	 * 		  power is assumed. Maximum allowed is 2^30.
-	 * @param alg specifies the hashing algorithm, can be either "HmacMD5" or "HmacSHA1"
+	 * @param alg specifies the hashing algorithm, can be either "HmacMD5", "HmacSHA1"
+	 * 		  or "Murmur3" (unknown algorithms fall back to "HmacMD5")
 	 */
 	public MultiHash(int HashCount, int Range, String alg){
 		nrHashes = HashCount;
@@ -103,6 +149,12 @@ public class MultiHash {
 			bitsPerHash = 1;
 		}
 		
+		if(ALGORITHM.equals(ALGORITHM_MURMUR3)){
+			// no keys needed
+			murmurSeed = m.nextInt();
+			return;
+		}
+
 		// number of HmacMD5 or HmacSHA1 keys needed 
 		// (HmacMD5 produces 128 bit [16 byte] hashes)
 		// (HmacSHA1 produces 160 bit [20 byte] hashes)
@@ -168,13 +220,7 @@ public class MultiHash {
 	 * @return array of different hash values for the given input
 	 */
 	public int [] hash(String val) {
-		byte [] msg = null;
-		try{
-			msg = val.getBytes("ISO-8859-1");
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-		return hash(msg);
+		return hash(toLatin1(val));
 	}
 	
 	/**
@@ -194,6 +240,9 @@ public class MultiHash {
 	 * @return array of different hash values for the given input
 	 */
 	public int [] hash(byte [] val) {
+		if(hmac == null){
+			return doubleHash(val);
+		}
 		int [] result = new int[nrHashes];
 		long mask = 0;
 		long h = 0, filter = 0;
@@ -240,15 +289,117 @@ public class MultiHash {
 		return result;
 	}
 	
+	/**
+	 * Computes the hash values by double hashing: h_i = h1 + i*h2, where h1 and h2 are
+	 * the two halves of the 128 bit MurmurHash3 of the input. h2 is made odd, such that
+	 * the hash values of an input are distinct if there are no more than the range.
+	 * @param val Byte array to hash
+	 * @return array of different hash values for the given input
+	 */
+	private int [] doubleHash(byte [] val) {
+		long [] h = murmur3(val, murmurSeed);
+		long h2 = h[1] | 1L;
+		long mask = (1L << bitsPerHash) - 1;
+		int [] result = new int[nrHashes];
+		long combined = h[0];
+		for(int i = 0; i < nrHashes; i++){
+			result[i] = (int)(combined & mask);
+			combined += h2;
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the 128 bit MurmurHash3 (x64 variant) of the given input.
+	 * @param data bytes to hash
+	 * @param seed the seed
+	 * @return the two 64 bit halves of the hash
+	 */
+	public static long [] murmur3(byte [] data, int seed) {
+		long h1 = seed & 0xffffffffL;
+		long h2 = seed & 0xffffffffL;
+		int blocks = data.length >>> 4;
+
+		for(int i = 0; i < blocks; i++){
+			long k1 = getLittleEndianLong(data, i << 4);
+			long k2 = getLittleEndianLong(data, (i << 4) + 8);
+
+			k1 *= MURMUR_C1; k1 = Long.rotateLeft(k1, 31); k1 *= MURMUR_C2; h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1*5 + 0x52dce729;
+
+			k2 *= MURMUR_C2; k2 = Long.rotateLeft(k2, 33); k2 *= MURMUR_C1; h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2*5 + 0x38495ab5;
+		}
+
+		// tail
+		int tail = blocks << 4;
+		long k1 = 0;
+		long k2 = 0;
+		switch(data.length & 15){
+		case 15: k2 ^= (long)(data[tail+14] & 0xff) << 48;
+		case 14: k2 ^= (long)(data[tail+13] & 0xff) << 40;
+		case 13: k2 ^= (long)(data[tail+12] & 0xff) << 32;
+		case 12: k2 ^= (long)(data[tail+11] & 0xff) << 24;
+		case 11: k2 ^= (long)(data[tail+10] & 0xff) << 16;
+		case 10: k2 ^= (long)(data[tail+9] & 0xff) << 8;
+		case 9: k2 ^= (long)(data[tail+8] & 0xff);
+			k2 *= MURMUR_C2; k2 = Long.rotateLeft(k2, 33); k2 *= MURMUR_C1; h2 ^= k2;
+		case 8: k1 ^= (long)(data[tail+7] & 0xff) << 56;
+		case 7: k1 ^= (long)(data[tail+6] & 0xff) << 48;
+		case 6: k1 ^= (long)(data[tail+5] & 0xff) << 40;
+		case 5: k1 ^= (long)(data[tail+4] & 0xff) << 32;
+		case 4: k1 ^= (long)(data[tail+3] & 0xff) << 24;
+		case 3: k1 ^= (long)(data[tail+2] & 0xff) << 16;
+		case 2: k1 ^= (long)(data[tail+1] & 0xff) << 8;
+		case 1: k1 ^= (long)(data[tail] & 0xff);
+			k1 *= MURMUR_C1; k1 = Long.rotateLeft(k1, 31); k1 *= MURMUR_C2; h1 ^= k1;
+		}
+
+		// finalization
+		h1 ^= data.length;
+		h2 ^= data.length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+		return new long[]{h1, h2};
+	}
+
+	private static long getLittleEndianLong(byte [] data, int offset) {
+		return (data[offset] & 0xffL)
+				| (data[offset+1] & 0xffL) << 8
+				| (data[offset+2] & 0xffL) << 16
+				| (data[offset+3] & 0xffL) << 24
+				| (data[offset+4] & 0xffL) << 32
+				| (data[offset+5] & 0xffL) << 40
+				| (data[offset+6] & 0xffL) << 48
+				| (data[offset+7] & 0xffL) << 56;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
 	/**
 	 * Computes one or several hmac of the given input. The final output is
 	 * generated by computing nrOfHashes different hmacs and truncating each to 
 	 * the correct length. This method is slower than the normal
 	 * hash method, especially when many hash values are needed.
+	 * For the "Murmur3" algorithm, this is the same as {@link #hash(byte[])}.
 	 * @param val Byte array to hash
 	 * @return array of different hash values for the given input
 	 */
 	public int [] slowHash(byte [] val){
+		if(manyHmac == null){
+			return doubleHash(val);
+		}
 		int [] result = new int[nrHashes];
 		long mask = 0;
 		long h = 0;
@@ -271,13 +422,7 @@ public class MultiHash {
 	}
 	
 	public int [] slowHash(String val){
-		byte [] msg = null;
-		try{
-			msg = val.getBytes("ISO-8859-1");
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-		return slowHash(msg);
+		return slowHash(toLatin1(val));
 	}
 	
 	public int [] slowHash(int val) {
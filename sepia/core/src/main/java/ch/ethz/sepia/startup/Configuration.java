@@ -29,6 +29,7 @@ import ch.ethz.sepia.connections.ConnectionManager;
 import ch.ethz.sepia.connections.FinalResultsWriter;
 import ch.ethz.sepia.connections.InputDataReader;
 import ch.ethz.sepia.mpc.PeerBase;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
 import ch.ethz.sepia.services.Stopper;
 import ch.ethz.sepia.services.Utils;
 
@@ -42,10 +43,14 @@ import ch.ethz.sepia.services.Utils;
  */
 public class Configuration {
 
+    /** The default implementation of the equal operation */
+    public static final String DEFAULT_EQUAL_METHOD = Primitives.EQUAL_METHOD_FERMAT;
     /** The default field size to use */
     public static final String DEFAULT_FIELD = "9223372036854775783";
     public static final String DEFAULT_INPUT_DIR = "input";
     public static final String DEFAULT_INPUT_TIMEOUT = "300";
+    /** The default input verification mode (one less-than per element) */
+    public static final String DEFAULT_INPUT_VERIFICATION = "element";
     public static final String DEFAULT_MIN_PRIVACYPEERS = "3";
     public static final String DEFAULT_OUTPUT_DIR = "output";
 
@@ -57,6 +62,8 @@ public class Configuration {
     /** The default pseudo-random generator to use if property is missing */
     public static final String DEFAULT_PRG = PeerBase.PRG_LIST[0];
     public static final String DEFAULT_TIMEOUT = "10000";
+    /** The default for executing the MPC steps in work stealing mode */
+    public static final String DEFAULT_WORK_STEALING = "false";
     /** The default for using message compression */
     public static final String DEFAULT_USE_COMPRESSION = "false";
     private static Map<String, Configuration> instances = new HashMap<String, Configuration>();;
@@ -66,6 +73,11 @@ public class Configuration {
     public static final String PROP_ACTIVE_INPUT_PEERS = "peers.activeinputpeers";
     /** The privacy peers that are taking part in this round */
     public static final String PROP_ACTIVE_PRIVACY_PEERS = "peers.activeprivacypeers";
+    /**
+     * The implementation of the equal operation: "fermat" (1-(a-b)^(p-1)) or
+     * "bitwise" (comparison with a bitwise shared random number)
+     */
+    public static final String PROP_EQUAL_METHOD = "mpc.equalmethod";
     /** property if messages shall be compressed */
     public static final String PROP_CONNECTION_USE_COMPRESSION = "connection.usecompression";
 
@@ -80,6 +92,13 @@ public class Configuration {
     /** The folder holding input files */
     public static final String PROP_INPUT_DIR = "mpc.inputdirectory";
     public static final String PROP_INPUT_TIMEOUT = "mpc.inputtimeout";
+    /**
+     * How the inputs are verified: "element" (one less-than per element) or
+     * "batched" (one zero test per input peer on a random linear combination
+     * of the interval polynomials of its elements, only for max. elements in
+     * [2,64]; other max. elements are rejected at startup)
+     */
+    public static final String PROP_INPUT_VERIFICATION = "mpc.inputverification";
     public static String PROP_KEY_PASSWORD = "connection.keypassword";
     public static String PROP_KEY_STORE = "connection.keystore";
     public static String PROP_KEY_STORE_ALIAS = "connection.keystorealias";
@@ -121,6 +140,13 @@ public class Configuration {
      */
     public static final String PROP_SYNCHRONIZE_SHARES = "mpc.synchronizeshares";
 
+    /**
+     * If set to <code>true</code>, the steps of the MPC operations are executed
+     * on a work stealing thread pool sized to the number of processors instead
+     * of being partitioned over the protocol threads.
+     */
+    public static final String PROP_WORK_STEALING = "mpc.workstealing";
+
     // =========================================================================
     // Properties for connection setup (prefix connection.*)
     // =========================================================================
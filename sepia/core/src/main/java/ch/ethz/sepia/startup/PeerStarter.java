@@ -22,12 +22,14 @@ import java.util.Properties;
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
+import ch.ethz.sepia.connections.CommunicationStatistics;
 import ch.ethz.sepia.connections.ConnectionManager;
 import ch.ethz.sepia.events.ExceptionEvent;
 import ch.ethz.sepia.events.FinalResultEvent;
 import ch.ethz.sepia.events.GoodbyeEvent;
 import ch.ethz.sepia.mpc.PeerBase;
 import ch.ethz.sepia.mpc.PeerFactory;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledPeer;
 import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledProtocol;
 import ch.ethz.sepia.services.Stopper;
 import ch.ethz.sepia.services.Utils;
@@ -39,6 +41,8 @@ public class PeerStarter extends Observable implements Observer, Runnable {
     private static final XLogger logger = new XLogger(
             LoggerFactory.getLogger(PeerStarter.class));
 
+    /* read without holding the lock of this (busy while running) */
+    private volatile int completedTimeSlots = 0;
     protected ConnectionManager connectionManager = null;
     protected String errorMessage = null;
     protected boolean isInputPeer;
@@ -48,7 +52,8 @@ public class PeerStarter extends Observable implements Observer, Runnable {
     protected String myID = null;
     protected int numberOfItems = 0;
     protected int numberOfTimeSlots = 0;
-    protected PeerBase peer = null;
+    /* read without holding the lock of this (see getCurrentTimeSlot) */
+    protected volatile PeerBase peer = null;
     private final String peerName;
     protected Stopper stopper = null;
     private boolean streaming = false;
@@ -84,6 +89,31 @@ public class PeerStarter extends Observable implements Observer, Runnable {
         return false;
     }
 
+    /**
+     * Returns the number of time slots completed so far. Can be called while
+     * the peer is running.
+     * 
+     * @return the number of completed time slots
+     */
+    public int getCompletedTimeSlots() {
+        return this.completedTimeSlots;
+    }
+
+    /**
+     * Returns the time slot the peer is currently processing or, if no peer
+     * is running, the number of completed time slots. Can be called while the
+     * peer is running.
+     * 
+     * @return the current time slot
+     */
+    public int getCurrentTimeSlot() {
+        PeerBase currentPeer = this.peer;
+        if (currentPeer == null) {
+            return this.completedTimeSlots;
+        }
+        return currentPeer.getCurrentTimeSlot();
+    }
+
     protected synchronized void createMPCinstance() throws Exception {
         // not interested in the peer number
         this.peer = PeerFactory.getPeerInstance(this.peerName,
@@ -168,14 +198,21 @@ public class PeerStarter extends Observable implements Observer, Runnable {
                     + finalResultEvent.isVerificationSuccessful());
 
             this.timeSlotsToDo--;
+            this.completedTimeSlots++;
 
             // Output various connection and running time statistics
-            // ConnectionManager.logStatistics();
-            // ConnectionManager.newStatisticsRound();
+            final CommunicationStatistics statistics = this.connectionManager
+                    .getCommunicationStatistics();
+            statistics.logStatistics();
             if (!this.isInputPeer) {
                 PrimitivesEnabledProtocol.logStatistics();
                 // PrimitivesEnabledProtocol.newStatisticsRound();
+                if (this.peer instanceof PrimitivesEnabledPeer) {
+                    ((PrimitivesEnabledPeer) this.peer)
+                            .logFieldSizeCost(statistics);
+                }
             }
+            statistics.newStatisticsRound();
 
             // Output timing statistics
             final long currentTs = System.currentTimeMillis();
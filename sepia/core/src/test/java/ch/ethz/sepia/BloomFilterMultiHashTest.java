@@ -22,7 +22,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.math.BigInteger;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.Random;
 
 import javax.crypto.KeyGenerator;
@@ -31,6 +33,7 @@ import javax.crypto.SecretKey;
 
 import junit.framework.TestCase;
 import ch.ethz.sepia.services.BloomFilter;
+import ch.ethz.sepia.services.MappedBloomFilter;
 import ch.ethz.sepia.services.MultiHash;
 
 
@@ -169,6 +172,104 @@ public class BloomFilterMultiHashTest extends TestCase {
 
 	}
 
+	/**
+	 * testcase for the double hashing of multihash
+	 */
+	public static void testDoubleHashing() throws Exception{
+		Random r = new Random();
+		for(int k = 1; k < 20; k++) {
+			int size = 1 + r.nextInt(100000000);
+			MultiHash mh = new MultiHash(k, size, MultiHash.ALGORITHM_MURMUR3);
+			MultiHash mh2 = new MultiHash(k, size, MultiHash.ALGORITHM_MURMUR3);
+			BloomFilter bf = new BloomFilter(k, size % 1000000, false, MultiHash.ALGORITHM_MURMUR3);
+
+			for(int i = 0; i < 1000; i++) {
+				byte [] value = new byte[r.nextInt(40)];
+				r.nextBytes(value);
+				int [] hashresult = mh.hash(value);
+				int [] hashresult2 = mh2.hash(value);
+				assertEquals("wrong number of hashes", k, hashresult.length);
+				for(int j = 0; j < hashresult.length; j++){
+					assertTrue("hashes not equal!",  hashresult[j] ==  hashresult2[j]);
+					assertTrue("hash too large", hashresult[j] < mh.getRange());
+					assertTrue("hash smaller than 0", hashresult[j] >= 0);
+				}
+				bf.insert(value);
+				assertTrue("Element-check failed", bf.check(value));
+			}
+		}
+		assertEquals("String and byte hashes differ", new MultiHash(5, 1024, MultiHash.ALGORITHM_MURMUR3).hash("10.0.0.1")[4],
+				new MultiHash(5, 1024, MultiHash.ALGORITHM_MURMUR3).hash("10.0.0.1".getBytes("ISO-8859-1"))[4]);
+	}
+
+	/**
+	 * known answer test for the MurmurHash3 (x64, 128 bit) of multihash, using
+	 * published test vectors and the SMHasher verification value
+	 */
+	public static void testMurmur3KnownAnswers() throws Exception{
+		// {h1, h2} for the given seeds
+		assertMurmur3("", 0, 0L, 0L);
+		assertMurmur3("hell", 0, 0x629942693e10f867L, 0x92db0b82baeb5347L);
+		assertMurmur3("hello", 1, 0xa78ddff5adae8d10L, 0x128900ef20900135L);
+		assertMurmur3("hello ", 2, 0x8a486b23f422e826L, 0xf962a2c58947765fL);
+		assertMurmur3("hello w", 3, 0x2ea59f466f6bed8cL, 0xc610990acc428a17L);
+		assertMurmur3("hello wo", 4, 0x79f6305a386c572cL, 0x46305aed3483b94eL);
+		assertMurmur3("hello wor", 5, 0xc2219d213ec1f1b5L, 0xa1d8e2e0a52785bdL);
+		assertMurmur3("The quick brown fox jumps over the lazy dog", 0, 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L);
+
+		// SMHasher verification: hash the keys {}, {0}, {0,1}, ..., {0,...,254}
+		// with seed 256-length, then hash the concatenated hashes with seed 0
+		byte [] key = new byte[256];
+		byte [] hashes = new byte[256*16];
+		for(int i = 0; i < 256; i++){
+			key[i] = (byte)i;
+			long [] h = MultiHash.murmur3(Arrays.copyOf(key, i), 256-i);
+			putLittleEndianLong(hashes, i*16, h[0]);
+			putLittleEndianLong(hashes, i*16+8, h[1]);
+		}
+		long [] h = MultiHash.murmur3(hashes, 0);
+		assertEquals("SMHasher verification value", 0x6384BA69L, h[0] & 0xffffffffL);
+	}
+
+	/**
+	 * checks that the double hashing indices of multihash are in range and
+	 * equal to h1 + i*(h2|1) mod range, computed from the MurmurHash3 halves
+	 */
+	public static void testDoubleHashingReference() throws Exception{
+		Random r = new Random(47);
+		for(int bits = 1; bits <= 30; bits++) {
+			int k = 1 + r.nextInt(20);
+			MultiHash mh = new MultiHash(k, 1 << bits, MultiHash.ALGORITHM_MURMUR3);
+			assertTrue("wrong range", mh.getRange() >= 1 << bits);
+			for(int i = 0; i < 100; i++) {
+				byte [] value = new byte[r.nextInt(40)];
+				r.nextBytes(value);
+				int [] hashresult = mh.hash(value);
+				long [] h = MultiHash.murmur3(value, mh.getMurmurSeed());
+				BigInteger range = BigInteger.valueOf(mh.getRange());
+				for(int j = 0; j < k; j++){
+					long expected = BigInteger.valueOf(h[0])
+							.add(BigInteger.valueOf(j).multiply(BigInteger.valueOf(h[1] | 1L)))
+							.mod(range).longValue();
+					assertEquals("hash "+j+" of "+k+" with "+bits+" bits", expected, hashresult[j]);
+					assertTrue("hash out of range", hashresult[j] >= 0 && hashresult[j] < mh.getRange());
+				}
+			}
+		}
+	}
+
+	private static void assertMurmur3(String value, int seed, long h1, long h2) throws Exception{
+		long [] h = MultiHash.murmur3(value.getBytes("ISO-8859-1"), seed);
+		assertEquals("h1 of \""+value+"\"", h1, h[0]);
+		assertEquals("h2 of \""+value+"\"", h2, h[1]);
+	}
+
+	private static void putLittleEndianLong(byte [] data, int offset, long value) {
+		for(int i = 0; i < 8; i++){
+			data[offset+i] = (byte)(value >>> (8*i));
+		}
+	}
+
     /**
      * Only for debugging purpose
      * @param hash value to print, hash.length must be multiple of 2
@@ -211,6 +312,96 @@ public class BloomFilterMultiHashTest extends TestCase {
 		}
 	}
 
+    /**
+     * testcase for the word operations of non-counting BloomFilters. They must match the
+     * element wise operations of counting BloomFilters holding the same items.
+     */
+    public static void testBitsetOperations() throws Exception {
+		Random r = new Random();
+		for(int k = 0; k < 10; k++) {
+			int hashes = 1 + r.nextInt(8);
+			int size = 2 + r.nextInt(100000);
+			BloomFilter a = new BloomFilter(hashes, size, false);
+			BloomFilter b = new BloomFilter(hashes, size, false);
+			BloomFilter countingA = new BloomFilter(hashes, size, true);
+			BloomFilter countingB = new BloomFilter(hashes, size, true);
+			int items = r.nextInt(size/4 + 1);
+			for(int i = 0; i < items; i++) {
+				int itemA = r.nextInt();
+				int itemB = r.nextInt();
+				a.insert(itemA);
+				countingA.insert(itemA);
+				b.insert(itemB);
+				countingB.insert(itemB);
+				assertTrue("Element-check failed", a.check(itemA));
+			}
+
+			BloomFilter union = a.join(b, false);
+			BloomFilter intersection = a.intersect(b, false);
+			BloomFilter sum = a.join(b, true);
+			int[] countingUnion = countingA.join(countingB, false).getArray();
+			int[] countingIntersection = countingA.intersect(countingB, true).getArray();
+			long unionBits = 0;
+			long intersectionBits = 0;
+			for(int i = 0; i < union.getRange(); i++) {
+				assertEquals("Union differs", countingUnion[i] > 0 ? 1 : 0, union.getArray()[i]);
+				assertEquals("Intersection differs", countingIntersection[i] > 0 ? 1 : 0, intersection.getArray()[i]);
+				assertEquals("Sum differs", a.getArray()[i] + b.getArray()[i], sum.getArray()[i]);
+				unionBits += union.getArray()[i];
+				intersectionBits += intersection.getArray()[i];
+			}
+			assertFalse("Union must be non-counting", union.isCounting());
+			assertTrue("Sum must be counting", sum.isCounting());
+			assertEquals("Union popcount", unionBits, union.getNonZeros());
+			assertEquals("Intersection popcount", intersectionBits, intersection.getNonZeros());
+		}
+	}
+
+    /**
+     * testcase for the binary file format and the memory-mapped BloomFilter
+     */
+    public static void testBinaryFile() throws Exception {
+		Random r = new Random();
+		File file = File.createTempFile("bloomfilter", ".bin");
+		file.deleteOnExit();
+		for(int k = 0; k < 6; k++) {
+			boolean counting = k % 2 == 0;
+			String algorithm = k < 3 ? MultiHash.ALGORITHM_HMAC_MD5 : MultiHash.ALGORITHM_MURMUR3;
+			int hashes = 1 + r.nextInt(10);
+			int size = 2 + r.nextInt(200000);
+			BloomFilter bf = new BloomFilter(hashes, size, counting, algorithm);
+			BloomFilter other = new BloomFilter(hashes, size, counting, algorithm);
+			for(int i = 0; i < size/10; i++) {
+				bf.insert(r.nextInt());
+				other.insert(r.nextInt());
+			}
+			bf.writeToBinaryFile(file.getPath());
+
+			BloomFilter read = BloomFilter.readFromBinaryFile(file.getPath());
+			assertEquals("Counting flag differs", counting, read.isCounting());
+			assertEquals("Algorithm differs", algorithm, read.getHashAlgorithm());
+			assertEquals("Non zeros differ", bf.getNonZeros(), read.getNonZeros());
+			assertEquals("Content differs", bf.toString(), read.toString());
+
+			MappedBloomFilter mapped = new MappedBloomFilter(file.getPath());
+			for(int i = 0; i < 1000; i++) {
+				int val = r.nextInt();
+				assertEquals("Element-check differs", bf.check(val), mapped.check(new byte[]{(byte)(val >>> 24), (byte)(val >>> 16), (byte)(val >>> 8), (byte)val}));
+			}
+			BloomFilter union = other.join(bf, false);
+			BloomFilter intersection = other.intersect(bf, counting);
+			// copies of the other filter
+			BloomFilter mappedUnion = other.intersect(other, counting);
+			mapped.joinInto(mappedUnion, false);
+			assertEquals("Union differs", union.toString(), mappedUnion.toString());
+			assertEquals("Union non zeros differ", union.getNonZeros(), mappedUnion.getNonZeros());
+			BloomFilter mappedIntersection = other.intersect(other, counting);
+			mapped.intersectInto(mappedIntersection);
+			assertEquals("Intersection differs", intersection.toString(), mappedIntersection.toString());
+			mapped.close();
+		}
+	}
+
     /**
      * testcase for the cardinality estimation
      */
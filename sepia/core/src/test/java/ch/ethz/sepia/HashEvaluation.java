@@ -276,6 +276,59 @@ public class HashEvaluation {
 		badStatistics.close();
 	}
 
+	/**
+	 * Compares the hash algorithms of MultiHash for BloomFilter indexing. For each algorithm,
+	 * a non-counting BloomFilter dimensioned for the given number of items and false positive
+	 * rate is filled with IPv4 address strings. Then as many addresses that were not inserted
+	 * are checked to measure the false positive rate.
+	 * <br />
+	 * Outputfile "HashBenchmark.txt" contains one row per algorithm:
+	 * algorithm;range;hashCount;insertions per second;measured fpr;expected fpr
+	 * @param items number of inserted items
+	 * @param fpr desired false positive rate used for the dimensioning (e.g. 1e-3)
+	 */
+	public static void benchmarkHashAlgorithms(int items, double fpr) throws Exception {
+		final String [] algorithms = {MultiHash.ALGORITHM_HMAC_MD5, MultiHash.ALGORITHM_HMAC_SHA1,
+				MultiHash.ALGORITHM_MURMUR3};
+		double [] params = BloomFilter.getParameterEstimate(items, fpr);
+
+		// inserted values: addresses 0..items-1, tested values: addresses items..2*items-1
+		String [] values = new String[2*items];
+		for(int i = 0; i < values.length; i++){
+			values[i] = InetAddress.getByAddress(IntToByteArr(i)).getHostAddress();
+		}
+
+		BufferedWriter bw = getWriter("HashBenchmark.txt");
+		for(String algorithm : algorithms){
+			BloomFilter bf = new BloomFilter((int)params[1], (int)params[0], false, algorithm);
+			// warm up
+			for(int i = 0; i < Math.min(items, 10000); i++){
+				bf.check(values[i]);
+			}
+
+			long startTime = System.nanoTime();
+			for(int i = 0; i < items; i++){
+				bf.insert(values[i]);
+			}
+			long insertTime = System.nanoTime() - startTime;
+
+			int falsePositives = 0;
+			for(int i = items; i < 2*items; i++){
+				if(bf.check(values[i])){
+					falsePositives++;
+				}
+			}
+
+			String result = algorithm+";"+bf.getRange()+";"+bf.getHashCount()+";"
+					+(long)(items/(insertTime/1e9))+";"+(falsePositives/(double)items)+";"+params[2];
+			System.out.println(result);
+			bw.write(result);
+			bw.newLine();
+			bw.flush();
+		}
+		bw.close();
+	}
+
 	/**
 	 * Performs the chi-square test on a histogram
 	 * assumes uniform distribution as null hypothesis
@@ -596,6 +649,8 @@ public class HashEvaluation {
 			generateNamedFiles("SweepData.txt", amount);
 		}else if(args.length == 3){
 			generateTestFiles(argnums[0], argnums[1], (double)argnums[2]/100.0);
+		}else if(args.length == 2){
+			benchmarkHashAlgorithms(argnums[0], Math.pow(10, -argnums[1]));
 		}else{
 			printUsage();
 			//generateTestFiles(25, 100000, 0.1);
@@ -628,7 +683,9 @@ public class HashEvaluation {
 		System.out.println("Sweep input data generation: 1 argument");
 		System.out.println("number of values >= 5* maxRange\n");
 		System.out.println("Testfile generation for intersection: 3 arguments");
-		System.out.println("numberOfFiles, ValuesPerFile, overlap*100");
+		System.out.println("numberOfFiles, ValuesPerFile, overlap*100\n");
+		System.out.println("Hash algorithm benchmark: 2 arguments");
+		System.out.println("items, -log10(fpr)");
 	}
 
 }
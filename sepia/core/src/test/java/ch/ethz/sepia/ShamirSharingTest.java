@@ -162,6 +162,45 @@ public class ShamirSharingTest extends TestCase {
 	}
 
 
+	/**
+	 * Test method for {@link mpc.ShamirSharing#vectorAddInPlace(long[], long[][], int, int)}.
+	 * The sum is compared to the one computed by vectorAdd.
+	 */
+	public void testVectorAddInPlace() {
+		Random rand = new Random(42);
+		for(int groupOrderIndex = 0; groupOrderIndex < groupOrders.length; groupOrderIndex++) {
+			maxCoefficient = groupOrders[groupOrderIndex];
+			try{
+				mpcShamirSharing = new ShamirSharing();
+				mpcShamirSharing.setRandomAlgorithm(randomAlgorithm);
+				mpcShamirSharing.setFieldSize(maxCoefficient);
+				mpcShamirSharing.setNumberOfPrivacyPeers(numberOfPrivacyPeers);
+				mpcShamirSharing.init();
+			}
+			catch (Exception e) {
+				fail("An exception occured when creating and initializing a MpcShamirSharing instance: " +Utils.getStackTrace(e));
+			}
+			long[][] vectors = new long[25][100];
+			for(int i = 0; i < vectors.length; i++) {
+				for(int j = 0; j < vectors[i].length; j++) {
+					vectors[i][j] = (rand.nextLong() >>> 1) % maxCoefficient;
+				}
+				vectors[i][0] = maxCoefficient-1;
+			}
+			long[] expected = new long[100];
+			for(int i = 0; i < vectors.length; i++) {
+				expected = mpcShamirSharing.vectorAdd(expected, vectors[i]);
+			}
+			long[] sum = new long[100];
+			mpcShamirSharing.vectorAddInPlace(sum, vectors, 0, 40);
+			mpcShamirSharing.vectorAddInPlace(sum, vectors, 40, 100);
+			for(int j = 0; j < sum.length; j++) {
+				assertEquals("item "+j+" in field of size "+maxCoefficient+": ", expected[j], sum[j]);
+			}
+		}
+	}
+
+
 	/**
 	 * Test method for {@link mpc.ShamirSharing#inverse(long)}.
 	 */
@@ -0,0 +1,103 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ch.ethz.sepia.protocolPrimitives;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.connections.CommunicationStatistics;
+import ch.ethz.sepia.mpc.protocolPrimitives.FieldSizeCandidate;
+import ch.ethz.sepia.mpc.protocolPrimitives.FieldSizeCostModel;
+
+/**
+ * Class to test the FieldSizeCostModel class
+ */
+public class FieldSizeCostModelTest extends TestCase {
+
+	/**
+	 * Test method for {@link FieldSizeCostModel#selectFieldSize(long, long, long)}:
+	 * without latency the model ranks the candidates by their effort.
+	 */
+	public void testSelectByEffort() {
+		FieldSizeCostModel costModel = new FieldSizeCostModel(0, 1, FieldSizeCostModel.DEFAULT_BYTES_PER_SHARE, 0);
+		long[] primes = FieldSizeCandidate.getPrimes();
+		long maxValue = 1000;
+		long best = -1;
+		float minEffort = Float.MAX_VALUE;
+		for(int i = 0; i < primes.length; i++) {
+			if(primes[i] > maxValue) {
+				float effort = FieldSizeCandidate.computeEqualEffort(primes[i])*100
+						+ FieldSizeCandidate.computeBitwiseRandomNumberGenerationEffort(primes[i], 10, 0.9F);
+				if(effort < minEffort) {
+					minEffort = effort;
+					best = primes[i];
+				}
+			}
+		}
+		assertEquals(best, costModel.selectFieldSize(maxValue, 100, 10));
+		assertTrue(costModel.selectFieldSize(maxValue, 100, 10) > maxValue);
+	}
+
+	/**
+	 * Test method for {@link FieldSizeCostModel#getRounds(long, long, long)}
+	 * and {@link FieldSizeCostModel#getCost(long, long, long)}.
+	 */
+	public void testRoundsAndCost() {
+		FieldSizeCostModel costModel = new FieldSizeCostModel(10, 0, 8, 0);
+		long p = 65537;
+		assertEquals((long)FieldSizeCandidate.computeEqualEffort(p), costModel.getRounds(p, 1, 0));
+		assertEquals(10.0*costModel.getRounds(p, 5, 0), costModel.getCost(p, 5, 0), 1e-9);
+
+		costModel.setBitwiseEqual(true);
+		// random number generation + 1 reconstruction + ceil(log2(17)) levels
+		assertEquals(17+4 + 1+5, costModel.getRounds(p, 1, 0));
+		assertEquals(0, costModel.getRounds(p, 0, 0));
+
+		// the share size scales with the bits of the field
+		FieldSizeCostModel scaled = new FieldSizeCostModel(0, 1, 8, 257);
+		assertEquals((long)(scaled.getShares(65537, 3, 0)*8*17.0/9), scaled.getBytes(65537, 3, 0));
+	}
+
+	/**
+	 * Test method for {@link FieldSizeCostModel#fromStatistics(CommunicationStatistics, long)}.
+	 */
+	public void testFromStatistics() {
+		CommunicationStatistics statistics = new CommunicationStatistics();
+		assertEquals(-1.0, statistics.getBytesPerShare());
+		// duration = 20 + 0.5*shares
+		statistics.incCommunicationRound(20, 0);
+		statistics.incCommunicationRound(70, 100);
+		statistics.incCommunicationRound(520, 1000);
+		statistics.incSerializedShares(100, 1200);
+		assertEquals(20.0, statistics.getRoundLatency(), 1e-9);
+		assertEquals(0.5, statistics.getTimePerShare(), 1e-9);
+		assertEquals(12.0, statistics.getBytesPerShare(), 1e-9);
+		assertEquals(3, statistics.getThisRoundCommunicationRounds());
+		assertEquals(1100, statistics.getThisRoundSharesSent());
+		statistics.newStatisticsRound();
+		assertEquals(0, statistics.getThisRoundCommunicationRounds());
+
+		long p = 65537;
+		FieldSizeCostModel costModel = FieldSizeCostModel.fromStatistics(statistics, p);
+		double expected = 20.0*costModel.getRounds(p, 10, 0) + 0.5*costModel.getShares(p, 10, 0);
+		assertEquals(expected, costModel.getCost(p, 10, 0), 1e-6);
+		assertEquals(costModel.getShares(p, 10, 0)*12, costModel.getBytes(p, 10, 0));
+
+		// the prediction for the observed rounds and shares matches the observed time
+		assertEquals(20.0*3 + 0.5*1100, costModel.getCommunicationCost(p, 3, 1100), 1e-6);
+		assertEquals(costModel.getCost(p, 10, 0),
+				costModel.getCommunicationCost(p, costModel.getRounds(p, 10, 0), costModel.getShares(p, 10, 0)), 1e-6);
+	}
+}
@@ -0,0 +1,125 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.protocolPrimitives.PredicateCache;
+
+/**
+ * Class to test the PredicateCache class
+ */
+public class PredicateCacheTest extends TestCase {
+
+	/**
+	 * Test method for {@link PredicateCache#put(int, long, long)} and
+	 * {@link PredicateCache#get(int, long, long)}, including growing the
+	 * segments and the hit rate.
+	 */
+	public void testPutGet() {
+		PredicateCache cache = new PredicateCache();
+		int scope = cache.scope("a");
+		assertEquals(scope, cache.scope("a"));
+
+		for(long id = 0; id < 10000; id++) {
+			cache.put(scope, id, id*7);
+		}
+		assertEquals(10000, cache.size());
+		for(long id = 0; id < 10000; id++) {
+			assertEquals(id*7, cache.get(scope, id, -1));
+		}
+		assertEquals(-1, cache.get(scope, 10000, -1));
+		assertEquals(-1, cache.get(cache.scope("b"), 0, -1));
+
+		cache.put(scope, 0, 42);
+		assertEquals(42, cache.get(scope, 0, -1));
+		assertEquals(10000, cache.size());
+
+		assertEquals(10001, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(10001.0/10003.0, cache.getHitRate(), 1e-9);
+	}
+
+	/**
+	 * Test method for {@link PredicateCache#clear(int)}.
+	 */
+	public void testClearScope() {
+		PredicateCache cache = new PredicateCache();
+		int a = cache.scope("a");
+		int b = cache.scope("b");
+		for(long id = 0; id < 1000; id++) {
+			cache.put(a, id, id);
+			cache.put(b, id, id+1);
+		}
+		cache.clear(a);
+		assertEquals(1000, cache.size());
+		for(long id = 0; id < 1000; id++) {
+			assertFalse(cache.contains(a, id));
+			assertEquals(id+1, cache.get(b, id, -1));
+		}
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Tests that the cache fills up to its bound, independent of how the
+	 * entries are spread over the segments, and does not grow beyond it.
+	 */
+	public void testBound() {
+		PredicateCache cache = new PredicateCache(160);
+		int scope = cache.scope("a");
+		for(long id = 0; id < 160; id++) {
+			cache.put(scope, id, id);
+		}
+		assertEquals(160, cache.size());
+		assertEquals(0, cache.getRejectedCount());
+
+		for(long id = 160; id < 1000; id++) {
+			cache.put(scope, id, id);
+		}
+		assertEquals(160, cache.size());
+		assertEquals(840, cache.getRejectedCount());
+
+		// updating a cached entry is not rejected
+		cache.put(scope, 0, 42);
+		assertEquals(42, cache.get(scope, 0, -1));
+		assertEquals(840, cache.getRejectedCount());
+	}
+
+	/**
+	 * Tests that clearing entries frees room for new ones.
+	 */
+	public void testBoundAfterClear() {
+		PredicateCache cache = new PredicateCache(100);
+		int a = cache.scope("a");
+		int b = cache.scope("b");
+		for(long id = 0; id < 100; id++) {
+			cache.put(a, id, id);
+		}
+		cache.put(b, 0, 0);
+		assertEquals(1, cache.getRejectedCount());
+
+		cache.clear(a);
+		for(long id = 0; id < 100; id++) {
+			cache.put(b, id, id);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(1, cache.getRejectedCount());
+
+		cache.clear();
+		cache.put(a, 0, 0);
+		assertEquals(1, cache.size());
+	}
+}
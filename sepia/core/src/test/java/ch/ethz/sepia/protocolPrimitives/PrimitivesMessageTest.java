@@ -0,0 +1,74 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ch.ethz.sepia.protocolPrimitives;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesMessage;
+
+/**
+ * Class to test the packing of the shares in the PrimitivesMessage class
+ */
+public class PrimitivesMessageTest extends TestCase {
+
+	/**
+	 * Test method for {@link PrimitivesMessage#packShares(long[], int)} and
+	 * {@link PrimitivesMessage#unpackShares(byte[], int, int)}.
+	 */
+	public void testPackUnpack() {
+		Random random = new Random(42);
+		for(int bitsCount = 1; bitsCount < 64; bitsCount++) {
+			long[] shares = new long[101];
+			for(int i = 0; i < shares.length; i++) {
+				shares[i] = random.nextLong() >>> (64-bitsCount);
+			}
+			shares[0] = 0;
+			shares[1] = (1L << bitsCount) - 1;
+			byte[] packed = PrimitivesMessage.packShares(shares, bitsCount);
+			assertEquals((shares.length*bitsCount+7)/8, packed.length);
+			long[] unpacked = PrimitivesMessage.unpackShares(packed, bitsCount, shares.length);
+			for(int i = 0; i < shares.length; i++) {
+				assertEquals("share "+i+" with "+bitsCount+" bits", shares[i], unpacked[i]);
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link PrimitivesMessage#packOperationsData(int)}.
+	 */
+	public void testPackOperationsData() {
+		long[] shares = {0, 1, 2147483646, 12345};
+		PrimitivesMessage message = new PrimitivesMessage("pp", 0);
+		message.setOperationsData(shares.clone());
+		message.packOperationsData(31);
+		assertNull(message.getOperationsData());
+		assertEquals(4, message.countShares());
+		assertEquals(16, message.getPackedOperationsData().length);
+		long[] unpacked = PrimitivesMessage.unpackShares(message.getPackedOperationsData(), message.getPackedBitsCount(), message.getPackedSharesCount());
+		for(int i = 0; i < shares.length; i++) {
+			assertEquals(shares[i], unpacked[i]);
+		}
+
+		// values which don't fit into the bits are left unpacked
+		message = new PrimitivesMessage("pp", 0);
+		message.setOperationsData(new long[]{1, -1});
+		message.packOperationsData(31);
+		assertNull(message.getPackedOperationsData());
+		assertEquals(2, message.countShares());
+	}
+}
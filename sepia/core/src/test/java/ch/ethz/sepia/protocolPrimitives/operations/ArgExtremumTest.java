@@ -0,0 +1,150 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute 
+// it and/or modify it under the terms of the GNU Lesser General Public 
+// License as published by the Free Software Foundation, either version 3 
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives.operations;
+
+/**
+ * Test cases for the ArgExtremum operation.
+ */
+public class ArgExtremumTest extends OperationsTest {
+
+	/** field sizes to test with (a subset of the default ones to keep the test fast) */
+	private long[] argFieldSizes = {257, 65537, 2147352577, 9223372036854775783L};
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#argMax(int, long[], long[], long)}
+	 * returning the index of the maximum.
+	 */
+	public void testArgMax() {
+		for(int fieldSizeIndex = 0; fieldSizeIndex < argFieldSizes.length; fieldSizeIndex++) {
+			fieldSize = argFieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			System.out.println("\ntesting argMax operation with field size=" + fieldSize);
+			checkArgExtremum(input, null, -1, false);
+		}
+	}
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#argMin(int, long[], long[], long)}
+	 * returning a shared payload of the minimum.
+	 */
+	public void testArgMinWithPayloads() {
+		for(int fieldSizeIndex = 0; fieldSizeIndex < argFieldSizes.length; fieldSizeIndex++) {
+			fieldSize = argFieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			System.out.println("\ntesting argMin operation with field size=" + fieldSize);
+			long[] payloads = new long[input.length];
+			for(int i = 0; i < payloads.length; i++) {
+				payloads[i] = (7*i+3) % fieldSize;
+			}
+			checkArgExtremum(input, payloads, -1, true);
+		}
+	}
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#argMax(int, long[], long[], long)}
+	 * with values that are known to be below fieldSize/2 (one selection round per level).
+	 */
+	public void testArgMaxKnownHalf() {
+		for(int fieldSizeIndex = 0; fieldSizeIndex < argFieldSizes.length; fieldSizeIndex++) {
+			fieldSize = argFieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			System.out.println("\ntesting argMax operation with known half and field size=" + fieldSize);
+			long[] values = new long[input.length];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = input[i] % (fieldSize/2);
+			}
+			checkArgExtremum(values, null, 1, false);
+			checkArgExtremum(values, null, 1, true);
+		}
+	}
+
+	/**
+	 * Computes the extremum of the first i values for all i with MPC and
+	 * compares the reconstructed results to the expected ones (on ties, the
+	 * lowest index wins).
+	 *
+	 * @param values the values
+	 * @param payloads the payloads or null to use the indices
+	 * @param knowledge the knowledge about the values
+	 * @param minimum true to check the minimum, false to check the maximum
+	 */
+	private void checkArgExtremum(long[] values, long[] payloads, long knowledge, boolean minimum) {
+		long[][] valueShares = mpcShamirSharingPeers[0].generateShares(values);
+		long[][] payloadShares = payloads == null ? null : mpcShamirSharingPeers[0].generateShares(payloads);
+
+		int[] operationIDs = new int[values.length];
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			primitives[privacyPeerIndex].initialize(operationIDs.length);
+			for(int count = 1; count <= values.length; count++) {
+				long[] v = new long[count];
+				System.arraycopy(valueShares[privacyPeerIndex], 0, v, 0, count);
+				long[] q = null;
+				if(payloadShares != null) {
+					q = new long[count];
+					System.arraycopy(payloadShares[privacyPeerIndex], 0, q, 0, count);
+				}
+				operationIDs[count-1] = count-1;
+				if(minimum) {
+					assertTrue(primitives[privacyPeerIndex].argMin(count-1, v, q, knowledge));
+				} else {
+					assertTrue(primitives[privacyPeerIndex].argMax(count-1, v, q, knowledge));
+				}
+			}
+		}
+		doOperation(operationIDs);
+
+		long[][][] results = new long[numberOfPrivacyPeers][values.length][];
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			for(int i = 0; i < values.length; i++) {
+				results[privacyPeerIndex][i] = primitives[privacyPeerIndex].getResult(i);
+				assertEquals(2, results[privacyPeerIndex][i].length);
+			}
+		}
+
+		// reconstruct the extreme values and payloads
+		operationIDs = new int[2*values.length];
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			primitives[privacyPeerIndex].initialize(operationIDs.length);
+			for(int i = 0; i < values.length; i++) {
+				operationIDs[2*i] = 2*i;
+				operationIDs[2*i+1] = 2*i+1;
+				primitives[privacyPeerIndex].reconstruct(2*i, new long[]{results[privacyPeerIndex][i][0]});
+				primitives[privacyPeerIndex].reconstruct(2*i+1, new long[]{results[privacyPeerIndex][i][1]});
+			}
+		}
+		doOperation(operationIDs);
+
+		int best = 0;
+		for(int i = 0; i < values.length; i++) {
+			if(minimum ? values[i] < values[best] : values[i] > values[best]) {
+				best = i;
+			}
+			long expectedPayload = payloads == null ? best : payloads[best];
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				assertEquals("checking extreme value of the first "+(i+1)+" values (in field of size "+fieldSize+"): ",
+						values[best], primitives[privacyPeerIndex].getResult(2*i)[0]);
+				assertEquals("checking payload of the first "+(i+1)+" values (in field of size "+fieldSize+"): ",
+						expectedPayload, primitives[privacyPeerIndex].getResult(2*i+1)[0]);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives.operations;
+
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.IBitwiseRandomNumbersConsumer;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.IOperation;
+
+/**
+ * Test cases for the ArrayLessThan operation.
+ */
+public class ArrayLessThanTest extends OperationsTest {
+
+	/** field sizes to test with (a subset of the default ones to keep the test fast) */
+	private long[] arrayFieldSizes = {257, 65537, 2147352577, 9223372036854775783L};
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#arrayLessThan(int, long[], long[], long[])}.
+	 * Compares all pairs of secret inputs in one operation.
+	 */
+	public void testArrayLessThan() {
+		for(int fieldSizeIndex = 0; fieldSizeIndex < arrayFieldSizes.length; fieldSizeIndex++) {
+			fieldSize = arrayFieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			createInputShares();
+			System.out.println("\ntesting array less than operation with field size=" + fieldSize);
+
+			int count = input.length*input.length;
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				long[] a = new long[count];
+				long[] b = new long[count];
+				for(int i = 0; i < count; i++) {
+					a[i] = inputShares[0][privacyPeerIndex][i/input.length];
+					b[i] = inputShares[0][privacyPeerIndex][i%input.length];
+				}
+				primitives[privacyPeerIndex].initialize(1);
+				assertTrue(primitives[privacyPeerIndex].arrayLessThan(0, a, b, new long[]{-1, -1, -1}));
+			}
+			// the random numbers of all LSB computations are pregenerated by the protocol
+			IOperation operation = primitives[0].getOperations().get(0);
+			assertTrue(operation instanceof IBitwiseRandomNumbersConsumer);
+			assertEquals(3*count, ((IBitwiseRandomNumbersConsumer)operation).getRandomNumbersNeeded(primitives[0]));
+			doOperation(new int[]{0});
+
+			long[] expected = new long[count];
+			for(int i = 0; i < count; i++) {
+				expected[i] = input[i/input.length] < input[i%input.length] ? 1 : 0;
+			}
+			verifyArrayLessThanResults(expected);
+		}
+	}
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#arrayLessThan(int, long[], long[], long[])}
+	 * with a public upper bound, as used for the norm bound check of the additive protocol.
+	 */
+	public void testArrayLessThanPublicBound() {
+		for(int fieldSizeIndex = 0; fieldSizeIndex < arrayFieldSizes.length; fieldSizeIndex++) {
+			fieldSize = arrayFieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			createInputShares();
+			long bound = fieldSize/3;
+			long boundIsLessThanHalf = bound <= fieldSize/2 ? 1 : 0;
+
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				long[] b = new long[input.length];
+				for(int i = 0; i < b.length; i++) {
+					b[i] = bound;
+				}
+				primitives[privacyPeerIndex].initialize(1);
+				assertTrue(primitives[privacyPeerIndex].arrayLessThan(0, inputShares[0][privacyPeerIndex].clone(), b, new long[]{-1, boundIsLessThanHalf, -1}));
+			}
+			doOperation(new int[]{0});
+
+			long[] expected = new long[input.length];
+			for(int i = 0; i < input.length; i++) {
+				expected[i] = input[i] < bound ? 1 : 0;
+			}
+			verifyArrayLessThanResults(expected);
+		}
+	}
+
+	/**
+	 * reconstructs the results of the array less-than operation with id 0 and
+	 * compares them to the expected results
+	 */
+	private void verifyArrayLessThanResults(long[] expected) {
+		long[][] results = new long[numberOfPrivacyPeers][];
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			results[privacyPeerIndex] = primitives[privacyPeerIndex].getResult(0);
+			assertEquals(expected.length, results[privacyPeerIndex].length);
+		}
+
+		int[] operationIDs = new int[expected.length];
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			primitives[privacyPeerIndex].initialize(operationIDs.length);
+			for(int i = 0; i < expected.length; i++) {
+				operationIDs[i] = i;
+				primitives[privacyPeerIndex].reconstruct(i, new long[]{results[privacyPeerIndex][i]});
+			}
+		}
+		doOperation(operationIDs);
+
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			for(int i = 0; i < expected.length; i++) {
+				assertEquals("checking array less-than result at position "+i+" (in field of size "+fieldSize+"): ",
+						expected[i], primitives[privacyPeerIndex].getResult(i)[0]);
+			}
+		}
+	}
+}
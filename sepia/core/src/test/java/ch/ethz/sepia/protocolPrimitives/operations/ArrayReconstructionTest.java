@@ -0,0 +1,105 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives.operations;
+
+import java.util.Random;
+
+
+/**
+ * Test cases for the ArrayReconstruction operation.
+ */
+public class ArrayReconstructionTest extends OperationsTest {
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#arrayReconstruct(int, long[])}.
+	 * <p>
+	 * Reconstructs the inputs of every peer in one operation per peer, in a single round.
+	 */
+	public void testArrayReconstruct() {
+		for(int groupOrderIndex = 0; groupOrderIndex < fieldSizes.length; groupOrderIndex++) {
+			fieldSize = fieldSizes[groupOrderIndex];
+			scheduleArrayReconstruction();
+
+			resetCommunicationCounters();
+			doOperation(getOperationIDs());
+			assertEquals("reconstruction takes one round", 1, roundsCount);
+
+			verifyArrayReconstructionResults();
+		}
+	}
+
+	/**
+	 * Similar to {@link #testArrayReconstruct()}, but simulates the loss of messages.
+	 */
+	public void testLossyArrayReconstruct() {
+		for(int groupOrderIndex = 0; groupOrderIndex < fieldSizes.length; groupOrderIndex++) {
+			fieldSize = fieldSizes[groupOrderIndex];
+			scheduleArrayReconstruction();
+
+			// Now pick the failing PP
+			Random rand = new Random();
+			int failingPP = rand.nextInt(numberOfPrivacyPeers);
+			doLossyOperation(getOperationIDs(), failingPP, false);
+
+			verifyArrayReconstructionResults();
+		}
+	}
+
+	/**
+	 * shares the inputs and schedules one array reconstruction per peer
+	 */
+	private void scheduleArrayReconstruction() {
+		initializeMpcShamirSharingInstances();
+		initializeMpcShamirSharingProtocolPrimitives();
+		createInputValues();
+		createInputShares();
+
+		System.out.println("\ntesting array reconstruction operation with group order=" + fieldSize);
+
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			primitives[privacyPeerIndex].initialize(numberOfPeers);
+			for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++) {
+				assertTrue(primitives[privacyPeerIndex].arrayReconstruct(peerIndex, inputShares[peerIndex][privacyPeerIndex].clone()));
+			}
+		}
+	}
+
+	/**
+	 * @return the ids of the scheduled operations
+	 */
+	private int[] getOperationIDs() {
+		int[] operationIDs = new int[numberOfPeers];
+		for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++) {
+			operationIDs[peerIndex] = peerIndex;
+		}
+		return operationIDs;
+	}
+
+	/**
+	 * asserts that all privacy peers reconstructed the original inputs
+	 */
+	private void verifyArrayReconstructionResults() {
+		for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+			for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++) {
+				long[] result = primitives[privacyPeerIndex].getResult(peerIndex);
+				assertEquals(input.length, result.length);
+				for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+					assertEquals("checking equality for result "+peerIndex+"["+inputIndex+"] of privacy peer "+privacyPeerIndex+": ",
+							input[inputIndex], result[inputIndex]);
+				}
+			}
+		}
+	}
+}
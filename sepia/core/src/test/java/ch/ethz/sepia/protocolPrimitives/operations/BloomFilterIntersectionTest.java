@@ -15,6 +15,8 @@
 
 package ch.ethz.sepia.protocolPrimitives.operations;
 
+import java.util.Random;
+
 import ch.ethz.sepia.services.BloomFilter;
 
 public class BloomFilterIntersectionTest extends OperationsTest{
@@ -286,6 +288,76 @@ public class BloomFilterIntersectionTest extends OperationsTest{
 		}
 	}
 	
+	/**
+	 * Tests the counting intersection with an odd number of filters, where
+	 * a filter is carried over to the next round of minimum computations
+	 * (5 -&gt; 3 -&gt; 2 -&gt; 1).
+	 */
+	public void testBfIntersectionCountingOddPeers(){
+		numberOfPeers = 5;
+		int positions = 64;
+		Random rnd = new Random(5);
+		for(int groupOrderIndex = 0; groupOrderIndex < fieldSizes.length; groupOrderIndex++) {
+			fieldSize = fieldSizes[groupOrderIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			System.out.println("\ntesting counting bfIntersection operation with "+numberOfPeers+" filters and group order=" + fieldSize);
+
+			// counters in [1,3], the last filter is 0 at every 4th position
+			// which only shows up in the result if it is carried over correctly
+			long[][] counters = new long[numberOfPeers][positions];
+			long[] realResult = new long[positions];
+			for(int position = 0; position < positions; position++){
+				realResult[position] = Long.MAX_VALUE;
+				for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++){
+					counters[peerIndex][position] = 1 + rnd.nextInt(3);
+					if(peerIndex == numberOfPeers-1 && position%4 == 0){
+						counters[peerIndex][position] = 0;
+					}
+					realResult[position] = Math.min(realResult[position], counters[peerIndex][position]);
+				}
+			}
+			inputShares = new long[numberOfPeers][][];
+			for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++){
+				inputShares[peerIndex] = mpcShamirSharingPeers[peerIndex].generateShares(counters[peerIndex]);
+			}
+
+			int[] operationIDs = new int[1];
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				long[][] shrs = new long[numberOfPeers][];
+				primitives[privacyPeerIndex].initialize(operationIDs.length);
+				for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++){
+					shrs[peerIndex] = inputShares[peerIndex][privacyPeerIndex].clone();
+				}
+				primitives[privacyPeerIndex].bfIntersection(operationIDs[0], shrs, true);
+			}
+			doOperation(operationIDs);
+
+			// reconstruct intersection results
+			long[][] intersectionResults = new long[numberOfPrivacyPeers][];
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				intersectionResults[privacyPeerIndex] = primitives[privacyPeerIndex].getResult(0);
+			}
+			operationIDs = new int[positions];
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				primitives[privacyPeerIndex].initialize(operationIDs.length);
+				for(int position = 0; position < positions; position++){
+					operationIDs[position] = position;
+					primitives[privacyPeerIndex].reconstruct(position, new long[]{intersectionResults[privacyPeerIndex][position]});
+				}
+			}
+			doOperation(operationIDs);
+
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				for(int position = 0; position < positions; position++){
+					assertEquals("checking intersection of Ppeer "+privacyPeerIndex+" at position "+position+
+							" in field of size "+fieldSize+": ",
+							realResult[position], primitives[privacyPeerIndex].getResult(position)[0]);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Computes the intersection of all input BloomFilters
 	 * @param cnt specifies wether counting or non-counting filters were used
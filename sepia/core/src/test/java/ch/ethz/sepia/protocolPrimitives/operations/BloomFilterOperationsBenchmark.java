@@ -0,0 +1,144 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives.operations;
+
+import java.util.Random;
+
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+
+/**
+ * Benchmark for the Bloom filter operations on large filters. Simulates the
+ * privacy peers like the BloomFilter*Test classes and measures time,
+ * communication rounds and shares sent of union, intersection, threshold
+ * union and cardinality for filters with 2^min..2^max positions.
+ * <p>
+ * Not a junit test, run with:
+ * <code>BloomFilterOperationsBenchmark [minExponent maxExponent]</code>
+ * (defaults to 16 22). Large filters need a big heap, since the counting
+ * operations pregenerate bitwise shared random numbers for every position.
+ */
+public class BloomFilterOperationsBenchmark extends OperationsTest {
+
+	/** largest counter value in the counting filters */
+	private static final int MAX_COUNT = 3;
+
+	/** threshold used for the threshold union */
+	private static final int THRESHOLD = 2;
+
+	/** filter size of the current run */
+	private int filterSize;
+
+	/** the shares of the filters, format: [privacyPeerIndex][filter][position] */
+	private long[][][] nonCountingShares, countingShares;
+
+	public BloomFilterOperationsBenchmark() {
+		numberOfPeers = 3;
+		numberOfPrivacyPeers = 3;
+		fieldSize = 2147352577;
+		random = new Random(1);
+	}
+
+	/**
+	 * creates random filters for all input peers and shares them
+	 */
+	private void createFilterShares() {
+		nonCountingShares = new long[numberOfPrivacyPeers][numberOfPeers][];
+		countingShares = new long[numberOfPrivacyPeers][numberOfPeers][];
+		long[] filter = new long[filterSize];
+		for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++) {
+			for(int i = 0; i < filterSize; i++) {
+				filter[i] = random.nextInt(2);
+			}
+			long[][] shares = mpcShamirSharingPeers[peerIndex].generateShares(filter);
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				nonCountingShares[privacyPeerIndex][peerIndex] = shares[privacyPeerIndex];
+			}
+
+			for(int i = 0; i < filterSize; i++) {
+				filter[i] = random.nextInt(MAX_COUNT+1);
+			}
+			shares = mpcShamirSharingPeers[peerIndex].generateShares(filter);
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				countingShares[privacyPeerIndex][peerIndex] = shares[privacyPeerIndex];
+			}
+		}
+	}
+
+	/**
+	 * schedules one Bloom filter operation in every privacy peer
+	 * @param operation name of the operation
+	 * @param privacyPeerIndex the privacy peer
+	 */
+	private void scheduleOperation(String operation, int privacyPeerIndex) {
+		Primitives primitive = primitives[privacyPeerIndex];
+		primitive.initialize(1);
+		if("union".equals(operation)) {
+			primitive.bfUnion(0, nonCountingShares[privacyPeerIndex], false);
+		} else if("countingUnion".equals(operation)) {
+			primitive.bfUnion(0, countingShares[privacyPeerIndex], true);
+		} else if("intersection".equals(operation)) {
+			primitive.bfIntersection(0, nonCountingShares[privacyPeerIndex], false);
+		} else if("countingIntersection".equals(operation)) {
+			primitive.bfIntersection(0, countingShares[privacyPeerIndex], true);
+		} else if("thresholdUnion".equals(operation)) {
+			primitive.bfThresholdUnion(0, countingShares[privacyPeerIndex], THRESHOLD, false);
+		} else if("cardinality".equals(operation)) {
+			primitive.bfCardinality(0, countingShares[privacyPeerIndex][0]);
+		}
+	}
+
+	/**
+	 * runs all operations on filters with 2^exponent positions and prints
+	 * one line per operation: size, operation, milliseconds, rounds, shares
+	 * sent
+	 * @param exponent the filter size exponent
+	 */
+	public void benchmark(int exponent) {
+		filterSize = 1 << exponent;
+		initializeMpcShamirSharingInstances();
+		initializeMpcShamirSharingProtocolPrimitives();
+		createFilterShares();
+
+		String[] operations = {"union", "countingUnion", "intersection",
+				"countingIntersection", "thresholdUnion", "cardinality"};
+		for(String operation : operations) {
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				scheduleOperation(operation, privacyPeerIndex);
+			}
+			resetCommunicationCounters();
+			long start = System.currentTimeMillis();
+			doOperation(new int[]{0});
+			long duration = System.currentTimeMillis() - start;
+			System.out.println(filterSize+";"+operation+";"+duration+";"+roundsCount+";"+sharesSentCount);
+		}
+		nonCountingShares = null;
+		countingShares = null;
+	}
+
+	public static void main(String [] args){
+		int minExponent = 16;
+		int maxExponent = 22;
+		if(args.length == 2) {
+			minExponent = Integer.parseInt(args[0]);
+			maxExponent = Integer.parseInt(args[1]);
+		}
+		BloomFilterOperationsBenchmark benchmark = new BloomFilterOperationsBenchmark();
+		System.out.println("positions;operation;milliseconds;rounds;shares sent");
+		for(int exponent = minExponent; exponent <= maxExponent; exponent++) {
+			benchmark.benchmark(exponent);
+		}
+	}
+}
@@ -15,6 +15,8 @@
 
 package ch.ethz.sepia.protocolPrimitives.operations;
 
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+
 
 /**
  * Test cases for Equal operation.
@@ -29,19 +31,128 @@ public class EqualTest extends OperationsTest {
 	 * Tests if numbers that are supposedly equal by MPC computation are really equal (and vice versa).
 	 */
 	public void testEqual() {
+		checkEqual(Primitives.EQUAL_METHOD_FERMAT);
+	}
+
+	/**
+	 * Test method for {@link mpc.protocolPrimitives.Primitives#equal(int, long[])}
+	 * using the bitwise equal method.
+	 */
+	public void testBitwiseEqual() {
+		checkEqual(Primitives.EQUAL_METHOD_BITWISE);
+	}
+
+	/**
+	 * Compares the communication rounds and the bytes sent per operation of the
+	 * equal methods for all the field sizes. For the bitwise method, the
+	 * generation of the random numbers (which can be done in advance) is
+	 * reported separately.
+	 * <p>
+	 * Checks that both methods compute the same results and take the expected
+	 * number of rounds: 2*(bitLength(p-1)-1) (+2 if p-1 is no power of two) for
+	 * the Fermat method and 1 + ceil(log2(bitsCount)) for the bitwise method.
+	 */
+	public void testEqualMethodsCost() {
+		String[] methods = {Primitives.EQUAL_METHOD_FERMAT, Primitives.EQUAL_METHOD_BITWISE};
+		System.out.println("\nfield size, bits, method, rounds, bytes sent per operation, precomputation rounds, precomputation bytes sent per operation");
+		for(int fieldSizeIndex = 0; fieldSizeIndex < fieldSizes.length; fieldSizeIndex++) {
+			fieldSize = fieldSizes[fieldSizeIndex];
+			initializeMpcShamirSharingInstances();
+			createInputValues();
+			createInputShares();
+			long[][] methodResults = new long[methods.length][];
+			for(int methodIndex = 0; methodIndex < methods.length; methodIndex++) {
+				String method = methods[methodIndex];
+				initializeMpcShamirSharingProtocolPrimitives();
+
+				int[] operationIDs = new int[input.length];
+				for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+					primitives[privacyPeerIndex].setEqualMethod(method);
+					primitives[privacyPeerIndex].initialize(operationIDs.length);
+					for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+						operationIDs[inputIndex] = inputIndex;
+						primitives[privacyPeerIndex].equal(inputIndex, new long[]{inputShares[0][privacyPeerIndex][inputIndex], inputShares[0][privacyPeerIndex][getOtherInputIndex(inputIndex)]});
+					}
+				}
+				resetCommunicationCounters();
+				generateRandomNumbersIfNeeded();
+				int precomputationRounds = roundsCount;
+				long precomputationBytes = 8*sharesSentCount/operationIDs.length;
+				resetCommunicationCounters();
+				doOperation(operationIDs);
+				int bitsCount = primitives[0].getBitsCount();
+				System.out.println(fieldSize + ", " + bitsCount + ", " + method + ", " + roundsCount + ", " + (8*sharesSentCount/operationIDs.length)
+						+ ", " + precomputationRounds + ", " + precomputationBytes);
+
+				int expectedRounds;
+				if(Primitives.EQUAL_METHOD_BITWISE.equals(method)) {
+					expectedRounds = 1 + (32 - Integer.numberOfLeadingZeros(bitsCount-1));
+				} else {
+					// two rounds per squaring and two more for the final multiplication
+					// unless p-1 is a power of two
+					expectedRounds = 2*(Long.toBinaryString(fieldSize-1).length() - 1);
+					if(Long.bitCount(fieldSize-1) > 1) {
+						expectedRounds += 2;
+					}
+				}
+				assertEquals("rounds of the " + method + " equal method in field of size " + fieldSize, expectedRounds, roundsCount);
+
+				// reconstruct the results
+				long[][] shares = new long[numberOfPrivacyPeers][input.length];
+				for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+					for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+						shares[privacyPeerIndex][inputIndex] = primitives[privacyPeerIndex].getResult(inputIndex)[0];
+					}
+					primitives[privacyPeerIndex].initialize(operationIDs.length);
+					for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+						primitives[privacyPeerIndex].reconstruct(inputIndex, new long[]{shares[privacyPeerIndex][inputIndex]});
+					}
+				}
+				doOperation(operationIDs);
+				methodResults[methodIndex] = new long[input.length];
+				for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+					methodResults[methodIndex][inputIndex] = primitives[0].getResult(inputIndex)[0];
+				}
+			}
+
+			// both methods have to agree (with each other and with the real result)
+			for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
+				long realResult = input[inputIndex] == input[getOtherInputIndex(inputIndex)] ? 1 : 0;
+				assertEquals("Fermat equal of input " + inputIndex + " in field of size " + fieldSize, realResult, methodResults[0][inputIndex]);
+				assertEquals("bitwise and Fermat equal of input " + inputIndex + " in field of size " + fieldSize, methodResults[0][inputIndex], methodResults[1][inputIndex]);
+			}
+		}
+	}
+
+	/**
+	 * @param inputIndex	the index of an input
+	 * @return	the index of the input it is compared with in {@link #testEqualMethodsCost()}:
+	 * 			itself for even indices, the next input for odd indices
+	 */
+	private int getOtherInputIndex(int inputIndex) {
+		return inputIndex%2 == 0 ? inputIndex : (inputIndex+1)%input.length;
+	}
+
+	/**
+	 * Tests all pairs of inputs for equality in all field sizes.
+	 *
+	 * @param equalMethod	the equal method to use
+	 */
+	private void checkEqual(String equalMethod) {
 		for(int fieldSizeIndex = 0; fieldSizeIndex < fieldSizes.length; fieldSizeIndex++) {
 			fieldSize = fieldSizes[fieldSizeIndex];
 			initializeMpcShamirSharingInstances();
 			initializeMpcShamirSharingProtocolPrimitives();
 			createInputValues();
 			createInputShares();
-			System.out.println("\ntesting equal operation with field size=" + fieldSize);
+			System.out.println("\ntesting " + equalMethod + " equal operation with field size=" + fieldSize);
 
 			// test inputs for equality
 			int[] operationIDs = new int[numberOfPeers*input.length*input.length];
 			int nextID = 0;
 			long[] data = null;
 			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				primitives[privacyPeerIndex].setEqualMethod(equalMethod);
 				primitives[privacyPeerIndex].initialize(operationIDs.length);
 				for(int peerIndex = 0; peerIndex < numberOfPeers; peerIndex++) {
 					for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
@@ -0,0 +1,122 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute 
+// it and/or modify it under the terms of the GNU Lesser General Public 
+// License as published by the Free Software Foundation, either version 3 
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.protocolPrimitives.operations;
+
+import java.math.BigInteger;
+
+public class InnerProductTest extends OperationsTest{
+	
+	public InnerProductTest(String name){
+		super.setName(name);
+	}
+	
+	private long[][] inputValues = null;
+	
+	@Override
+	protected void createInputValues() {
+		inputValues = new long[numberOfPeers][100];
+		
+		for(int i = 0; i < inputValues.length; i++){
+			for(int j = 0; j < inputValues[0].length; j++){
+				long randomValue = random.nextLong() % fieldSize;
+				if(randomValue < 0) {
+					randomValue = 0-randomValue;
+				}
+				inputValues[i][j] = randomValue;
+			}
+		}
+	}
+	
+	@Override
+	protected void createInputShares(){
+		// create Shamir shares of input values
+		inputShares = new long[numberOfPeers][numberOfPrivacyPeers][inputValues[0].length];
+		for(int i = 0; i < numberOfPeers; i++){
+			inputShares[i] = mpcShamirSharingPeers[i].generateShares(inputValues[i]);
+		}
+	}
+	
+	public void testInnerProduct(){
+		numberOfPeers = 2; // the inner product of 2 vectors
+		for(int groupOrderIndex = 0; groupOrderIndex < fieldSizes.length; groupOrderIndex++) {
+			fieldSize = fieldSizes[groupOrderIndex];
+			initializeMpcShamirSharingInstances();
+			initializeMpcShamirSharingProtocolPrimitives();
+			createInputValues();
+			createInputShares();
+			System.out.println("\ntesting inner product operation with group order=" + fieldSize);
+			
+			int[] operationIDs = new int[]{0};
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				primitives[privacyPeerIndex].initialize(operationIDs.length);
+				assertTrue(primitives[privacyPeerIndex].innerProduct(operationIDs[0],
+						inputShares[0][privacyPeerIndex], inputShares[1][privacyPeerIndex]));
+			}
+
+			resetCommunicationCounters();
+			doOperation(operationIDs);
+			
+			// the whole vector is reshared at once: one share per pair of privacy peers and round
+			assertEquals("shares sent by the inner product",
+					roundsCount*numberOfPrivacyPeers*(numberOfPrivacyPeers-1), sharesSentCount);
+			
+			// reconstruct the inner product
+			long[] innerProductShares = new long[numberOfPrivacyPeers];
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				innerProductShares[privacyPeerIndex] = primitives[privacyPeerIndex].getResult(0)[0];
+			}
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				primitives[privacyPeerIndex].initialize(operationIDs.length);
+				primitives[privacyPeerIndex].reconstruct(operationIDs[0], new long[]{innerProductShares[privacyPeerIndex]});
+			}
+			
+			doOperation(operationIDs);
+
+			System.out.println("Checking");
+
+			long realResult = doInnerProduct();
+			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
+				assertEquals("checking inner product of Ppeer "+privacyPeerIndex+
+						" in field of size "+fieldSize+": ", 
+						realResult, primitives[privacyPeerIndex].getResult(0)[0]);
+			}
+
+			System.out.println("finished InnerProduct.");
+		}
+	}
+	
+	public void testInvalidArguments(){
+		initializeMpcShamirSharingInstances();
+		initializeMpcShamirSharingProtocolPrimitives();
+		primitives[0].initialize(1);
+		assertFalse(primitives[0].innerProduct(0, new long[2], new long[3]));
+		assertFalse(primitives[0].innerProduct(0, new long[0], new long[0]));
+	}
+	
+	public static void main(String [] args){
+		junit.textui.TestRunner.
+					run(new InnerProductTest("testInnerProduct"));
+	}
+	
+	public long doInnerProduct(){
+		BigInteger result = BigInteger.ZERO;
+		for(int j = 0; j < inputValues[0].length; j++){
+			result = result.add(BigInteger.valueOf(inputValues[0][j]).multiply(BigInteger.valueOf(inputValues[1][j])));
+		}
+		return result.mod(BigInteger.valueOf(fieldSize)).longValue();
+	}
+
+}
@@ -15,6 +15,7 @@
 
 package ch.ethz.sepia.protocolPrimitives.operations;
 
+import ch.ethz.sepia.mpc.protocolPrimitives.PredicateCache;
 import ch.ethz.sepia.services.Utils;
 
 
@@ -290,6 +291,7 @@ public class LessThanTest extends OperationsTest {
 			int nextID = 0;
 			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
 				primitives[privacyPeerIndex].initialize(input.length*input.length);
+				int inputScope = primitives[privacyPeerIndex].getPredicateCache().scope("input");
 				for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
 					for(int inputIndex2 = 0; inputIndex2 < input.length; inputIndex2++) {
 						nextID = inputIndex*input.length +inputIndex2;
@@ -299,10 +301,10 @@ public class LessThanTest extends OperationsTest {
 						data[2] = -1;
 						data[3] = (input[inputIndex2] < (fieldSize+1)/2 ? 1 : 0); // (it's "< (fieldSize+1)/2" because we have an integer division; not real numbers)
 						data[4] = -1;
-						String keyA = "Input-"+inputIndex;
-						String keyB = null; // no secret
-						String keyAB = "Difference-"+inputIndex+"-"+inputIndex2;
-						primitives[privacyPeerIndex].lessThan(nextID, data, keyA, keyB, keyAB);
+						long keyA = inputIndex;
+						long keyB = PredicateCache.NO_KEY; // no secret
+						long keyAB = input.length + nextID; // (ids must not collide with keyA)
+						primitives[privacyPeerIndex].lessThan(nextID, data, inputScope, keyA, keyB, keyAB);
 					}
 				}
 			}
@@ -321,6 +323,7 @@ public class LessThanTest extends OperationsTest {
 			nextID = 0;
 			for(int privacyPeerIndex = 0; privacyPeerIndex < numberOfPrivacyPeers; privacyPeerIndex++) {
 				primitives[privacyPeerIndex].initialize(input.length*input.length);
+				int inputScope = primitives[privacyPeerIndex].getPredicateCache().scope("input");
 				for(int inputIndex = 0; inputIndex < input.length; inputIndex++) {
 					for(int inputIndex2 = 0; inputIndex2 < input.length; inputIndex2++) {
 						nextID = inputIndex*input.length +inputIndex2;
@@ -330,10 +333,10 @@ public class LessThanTest extends OperationsTest {
 						data[2] = -1;
 						data[3] = (input[inputIndex2] < (fieldSize+1)/2 ? 1 : 0); // (it's "< (fieldSize+1)/2" because we have an integer division; not real numbers)
 						data[4] = -1;
-						String keyA = "Input-"+inputIndex;
-						String keyB = null; // no secret
-						String keyAB = "Difference-"+inputIndex+"-"+inputIndex2;
-						primitives[privacyPeerIndex].lessThan(nextID, data, keyA, keyB, keyAB);
+						long keyA = inputIndex;
+						long keyB = PredicateCache.NO_KEY; // no secret
+						long keyAB = input.length + nextID; // (ids must not collide with keyA)
+						primitives[privacyPeerIndex].lessThan(nextID, data, inputScope, keyA, keyB, keyAB);
 					}
 				}
 			}
@@ -343,6 +346,8 @@ public class LessThanTest extends OperationsTest {
 			System.out.println("computation of less-than (in field of size="+fieldSize+") failed in "+(failureRates[fieldSizeIndex]*100)+"% of tries");
 			cachedTimes[fieldSizeIndex] = System.currentTimeMillis()-start;  
 			System.out.println("Duration: "+cachedTimes[fieldSizeIndex]+"ms");
+			System.out.println("Predicate cache: "+primitives[0].getPredicateCache());
+			assertTrue("predicates of the 2nd run should be cached", primitives[0].getPredicateCache().getHitCount() > 0);
 
 		}
 		System.out.println("\nless-than operation failure rates (field size, failure rate):");
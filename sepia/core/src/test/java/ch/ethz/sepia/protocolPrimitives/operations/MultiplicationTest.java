@@ -298,4 +298,79 @@ public class MultiplicationTest extends OperationsTest {
 		}
 	}
 
+
+	/**
+	 * Tests {@link mpc.protocolPrimitives.Primitives#multiply(int, long[])}
+	 * when only some of the operations run in parallel and the others are
+	 * queued. The operations are submitted in reverse order of their ids.
+	 */
+	public void testQueuedMultiply() {
+		doQueuedMultiply(false);
+	}
+
+	/**
+	 * Same as {@link #testQueuedMultiply()}, but executes the steps in work
+	 * stealing mode.
+	 */
+	public void testWorkStealingMultiply() {
+		doQueuedMultiply(true);
+	}
+
+	private void doQueuedMultiply(final boolean workStealing) {
+		this.fieldSize = 1401085391;
+		initializeMpcShamirSharingInstances();
+		initializeMpcShamirSharingProtocolPrimitives();
+		createInputValues();
+		createInputShares();
+		for (int privacyPeerIndex = 0; privacyPeerIndex < this.numberOfPrivacyPeers; privacyPeerIndex++) {
+			this.primitives[privacyPeerIndex].setWorkStealing(workStealing);
+		}
+
+		int count = this.input.length * this.input.length;
+		int[] operationIDs = new int[count];
+		long[] data = null;
+		for (int privacyPeerIndex = 0; privacyPeerIndex < this.numberOfPrivacyPeers; privacyPeerIndex++) {
+			this.primitives[privacyPeerIndex].initialize(7, count);
+			for (int id = count - 1; id >= 0; id--) {
+				operationIDs[id] = id;
+				data = new long[2];
+				data[0] = this.inputShares[0][privacyPeerIndex][id
+						/ this.input.length];
+				data[1] = this.inputShares[0][privacyPeerIndex][id
+						% this.input.length];
+				this.primitives[privacyPeerIndex].multiply(id, data);
+			}
+		}
+		doOperation(operationIDs);
+
+		long[][] products = new long[this.numberOfPrivacyPeers][count];
+		for (int privacyPeerIndex = 0; privacyPeerIndex < this.numberOfPrivacyPeers; privacyPeerIndex++) {
+			for (int id = 0; id < count; id++) {
+				products[privacyPeerIndex][id] = this.primitives[privacyPeerIndex]
+						.getResult(id)[0];
+			}
+		}
+
+		for (int privacyPeerIndex = 0; privacyPeerIndex < this.numberOfPrivacyPeers; privacyPeerIndex++) {
+			this.primitives[privacyPeerIndex].initialize(count);
+			for (int id = 0; id < count; id++) {
+				this.primitives[privacyPeerIndex].reconstruct(id,
+						new long[] { products[privacyPeerIndex][id] });
+			}
+		}
+		doOperation(operationIDs);
+
+		BigInteger bigGroupOrder = BigInteger.valueOf(this.fieldSize);
+		for (int id = 0; id < count; id++) {
+			long realResult = BigInteger
+					.valueOf(this.input[id / this.input.length])
+					.multiply(
+							BigInteger.valueOf(this.input[id
+									% this.input.length]))
+					.mod(bigGroupOrder).longValue();
+			assertEquals("checking queued product " + id + ": ", realResult,
+					this.primitives[0].getResult(id)[0]);
+		}
+	}
+
 }
@@ -27,8 +27,8 @@ import org.slf4j.ext.XLogger;
 import ch.ethz.sepia.mpc.ShamirSharing;
 import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
 import ch.ethz.sepia.mpc.protocolPrimitives.operationStates.GenericOperationState;
+import ch.ethz.sepia.mpc.protocolPrimitives.operations.IBitwiseRandomNumbersConsumer;
 import ch.ethz.sepia.mpc.protocolPrimitives.operations.IOperation;
-import ch.ethz.sepia.mpc.protocolPrimitives.operations.LessThan;
 import ch.ethz.sepia.services.Services;
 import ch.ethz.sepia.services.Utils;
 
@@ -91,6 +91,19 @@ public class OperationsTest extends TestCase {
     /** the number of random values to use in the input */
     protected int randomValuesCount = 10;
 
+    /**
+     * the number of communication rounds done by
+     * {@link #doOperation(int[])} since the last
+     * {@link #resetCommunicationCounters()}
+     */
+    protected int roundsCount = 0;
+    /**
+     * the number of shares sent between all privacy peers by
+     * {@link #doOperation(int[])} since the last
+     * {@link #resetCommunicationCounters()}
+     */
+    protected long sharesSentCount = 0;
+
     /**
      * creates Shamir bit shares for the input values
      */
@@ -329,6 +342,7 @@ public class OperationsTest extends TestCase {
                                 + ", in round " + roundNumber + ")",
                                 dataToSend.length > 0);
                         this.primitives[j].setReceivedData(i, dataToSend);
+                        this.sharesSentCount += dataToSend.length;
                     }
                 }
             }
@@ -340,6 +354,7 @@ public class OperationsTest extends TestCase {
             // generateRandomNumbersIfNeeded() itself
             // generateRandomNumbersIfNeeded();
             // }
+            this.roundsCount++;
             // process the data
             try {
                 for (int i = 0; i < this.numberOfPrivacyPeers; i++) {
@@ -362,6 +377,14 @@ public class OperationsTest extends TestCase {
         return true;
     }
 
+    /**
+     * resets {@link #roundsCount} and {@link #sharesSentCount}
+     */
+    protected void resetCommunicationCounters() {
+        this.roundsCount = 0;
+        this.sharesSentCount = 0;
+    }
+
     /**
      * Checks whether current operations need bitwise shared random numbers and
      * generates them if needed.
@@ -374,8 +397,8 @@ public class OperationsTest extends TestCase {
         // List<IOperation> opsWithRandomNeed = new ArrayList<IOperation>();
         for (int i = 0; i < ops.size(); i++) {
             // opsWithRandomNeed.addAll(recursiveGetOperationsWithRandomNumbersNeeded(ops.get(i)));
-            if (ops.get(i) instanceof LessThan) {
-                randomNumbersNeeded += ((LessThan) ops.get(i))
+            if (ops.get(i) instanceof IBitwiseRandomNumbersConsumer) {
+                randomNumbersNeeded += ((IBitwiseRandomNumbersConsumer) ops.get(i))
                         .getRandomNumbersNeeded(this.primitives[0]);
             }
         }
@@ -432,9 +455,9 @@ public class OperationsTest extends TestCase {
             this.primitives[pp].popOperations();
             final List<IOperation> ppOps = this.primitives[pp].getOperations();
             for (int op = 0; op < ppOps.size(); op++) {
-                if (ppOps.get(op) instanceof LessThan) {
+                if (ppOps.get(op) instanceof IBitwiseRandomNumbersConsumer) {
                     // set random bits
-                    final LessThan lt = (LessThan) ppOps.get(op);
+                    final IBitwiseRandomNumbersConsumer lt = (IBitwiseRandomNumbersConsumer) ppOps.get(op);
                     final int bitsNeeded = lt
                             .getRandomNumbersNeeded(this.primitives[pp])
                             * bitsPerElement;
@@ -551,7 +574,7 @@ public class OperationsTest extends TestCase {
         final List<IOperation> opsWithNeed = new ArrayList<IOperation>();
         // long randomNumbersNeeded = 0;
 
-        if (operation instanceof LessThan) {
+        if (operation instanceof IBitwiseRandomNumbersConsumer) {
             opsWithNeed.add(operation);
             // randomNumbersNeeded +=
             // ((LessThan)operation).getRandomNumbersNeeded(primitives[0]);
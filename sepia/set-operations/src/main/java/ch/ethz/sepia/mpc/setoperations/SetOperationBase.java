@@ -0,0 +1,339 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.util.Collections;
+import java.util.Observable;
+import java.util.Properties;
+import java.util.Random;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.ConnectionManager;
+import ch.ethz.sepia.events.ExceptionEvent;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledPeer;
+import ch.ethz.sepia.services.BloomFilter;
+import ch.ethz.sepia.services.MultiHash;
+import ch.ethz.sepia.services.Stopper;
+import ch.ethz.sepia.services.Utils;
+import ch.ethz.sepia.startup.Configuration;
+
+/**
+ * This abstract class contains the functionality common to peers and privacy
+ * peers of the MPC set operation protocol. Each input peer inserts its set
+ * into a Bloom filter and the privacy peers compute the intersection, union
+ * or threshold union of the shared filters.
+ */
+public abstract class SetOperationBase extends PrimitivesEnabledPeer {
+    private static final XLogger logger = new XLogger(
+            LoggerFactory.getLogger(SetOperationBase.class));
+
+    public static final String OPERATION_INTERSECTION = "intersection";
+    public static final String OPERATION_UNION = "union";
+    public static final String OPERATION_THRESHOLD_UNION = "thresholdunion";
+
+    /** the peers learn the estimated number of elements of the result set */
+    public static final String OUTPUT_CARDINALITY = "cardinality";
+    /** the peers learn the result filter and check their elements against it */
+    public static final String OUTPUT_MEMBERSHIP = "membership";
+
+    public static final String PROP_SETOP_OPERATION = "mpc.setop.operation"; // the set operation
+    public static final String DEFAULT_SETOP_OPERATION = OPERATION_INTERSECTION;
+    public static final String PROP_SETOP_OUTPUT = "mpc.setop.output"; // what the peers learn
+    public static final String DEFAULT_SETOP_OUTPUT = OUTPUT_CARDINALITY;
+    public static final String PROP_SETOP_SIZE = "mpc.setop.size"; // filter size (default: number of items)
+    public static final String PROP_SETOP_HASHES = "mpc.setop.hashes"; // number of hash functions
+    public static final String DEFAULT_SETOP_HASHES = "4";
+    public static final String PROP_SETOP_HASH = "mpc.setop.hash"; // the hash algorithm of the filters
+    public static final String DEFAULT_SETOP_HASH = MultiHash.ALGORITHM_HMAC_MD5;
+    public static final String PROP_SETOP_COUNTING = "mpc.setop.counting"; // counting filters
+    public static final String DEFAULT_SETOP_COUNTING = "false";
+    public static final String PROP_SETOP_THRESHOLD = "mpc.setop.threshold"; // threshold of the threshold union
+    public static final String DEFAULT_SETOP_THRESHOLD = "2";
+    public static final String PROP_SETOP_BATCH_SIZE = "mpc.setop.batchSize"; // filter positions per operation
+    public static final String DEFAULT_SETOP_BATCH_SIZE = "1024";
+
+    protected String inputFolder;
+    protected String outputFolder;
+    protected int inputTimeout;
+
+    /** number of time slots */
+    protected int timeSlotCount = 1;
+    /** number of items per time slot */
+    protected int numberOfItems = 0;
+    /** the size of the field to use for the Shamir shares computations */
+    protected long shamirSharesFieldOrder = 0;
+    /** the degree of the polynomials to use */
+    protected int degreeT = -1;
+
+    /**
+     * contains the final results: the result filter (membership) or the sum
+     * of its positions (cardinality)
+     */
+    protected long[] finalResults = null;
+
+    /** The set operation */
+    protected String operation;
+    /** What the peers learn */
+    protected String output;
+    /** The size of the Bloom filters (a power of two) */
+    protected int filterSize;
+    /** The number of hash functions of the Bloom filters */
+    protected int hashCount;
+    /** The hash algorithm of the Bloom filters */
+    protected String hashAlgorithm;
+    /** true for counting Bloom filters */
+    protected boolean counting;
+    /** The number of sets an element must be in to be in the threshold union */
+    protected int threshold;
+    /** The number of filter positions processed by one operation */
+    protected int batchSize;
+
+    /**
+     * Creates a new MPC set operation peer instance
+     *
+     * @param myPeerIndex
+     *            This peer's number/index
+     * @param stopper
+     *            Stopper (can be used to stop this thread)
+     * @param cm
+     *            the connection manager
+     */
+    public SetOperationBase(int myPeerIndex, ConnectionManager cm,
+            Stopper stopper) {
+        this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+    }
+
+    /**
+     * Creates a new MPC set operation peer instance with the given name. This
+     * is the constructor used by {@link ch.ethz.sepia.mpc.PeerFactory}.
+     *
+     * @param peerName
+     *            the name of this peer (its configuration instance)
+     * @param myPeerIndex
+     *            This peer's number/index
+     * @param stopper
+     *            Stopper (can be used to stop this thread)
+     * @param cm
+     *            the connection manager
+     */
+    public SetOperationBase(String peerName, int myPeerIndex,
+            ConnectionManager cm, Stopper stopper) {
+        super(peerName, myPeerIndex, cm, stopper);
+        protocolStopper = new Stopper();
+    }
+
+    protected static String makePeerName(int myPeerIndex) {
+        return "SetOperation-" + myPeerIndex;
+    }
+
+    /**
+     * @return true if the global stopper of the configuration was stopped
+     */
+    protected boolean isGloballyStopped() {
+        Stopper globalStopper = Configuration.getInstance(myPeerName)
+                .getGlobalStopper();
+        return globalStopper != null && globalStopper.isStopped();
+    }
+
+    /**
+     * Notifies the stop listener of the configuration (if any) that the
+     * protocol has finished.
+     */
+    protected void notifyStopListener() {
+        Stopper stopListener = Configuration.getInstance(myPeerName)
+                .getStopListener();
+        if (stopListener != null) {
+            stopListener.stop();
+        }
+    }
+
+    /**
+     * Init the properties.
+     */
+    protected synchronized void initProperties() throws Exception {
+        Properties properties = Configuration.getInstance(myPeerName).getProperties();
+
+        inputFolder = properties.getProperty(Configuration.PROP_INPUT_DIR,
+                Configuration.DEFAULT_INPUT_DIR);
+        outputFolder = properties.getProperty(Configuration.PROP_OUTPUT_DIR,
+                Configuration.DEFAULT_OUTPUT_DIR);
+        inputTimeout = Integer.valueOf(properties.getProperty(
+                Configuration.PROP_INPUT_TIMEOUT,
+                Configuration.DEFAULT_INPUT_TIMEOUT));
+
+        randomAlgorithm = properties.getProperty(Configuration.PROP_PRG,
+                Configuration.DEFAULT_PRG);
+        random = new Random();
+
+        timeSlotCount = Integer.valueOf(properties
+                .getProperty(Configuration.PROP_NUMBER_OF_TIME_SLOTS));
+        numberOfItems = Integer.valueOf(properties
+                .getProperty(Configuration.PROP_NUMBER_OF_ITEMS));
+        minInputPeers = Integer.valueOf(properties
+                .getProperty(Configuration.PROP_MIN_INPUTPEERS));
+        minPrivacyPeers = Integer.valueOf(properties
+                .getProperty(Configuration.PROP_MIN_PRIVACYPEERS));
+        setMyPeerID(properties.getProperty(Configuration.PROP_MY_PEER_ID));
+        shamirSharesFieldOrder = Long.valueOf(properties.getProperty(
+                Configuration.PROP_FIELD, Configuration.DEFAULT_FIELD));
+        degreeT = Integer.valueOf(properties.getProperty(
+                Configuration.PROP_DEGREE, "-1"));
+        workStealing = Boolean.parseBoolean(properties.getProperty(
+                Configuration.PROP_WORK_STEALING,
+                Configuration.DEFAULT_WORK_STEALING));
+        equalMethod = properties.getProperty(
+                Configuration.PROP_EQUAL_METHOD,
+                Configuration.DEFAULT_EQUAL_METHOD);
+
+        myAlphaIndex = Collections.binarySearch(
+                connectionManager.getConfiguredPrivacyPeerIDs(), getMyPeerID());
+
+        /*
+         * Properties specific to the set operation protocol.
+         */
+        operation = properties.getProperty(PROP_SETOP_OPERATION,
+                DEFAULT_SETOP_OPERATION).toLowerCase();
+        if (!OPERATION_INTERSECTION.equals(operation)
+                && !OPERATION_UNION.equals(operation)
+                && !OPERATION_THRESHOLD_UNION.equals(operation)) {
+            throw new IllegalArgumentException("Unknown set operation: "
+                    + operation);
+        }
+        output = properties.getProperty(PROP_SETOP_OUTPUT,
+                DEFAULT_SETOP_OUTPUT).toLowerCase();
+        if (!OUTPUT_CARDINALITY.equals(output)
+                && !OUTPUT_MEMBERSHIP.equals(output)) {
+            throw new IllegalArgumentException("Unknown set operation output: "
+                    + output);
+        }
+        // the filters are rounded up to the next power of two
+        filterSize = BloomFilter.getNextPowerOfTwo(Integer.valueOf(properties
+                .getProperty(PROP_SETOP_SIZE, String.valueOf(numberOfItems))));
+        hashCount = Integer.valueOf(properties.getProperty(PROP_SETOP_HASHES,
+                DEFAULT_SETOP_HASHES));
+        hashAlgorithm = properties.getProperty(PROP_SETOP_HASH,
+                DEFAULT_SETOP_HASH);
+        counting = Boolean.parseBoolean(properties.getProperty(
+                PROP_SETOP_COUNTING, DEFAULT_SETOP_COUNTING));
+        threshold = Integer.valueOf(properties.getProperty(
+                PROP_SETOP_THRESHOLD, DEFAULT_SETOP_THRESHOLD));
+        batchSize = Integer.valueOf(properties.getProperty(
+                PROP_SETOP_BATCH_SIZE, DEFAULT_SETOP_BATCH_SIZE));
+        if (batchSize < 1 || batchSize > filterSize) {
+            batchSize = filterSize;
+        }
+
+        // output properties to log
+        logger.info("The following properties were set:");
+        logger.info("time slot count: " + timeSlotCount);
+        logger.info("number of items per time slot: "
+                + numberOfItems);
+        logger.info("random algorithm: " + randomAlgorithm);
+        logger.info("minInputPeers: " + minInputPeers);
+        logger.info("minPrivacyPeers: " + minPrivacyPeers);
+        logger.info("Shamir shares field order: "
+                + shamirSharesFieldOrder);
+        logger.info("Shamir shares polynomial degree: " + degreeT);
+        logger.info("myID: " + getMyPeerID());
+        logger.info("my alpha index: " + myAlphaIndex);
+
+        logger.info("Set operation: " + operation + ", output=" + output
+                + ", size=" + filterSize + ", hashes=" + hashCount
+                + ", hash=" + hashAlgorithm + ", counting=" + counting
+                + ", threshold=" + threshold + ", batchSize=" + batchSize);
+    }
+
+    /**
+     * @return the number of operations a filter is split into
+     */
+    protected int getNumberOfBatches() {
+        return (filterSize + batchSize - 1) / batchSize;
+    }
+
+    /**
+     * Process message received by an observable.
+     *
+     * @param observable
+     *            Observable who sent the notification
+     * @param object
+     *            The object that was sent by the observable
+     */
+    protected abstract void notificationReceived(Observable observable,
+            Object object) throws Exception;
+
+    /**
+     * Invoked when an observable that we're observing is notifying its
+     * observers
+     *
+     * @param observable
+     *            Observable who sent the notification
+     * @param object
+     *            The object that was sent by the observable
+     */
+    public void update(Observable observable, Object object) {
+        ExceptionEvent exceptionEvent;
+        String errorMessage;
+
+        if (object == null) {
+            logger.error("Received a null message from observable: "
+                    + observable.getClass().getName());
+            return;
+        }
+
+        logger.info("Received notification from observable: "
+                + observable.getClass().getName() + " (object is of type: "
+                + object.getClass().getName() + ")");
+
+        try {
+            /*
+             * !!! WATCH OUT FOR ORDER (e.g. SetOperationMessage will go for !!!
+             * MpcMessage, too, since it is subclassing it!) -> always check !!!
+             * subclasses first
+             */
+            if (object instanceof SetOperationMessage) {
+                notificationReceived(observable, object);
+
+            } else if (object instanceof ExceptionEvent) {
+                exceptionEvent = (ExceptionEvent) object;
+                logger.error("Received Exception Event..."
+                        + exceptionEvent.getMessage());
+                sendExceptionEvent(exceptionEvent);
+
+            } else {
+                errorMessage = "Unexpected message type: "
+                        + object.getClass().getName();
+                logger.error(errorMessage);
+                sendExceptionEvent(this, errorMessage);
+            }
+
+        } catch (Exception e) {
+            errorMessage = "Error when processing event: "
+                    + Utils.getStackTrace(e);
+            logger.error(errorMessage);
+            sendExceptionEvent(this, e, errorMessage);
+        }
+    }
+
+    /**
+     * Does some cleaning up.
+     */
+    protected synchronized void cleanUp() throws Exception {
+        // Stop all started threads
+        stopProcessing();
+    }
+}
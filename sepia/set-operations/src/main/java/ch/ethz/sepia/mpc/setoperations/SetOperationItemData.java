@@ -0,0 +1,71 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.ethz.sepia.services.LineData;
+
+/**
+ * This class reads the elements of a set (e.g. IP addresses) from CSV.
+ * The elements are separated by semicolons, commas or line breaks. Repeated
+ * elements are kept, they are counted by counting Bloom filters.
+ */
+public class SetOperationItemData extends LineData {
+	/** characters separating columns/fields in the input data */
+	private static final String FIELD_SEPARATOR = "[;,]";
+
+	private List<String> items = new ArrayList<String>();
+
+
+	/**
+	 * Opens the input file.
+	 * @throws Exception
+	 */
+	public void openFile() throws Exception {
+		super.openFile();
+		items = new ArrayList<String>();
+	}
+
+
+	/**
+	 * Reads a whole set from a single record (<code>item;item;...</code>),
+	 * replacing the current items.
+	 * @param record the record
+	 */
+	public void readItems(String record) {
+		items = new ArrayList<String>();
+		parseAndStoreTuple(record);
+	}
+
+	protected void parseAndStoreTuple(String line) {
+		for (String field : line.split(FIELD_SEPARATOR)) {
+			String item = field.trim();
+			if (!item.isEmpty()) {
+				items.add(item);
+			}
+		}
+	}
+
+
+	/**
+	 * @return the elements of the set
+	 */
+	public List<String> getItems() {
+		return items;
+	}
+}
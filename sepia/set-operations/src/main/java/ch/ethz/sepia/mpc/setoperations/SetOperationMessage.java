@@ -0,0 +1,101 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import ch.ethz.sepia.mpc.MessageBase;
+
+/**
+ * message used to exchange data among (privacy) peers in the set operation protocol
+ */
+@XmlRootElement
+public class SetOperationMessage extends MessageBase implements Serializable {
+	private static final long serialVersionUID = -2870941046335519270L;
+
+	/**
+	 * Message Type Flags
+	 */
+	/** indicates if the message contains the initial shares */
+	private boolean isInitialSharesMessage = false;
+	/** indicates if the message contains the final results */
+	private boolean isFinalResultMessage = false;
+
+	/** contains the shares of the Bloom filter positions */
+	private long[] initialShares = null;
+
+	/** contains the final results */
+	private long[] finalResults = null;
+
+	public SetOperationMessage() { /* jaxb needs this */
+	}
+
+	/**
+	 * creates a new set operation protocol message with the specified sender id and
+	 * index
+	 *
+	 * @param senderID
+	 *            the senders id
+	 * @param senderIndex
+	 *            the senders index
+	 */
+	public SetOperationMessage(String senderID, int senderIndex) {
+		super(senderID, senderIndex);
+	}
+
+	public boolean isInitialSharesMessage() {
+		return isInitialSharesMessage;
+	}
+
+	public void setIsInitialSharesMessage(boolean isInitialSharesMessage) {
+		this.isInitialSharesMessage = isInitialSharesMessage;
+	}
+
+	public void setInitialSharesMessage(boolean isInitialSharesMessage) {
+		this.isInitialSharesMessage = isInitialSharesMessage;
+	}
+
+	public boolean isFinalResultMessage() {
+		return isFinalResultMessage;
+	}
+
+	public void setIsFinalResultMessage(boolean isFinalResultMessage) {
+		this.isFinalResultMessage = isFinalResultMessage;
+	}
+
+	public void setFinalResultMessage(boolean isFinalResultMessage) {
+		this.isFinalResultMessage = isFinalResultMessage;
+	}
+
+	public long[] getFinalResults() {
+		return finalResults;
+	}
+
+	public void setFinalResults(long[] finalResults) {
+		this.finalResults = finalResults;
+	}
+
+	public long[] getInitialShares() {
+		return initialShares;
+	}
+
+	public void setInitialShares(long[] initialShares) {
+		this.initialShares = initialShares;
+	}
+
+}
@@ -0,0 +1,376 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Observable;
+import java.util.Vector;
+import java.util.concurrent.CyclicBarrier;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.ConnectionManager;
+import ch.ethz.sepia.events.FinalResultEvent;
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.VectorData;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledProtocol;
+import ch.ethz.sepia.services.BloomFilter;
+import ch.ethz.sepia.services.DirectoryPoller;
+import ch.ethz.sepia.services.Services;
+import ch.ethz.sepia.services.Stopper;
+import ch.ethz.sepia.services.Utils;
+import ch.ethz.sepia.startup.Configuration;
+
+/**
+ * A MPC peer providing the private input set for the set operation protocol.
+ * The set is inserted into a Bloom filter whose positions are shared with the
+ * privacy peers.
+ */
+public class SetOperationPeer extends SetOperationBase {
+    private static final XLogger logger = new XLogger(
+            LoggerFactory.getLogger(SetOperationPeer.class));
+
+	/** vector of protocols (between this peer and the privacy peers) */
+	private Vector<SetOperationProtocolPeer> peerProtocolThreads = null;
+	/** MpcShamirSharing instance to use basic operations on Shamir shares */
+	protected ShamirSharing mpcShamirSharing = null;
+
+	/** barrier to synchronize the protocol threads of this peer*/
+	private CyclicBarrier protocolThreadsBarrier = null;
+
+	/** input data of this peer  */
+	protected SetOperationItemData itemData = null;
+	protected DirectoryPoller poller;
+	/** the Bloom filter of the input set */
+	protected BloomFilter filter;
+	/** array containing my initial shares; dimensions: [numberOfPrivacyPeers][filterSize] */
+	private long[][] initialShares = null;
+
+	/**
+	 * constructs a new set operation peer object
+	 *
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm the connection manager
+	 * @throws Exception
+	 */
+	public SetOperationPeer(int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+	}
+
+	/**
+	 * constructs a new set operation peer object with the given name
+	 *
+	 * @param peerName		the name of this peer
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm the connection manager
+	 * @throws Exception
+	 */
+	public SetOperationPeer(String peerName, int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		super(peerName, myPeerIndex, cm, stopper);
+		peerProtocolThreads = new Vector<SetOperationProtocolPeer>();
+		mpcShamirSharing = new ShamirSharing();
+	}
+
+	/**
+	 * Initializes the peer
+	 */
+	public void initialize() throws Exception {
+		initProperties();
+
+		mpcShamirSharing.setRandomAlgorithm(randomAlgorithm);
+		mpcShamirSharing.setFieldSize(shamirSharesFieldOrder);
+		if (degreeT>0) {
+			mpcShamirSharing.setDegreeT(degreeT);
+		}
+
+		currentTimeSlot = 1;
+
+		itemData = new SetOperationItemData();
+		if (Configuration.getInstance(myPeerName).getInputDataReader() == null) {
+			poller = new DirectoryPoller(stopper, new File(inputFolder));
+		}
+	}
+
+	/**
+	 * Initializes and starts a new round of computation. It first (re-)established connections and
+	 * then creates and runs the protocol threads for the new round.
+	 */
+	protected void initializeNewRound() {
+		PrimitivesEnabledProtocol.newStatisticsRound();
+
+		List<String> privacyPeerIDs = connectionManager.getActivePeers(true);
+		Collections.sort(privacyPeerIDs);
+		numberOfPrivacyPeers = privacyPeerIDs.size();
+		mpcShamirSharing.setNumberOfPrivacyPeers(numberOfPrivacyPeers);
+		mpcShamirSharing.init();
+		clearPP2PPBarrier();
+
+		protocolThreadsBarrier = new CyclicBarrier(numberOfPrivacyPeers);
+
+		// Init state variables
+		finalResults = null;
+		finalResultsToDo = numberOfPrivacyPeers;
+		initialShares = null;
+		filter = null;
+
+		readNextRecord();
+		createProtocolThreadsForPrivacyPeers(privacyPeerIDs);
+	}
+
+
+	/**
+	 * Create and start the threads. Attach one privacy peer id to each of them.
+	 *
+	 * @param privacyPeerIDs the ids of the privacy peers
+	 */
+	private void createProtocolThreadsForPrivacyPeers(List<String> privacyPeerIDs)  {
+		peerProtocolThreads.clear();
+		int currentID = 0;
+		for(String ppId: privacyPeerIDs) {
+			logger.info("Create a thread for privacy peer " +ppId );
+			SetOperationProtocolPeer setOpProtocolPeer = new SetOperationProtocolPeer(currentID, this, ppId, currentID, stopper);
+			setOpProtocolPeer.addObserver(this);
+			Thread thread = new Thread(setOpProtocolPeer, "SetOperation Peer protocol with user number " + currentID);
+			peerProtocolThreads.add(setOpProtocolPeer);
+			thread.start();
+			currentID++;
+		}
+	}
+
+	/**
+	 * Inserts the items of the input set into a new Bloom filter.
+	 */
+	private void buildFilter() {
+		filter = new BloomFilter(hashCount, filterSize, counting, hashAlgorithm);
+		for (String item : itemData.getItems()) {
+			filter.insert(item);
+		}
+		logger.info("INPUT: "+itemData.getItems().size()+" items set "+filter.getNonZeros()+" of "+filterSize+" filter positions");
+	}
+
+	/**
+	 * Generates shares of the filter positions. The positions are shared in batches of
+	 * {@link #batchSize}, the batches of the privacy peer operations.
+	 */
+	public void generateInitialShares() {
+		logger.info("Generating initial shares...");
+		if (filter == null) {
+			// the input could not be read, share an empty set
+			logger.warn("No input set available, sharing an empty filter");
+			filter = new BloomFilter(hashCount, filterSize, counting, hashAlgorithm);
+		}
+		int[] positions = filter.getArray();
+		initialShares = new long[numberOfPrivacyPeers][filterSize];
+		long[] batch = new long[batchSize];
+		for (int from = 0; from < filterSize; from += batchSize) {
+			int length = Math.min(batchSize, filterSize - from);
+			if (length != batch.length) {
+				batch = new long[length];
+			}
+			for (int i = 0; i < length; i++) {
+				batch[i] = positions[from + i];
+			}
+			long[][] batchShares = mpcShamirSharing.generateShares(batch);
+			for (int pp = 0; pp < numberOfPrivacyPeers; pp++) {
+				System.arraycopy(batchShares[pp], 0, initialShares[pp], from, length);
+			}
+		}
+	}
+
+
+	/**
+	 * Run the MPC protocol(s) over the given connection(s).
+	 */
+	public void runProtocol() throws Exception {
+		// All we need to do here is starting the first round
+		initializeNewRound();
+	}
+
+
+	/**
+	 * Process message received by an observable.
+	 *
+	 * @param observable	Observable who sent the notification
+	 * @param object		The object that was sent by the observable
+	 */
+	protected void notificationReceived(Observable observable, Object object) throws Exception {
+		if (object instanceof SetOperationMessage) {
+			// We are awaiting a final results message
+			SetOperationMessage message = (SetOperationMessage) object;
+
+			if(message.isDummyMessage()) {
+				// Simulate a final results message in order not to stop protocol execution
+				message.setIsFinalResultMessage(true);
+			}
+
+			if(message.isFinalResultMessage()) {
+				logger.info("Received a final result message from a privacy peer");
+				finalResultsToDo--;
+
+				if (finalResults == null && message.getFinalResults() != null) {
+					finalResults = message.getFinalResults();
+				}
+
+				if(finalResultsToDo <= 0) {
+					// notify observers about final result
+					logger.info("Received all final results. Notifying observers...");
+					VectorData dummy = new VectorData(); // dummy data to avoid null pointer exception in Peers::processMpcEvent
+					FinalResultEvent finalResultEvent = new FinalResultEvent(this, myAlphaIndex, getMyPeerID(), message.getSenderID(), dummy);
+					finalResultEvent.setVerificationSuccessful(true);
+					sendNotification(finalResultEvent);
+
+					if (Configuration.getInstance(myPeerName).getFinalResultsWriter() != null) {
+						Configuration.getInstance(myPeerName).getFinalResultsWriter().write(renderOutput(";"));
+					} else {
+						writeOutputToFile();
+					}
+
+					// check if there are more time slots to process
+					if((timeSlotCount < 0 || currentTimeSlot < timeSlotCount)
+							&& !isGloballyStopped()) {
+						currentTimeSlot++;
+						initializeNewRound();
+					} else {
+						logger.info("No more data available... Stopping protocol threads...");
+						protocolStopper.stop();
+						notifyStopListener();
+					}
+				}
+			} else {
+				String errorMessage = "Didn't receive final result...";
+				errorMessage += "\nisGoodBye: "+message.isGoodbyeMessage();
+				errorMessage += "\nisHello: "+message.isHelloMessage();
+				errorMessage += "\nisInitialShares: "+message.isInitialSharesMessage();
+				errorMessage += "\nisFinalResult: "+message.isFinalResultMessage();
+				logger.error(errorMessage);
+				sendExceptionEvent(this, errorMessage);
+			}
+		} else {
+			throw new Exception("Received unexpected message type (expected: " + SetOperationMessage.class.getName() + ", received: " + object.getClass().getName());
+		}
+	}
+
+
+	/**
+	 * Reads the input set of the next time slot and inserts it into the Bloom filter.
+	 *
+	 * @return true if successful. False if an error occurred or no more data available.
+	 */
+	public boolean readNextRecord()  {
+		boolean readOperationSuccessful = false;
+		try {
+			long start = System.currentTimeMillis();
+			if (poller == null) {
+				String line = Configuration.getInstance(myPeerName).getInputDataReader().read();
+				logger.info(myPeerName + "  " + currentTimeSlot + " " + line);
+				itemData.readItems(line);
+			} else {
+				itemData.setInputFile(poller.getNextFile());
+				itemData.openFile();
+				itemData.readNextTimeslot();
+			}
+			buildFilter();
+			readOperationSuccessful = true;
+			logger.info("INPUT: Time for reading and preprocessing set: "+(System.currentTimeMillis()-start)+"ms");
+		} catch (Exception e) {
+			String errorMessage = "Error when reading next record: " + Utils.getStackTrace(e);
+	        logger.error(errorMessage);
+		}
+		return readOperationSuccessful;
+	}
+
+	/**
+	 * Renders the final result. For the cardinality output, this is the sum of the
+	 * positions of the result filter and the estimated number of elements. For the
+	 * membership output, these are the items of this peer that are in the result set.
+	 *
+	 * @param separator the separator of the fields
+	 * @return the output
+	 */
+	protected String renderOutput(String separator) {
+		StringBuilder sb = new StringBuilder();
+		if (finalResults == null) {
+			logger.warn("No final result received");
+		} else if (OUTPUT_CARDINALITY.equals(output)) {
+			long nonZeros = finalResults[0];
+			double cardinality = BloomFilter.getCardinality(nonZeros, filterSize, hashCount, counting);
+			sb.append(nonZeros).append(separator).append(Math.round(cardinality));
+		} else {
+			BloomFilter result = new BloomFilter(hashCount, finalResults, counting, hashAlgorithm);
+			for (String item : getMembers(result)) {
+				if (sb.length() > 0) {
+					sb.append(separator);
+				}
+				sb.append(item);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param result the result filter
+	 * @return the distinct items of this peer that are in the result filter
+	 */
+	protected List<String> getMembers(BloomFilter result) {
+		List<String> members = new ArrayList<String>();
+		for (String item : new LinkedHashSet<String>(itemData.getItems())) {
+			if (result.check(item)) {
+				members.add(item);
+			}
+		}
+		return members;
+	}
+
+	/**
+     * Write the output to a file.
+     * @throws Exception
+     */
+	protected void writeOutputToFile() throws Exception {
+		String fileName = outputFolder + "/" + "setop_output_"
+				+ "_round" + String.format("%03d", currentTimeSlot)+ ".txt";
+
+		StringBuilder sb = new StringBuilder();
+		if (OUTPUT_CARDINALITY.equals(output)) {
+			sb.append("Nonzero positions; Estimated cardinality\n");
+			sb.append(renderOutput("; ")).append("\n");
+		} else {
+			sb.append(renderOutput("\n")).append("\n");
+		}
+
+		Services.writeFile(sb.toString(), fileName);
+	}
+
+	public CyclicBarrier getProtocolThreadsBarrier() {
+		return protocolThreadsBarrier;
+	}
+
+	/**
+	 * Gets the filter shares for one privacy peer.
+	 * @param ppNr the PP number
+	 * @return the shares, one per filter position.
+	 */
+	public long[] getInitialSharesForPP(int ppNr) {
+		return initialShares[ppNr];
+	}
+
+}
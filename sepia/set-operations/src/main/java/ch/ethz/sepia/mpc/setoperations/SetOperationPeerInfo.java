@@ -0,0 +1,69 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+/**
+ * stores information about a set operation (privacy) peer
+ */
+public class SetOperationPeerInfo {
+
+	private String ID;
+	private int index;
+
+	/** contains the initial shares */
+	private boolean isInitialSharesReceived = false;
+	private long[] initialShares = null; // one share per filter position
+
+	/**
+	 * Creates a new set operation info object
+	 */
+	public SetOperationPeerInfo(String ID, int index) {
+		this.ID = ID;
+		this.index = index;
+	}
+
+	public String getID() {
+		return ID;
+	}
+
+	public void setID(String iD) {
+		ID = iD;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public long[] getInitialShares() {
+		return initialShares;
+	}
+
+	public void setInitialShares(long[] initialShares) {
+		this.initialShares = initialShares;
+	}
+
+	public boolean isInitialSharesReceived() {
+		return isInitialSharesReceived;
+	}
+
+	public void setInitialSharesReceived(boolean isInitialSharesReceived) {
+		this.isInitialSharesReceived = isInitialSharesReceived;
+	}
+}
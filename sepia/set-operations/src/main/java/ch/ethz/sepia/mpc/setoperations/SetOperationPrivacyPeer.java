@@ -0,0 +1,539 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Vector;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.ConnectionManager;
+import ch.ethz.sepia.events.FinalResultEvent;
+import ch.ethz.sepia.mpc.CountingBarrier;
+import ch.ethz.sepia.mpc.VectorData;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledProtocol;
+import ch.ethz.sepia.services.Services;
+import ch.ethz.sepia.services.Stopper;
+
+/**
+ * A MPC privacy peer with the computation capabilities for the set operation protocol.
+ * <p>
+ * The filters are split into batches of {@link #batchSize} positions. The set operation
+ * of each batch is a separate operation of the same operation set, s.t. the batches are
+ * processed in parallel and share the communication rounds.
+ */
+public class SetOperationPrivacyPeer extends SetOperationBase {
+    private static final XLogger logger = new XLogger(
+            LoggerFactory.getLogger(SetOperationPrivacyPeer.class));
+
+	/** vector of protocols (between this privacy peer and the peers) */
+	private Vector<SetOperationProtocolPrivacyPeerToPeer> peerProtocolThreads = null;
+	/** vector of protocols (between this privacy peer and other privacy peers) */
+	private Vector<SetOperationProtocolPrivacyPeerToPP> ppToPPProtocolThreads = null;
+	/** vector of information objects for the connected peers */
+	protected Vector<SetOperationPeerInfo> peerInfos = null;
+	/** vector of information objects for the connected privacy peers */
+	protected Vector<SetOperationPeerInfo> privacyPeerInfos = null;
+	/** barrier to synchronize the peerProtocolThreads threads */
+	private CountingBarrier peerProtocolBarrier = null;
+	/** barrier to synchronize the ppToPPProtocolThreads threads */
+	private CountingBarrier ppProtocolBarrier = null;
+
+	/** number of input peers connected to this one */
+	protected int numberOfInputPeers = 0;
+	/** number of initial shares that the privacy peer yet has to receive */
+	private int initialSharesToReceive = 0;
+
+	/** number of batches of the scheduled set operation (0 if no operation is needed) */
+	private int scheduledBatches = 0;
+	/** shares of the result filter */
+	protected long[] resultShares;
+	/** share of the sum of all positions of the result filter */
+	protected long cardinalityShare;
+
+
+	/**
+	 * creates a new MPC set operation privacy peer
+	 *
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm 			the connection manager
+	 * @throws Exception
+	 */
+	public SetOperationPrivacyPeer(int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+	}
+
+	/**
+	 * creates a new MPC set operation privacy peer with the given name
+	 *
+	 * @param peerName		the name of this peer
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm 			the connection manager
+	 * @throws Exception
+	 */
+	public SetOperationPrivacyPeer(String peerName, int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		super(peerName, myPeerIndex, cm, stopper);
+
+		peerInfos = new Vector<SetOperationPeerInfo>();
+		privacyPeerInfos = new Vector<SetOperationPeerInfo>();
+		peerProtocolThreads = new Vector<SetOperationProtocolPrivacyPeerToPeer>();
+		ppToPPProtocolThreads = new Vector<SetOperationProtocolPrivacyPeerToPP>();
+	}
+
+	/**
+	 * Initializes the privacy peer
+	 */
+	public void initialize() throws Exception {
+		initProperties();
+
+		currentTimeSlot = 1;
+	}
+
+
+	/**
+	 * Initializes a new round of computation.
+	 */
+	protected void initializeNewRound() {
+		PrimitivesEnabledProtocol.newStatisticsRound();
+
+		// Get all the active privacy peer IDs. Note that these are not necessarily all PPs configured in the config file.
+		List<String> privacyPeerIDs = connectionManager.getActivePeers(true);
+		List<String> inputPeerIDs = connectionManager.getActivePeers(false);
+		Map<String, Integer> ppIndexMap = getIndexMap(privacyPeerIDs);
+		myAlphaIndex = ppIndexMap.get(myPeerID);
+
+		numberOfPrivacyPeers = privacyPeerIDs.size()+1; // Count myself
+		numberOfInputPeers = inputPeerIDs.size();
+		peerProtocolBarrier = new CountingBarrier(numberOfInputPeers);
+		ppProtocolBarrier = new CountingBarrier(numberOfPrivacyPeers-1);
+		clearPP2PPBarrier();
+
+		// init counters
+		initialSharesToReceive = numberOfInputPeers;
+		finalResultsToDo = numberOfInputPeers;
+		finalResults = null;
+		resultShares = null;
+
+		primitives = new Primitives(randomAlgorithm, shamirSharesFieldOrder, degreeT, numberOfPrivacyPeers, myAlphaIndex, numberOfPrivacyPeers-1);
+		primitives.setWorkStealing(workStealing);
+		primitives.setEqualMethod(equalMethod);
+		createProtocolThreadsForInputPeers(inputPeerIDs);
+		createProtocolThreadsForPrivacyPeers(privacyPeerIDs, ppIndexMap);
+	}
+
+	/**
+	 * Generates a consistent mapping from active privacy peer IDs to privacy peer indices.
+	 * @param connectedPrivacyPeerIDs all connected PPs, without myself.
+	 * @return the index map
+	 */
+	private Map<String,Integer> getIndexMap(List<String> connectedPrivacyPeerIDs) {
+		List<String> allPPsorted = new ArrayList<String>();
+		allPPsorted.addAll(connectedPrivacyPeerIDs);
+		allPPsorted.add(getMyPeerID());
+
+		Collections.sort(allPPsorted);
+		HashMap<String,Integer> indexMap = new HashMap<String, Integer>();
+		for(int index=0; index<allPPsorted.size(); index++) {
+			indexMap.put(allPPsorted.get(index), index);
+		}
+		return indexMap;
+	}
+
+	/**
+	 * Create and start the threads. Attach one privacy peer id to each of them.
+	 *
+	 * @param privacyPeerIDs
+	 *            the ids of the privacy peers
+	 * @param ppIndexMap
+	 * 			  a map mapping privacy peer IDs to indices
+	 */
+	private void createProtocolThreadsForPrivacyPeers(List<String> privacyPeerIDs, Map<String, Integer> ppIndexMap) {
+		ppToPPProtocolThreads.clear();
+		privacyPeerInfos.clear();
+		int currentID =0;
+		for(String ppId: privacyPeerIDs) {
+			logger.info("Create a thread for privacy peer " +ppId );
+			int otherPPindex = ppIndexMap.get(ppId);
+			SetOperationProtocolPrivacyPeerToPP pp2pp = new SetOperationProtocolPrivacyPeerToPP(currentID, this, ppId, otherPPindex, stopper);
+			pp2pp.setMyPeerIndex(myAlphaIndex);
+			pp2pp.addObserver(this);
+			Thread thread = new Thread(pp2pp, "SetOperation PP-to-PP protocol connected with " + ppId);
+			ppToPPProtocolThreads.add(pp2pp);
+			privacyPeerInfos.add(currentID, new SetOperationPeerInfo(ppId, otherPPindex));
+			thread.start();
+			currentID++;
+		}
+	}
+
+	/**
+	 * Create and start the threads. Attach one input peer id to each of them.
+	 *
+	 * @param inputPeerIDs
+	 *            the ids of the input peers
+	 */
+	private void createProtocolThreadsForInputPeers(List<String> inputPeerIDs) {
+		peerProtocolThreads.clear();
+		peerInfos.clear();
+		int currentID = 0;
+		for(String ipId: inputPeerIDs) {
+			logger.info("Create a thread for input peer " +ipId );
+			SetOperationProtocolPrivacyPeerToPeer pp2p = new SetOperationProtocolPrivacyPeerToPeer(currentID, this, ipId, currentID, stopper);
+			pp2p.addObserver(this);
+			Thread thread = new Thread(pp2p, "SetOperation Peer protocol connected with " + ipId);
+			peerProtocolThreads.add(pp2p);
+			peerInfos.add(currentID, new SetOperationPeerInfo(ipId, currentID));
+			thread.start();
+			currentID++;
+		}
+	}
+
+	/**
+	 * Run the MPC protocol(s) over the given connection(s).
+	 */
+	public synchronized void runProtocol() {
+		// All we need to do here is starting the first round
+		initializeNewRound();
+	}
+
+	/**
+	 * Process message received by an observable.
+	 *
+	 * @param observable	Observable who sent the notification
+	 * @param object		The object that was sent by the observable
+	 */
+	protected void notificationReceived(Observable observable, Object object) throws Exception {
+		if (object instanceof SetOperationMessage) {
+			SetOperationMessage msg = (SetOperationMessage) object;
+			// We are awaiting a message with initial shares
+			if (msg.isDummyMessage()) {
+				// Counterpart is offline. Simulate an initial shares message.
+				msg.setIsInitialSharesMessage(true);
+			}
+
+			if (msg.isInitialSharesMessage()) {
+				logger.info("Received shares from peer: " + msg.getSenderID());
+				SetOperationPeerInfo peerInfo = getPeerInfoByPeerID(msg.getSenderID());
+				peerInfo.setInitialShares(msg.getInitialShares());
+				peerInfo.setInitialSharesReceived(true);
+
+				initialSharesToReceive--;
+				if (initialSharesToReceive <= 0) {
+					logger.info("Received all initial shares from peers...");
+					startNextPPProtocolStep();
+				}
+
+			} else {
+				String errorMessage = "Didn't receive initial shares...";
+				errorMessage += "\nisGoodBye: "+msg.isGoodbyeMessage();
+				errorMessage += "\nisHello: "+msg.isHelloMessage();
+				errorMessage += "\nisInitialShares: "+msg.isInitialSharesMessage();
+				errorMessage += "\nisFinalResult: "+msg.isFinalResultMessage();
+				logger.error(errorMessage);
+				sendExceptionEvent(this, errorMessage);
+			}
+		} else {
+			throw new Exception("Received unexpected message type (expected: " + SetOperationMessage.class.getName() + ", received: " + object.getClass().getName());
+		}
+	}
+
+
+	/**
+	 * returns the number of peers connected to this one
+	 */
+	public int getNumberOfInputPeers() {
+		return numberOfInputPeers;
+	}
+
+
+	/**
+	 * returns the number of time slots
+	 */
+	public int getTimeSlotCount() {
+		return timeSlotCount;
+	}
+
+
+	/**
+	 * @return the numberOfItems per time slot
+	 */
+	public int getNumberOfItems() {
+		return numberOfItems;
+	}
+
+
+	/**
+	 * @return true if the peers learn the cardinality of the result set
+	 */
+	public boolean isCardinalityOutput() {
+		return OUTPUT_CARDINALITY.equals(output);
+	}
+
+
+	/**
+	 * Returns the peer info for the PEER with the given peer ID.
+	 *
+	 * @param peerID	The peer's ID
+	 *
+	 * @return The peers info instance (null if not found)
+	 */
+	protected synchronized SetOperationPeerInfo getPeerInfoByPeerID(String peerID) {
+		for (SetOperationPeerInfo peerInfo : peerInfos) {
+			if (peerInfo.getID() == null) {
+				logger.warn("There is a peerInfo without a peerID! " + peerInfo.getIndex());
+			}
+			else if (peerInfo.getID().equals(peerID)) {
+				return peerInfo;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Wait until the privacy peer is ready for the next PeerProtocol step.
+	 */
+	public void waitForNextPeerProtocolStep() {
+		logger.info("PeerProtocol Barrier: Thread nr. "+(peerProtocolBarrier.getNumberOfWaitingThreads()+1)+" arrived.");
+		try {
+			peerProtocolBarrier.block();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+
+
+	/**
+	 * Starts the next PeerProtocol step.
+	 */
+	protected void startNextPeerProtocolStep() {
+		logger.info("PeerProtocol Opening the barrier. PeerProtocol Threads can start the next step.");
+		try {
+			peerProtocolBarrier.openBarrier();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+
+
+	/**
+	 * Wait until the privacy peer is ready for the next PPProtocol step.
+	 */
+	public void waitForNextPPProtocolStep() {
+		logger.info("PPProtocol Barrier: Thread nr. "+(ppProtocolBarrier.getNumberOfWaitingThreads()+1)+" arrived.");
+		try {
+			ppProtocolBarrier.block();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+
+
+	/**
+	 * Starts the next PPProtocol step.
+	 * @throws InterruptedException
+	 */
+	protected void startNextPPProtocolStep() throws InterruptedException {
+		logger.info("PPProtocol Opening the barrier. PPProtocol Threads can start the next step.");
+		ppProtocolBarrier.openBarrier();
+	}
+
+
+	/**
+	 * Schedules the set operation on the filters of all input peers, one operation per
+	 * batch of filter positions. Input peers that went offline are left out. With less
+	 * than two filters, the intersection and the union are the filter itself, while the
+	 * threshold union still compares the filter to the threshold.
+	 */
+	public void scheduleSetOperation() {
+		List<long[]> filters = new ArrayList<long[]>();
+		for (SetOperationPeerInfo peerInfo : peerInfos) {
+			if (peerInfo.getInitialShares() != null) {
+				filters.add(peerInfo.getInitialShares());
+			} else {
+				logger.warn("No filter received from: " + peerInfo.getID());
+			}
+		}
+
+		boolean thresholdUnion = !OPERATION_INTERSECTION.equals(operation) && !OPERATION_UNION.equals(operation);
+		if (filters.size() < 2 && !thresholdUnion) {
+			logger.warn("Only "+filters.size()+" filter(s) received, no set operation needed");
+			resultShares = filters.isEmpty() ? new long[filterSize] : filters.get(0).clone();
+			scheduledBatches = 0;
+			initializeNewOperationSet(0);
+			operationIDs = new int[0];
+			return;
+		}
+		while (filters.size() < 2) {
+			// the threshold union needs two filters, an empty filter does not change the counts
+			logger.warn("Only "+filters.size()+" filter(s) received, adding an empty filter");
+			filters.add(new long[filterSize]);
+		}
+
+		scheduledBatches = getNumberOfBatches();
+		initializeNewOperationSet(scheduledBatches);
+		operationIDs = new int[scheduledBatches];
+		for (int batch = 0; batch < scheduledBatches; batch++) {
+			int from = batch*batchSize;
+			int length = Math.min(batchSize, filterSize - from);
+			long[][] data = new long[filters.size()][length];
+			for (int f = 0; f < data.length; f++) {
+				System.arraycopy(filters.get(f), from, data[f], 0, length);
+			}
+
+			operationIDs[batch] = batch;
+			if (OPERATION_INTERSECTION.equals(operation)) {
+				primitives.bfIntersection(batch, data, counting);
+			} else if (OPERATION_UNION.equals(operation)) {
+				primitives.bfUnion(batch, data, counting);
+			} else {
+				primitives.bfThresholdUnion(batch, data, threshold, counting);
+			}
+		}
+	}
+
+	/**
+	 * Collects the shares of the result filter from the batches.
+	 */
+	public void retrieveSetOperation() {
+		if (scheduledBatches == 0) {
+			return;
+		}
+		resultShares = new long[filterSize];
+		for (int batch = 0; batch < scheduledBatches; batch++) {
+			long[] result = primitives.getResult(batch);
+			System.arraycopy(result, 0, resultShares, batch*batchSize, result.length);
+		}
+	}
+
+	/**
+	 * Schedules the sum of the positions of the result filter.
+	 */
+	public void scheduleCardinality() {
+		initializeNewOperationSet(1);
+		operationIDs = new int[]{0};
+		primitives.bfCardinality(0, resultShares);
+	}
+
+	/**
+	 * Stores the share of the sum of the positions of the result filter.
+	 */
+	public void retrieveCardinality() {
+		cardinalityShare = primitives.getResult(0)[0];
+	}
+
+	/**
+	 * Schedules the reconstruction of the final result: the sum of the positions of the
+	 * result filter (cardinality) or all positions of the result filter (membership). The
+	 * result filter is reconstructed with one array reconstruction per batch.
+	 */
+	public void scheduleFinalResultReconstruction() {
+		if (isCardinalityOutput()) {
+			initializeNewOperationSet(1);
+			operationIDs = new int[]{0};
+			primitives.reconstruct(0, new long[]{cardinalityShare});
+			return;
+		}
+
+		int batches = getNumberOfBatches();
+		initializeNewOperationSet(batches);
+		operationIDs = new int[batches];
+		for (int batch = 0; batch < batches; batch++) {
+			int from = batch*batchSize;
+			long[] data = new long[Math.min(batchSize, filterSize - from)];
+			System.arraycopy(resultShares, from, data, 0, data.length);
+			operationIDs[batch] = batch;
+			primitives.arrayReconstruct(batch, data);
+		}
+	}
+
+	/**
+	 * Reads the reconstructed final result.
+	 */
+	protected void retrieveFinalResult() {
+		if (isCardinalityOutput()) {
+			finalResults = new long[]{primitives.getResult(0)[0]};
+			return;
+		}
+
+		long[] result = new long[filterSize];
+		for (int batch = 0; batch < getNumberOfBatches(); batch++) {
+			long[] values = primitives.getResult(batch);
+			System.arraycopy(values, 0, result, batch*batchSize, values.length);
+		}
+		finalResults = result;
+	}
+
+	/**
+	 * Reads the reconstructed final result and lets the peer protocol threads send it.
+	 */
+	public void setFinalResult() {
+		retrieveFinalResult();
+		long[] result = finalResults;
+
+		if (isCardinalityOutput()) {
+			logger.info(Services.getFilterPassingLogPrefix()+"Final result: "+result[0]+" nonzero filter positions");
+		} else {
+			long nonZeros = 0;
+			for (long value : result) {
+				nonZeros += value;
+			}
+			logger.info(Services.getFilterPassingLogPrefix()+"Final result: filter with "+nonZeros+" nonzero positions");
+		}
+
+		startNextPeerProtocolStep();
+	}
+
+	/**
+	 * lets protocol thread report to privacy peer that it sent the final result and
+	 * starts new round if there are more time slots (data) to process
+	 */
+	protected synchronized void finalResultIsSent() {
+		finalResultsToDo--;
+		logger.info("thread " + Thread.currentThread().getId() + " called finalResultIsSent; finalResultsToDo="+finalResultsToDo);
+		if(finalResultsToDo <= 0) {
+			// report final result to observers
+			logger.info(Services.getFilterPassingLogPrefix()+ "Sent all final results. Notifying observers...");
+			VectorData dummy = new VectorData(); // dummy data to avoid null pointer exception in Peers::processMpcEvent
+			FinalResultEvent finalResultEvent;
+			finalResultEvent = new FinalResultEvent(this, myAlphaIndex, getMyPeerID(), getMyPeerID(), dummy);
+			finalResultEvent.setVerificationSuccessful(true);
+			sendNotification(finalResultEvent);
+			// check if there are more time slots to process
+			if(timeSlotCount < 0 || currentTimeSlot < timeSlotCount) {
+				currentTimeSlot++;
+				logger.info("thread " + Thread.currentThread().getId() + " increased currentTimeSlot to "+currentTimeSlot+", will init new round now...");
+				initializeNewRound();
+			} else {
+				logger.info("No more data available... Stopping protocol threads...");
+				protocolStopper.stop();
+				notifyStopListener();
+			}
+		}
+	}
+
+	public long[] getFinalResults() {
+		return finalResults;
+	}
+}
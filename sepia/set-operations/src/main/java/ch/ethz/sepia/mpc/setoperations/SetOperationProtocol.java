@@ -0,0 +1,107 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.PrivacyViolationException;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledProtocol;
+import ch.ethz.sepia.services.Stopper;
+
+/**
+ * common functionalities for all set operation protocol classes
+ */
+public abstract class SetOperationProtocol extends PrimitivesEnabledProtocol implements Runnable {
+    private static final XLogger logger = new XLogger(
+            LoggerFactory.getLogger(SetOperationProtocol.class));
+
+	/** holds the message to be sent over the connection */
+	protected SetOperationMessage messageToSend;
+	/** hold the last received message */
+	protected SetOperationMessage messageReceived;
+	/** defines the string which precedes a set operation protocol message */
+	protected static String SETOP_MESSAGE = "SETOP_MESSAGE";
+
+
+	/**
+	 * creates a new protocol instance
+	 *
+	 * @param threadNumber	This peer's thread number (for identification when notifying observers)
+	 * @param setOpPeer	(Privacy) Peer who started the protocol
+	 * @param otherPeerID   the other peer's ID
+	 * @param stopper		Can be used to stop a running protocol thread
+	 */
+	public SetOperationProtocol(int threadNumber, SetOperationBase setOpPeer, String otherPeerID, int otherPeerIndex, Stopper stopper) {
+		super(threadNumber, setOpPeer.getConnectionManager(), setOpPeer.getMyPeerID(), otherPeerID, setOpPeer.getMyPeerIndex(), otherPeerIndex, stopper);
+
+		initializeProtocolPrimitives(setOpPeer);
+	}
+
+
+	/**
+	 * Sends a set operation message over the connection.
+	 * @throws PrivacyViolationException
+	 */
+	protected void sendMessage() throws PrivacyViolationException {
+		logger.info("Sending set operation message (to " + otherPeerID + ")...");
+		connectionManager.send(otherPeerID, SETOP_MESSAGE);
+		connectionManager.send(otherPeerID, messageToSend);
+	}
+
+
+	/**
+	 * Receives a set operation message over the connection.
+	 * (the received message is stored in the messageReceived variable)
+	 * @throws PrivacyViolationException
+	 */
+	protected void receiveMessage() throws PrivacyViolationException {
+		logger.info("Waiting for set operation message to arrive ( from " + otherPeerID + ")...");
+		String messageType = (String) connectionManager.receive(otherPeerID);
+		messageReceived = (SetOperationMessage) connectionManager.receive(otherPeerID);
+
+		// If the input peer has disconnected, null is returned
+		if(messageType==null || messageReceived==null) {
+			/*
+			 * Even though the input peer has left, we need to notify our observers in order
+			 * not to block protocol execution. Use a dummy message.
+			 */
+			messageReceived = new SetOperationMessage(otherPeerID, otherPeerIndex);
+			messageReceived.setIsDummyMessage(true);
+
+			logger.info("No connection to "+otherPeerID+". Notifying Observers with DUMMY message... ");
+			notify(messageReceived);
+		} else if (SETOP_MESSAGE.equals(messageType)) {
+			logger.info("Received " + messageType + " message type from "+otherPeerID+". Notifying Observers... ");
+			notify(messageReceived);
+		} else {
+			logger.warn("Received unexpected message type (expected: " + SETOP_MESSAGE + ", received: " + messageType);
+		}
+	}
+
+	/**
+	 * Checks whether the protocol was stopped.
+	 * @return true if the protocol was stopped, false otherwise.
+	 */
+	protected boolean wasIStopped() {
+		// Leave if someone stopped you
+		if (stopper.isStopped()) {
+			logger.info("Protocol thread handling "+otherPeerID+" was stopped, returning...");
+			return true;
+		}
+		return false;
+	}
+}
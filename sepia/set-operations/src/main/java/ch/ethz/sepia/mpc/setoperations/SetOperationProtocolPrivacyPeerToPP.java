@@ -0,0 +1,152 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import org.slf4j.LoggerFactory;
+import org.slf4j.ext.XLogger;
+
+import ch.ethz.sepia.connections.PrivacyViolationException;
+import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesException;
+import ch.ethz.sepia.services.Services;
+import ch.ethz.sepia.services.Stopper;
+import ch.ethz.sepia.services.Utils;
+
+/**
+ * Protocol between a privacy peer and another privacy peer for the set
+ * operation protocol.
+ */
+public class SetOperationProtocolPrivacyPeerToPP extends SetOperationProtocol {
+    private static final XLogger logger = new XLogger(
+            LoggerFactory.getLogger(SetOperationProtocolPrivacyPeerToPP.class));
+
+	/**
+	 * reference to set operation privacy peer object that started this protocol
+	 * instance
+	 */
+	protected SetOperationPrivacyPeer privacyPeer;
+
+	/**
+	 * Creates a new instance of the set operation protocol between two privacy
+	 * peers.
+	 *
+	 * @param threadNumber
+	 *            Protocol's thread number
+	 * @param privacyPeer
+	 *            the privacy peer instantiating this thread
+	 * @param privacyPeerID
+	 *            the counterpart privacy peer
+	 * @param privacyPeerIndex
+	 *            the counterpart privacy peer's index
+	 * @param stopper
+	 *            Stopper to stop protocol thread
+	 */
+	public SetOperationProtocolPrivacyPeerToPP(int threadNumber, SetOperationPrivacyPeer privacyPeer, String privacyPeerID,
+			int privacyPeerIndex, Stopper stopper) {
+		super(threadNumber, privacyPeer, privacyPeerID, privacyPeerIndex, stopper);
+		this.privacyPeer = privacyPeer;
+	}
+
+	/**
+	 * Run the MPC set operation protocol for the privacy peer
+	 */
+	public synchronized void run() {
+		initialize(privacyPeer.getTimeSlotCount(), privacyPeer.getNumberOfItems(), privacyPeer.getNumberOfInputPeers());
+
+		// wait for all shares
+		logger.info("thread " + Thread.currentThread().getId() + " waits for all shares to arrive...");
+		privacyPeer.waitForNextPPProtocolStep();
+		if (wasIStopped()) {
+			return;
+		}
+
+		CyclicBarrier ppThreadsBarrier = privacyPeer.getBarrierPP2PPProtocolThreads();
+		try {
+			/*
+			 * One thread always prepares the data for the next step and then
+			 * all threads enter doOperations() and process the operations in
+			 * parallel.
+			 */
+			// ---------------------------
+			// 1. Set operation on the filters
+			// ---------------------------
+			long start = System.currentTimeMillis();
+			if (ppThreadsBarrier.await() == 0) {
+				privacyPeer.scheduleSetOperation();
+				logger.info("Performing set operation...");
+			}
+			ppThreadsBarrier.await();
+			if (!doOperations()) {
+				logger.error("Set operation failed. returning!");
+				return;
+			}
+
+			if (ppThreadsBarrier.await() == 0) {
+				privacyPeer.retrieveSetOperation();
+				long duration = System.currentTimeMillis() - start;
+				logger.info(Services.getFilterPassingLogPrefix() + "Set operation took "
+						+ Math.round(duration / 1000.0) + " seconds!");
+			}
+			ppThreadsBarrier.await();
+
+			// ---------------------------
+			// 2. Cardinality of the result filter
+			// ---------------------------
+			if (privacyPeer.isCardinalityOutput()) {
+				if (ppThreadsBarrier.await() == 0) {
+					privacyPeer.scheduleCardinality();
+				}
+				ppThreadsBarrier.await();
+				if (!doOperations()) {
+					logger.error("Cardinality computation failed. returning!");
+					return;
+				}
+
+				if (ppThreadsBarrier.await() == 0) {
+					privacyPeer.retrieveCardinality();
+				}
+				ppThreadsBarrier.await();
+			}
+
+			// ---------------------------
+			// 3. Reconstruct the Final Results
+			// ---------------------------
+			if (ppThreadsBarrier.await() == 0) {
+				privacyPeer.scheduleFinalResultReconstruction();
+				logger.info(Services.getFilterPassingLogPrefix() + "Reconstructing final result...");
+			}
+			ppThreadsBarrier.await();
+			if (!doOperations()) {
+				logger.error("Final Result reconstruction failed. returning!");
+				return;
+			}
+
+			if (ppThreadsBarrier.await() == 0) {
+				privacyPeer.setFinalResult();
+			}
+		} catch (PrimitivesException e) {
+			logger.error(Utils.getStackTrace(e));
+		} catch (InterruptedException e) {
+			logger.error(Utils.getStackTrace(e));
+		} catch (BrokenBarrierException e) {
+			logger.error(Utils.getStackTrace(e));
+		} catch (PrivacyViolationException e) {
+			logger.error(Utils.getStackTrace(e));
+		}
+	}
+}
@@ -0,0 +1,159 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.connections.InputDataReader;
+import ch.ethz.sepia.services.BloomFilter;
+import ch.ethz.sepia.services.DirectoryPoller;
+import ch.ethz.sepia.services.Services;
+import ch.ethz.sepia.services.Stopper;
+import ch.ethz.sepia.startup.Configuration;
+
+/**
+ * Tests reading the input set of the peer from CSV files and from the input
+ * data reader of the configuration.
+ */
+public class SetOperationPeerTest extends TestCase {
+
+	private static final int FILTER_SIZE = 256;
+	private static final int HASH_COUNT = 4;
+
+	/** the input folder of the CSV files */
+	private File inputFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		inputFolder = File.createTempFile("setop", "");
+		inputFolder.delete();
+		inputFolder.mkdir();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : inputFolder.listFiles()) {
+			file.delete();
+		}
+		inputFolder.delete();
+	}
+
+	/**
+	 * The items of a CSV file are separated by semicolons, commas or line
+	 * breaks. Empty fields are skipped and repeated items are kept.
+	 */
+	public void testReadItemsFromFile() throws Exception {
+		File file = new File(inputFolder, "set1.csv");
+		Services.writeFile("alice; bob,carol\n\n dave ;;\nalice\n", file.getAbsolutePath());
+
+		SetOperationItemData itemData = new SetOperationItemData();
+		itemData.setInputFile(file);
+		itemData.openFile();
+		itemData.readNextTimeslot();
+		assertEquals(Arrays.asList("alice", "bob", "carol", "dave", "alice"), itemData.getItems());
+
+		// opening the file again starts a new set
+		itemData.openFile();
+		assertTrue(itemData.getItems().isEmpty());
+	}
+
+	/**
+	 * A record of the input data reader replaces the current items.
+	 */
+	public void testReadItemsFromRecord() {
+		SetOperationItemData itemData = new SetOperationItemData();
+		itemData.readItems("alice;bob");
+		itemData.readItems(" carol , dave;carol ");
+		assertEquals(Arrays.asList("carol", "dave", "carol"), itemData.getItems());
+
+		itemData.readItems("");
+		assertTrue(itemData.getItems().isEmpty());
+	}
+
+	/**
+	 * The peer reads the CSV files of the input folder in name order and
+	 * inserts the items into the filter.
+	 */
+	public void testReadNextRecordFromFolder() throws Exception {
+		Services.writeFile("carol;dave\n", new File(inputFolder, "set2.csv").getAbsolutePath());
+		Services.writeFile("alice,bob\nbob\n", new File(inputFolder, "set1.csv").getAbsolutePath());
+
+		SetOperationPeer peer = createPeer("setop-folder-test", true);
+		peer.poller = new DirectoryPoller(new Stopper(), inputFolder);
+
+		assertTrue(peer.readNextRecord());
+		assertEquals(Arrays.asList("alice", "bob", "bob"), peer.itemData.getItems());
+		assertFilter(peer.filter, true, "alice", "bob", "bob");
+		assertEquals(Arrays.asList("alice", "bob"), peer.getMembers(peer.filter));
+
+		assertTrue(peer.readNextRecord());
+		assertEquals(Arrays.asList("carol", "dave"), peer.itemData.getItems());
+		assertFilter(peer.filter, true, "carol", "dave");
+	}
+
+	/**
+	 * Without an input folder, the peer reads one set per record of the input
+	 * data reader.
+	 */
+	public void testReadNextRecordFromReader() throws Exception {
+		final String[] records = {"alice;bob;carol", "dave"};
+		String peerName = "setop-reader-test";
+		Configuration.getInstance(peerName).setInputDataReader(new InputDataReader() {
+			private int next = 0;
+
+			@Override
+			public String read() {
+				return records[next++];
+			}
+		});
+
+		SetOperationPeer peer = createPeer(peerName, false);
+		assertTrue(peer.readNextRecord());
+		assertFilter(peer.filter, false, "alice", "bob", "carol");
+		assertTrue(peer.readNextRecord());
+		assertFilter(peer.filter, false, "dave");
+		assertEquals(Arrays.asList("dave"), peer.getMembers(peer.filter));
+
+		// a failing reader is reported, not thrown
+		assertFalse(peer.readNextRecord());
+	}
+
+	/**
+	 * creates a peer with the filter parameters of the test
+	 */
+	private static SetOperationPeer createPeer(String peerName, boolean counting) throws Exception {
+		SetOperationPeer peer = new SetOperationPeer(peerName, 0, null, new Stopper());
+		peer.filterSize = FILTER_SIZE;
+		peer.hashCount = HASH_COUNT;
+		peer.hashAlgorithm = SetOperationBase.DEFAULT_SETOP_HASH;
+		peer.counting = counting;
+		peer.itemData = new SetOperationItemData();
+		return peer;
+	}
+
+	/**
+	 * asserts that the filter equals a filter built from the items
+	 */
+	private static void assertFilter(BloomFilter filter, boolean counting, String... items) {
+		BloomFilter expected = new BloomFilter(HASH_COUNT, FILTER_SIZE, counting, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String item : items) {
+			expected.insert(item);
+		}
+		assertTrue(Arrays.equals(expected.getArray(), filter.getArray()));
+	}
+}
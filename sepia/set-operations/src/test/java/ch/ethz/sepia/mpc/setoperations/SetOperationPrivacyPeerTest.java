@@ -0,0 +1,312 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.setoperations;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.services.BloomFilter;
+import ch.ethz.sepia.services.Stopper;
+
+/**
+ * End-to-end test of the set operations of the privacy peers on a few small
+ * sets. Simulates the privacy peers like the Bloom filter operation tests of
+ * the core and runs the same steps as {@link SetOperationProtocolPrivacyPeerToPP}.
+ */
+public class SetOperationPrivacyPeerTest extends TestCase {
+
+	/** the input sets */
+	private static final String[][] SETS = {
+		{"alice", "bob", "carol", "dave", "eve"},
+		{"carol", "dave", "eve", "frank"},
+		{"dave", "eve", "grace", "heidi"},
+	};
+	/** the items in all sets */
+	private static final String[] COMMON_ITEMS = {"dave", "eve"};
+	/** the items in at least two sets */
+	private static final String[] FREQUENT_ITEMS = {"carol", "dave", "eve"};
+
+	private static final int NUMBER_OF_PRIVACY_PEERS = 3;
+	private static final long FIELD_SIZE = 2147352577;
+	private static final String RANDOM_ALGORITHM = "SHA1PRNG";
+	private static final int FILTER_SIZE = 256;
+	/** the filter size is a power of two (see {@link SetOperationBase}), the last batch is smaller */
+	private static final int BATCH_SIZE = 100;
+	private static final int HASH_COUNT = 4;
+
+	/** the privacy peers */
+	private SetOperationPrivacyPeer[] privacyPeers;
+	/** the plaintext filters of the input peers */
+	private BloomFilter[] filters;
+
+	/**
+	 * A privacy peer without connections, computing with the given privacy peer index.
+	 */
+	private static class TestPrivacyPeer extends SetOperationPrivacyPeer {
+		public TestPrivacyPeer(int privacyPeerIndex) throws Exception {
+			super(privacyPeerIndex, null, new Stopper());
+			primitives = new Primitives(RANDOM_ALGORITHM, FIELD_SIZE, -1, NUMBER_OF_PRIVACY_PEERS, privacyPeerIndex, 1);
+		}
+	}
+
+	/**
+	 * The membership output of the intersection is the intersection of the filters.
+	 */
+	public void testIntersectionMembership() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_INTERSECTION, SetOperationBase.OUTPUT_MEMBERSHIP, false, 1);
+		long[] result = runPrivacyPeers();
+
+		int[] expected = BloomFilter.intersection(filters, false).getArray();
+		assertEquals(FILTER_SIZE, result.length);
+		for (int i = 0; i < FILTER_SIZE; i++) {
+			assertEquals("position " + i, expected[i], result[i]);
+		}
+		BloomFilter resultFilter = new BloomFilter(HASH_COUNT, result, false, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String item : COMMON_ITEMS) {
+			assertTrue(item, resultFilter.check(item));
+		}
+	}
+
+	/**
+	 * The cardinality output of the intersection is the number of nonzero
+	 * positions of the intersection of the filters.
+	 */
+	public void testIntersectionCardinality() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_INTERSECTION, SetOperationBase.OUTPUT_CARDINALITY, false, 1);
+		long[] result = runPrivacyPeers();
+
+		assertEquals(1, result.length);
+		long nonZeros = BloomFilter.intersection(filters, false).getNonZeros();
+		assertTrue(nonZeros >= COMMON_ITEMS.length);
+		assertEquals(nonZeros, result[0]);
+	}
+
+	/**
+	 * The membership output of the union is the union of the filters.
+	 */
+	public void testUnionMembership() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_UNION, SetOperationBase.OUTPUT_MEMBERSHIP, false, 1);
+		long[] result = runPrivacyPeers();
+
+		int[] expected = BloomFilter.union(filters, false).getArray();
+		for (int i = 0; i < FILTER_SIZE; i++) {
+			assertEquals("position " + i, expected[i], result[i]);
+		}
+		BloomFilter resultFilter = new BloomFilter(HASH_COUNT, result, false, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String[] set : SETS) {
+			for (String item : set) {
+				assertTrue(item, resultFilter.check(item));
+			}
+		}
+	}
+
+	/**
+	 * The counting union is the sum of the counting filters.
+	 */
+	public void testCountingUnion() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_UNION, SetOperationBase.OUTPUT_MEMBERSHIP, true, 1);
+		long[] result = runPrivacyPeers();
+
+		assertFilter(BloomFilter.union(filters, true), result);
+		BloomFilter resultFilter = new BloomFilter(HASH_COUNT, result, true, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String item : COMMON_ITEMS) {
+			assertTrue(item, resultFilter.check(item));
+		}
+	}
+
+	/**
+	 * The membership output of the threshold union contains the positions set
+	 * in at least threshold filters.
+	 */
+	public void testThresholdUnionMembership() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_THRESHOLD_UNION, SetOperationBase.OUTPUT_MEMBERSHIP, false, 2);
+		long[] result = runPrivacyPeers();
+
+		assertFilter(BloomFilter.thresholdUnion(filters, 2, false), result);
+		BloomFilter resultFilter = new BloomFilter(HASH_COUNT, result, false, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String item : FREQUENT_ITEMS) {
+			assertTrue(item, resultFilter.check(item));
+		}
+	}
+
+	/**
+	 * The counting threshold union keeps the counts of the positions set in at
+	 * least threshold filters.
+	 */
+	public void testCountingThresholdUnion() throws Exception {
+		createPrivacyPeers(SETS, SetOperationBase.OPERATION_THRESHOLD_UNION, SetOperationBase.OUTPUT_MEMBERSHIP, true, 3);
+		long[] result = runPrivacyPeers();
+
+		assertFilter(BloomFilter.thresholdUnion(filters, 3, true), result);
+		BloomFilter resultFilter = new BloomFilter(HASH_COUNT, result, true, SetOperationBase.DEFAULT_SETOP_HASH);
+		for (String item : COMMON_ITEMS) {
+			assertTrue(item, resultFilter.check(item));
+		}
+	}
+
+	/**
+	 * The threshold union of a single filter still applies the threshold.
+	 */
+	public void testSingleFilterThresholdUnion() throws Exception {
+		String[][] sets = {SETS[0]};
+		createPrivacyPeers(sets, SetOperationBase.OPERATION_THRESHOLD_UNION, SetOperationBase.OUTPUT_MEMBERSHIP, false, 1);
+		assertFilter(filters[0], runPrivacyPeers());
+
+		createPrivacyPeers(sets, SetOperationBase.OPERATION_THRESHOLD_UNION, SetOperationBase.OUTPUT_CARDINALITY, false, 2);
+		assertEquals(0, runPrivacyPeers()[0]);
+	}
+
+	/**
+	 * asserts that the positions of the result equal the positions of the filter
+	 */
+	private static void assertFilter(BloomFilter expected, long[] result) {
+		int[] positions = expected.getArray();
+		assertEquals(FILTER_SIZE, result.length);
+		for (int i = 0; i < FILTER_SIZE; i++) {
+			assertEquals("position " + i, positions[i], result[i]);
+		}
+	}
+
+	/**
+	 * builds and shares the filters of the input sets and creates the privacy
+	 * peers holding the shares
+	 */
+	private void createPrivacyPeers(String[][] sets, String operation, String output, boolean counting, int threshold) throws Exception {
+		filters = new BloomFilter[sets.length];
+		long[][][] shares = new long[sets.length][][];
+		for (int peer = 0; peer < sets.length; peer++) {
+			filters[peer] = new BloomFilter(HASH_COUNT, FILTER_SIZE, counting, SetOperationBase.DEFAULT_SETOP_HASH);
+			for (String item : sets[peer]) {
+				filters[peer].insert(item);
+			}
+			int[] positions = filters[peer].getArray();
+			long[] filter = new long[FILTER_SIZE];
+			for (int i = 0; i < FILTER_SIZE; i++) {
+				filter[i] = positions[i];
+			}
+
+			ShamirSharing sharing = new ShamirSharing();
+			sharing.setRandomAlgorithm(RANDOM_ALGORITHM);
+			sharing.setFieldSize(FIELD_SIZE);
+			sharing.setNumberOfPrivacyPeers(NUMBER_OF_PRIVACY_PEERS);
+			sharing.setDegreeT(-1);
+			sharing.init();
+			shares[peer] = sharing.generateShares(filter);
+		}
+
+		privacyPeers = new SetOperationPrivacyPeer[NUMBER_OF_PRIVACY_PEERS];
+		for (int pp = 0; pp < NUMBER_OF_PRIVACY_PEERS; pp++) {
+			SetOperationPrivacyPeer privacyPeer = new TestPrivacyPeer(pp);
+			privacyPeer.operation = operation;
+			privacyPeer.output = output;
+			privacyPeer.counting = counting;
+			privacyPeer.threshold = threshold;
+			privacyPeer.filterSize = FILTER_SIZE;
+			privacyPeer.batchSize = BATCH_SIZE;
+			privacyPeer.hashCount = HASH_COUNT;
+			privacyPeer.hashAlgorithm = SetOperationBase.DEFAULT_SETOP_HASH;
+			for (int peer = 0; peer < sets.length; peer++) {
+				SetOperationPeerInfo peerInfo = new SetOperationPeerInfo("peer" + peer, peer);
+				peerInfo.setInitialShares(shares[peer][pp]);
+				peerInfo.setInitialSharesReceived(true);
+				privacyPeer.peerInfos.add(peerInfo);
+			}
+			privacyPeers[pp] = privacyPeer;
+		}
+	}
+
+	/**
+	 * runs the steps of the privacy peers and returns the final result
+	 */
+	private long[] runPrivacyPeers() throws Exception {
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.scheduleSetOperation();
+		}
+		assertEquals((FILTER_SIZE + BATCH_SIZE - 1) / BATCH_SIZE, privacyPeers[0].getOperationIDs().length);
+		doOperations();
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.retrieveSetOperation();
+		}
+
+		if (privacyPeers[0].isCardinalityOutput()) {
+			for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+				privacyPeer.scheduleCardinality();
+			}
+			doOperations();
+			for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+				privacyPeer.retrieveCardinality();
+			}
+		}
+
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.scheduleFinalResultReconstruction();
+		}
+		// the membership output is reconstructed in one operation per batch
+		int expectedOperations = privacyPeers[0].isCardinalityOutput() ? 1 : (FILTER_SIZE + BATCH_SIZE - 1) / BATCH_SIZE;
+		assertEquals(expectedOperations, privacyPeers[0].getPrimitives().getOperations().size());
+		assertEquals(1, doOperations());
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.retrieveFinalResult();
+		}
+
+		long[] result = privacyPeers[0].getFinalResults();
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			assertEquals(result.length, privacyPeer.getFinalResults().length);
+			for (int i = 0; i < result.length; i++) {
+				assertEquals(result[i], privacyPeer.getFinalResults()[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * exchanges the data of the privacy peers until all scheduled operations
+	 * are completed
+	 * @return the number of rounds
+	 */
+	private int doOperations() throws Exception {
+		int rounds = 0;
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.getPrimitives().processReceivedData();
+		}
+		while (!areOperationsCompleted()) {
+			for (int i = 0; i < privacyPeers.length; i++) {
+				for (int j = 0; j < privacyPeers.length; j++) {
+					if (j != i) {
+						privacyPeers[j].getPrimitives().setReceivedData(i, privacyPeers[i].getPrimitives().getDataToSend(j));
+					}
+				}
+			}
+			for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+				privacyPeer.getPrimitives().processReceivedData();
+			}
+			rounds++;
+		}
+		return rounds;
+	}
+
+	/**
+	 * @return true if all privacy peers completed their operations
+	 */
+	private boolean areOperationsCompleted() {
+		for (SetOperationPrivacyPeer privacyPeer : privacyPeers) {
+			if (!privacyPeer.getPrimitives().areOperationsCompleted()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -44,6 +44,24 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
 
     public static final String OUTPUT_FILE_PREFIX = "sepia_putput";
 
+    /** input verification mode: one less-than per element */
+    public static final String INPUT_VERIFICATION_ELEMENT = "element";
+    /**
+     * input verification mode: the interval polynomial of every element is
+     * zero iff the element is valid, one random linear combination of them
+     * is checked per input peer (only for max. elements in [2,
+     * {@link #MAX_BATCHED_MAX_ELEMENT}])
+     */
+    public static final String INPUT_VERIFICATION_BATCHED = "batched";
+
+    /**
+     * the largest max. element supported by the batched input verification.
+     * The interval polynomial needs maxElement-1 multiplications per element,
+     * so larger bounds (e.g. the default max. element p-1) have to use the
+     * element mode.
+     */
+    public static final long MAX_BATCHED_MAX_ELEMENT = 64;
+
     /** the degree of the polynomials to use */
     protected int degreeT = -1;
     /** contains the final results */
@@ -51,6 +69,8 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
     protected String inputFolder;
 
     protected int inputTimeout;
+    /** the input verification mode (see {@link #INPUT_VERIFICATION_BATCHED}) */
+    protected String inputVerification;
     protected long maxElement;
     /** the alpha index of this (privacy) peer */
     protected int myAlphaIndex = 0;
@@ -90,6 +110,34 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
         stopProcessing();
     }
 
+    /**
+     * Checks the input verification mode and that the batched input
+     * verification is only configured for a max. element in [2,
+     * {@link #MAX_BATCHED_MAX_ELEMENT}].
+     * 
+     * @throws IllegalArgumentException
+     *             if the mode is unknown or the max. element is not supported
+     *             by the batched input verification
+     */
+    protected void checkInputVerification() {
+        if (INPUT_VERIFICATION_BATCHED.equalsIgnoreCase(this.inputVerification)) {
+            if (this.maxElement < 2 || this.maxElement > MAX_BATCHED_MAX_ELEMENT) {
+                throw new IllegalArgumentException(
+                        "the batched input verification needs a max. element in [2,"
+                                + MAX_BATCHED_MAX_ELEMENT + "] (is "
+                                + this.maxElement + "); use "
+                                + Configuration.PROP_INPUT_VERIFICATION + "="
+                                + INPUT_VERIFICATION_ELEMENT
+                                + " for larger bounds");
+            }
+        } else if (!INPUT_VERIFICATION_ELEMENT
+                .equalsIgnoreCase(this.inputVerification)) {
+            throw new IllegalArgumentException(
+                    "unknown input verification mode: "
+                            + this.inputVerification);
+        }
+    }
+
     /**
      * Init the properties.
      */
@@ -126,6 +174,12 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
                 Configuration.PROP_FIELD, Configuration.DEFAULT_FIELD));
         this.degreeT = Integer.valueOf(properties.getProperty(
                 Configuration.PROP_DEGREE, "-1"));
+        this.workStealing = Boolean.parseBoolean(properties.getProperty(
+                Configuration.PROP_WORK_STEALING,
+                Configuration.DEFAULT_WORK_STEALING));
+        this.equalMethod = properties.getProperty(
+                Configuration.PROP_EQUAL_METHOD,
+                Configuration.DEFAULT_EQUAL_METHOD);
 
         this.connectionManager = Configuration.getInstance(this.myPeerName)
                 .getConnectionManager();
@@ -148,6 +202,10 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
             this.maxElement = Long.valueOf(properties.getProperty(
                     Configuration.PROP_MAXELEMENT,
                     Long.toString(this.shamirSharesFieldOrder - 1)));
+            this.inputVerification = properties.getProperty(
+                    Configuration.PROP_INPUT_VERIFICATION,
+                    Configuration.DEFAULT_INPUT_VERIFICATION);
+            checkInputVerification();
         }
 
         // output properties to log
@@ -164,6 +222,7 @@ public abstract class AdditiveBase extends PrimitivesEnabledPeer {
         logger.info("Skip input verification: " + this.skipInputVerification);
         if (!this.skipInputVerification) {
             logger.info("Maximum value accepted: " + this.maxElement);
+            logger.info("Input verification: " + this.inputVerification);
         }
 
     }
@@ -15,13 +15,19 @@
 
 package ch.ethz.sepia.mpc.additive;
 
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
@@ -48,6 +54,27 @@ public class AdditivePrivacyPeer extends AdditiveBase {
     private static final XLogger logger = new XLogger(
             LoggerFactory.getLogger(AdditivePrivacyPeer.class));
 
+    /** number of item ranges per worker of the addition pool */
+    private static final int CHUNKS_PER_WORKER = 8;
+    /**
+     * minimal number of items added by one task (a range of this size fits
+     * into the cache)
+     */
+    private static final int MIN_ADDITION_CHUNK_SIZE = 4096;
+
+    /**
+     * pool adding the shares, shared by all instances and sized to the number
+     * of available processors
+     */
+    private static ForkJoinPool additionPool = null;
+
+    /**
+     * true if the inputs are verified by one random linear combination of
+     * interval polynomials per input peer
+     */
+    private boolean batchedInputVerification = false;
+    /** the reconstructed random seed of the batched input verification */
+    private long combinationSeed = 0;
     /** number of initial shares that the privacy peer yet has to receive */
     private int initialSharesToReceive = 0;
     private boolean isRoundSuccessful = true;
@@ -92,21 +119,33 @@ public class AdditivePrivacyPeer extends AdditiveBase {
     }
 
     /**
-     * Add up all the shares received (of non-disqualified users).
+     * Add up all the shares received (of non-disqualified users). The shares
+     * are added in place with lazy modular reduction (see
+     * {@link ShamirSharing#vectorAddInPlace(long[], long[][], int, int)}).
+     * The items are split into ranges which are added in parallel.
      */
     public void addShares() {
         this.itemSumShares = new long[this.numberOfItems];
         ShamirSharing ss = this.primitives.getMpcShamirSharing();
+        List<long[]> shares = new ArrayList<long[]>();
         for (AdditivePeerInfo peerInfo : this.peerInfos) {
             if (peerInfo.isVerificationSuccessful()) {
                 logger.info("Adding share of: " + peerInfo.getID());
-                this.itemSumShares = ss.vectorAdd(this.itemSumShares,
-                        peerInfo.getInitialShares());
+                shares.add(peerInfo.getInitialShares());
             } else {
                 logger.warn("Peer is disqualified: " + peerInfo.getID()
                         + " -> Not adding share");
             }
         }
+        if (shares.isEmpty()) {
+            return;
+        }
+        ForkJoinPool pool = getAdditionPool();
+        int chunkSize = Math.max(MIN_ADDITION_CHUNK_SIZE, this.numberOfItems
+                / (pool.getParallelism() * CHUNKS_PER_WORKER));
+        pool.invoke(new AddSharesTask(ss, this.itemSumShares, shares
+                .toArray(new long[shares.size()][]), 0, this.numberOfItems,
+                chunkSize));
     }
 
     /**
@@ -318,6 +357,18 @@ public class AdditivePrivacyPeer extends AdditiveBase {
         return this.timeSlotCount;
     }
 
+    /**
+     * Sets the connected input peers and their initial shares (for
+     * subclasses simulating a round without connections).
+     * 
+     * @param peerInfos
+     *            the information objects of the input peers, in index order
+     */
+    protected void setInputPeers(final Vector<AdditivePeerInfo> peerInfos) {
+        this.peerInfos = peerInfos;
+        this.numberOfInputPeers = peerInfos.size();
+    }
+
     /**
      * Initializes the privacy peer
      */
@@ -357,15 +408,37 @@ public class AdditivePrivacyPeer extends AdditiveBase {
         this.finalResultsToDo = this.numberOfInputPeers;
         this.finalResults = null;
         this.isRoundSuccessful = true;
+        initializeInputVerification();
 
         this.primitives = new Primitives(this.randomAlgorithm,
                 this.shamirSharesFieldOrder, this.degreeT,
                 this.numberOfPrivacyPeers, this.myAlphaIndex,
                 this.numberOfPrivacyPeers - 1);
+        this.primitives.setWorkStealing(this.workStealing);
+        this.primitives.setEqualMethod(this.equalMethod);
         createProtocolThreadsForInputPeers(inputPeerIDs);
         createProtocolThreadsForPrivacyPeers(privacyPeerIDs, ppIndexMap);
     }
 
+    /**
+     * Chooses the input verification of this round (the max. element was
+     * checked by {@link #checkInputVerification()}).
+     */
+    protected void initializeInputVerification() {
+        this.batchedInputVerification = !this.skipInputVerification
+                && INPUT_VERIFICATION_BATCHED
+                        .equalsIgnoreCase(this.inputVerification);
+    }
+
+    /**
+     * @return true if the inputs are verified with one random linear
+     *         combination of interval polynomials per input peer instead of
+     *         one less-than per element
+     */
+    public boolean isBatchedInputVerification() {
+        return this.batchedInputVerification;
+    }
+
     public boolean isRoundSuccessful() {
         return this.isRoundSuccessful;
     }
@@ -424,28 +497,63 @@ public class AdditivePrivacyPeer extends AdditiveBase {
      * check, and reconstructs the result
      */
     public void processNormBoundCheckResult() {
-        this.isRoundSuccessful = true;
-        int numberOfDishonestPeers = 0;
-        int operationIndex = 0;
         for (int peerIndex = 0; peerIndex < this.numberOfInputPeers; peerIndex++) {
+            boolean isValid = true;
             for (int itemIndex = 0; itemIndex < this.numberOfItems; itemIndex++) {
-                operationIndex = peerIndex * this.numberOfItems + itemIndex;
-                if (this.primitives.getResult(operationIndex)[0] != 1) {
-                    getPeerInfoByIndex(peerIndex).setVerificationSuccessful(
-                            false);
-                    numberOfDishonestPeers++;
-                    logger.warn("Input peer "
-                            + getPeerInfoByIndex(peerIndex).getID()
-                            + " was disqualified! It shared a value bigger than "
-                            + this.maxElement + "!");
+                if (this.primitives.getResult(peerIndex * this.numberOfItems
+                        + itemIndex)[0] != 1) {
+                    isValid = false;
                     break;
-                } else {
-                    getPeerInfoByIndex(peerIndex).setVerificationSuccessful(
-                            true);
                 }
             }
+            setVerificationResult(peerIndex, isValid);
         }
+        updateRoundSuccess();
+        logger.info("Processed the norm bound check results");
+    }
 
+    /**
+     * processes the reconstructed random linear combinations of the batched
+     * input verification. An input peer is valid iff its combination is zero.
+     */
+    public void processCombinationResult() {
+        long[] combinations = this.primitives.getResult(0);
+        for (int peerIndex = 0; peerIndex < this.numberOfInputPeers; peerIndex++) {
+            setVerificationResult(peerIndex, combinations[peerIndex] == 0);
+        }
+        updateRoundSuccess();
+        logger.info("Processed the batched input verification results");
+    }
+
+    /**
+     * marks the input peer as verified or disqualified
+     * 
+     * @param peerIndex
+     *            index of the input peer
+     * @param isValid
+     *            true if all its elements are smaller than the max. element
+     */
+    private void setVerificationResult(final int peerIndex,
+            final boolean isValid) {
+        getPeerInfoByIndex(peerIndex).setVerificationSuccessful(isValid);
+        if (!isValid) {
+            logger.warn("Input peer " + getPeerInfoByIndex(peerIndex).getID()
+                    + " was disqualified! It shared a value bigger than "
+                    + this.maxElement + "!");
+        }
+    }
+
+    /**
+     * the round is only successful if all input peers are honest
+     */
+    private void updateRoundSuccess() {
+        this.isRoundSuccessful = true;
+        int numberOfDishonestPeers = 0;
+        for (AdditivePeerInfo peerInfo : this.peerInfos) {
+            if (!peerInfo.isVerificationSuccessful()) {
+                numberOfDishonestPeers++;
+            }
+        }
         int numberOfHonestPeers = this.numberOfInputPeers
                 - numberOfDishonestPeers;
         if (numberOfHonestPeers < this.numberOfInputPeers) {
@@ -454,7 +562,6 @@ public class AdditivePrivacyPeer extends AdditiveBase {
                     + ")! Sending verification results.");
             this.isRoundSuccessful = false;
         }
-        logger.info("Processed the norm bound check results");
     }
 
     /**
@@ -486,6 +593,130 @@ public class AdditivePrivacyPeer extends AdditiveBase {
         return this.skipInputVerification;
     }
 
+    /**
+     * starts the interval polynomials of the batched input verification: for
+     * every element x of every input peer, the product
+     * (x-0)*(x-1)*...*(x-(maxElement-1)) is computed, which is zero iff x is
+     * smaller than the max. element (one array product operation per input
+     * peer).
+     */
+    public void startIntervalPolynomials() {
+        this.combinationSeed = this.primitives.getResult(0)[0];
+        ShamirSharing ss = this.primitives.getMpcShamirSharing();
+
+        initializeNewOperationSet(this.numberOfInputPeers);
+        this.operationIDs = new int[this.numberOfInputPeers];
+        for (int peerIndex = 0; peerIndex < this.numberOfInputPeers; peerIndex++) {
+            long[] shares = getPeerInfoByIndex(peerIndex).getInitialShares();
+            long[][] factors = new long[(int) this.maxElement][this.numberOfItems];
+            for (int j = 0; j < factors.length; j++) {
+                for (int i = 0; i < this.numberOfItems; i++) {
+                    factors[j][i] = ss.modSubtract(shares[i], j);
+                }
+            }
+            this.operationIDs[peerIndex] = peerIndex;
+            if (!this.primitives.arrayProduct(peerIndex, factors, true)) {
+                logger.error("array product operation arguments are invalid: id="
+                        + peerIndex);
+            }
+        }
+        logger.info("thread " + Thread.currentThread().getId()
+                + " started the interval polynomials of the batched input verification; ("
+                + this.operationIDs.length
+                + " array product operations are in progress)");
+    }
+
+    /**
+     * starts the reconstruction of the random linear combinations of the
+     * interval polynomials, one per input peer.
+     * <p>
+     * The coefficients are drawn uniformly from [1, p-1] by the configured
+     * PRG, seeded with the reconstructed random seed, which the input peers do
+     * not know when they share their inputs. Seeded before its first use, the
+     * PRG yields the same coefficients on all privacy peers. If any interval
+     * polynomial of a peer is not zero, its combination is zero with
+     * probability 1/(p-1) only. The combination of a valid input is always
+     * zero, so its reconstruction reveals nothing about the input.
+     * 
+     * @throws NoSuchAlgorithmException
+     *             if the configured PRG is not available
+     */
+    public void startCombinationReconstruction()
+            throws NoSuchAlgorithmException {
+        ShamirSharing ss = this.primitives.getMpcShamirSharing();
+        long[] coefficients = getCombinationCoefficients();
+
+        long[] combinations = new long[this.numberOfInputPeers];
+        for (int peerIndex = 0; peerIndex < this.numberOfInputPeers; peerIndex++) {
+            long[] polynomials = this.primitives.getResult(peerIndex);
+            long combination = 0;
+            for (int i = 0; i < this.numberOfItems; i++) {
+                combination = ss.modAdd(combination,
+                        ss.modMultiply(coefficients[i], polynomials[i]));
+            }
+            combinations[peerIndex] = combination;
+        }
+
+        initializeNewOperationSet(1);
+        this.operationIDs = new int[] { 0 };
+        if (!this.primitives.arrayReconstruct(0, combinations)) {
+            logger.error("array reconstruct operation arguments are invalid: id=0");
+        }
+    }
+
+    /**
+     * derives the coefficients of the random linear combinations from the
+     * reconstructed random seed (see {@link #startCombinationReconstruction()})
+     * 
+     * @return one coefficient in [1, p-1] per item
+     * @throws NoSuchAlgorithmException
+     *             if the configured PRG is not available
+     */
+    protected long[] getCombinationCoefficients()
+            throws NoSuchAlgorithmException {
+        SecureRandom random = SecureRandom.getInstance(this.randomAlgorithm);
+        random.setSeed(BigInteger.valueOf(this.combinationSeed).toByteArray());
+
+        // rejection sampling over the smallest power of two covering p-1
+        long range = this.shamirSharesFieldOrder - 1;
+        long mask = Long.highestOneBit(range) * 2 - 1;
+        long[] coefficients = new long[this.numberOfItems];
+        for (int i = 0; i < this.numberOfItems; i++) {
+            long value;
+            do {
+                value = random.nextLong() & mask;
+            } while (value >= range);
+            coefficients[i] = value + 1;
+        }
+        return coefficients;
+    }
+
+    /**
+     * starts the generation of the shared random seed of the batched input
+     * verification
+     */
+    public void startCombinationSeedGeneration() {
+        initializeNewOperationSet(1);
+        this.operationIDs = new int[] { 0 };
+        if (!this.primitives.generateRandomNumber(0, null)) {
+            logger.error("generate random number operation arguments are invalid: id=0");
+        }
+    }
+
+    /**
+     * starts the reconstruction of the random seed of the batched input
+     * verification
+     */
+    public void startCombinationSeedReconstruction() {
+        long[] data = new long[] { this.primitives.getResult(0)[0] };
+        initializeNewOperationSet(1);
+        this.operationIDs = new int[] { 0 };
+        if (!this.primitives.reconstruct(0, data)) {
+            logger.error("reconstruct operation arguments are invalid: id=0, data="
+                    + data[0]);
+        }
+    }
+
     /**
      * starts the reconstruction of the final result
      */
@@ -510,40 +741,34 @@ public class AdditivePrivacyPeer extends AdditiveBase {
     }
 
     /**
-     * starts the less-thans of the max. element check
+     * starts the less-thans of the max. element check (one array less-than
+     * operation per input peer)
      */
     public void startLessThans() {
 
         // create less-than operation set
-        initializeNewOperationSet(this.numberOfInputPeers * this.numberOfItems);
-        this.operationIDs = new int[this.numberOfInputPeers
-                * this.numberOfItems];
-        int operationIndex = 0;
-        int dataSize = 5;
-        long[] data = null;
+        initializeNewOperationSet(this.numberOfInputPeers);
+        this.operationIDs = new int[this.numberOfInputPeers];
         long isLessThanHalfOfFieldSize = this.maxElement <= this.shamirSharesFieldOrder / 2 ? 1
                 : 0;
+        long[] knowledge = new long[] { -1, isLessThanHalfOfFieldSize, -1 };
+        long[] maxElements = new long[this.numberOfItems];
+        Arrays.fill(maxElements, this.maxElement);
         for (int peerIndex = 0; peerIndex < this.numberOfInputPeers; peerIndex++) {
-            for (int itemIndex = 0; itemIndex < this.numberOfItems; itemIndex++) {
-                this.operationIDs[operationIndex] = operationIndex;
-                data = new long[dataSize];
-                data[0] = getPeerInfoByIndex(peerIndex).getInitialShares()[itemIndex];
-                data[1] = this.maxElement;
-                data[2] = -1;
-                data[3] = isLessThanHalfOfFieldSize;
-                data[4] = -1;
-                if (!this.primitives.lessThan(operationIndex, data)) {
-                    Services.printVector(
-                            "less-than operation arguments are invalid: id="
-                                    + peerIndex + "; data=", data, logger);
-                }
-                operationIndex++;
+            this.operationIDs[peerIndex] = peerIndex;
+            long[] shares = getPeerInfoByIndex(peerIndex).getInitialShares();
+            if (!this.primitives.arrayLessThan(peerIndex,
+                    Arrays.copyOf(shares, this.numberOfItems), maxElements,
+                    knowledge)) {
+                Services.printVector(
+                        "array less-than operation arguments are invalid: id="
+                                + peerIndex + "; data=", shares, logger);
             }
         }
         logger.info("thread " + Thread.currentThread().getId()
                 + " started the less-thans of the max. element check; ("
                 + this.operationIDs.length
-                + " less-than operations are in progress)");
+                + " array less-than operations are in progress)");
     }
 
     /**
@@ -575,10 +800,11 @@ public class AdditivePrivacyPeer extends AdditiveBase {
      * reconstructs the result
      */
     public void startNormBoundCheckResultReconstruction() {
-        long[] result = new long[this.operationIDs.length];
+        // get array less-than operation results (one per input peer)
+        long[] result = new long[this.operationIDs.length * this.numberOfItems];
         for (int i = 0; i < this.operationIDs.length; i++) {
-            // get less-than operation result
-            result[i] = this.primitives.getResult(this.operationIDs[i])[0];
+            System.arraycopy(this.primitives.getResult(this.operationIDs[i]),
+                    0, result, i * this.numberOfItems, this.numberOfItems);
         }
 
         initializeNewOperationSet(result.length);
@@ -632,4 +858,54 @@ public class AdditivePrivacyPeer extends AdditiveBase {
         }
     }
 
+    /**
+     * @return the pool used to add the shares
+     */
+    private static synchronized ForkJoinPool getAdditionPool() {
+        if (additionPool == null) {
+            additionPool = new ForkJoinPool(Runtime.getRuntime()
+                    .availableProcessors());
+        }
+        return additionPool;
+    }
+
+    /**
+     * Adds the shares in a range of items, splitting the range in halves
+     * until it is no larger than the chunk size.
+     */
+    private static class AddSharesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int chunkSize;
+        private final int end;
+        private final long[][] shares;
+        private final ShamirSharing ss;
+        private final int start;
+        private final long[] sum;
+
+        AddSharesTask(final ShamirSharing ss, final long[] sum,
+                final long[][] shares, final int start, final int end,
+                final int chunkSize) {
+            this.ss = ss;
+            this.sum = sum;
+            this.shares = shares;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= this.chunkSize) {
+                this.ss.vectorAddInPlace(this.sum, this.shares, this.start,
+                        this.end);
+                return;
+            }
+            final int middle = (this.start + this.end) >>> 1;
+            invokeAll(new AddSharesTask(this.ss, this.sum, this.shares,
+                    this.start, middle, this.chunkSize), new AddSharesTask(
+                    this.ss, this.sum, this.shares, middle, this.end,
+                    this.chunkSize));
+        }
+    }
 }
@@ -15,6 +15,7 @@
 
 package ch.ethz.sepia.mpc.additive;
 
+import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 
@@ -78,7 +79,11 @@ public class AdditiveProtocolPrivacyPeerToPP extends AdditiveProtocol {
 			 */
 
             // Check if we need to do input verification
-            if(!privacyPeer.skipInputVerification()) {
+            if(!privacyPeer.skipInputVerification() && privacyPeer.isBatchedInputVerification()) {
+                if(!verifyCombinations(ppThreadsBarrier)) {
+                    return;
+                }
+            } else if(!privacyPeer.skipInputVerification()) {
                 if (ppThreadsBarrier.await()==0) {
                 	privacyPeer.startLessThans();
                 }
@@ -127,6 +132,62 @@ public class AdditiveProtocolPrivacyPeerToPP extends AdditiveProtocol {
 			logger.error(Utils.getStackTrace(e));
 		} catch (PrivacyViolationException e) {
 			logger.error(Utils.getStackTrace(e));
+		} catch (NoSuchAlgorithmException e) {
+			logger.error(Utils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Verifies the inputs with one random linear combination of interval
+	 * polynomials per input peer (see
+	 * {@link AdditivePrivacyPeer#startIntervalPolynomials()} and
+	 * {@link AdditivePrivacyPeer#startCombinationReconstruction()}). Input
+	 * peers whose combination is not zero are disqualified.
+	 *
+	 * @param ppThreadsBarrier	the barrier of the PP-to-PP protocol threads
+	 * @return					true if the operations were successful
+	 */
+	private boolean verifyCombinations(CyclicBarrier ppThreadsBarrier) throws InterruptedException, BrokenBarrierException, PrimitivesException, PrivacyViolationException, NoSuchAlgorithmException {
+		if (ppThreadsBarrier.await()==0) {
+			privacyPeer.startCombinationSeedGeneration();
+		}
+		ppThreadsBarrier.await();
+		if(!doOperations()) {
+			logger.error("Random seed generation failed; returning");
+			return false;
+		}
+
+		if (ppThreadsBarrier.await()==0) {
+			privacyPeer.startCombinationSeedReconstruction();
+		}
+		ppThreadsBarrier.await();
+		if(!doOperations()) {
+			logger.error("Random seed reconstruction failed; returning");
+			return false;
+		}
+
+		if (ppThreadsBarrier.await()==0) {
+			privacyPeer.startIntervalPolynomials();
+		}
+		ppThreadsBarrier.await();
+		if(!doOperations()) {
+			logger.error("Interval polynomials failed; returning");
+			return false;
+		}
+
+		if (ppThreadsBarrier.await()==0) {
+			privacyPeer.startCombinationReconstruction();
+		}
+		ppThreadsBarrier.await();
+		if(!doOperations()) {
+			logger.error("Random linear combination reconstruction failed; returning");
+			return false;
+		}
+
+		if (ppThreadsBarrier.await()==0) {
+			privacyPeer.processCombinationResult();
 		}
+		ppThreadsBarrier.await();
+		return true;
 	}
 }
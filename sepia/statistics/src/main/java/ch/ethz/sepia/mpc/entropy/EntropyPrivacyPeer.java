@@ -156,9 +156,23 @@ public class EntropyPrivacyPeer extends AdditivePrivacyPeer {
     }
 
     /**
-     * starts the exponentiation of the item sums
+     * starts the exponentiation of the item sums. For the exponent 2, the sum
+     * of the squared item sums is computed directly by a single inner product
+     * operation, which needs only one resharing for all items.
      */
     public synchronized void startExponentiation() {
+        if (this.tsallisExponent == 2) {
+            initializeNewOperationSet(1);
+            this.operationIDs = new int[] { 0 };
+            final long[] itemSums = getItemSumShares();
+            if (!this.primitives.innerProduct(0, itemSums, itemSums)) {
+                logger.error("inner product operation arguments are invalid: id=0, length="
+                        + itemSums.length);
+            }
+            logger.info("Started the squaring of the item sums; (1 inner product operation is in progress)");
+            return;
+        }
+
         initializeNewOperationSet(this.numberOfItems);
         this.operationIDs = new int[this.numberOfItems];
         long[] data = null;
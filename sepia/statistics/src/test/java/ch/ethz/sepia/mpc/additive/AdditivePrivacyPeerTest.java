@@ -0,0 +1,287 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.additive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.ShamirSharing;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.services.Stopper;
+
+/**
+ * Test cases for the batched input verification of the additive protocol.
+ * Simulates the privacy peers and runs the same steps as
+ * {@link AdditiveProtocolPrivacyPeerToPP}.
+ */
+public class AdditivePrivacyPeerTest extends TestCase {
+
+	private static final int NUMBER_OF_PRIVACY_PEERS = 3;
+	private static final int NUMBER_OF_INPUT_PEERS = 3;
+	private static final int NUMBER_OF_ITEMS = 20;
+	private static final long FIELD_SIZE = 2147352577;
+	private static final long MAX_ELEMENT = 10;
+	private static final String RANDOM_ALGORITHM = "SHA1PRNG";
+
+	/** the privacy peers */
+	private TestPrivacyPeer[] privacyPeers;
+	/** the input peer infos of each privacy peer */
+	private List<Vector<AdditivePeerInfo>> peerInfos;
+
+	/**
+	 * A privacy peer without connections, computing with the given privacy peer index.
+	 */
+	private static class TestPrivacyPeer extends AdditivePrivacyPeer {
+		public TestPrivacyPeer(int privacyPeerIndex, String inputVerification, long maxElement) throws Exception {
+			super("PrivacyPeer-" + privacyPeerIndex, privacyPeerIndex, null, new Stopper());
+			shamirSharesFieldOrder = FIELD_SIZE;
+			numberOfItems = NUMBER_OF_ITEMS;
+			this.maxElement = maxElement;
+			this.inputVerification = inputVerification;
+			randomAlgorithm = RANDOM_ALGORITHM;
+			primitives = new Primitives(RANDOM_ALGORITHM, FIELD_SIZE, -1, NUMBER_OF_PRIVACY_PEERS, privacyPeerIndex, 1);
+			checkInputVerification();
+			initializeInputVerification();
+		}
+
+		/**
+		 * @param peerInfos	the input peers and their initial shares
+		 */
+		public void simulateInputPeers(Vector<AdditivePeerInfo> peerInfos) {
+			setInputPeers(peerInfos);
+		}
+	}
+
+	/**
+	 * Valid inputs pass the batched input verification.
+	 */
+	public void testValidInputs() throws Exception {
+		long[][] inputs = createValidInputs();
+		inputs[0][0] = 0;
+		inputs[1][1] = MAX_ELEMENT - 1;
+		createPrivacyPeers(inputs);
+		runBatchedInputVerification();
+
+		for (int pp = 0; pp < NUMBER_OF_PRIVACY_PEERS; pp++) {
+			assertTrue(privacyPeers[pp].isRoundSuccessful());
+			for (int peerIndex = 0; peerIndex < NUMBER_OF_INPUT_PEERS; peerIndex++) {
+				assertTrue(peerInfos.get(pp).get(peerIndex).isVerificationSuccessful());
+			}
+		}
+	}
+
+	/**
+	 * An element equal to the max. element is rejected.
+	 */
+	public void testMaxElementRejected() throws Exception {
+		long[][] inputs = createValidInputs();
+		inputs[1][NUMBER_OF_ITEMS - 1] = MAX_ELEMENT;
+		verifyOnlyPeerRejected(inputs, 1);
+	}
+
+	/**
+	 * A too big element compensated by a "negative" element (-1 = p-1) is
+	 * rejected. Such an input passes a less-than on a weighted sum of the
+	 * elements with high probability.
+	 */
+	public void testCompensatedElementRejected() throws Exception {
+		long[][] inputs = createValidInputs();
+		inputs[2][3] = MAX_ELEMENT;
+		inputs[2][4] = FIELD_SIZE - 1;
+		verifyOnlyPeerRejected(inputs, 2);
+	}
+
+	/**
+	 * A huge element is rejected.
+	 */
+	public void testHugeElementRejected() throws Exception {
+		long[][] inputs = createValidInputs();
+		inputs[0][7] = FIELD_SIZE / 2;
+		verifyOnlyPeerRejected(inputs, 0);
+	}
+
+	/**
+	 * The batched input verification is used if it was configured. Max.
+	 * elements it does not support are rejected instead of silently checking
+	 * every element.
+	 */
+	public void testInputVerificationMode() throws Exception {
+		assertFalse(new TestPrivacyPeer(0, AdditiveBase.INPUT_VERIFICATION_ELEMENT, MAX_ELEMENT).isBatchedInputVerification());
+		assertFalse(new TestPrivacyPeer(0, AdditiveBase.INPUT_VERIFICATION_ELEMENT, FIELD_SIZE - 1).isBatchedInputVerification());
+		assertTrue(new TestPrivacyPeer(0, AdditiveBase.INPUT_VERIFICATION_BATCHED, MAX_ELEMENT).isBatchedInputVerification());
+		assertTrue(new TestPrivacyPeer(0, AdditiveBase.INPUT_VERIFICATION_BATCHED, AdditiveBase.MAX_BATCHED_MAX_ELEMENT).isBatchedInputVerification());
+		assertRejected(AdditiveBase.INPUT_VERIFICATION_BATCHED, AdditiveBase.MAX_BATCHED_MAX_ELEMENT + 1);
+		assertRejected(AdditiveBase.INPUT_VERIFICATION_BATCHED, 1);
+		assertRejected(AdditiveBase.INPUT_VERIFICATION_BATCHED, FIELD_SIZE - 1);
+		assertRejected("pairwise", MAX_ELEMENT);
+	}
+
+	/**
+	 * All privacy peers derive the same coefficients in [1, p-1] from the
+	 * reconstructed seed.
+	 */
+	public void testCombinationCoefficients() throws Exception {
+		createPrivacyPeers(createValidInputs());
+		runBatchedInputVerification();
+
+		long[] coefficients = privacyPeers[0].getCombinationCoefficients();
+		assertEquals(NUMBER_OF_ITEMS, coefficients.length);
+		for (long coefficient : coefficients) {
+			assertTrue(coefficient >= 1 && coefficient <= FIELD_SIZE - 1);
+		}
+		for (int pp = 1; pp < NUMBER_OF_PRIVACY_PEERS; pp++) {
+			assertTrue(Arrays.equals(coefficients, privacyPeers[pp].getCombinationCoefficients()));
+		}
+	}
+
+	/**
+	 * checks that a privacy peer can not be configured with the given input
+	 * verification and max. element
+	 */
+	private void assertRejected(String inputVerification, long maxElement) throws Exception {
+		try {
+			new TestPrivacyPeer(0, inputVerification, maxElement);
+			fail("Expected IllegalArgumentException for " + inputVerification + ", max. element " + maxElement);
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * runs the batched input verification and checks that only the given
+	 * input peer was disqualified
+	 */
+	private void verifyOnlyPeerRejected(long[][] inputs, int dishonestPeer) throws Exception {
+		createPrivacyPeers(inputs);
+		runBatchedInputVerification();
+
+		for (int pp = 0; pp < NUMBER_OF_PRIVACY_PEERS; pp++) {
+			assertFalse(privacyPeers[pp].isRoundSuccessful());
+			for (int peerIndex = 0; peerIndex < NUMBER_OF_INPUT_PEERS; peerIndex++) {
+				assertEquals("input peer " + peerIndex, peerIndex != dishonestPeer,
+						peerInfos.get(pp).get(peerIndex).isVerificationSuccessful());
+			}
+		}
+	}
+
+	/**
+	 * @return valid random inputs of all input peers
+	 */
+	private long[][] createValidInputs() {
+		Random random = new Random(1);
+		long[][] inputs = new long[NUMBER_OF_INPUT_PEERS][NUMBER_OF_ITEMS];
+		for (int peerIndex = 0; peerIndex < NUMBER_OF_INPUT_PEERS; peerIndex++) {
+			for (int i = 0; i < NUMBER_OF_ITEMS; i++) {
+				inputs[peerIndex][i] = random.nextInt((int) MAX_ELEMENT);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * shares the inputs and creates the privacy peers holding the shares
+	 */
+	private void createPrivacyPeers(long[][] inputs) throws Exception {
+		long[][][] shares = new long[NUMBER_OF_INPUT_PEERS][][];
+		for (int peerIndex = 0; peerIndex < NUMBER_OF_INPUT_PEERS; peerIndex++) {
+			ShamirSharing sharing = new ShamirSharing();
+			sharing.setRandomAlgorithm(RANDOM_ALGORITHM);
+			sharing.setFieldSize(FIELD_SIZE);
+			sharing.setNumberOfPrivacyPeers(NUMBER_OF_PRIVACY_PEERS);
+			sharing.setDegreeT(-1);
+			sharing.init();
+			shares[peerIndex] = sharing.generateShares(inputs[peerIndex]);
+		}
+
+		privacyPeers = new TestPrivacyPeer[NUMBER_OF_PRIVACY_PEERS];
+		peerInfos = new ArrayList<Vector<AdditivePeerInfo>>();
+		for (int pp = 0; pp < NUMBER_OF_PRIVACY_PEERS; pp++) {
+			TestPrivacyPeer privacyPeer = new TestPrivacyPeer(pp, AdditiveBase.INPUT_VERIFICATION_BATCHED, MAX_ELEMENT);
+			assertTrue(privacyPeer.isBatchedInputVerification());
+			Vector<AdditivePeerInfo> infos = new Vector<AdditivePeerInfo>();
+			for (int peerIndex = 0; peerIndex < NUMBER_OF_INPUT_PEERS; peerIndex++) {
+				AdditivePeerInfo peerInfo = new AdditivePeerInfo("peer" + peerIndex, peerIndex);
+				peerInfo.setInitialShares(shares[peerIndex][pp]);
+				infos.add(peerInfo);
+			}
+			privacyPeer.simulateInputPeers(infos);
+			peerInfos.add(infos);
+			privacyPeers[pp] = privacyPeer;
+		}
+	}
+
+	/**
+	 * runs the steps of the batched input verification
+	 */
+	private void runBatchedInputVerification() throws Exception {
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.startCombinationSeedGeneration();
+		}
+		doOperations();
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.startCombinationSeedReconstruction();
+		}
+		doOperations();
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.startIntervalPolynomials();
+		}
+		doOperations();
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.startCombinationReconstruction();
+		}
+		doOperations();
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.processCombinationResult();
+		}
+	}
+
+	/**
+	 * exchanges the data of the privacy peers until all scheduled operations
+	 * are completed
+	 */
+	private void doOperations() throws Exception {
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			privacyPeer.getPrimitives().processReceivedData();
+		}
+		while (!areOperationsCompleted()) {
+			for (int i = 0; i < privacyPeers.length; i++) {
+				for (int j = 0; j < privacyPeers.length; j++) {
+					if (j != i) {
+						privacyPeers[j].getPrimitives().setReceivedData(i, privacyPeers[i].getPrimitives().getDataToSend(j));
+					}
+				}
+			}
+			for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+				privacyPeer.getPrimitives().processReceivedData();
+			}
+		}
+	}
+
+	/**
+	 * @return true if all privacy peers completed their operations
+	 */
+	private boolean areOperationsCompleted() {
+		for (AdditivePrivacyPeer privacyPeer : privacyPeers) {
+			if (!privacyPeer.getPrimitives().areOperationsCompleted()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -15,8 +15,6 @@
 
 package ch.ethz.sepia.mpc.topk;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -24,20 +22,37 @@ import java.util.Random;
 
 
 /**
- * Implements a cryptographic hash function with a seed, operating on integer values.
+ * Implements a hash function with a seed, operating on integer values. Two algorithms are available:
+ * <ul>
+ * <li>{@link #ALGORITHM_SHA1} (default): the first 4 bytes of SHA-1(seed, value).</li>
+ * <li>{@link #ALGORITHM_TABULATION}: simple tabulation hashing. The 4 bytes of a value
+ * index 4 tables of random words derived from the seed, which are combined by XOR. The
+ * family is 3-independent (in particular pairwise independent), which is what the sketches
+ * require, and a hash costs 4 table lookups.</li>
+ * </ul>
+ * All peers have to use the same algorithm and seeds, since the algorithms place the keys
+ * in different sketch slots. The instances are not thread-safe.
  *
  * @author Martin Burkhart
  *
  */
 
 public class Hash {
+	/** SHA-1 of the seed and the value */
+	public static final String ALGORITHM_SHA1 = "sha1";
+	/** simple tabulation hashing */
+	public static final String ALGORITHM_TABULATION = "tabulation";
+	/** the default algorithm, kept at SHA-1 such that the sketches match those of older peers */
+	public static final String DEFAULT_ALGORITHM = ALGORITHM_SHA1;
+
 	private static final String HASH_ALGORITHM = "SHA-1";
 
 	private int H; // Range of hash values
 	private MessageDigest digest;
+	private byte[] input;
 
-	private ByteArrayOutputStream arrayOutputStream;
-	private DataOutputStream dataOutputStream;
+	/** the 4 tables of the tabulation hashing, one per byte of the value: [byte*256 + byte value] */
+	private int[] tables;
 
 	private int seed;
 
@@ -47,13 +62,27 @@ public class Hash {
 	 * @throws NoSuchAlgorithmException
 	 */
 	public Hash(int H) throws NoSuchAlgorithmException {
+		this(H, DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Creates a new hash function with a random seed.
+	 * @param H the range of the hash function is [0...H-1]
+	 * @param algorithm {@link #ALGORITHM_TABULATION} or {@link #ALGORITHM_SHA1}
+	 * @throws NoSuchAlgorithmException if the algorithm is unknown
+	 */
+	public Hash(int H, String algorithm) throws NoSuchAlgorithmException {
 		this.H=H;
-		digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		if (ALGORITHM_SHA1.equals(algorithm)) {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			input = new byte[8];
+		} else if (ALGORITHM_TABULATION.equals(algorithm)) {
+			tables = new int[4*256];
+		} else {
+			throw new NoSuchAlgorithmException("Unknown hash algorithm: " + algorithm);
+		}
 		Random rand = new Random();
-		seed = rand.nextInt();
-
-		arrayOutputStream = new ByteArrayOutputStream(8);
-		dataOutputStream = new DataOutputStream(arrayOutputStream);
+		setSeed(rand.nextInt());
 	}
 
 	/**
@@ -68,6 +97,17 @@ public class Hash {
 	 */
 	public void setSeed(int seed) {
 		this.seed = seed;
+		if (tables != null) {
+			// fill the tables with a SplitMix64 sequence started at the seed
+			long state = seed;
+			for (int i = 0; i < tables.length; i++) {
+				state += 0x9E3779B97F4A7C15L;
+				long z = state;
+				z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+				z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+				tables[i] = (int) (z ^ (z >>> 31));
+			}
+		}
 	}
 
 	/**
@@ -86,22 +126,44 @@ public class Hash {
 	 * @throws IOException
 	 */
 	public int getHash(int value) throws NoSuchAlgorithmException, IOException {
-		dataOutputStream.writeInt(seed);
-		dataOutputStream.writeInt(value);
-		dataOutputStream.flush();
-		byte[] input = arrayOutputStream.toByteArray();
-		arrayOutputStream.reset();
-		return getHash(input);
+		return hash(value);
 	}
 
 	/**
-	 * Returns the hash of a byte array.
-	 * @param input
-	 * @return
-	 * @throws NoSuchAlgorithmException
-	 * @throws IOException
+	 * Hashes a batch of values.
+	 * @param values the values
+	 * @param hashes array receiving the hashes (at least as long as values)
+	 */
+	public void getHashes(int[] values, int[] hashes) {
+		for (int i = 0; i < values.length; i++) {
+			hashes[i] = hash(values[i]);
+		}
+	}
+
+	private int hash(int value) {
+		if (tables != null) {
+			final int h = tables[value & 0xff] ^ tables[256 + ((value >>> 8) & 0xff)]
+					^ tables[512 + ((value >>> 16) & 0xff)] ^ tables[768 + (value >>> 24)];
+			// restrict to [0,...,H-1] (multiply-shift instead of modulo)
+			return (int) (((h & 0xffffffffL) * H) >>> 32);
+		}
+		return sha1Hash(value);
+	}
+
+	/**
+	 * Returns the SHA-1 based hash of a value. The input are the seed and the value in big-endian
+	 * byte order.
 	 */
-	private int getHash(byte[] input) throws NoSuchAlgorithmException, IOException {
+	private int sha1Hash(int value) {
+		input[0] = (byte) (seed >>> 24);
+		input[1] = (byte) (seed >>> 16);
+		input[2] = (byte) (seed >>> 8);
+		input[3] = (byte) seed;
+		input[4] = (byte) (value >>> 24);
+		input[5] = (byte) (value >>> 16);
+		input[6] = (byte) (value >>> 8);
+		input[7] = (byte) value;
+
 		digest.reset();
 		byte[] hashbytes = digest.digest(input);
 
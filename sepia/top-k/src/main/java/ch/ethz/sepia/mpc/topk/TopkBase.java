@@ -84,7 +84,25 @@ public abstract class TopkBase extends PrimitivesEnabledPeer {
      *            the connection manager
      */
     public TopkBase(int myPeerIndex, ConnectionManager cm, Stopper stopper) {
-        super(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+        this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+    }
+
+    /**
+     * Creates a new MPC topk peer instance with the given name. This is the
+     * constructor used by {@link ch.ethz.sepia.mpc.PeerFactory}.
+     *
+     * @param peerName
+     *            the name of this peer (its configuration instance)
+     * @param myPeerIndex
+     *            This peer's number/index
+     * @param stopper
+     *            Stopper (can be used to stop this thread)
+     * @param cm
+     *            the connection manager
+     */
+    public TopkBase(String peerName, int myPeerIndex, ConnectionManager cm,
+            Stopper stopper) {
+        super(peerName, myPeerIndex, cm, stopper);
         // TODO: Shouldn't this be protocolStopper = stopper?
         protocolStopper = new Stopper();
     }
@@ -93,12 +111,32 @@ public abstract class TopkBase extends PrimitivesEnabledPeer {
         return "Top-k-" + myPeerIndex;
     }
 
+    /**
+     * @return true if the global stopper of the configuration was stopped
+     */
+    protected boolean isGloballyStopped() {
+        Stopper globalStopper = Configuration.getInstance(myPeerName)
+                .getGlobalStopper();
+        return globalStopper != null && globalStopper.isStopped();
+    }
+
+    /**
+     * Notifies the stop listener of the configuration (if any) that the
+     * protocol has finished.
+     */
+    protected void notifyStopListener() {
+        Stopper stopListener = Configuration.getInstance(myPeerName)
+                .getStopListener();
+        if (stopListener != null) {
+            stopListener.stop();
+        }
+    }
+
     /**
      * Init the properties.
      */
     protected synchronized void initProperties() throws Exception {
-        // TODO: What is the right "peerName" here?
-        Properties properties = Configuration.getInstance(makePeerName(getMyPeerIndex())).getProperties();
+        Properties properties = Configuration.getInstance(myPeerName).getProperties();
 
         inputFolder = properties.getProperty(Configuration.PROP_INPUT_DIR,
                 Configuration.DEFAULT_INPUT_DIR);
@@ -125,6 +163,12 @@ public abstract class TopkBase extends PrimitivesEnabledPeer {
                 Configuration.PROP_FIELD, Configuration.DEFAULT_FIELD));
         degreeT = Integer.valueOf(properties.getProperty(
                 Configuration.PROP_DEGREE, "-1"));
+        workStealing = Boolean.parseBoolean(properties.getProperty(
+                Configuration.PROP_WORK_STEALING,
+                Configuration.DEFAULT_WORK_STEALING));
+        equalMethod = properties.getProperty(
+                Configuration.PROP_EQUAL_METHOD,
+                Configuration.DEFAULT_EQUAL_METHOD);
 
         myAlphaIndex = Collections.binarySearch(
                 connectionManager.getConfiguredPrivacyPeerIDs(), getMyPeerID());
@@ -43,6 +43,26 @@ public class TopkKeyWeightData extends LineData implements TopKData {
 	}
 
 
+	/**
+	 * Reads a whole distribution from a single record of alternating keys and weights
+	 * (<code>key;weight;key;weight;...</code>), replacing the current distribution.
+	 * @param record the record
+	 * @throws NumberFormatException
+	 */
+	public void readDistribution(String record) throws NumberFormatException {
+		distribution = new HashMap<Integer, Integer>();
+		if (record.trim().isEmpty()) {
+			return;
+		}
+		String[] fields = record.trim().split(FIELD_SEPARATOR);
+		if (fields.length % 2 != 0) {
+			throw new NumberFormatException("Odd number of fields in key weight record: " + fields.length);
+		}
+		for (int i = 0; i < fields.length; i += 2) {
+			distribution.put(Integer.valueOf(fields[i].trim()), Integer.valueOf(fields[i+1].trim()));
+		}
+	}
+
 	protected void parseAndStoreTuple(String line) throws NumberFormatException {
 		String[] fields = line.split(FIELD_SEPARATOR);
 		distribution.put(Integer.valueOf(fields[0]), Integer.valueOf(fields[1]));
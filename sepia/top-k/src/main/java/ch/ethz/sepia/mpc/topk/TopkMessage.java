@@ -18,6 +18,8 @@ package ch.ethz.sepia.mpc.topk;
 import java.io.Serializable;
 import java.util.HashMap;
 
+import javax.xml.bind.annotation.XmlRootElement;
+
 import ch.ethz.sepia.mpc.MessageBase;
 
 /**
@@ -26,6 +28,7 @@ import ch.ethz.sepia.mpc.MessageBase;
  * @author Dilip Many
  *
  */
+@XmlRootElement
 public class TopkMessage extends MessageBase implements Serializable {
 	private static final long serialVersionUID = 3461683923455914692L;
 
@@ -46,6 +49,9 @@ public class TopkMessage extends MessageBase implements Serializable {
 
 	private boolean keysAreIpAddresses = false;
 
+	public TopkMessage() { /* jaxb needs this */
+	}
+
 	/**
 	 * creates a new topk protocol message with the specified sender id and
 	 * index
@@ -67,6 +73,10 @@ public class TopkMessage extends MessageBase implements Serializable {
 		this.isInitialSharesMessage = isInitialSharesMessage;
 	}
 
+	public void setInitialSharesMessage(boolean isInitialSharesMessage) {
+		this.isInitialSharesMessage = isInitialSharesMessage;
+	}
+
 	public boolean isFinalResultMessage() {
 		return isFinalResultMessage;
 	}
@@ -75,6 +85,10 @@ public class TopkMessage extends MessageBase implements Serializable {
 		this.isFinalResultMessage = isFinalResultMessage;
 	}
 
+	public void setFinalResultMessage(boolean isFinalResultMessage) {
+		this.isFinalResultMessage = isFinalResultMessage;
+	}
+
 	public HashMap<Long, Long> getFinalResults() {
 		return finalResults;
 	}
@@ -103,6 +117,13 @@ public class TopkMessage extends MessageBase implements Serializable {
 		return keysAreIpAddresses;
 	}
 
+	/**
+	 * bean accessor of {@link #areKeysIpAddresses()} (used for the JSON serialization)
+	 */
+	public boolean isKeysAreIpAddresses() {
+		return keysAreIpAddresses;
+	}
+
 	public void setKeysAreIpAddresses(boolean keysAreIpAddresses) {
 		this.keysAreIpAddresses = keysAreIpAddresses;
 	}
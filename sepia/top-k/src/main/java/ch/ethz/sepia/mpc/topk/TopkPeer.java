@@ -26,6 +26,8 @@ import java.util.Observable;
 import java.util.Properties;
 import java.util.Vector;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
@@ -75,10 +77,18 @@ public class TopkPeer extends TopkBase {
 	public static final String PROP_TOPK_SEED = "mpc.topk.seed"; // initial seed
 	public static final String PROP_TOPK_INPUT_TYPE = "mpc.topk.inputType"; // the input data type
 	public static final String DEFAULT_TOPK_INPUT_TYPE = "BasicMetricsBinary"; // the default value of input data type
+	public static final String PROP_TOPK_HASH = "mpc.topk.hash"; // the hash algorithm of the sketches ("sha1" or "tabulation"), the same on all peers
+	public static final String DEFAULT_TOPK_HASH = Hash.DEFAULT_ALGORITHM;
+	/** minimal number of distinct keys for building the sketches in parallel */
+	private static final int MIN_PARALLEL_SKETCH_KEYS = 4096;
+	/** pool building the sketches, shared by all instances and sized to the number of processors */
+	private static ForkJoinPool sketchPool = null;
 	/** Random seed for hash functions */
 	protected int seed;
 	/** The input data type **/
 	protected String inputType;
+	/** The hash algorithm of the sketches ({@link Hash#ALGORITHM_SHA1} or {@link Hash#ALGORITHM_TABULATION}) */
+	protected String hashAlgorithm;
 
 
 	private boolean readOperationSuccessful;
@@ -92,7 +102,20 @@ public class TopkPeer extends TopkBase {
 	 * @throws Exception
 	 */
 	public TopkPeer(int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
-		super(myPeerIndex, cm, stopper);
+		this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+	}
+
+	/**
+	 * constructs a new topk peer object with the given name
+	 *
+	 * @param peerName		the name of this peer
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm the connection manager
+	 * @throws Exception
+	 */
+	public TopkPeer(String peerName, int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		super(peerName, myPeerIndex, cm, stopper);
 		peerProtocolThreads = new Vector<TopkProtocolPeer>();
 		mpcShamirSharing = new ShamirSharing();
 	}
@@ -164,7 +187,8 @@ public class TopkPeer extends TopkBase {
 	}
 
 	/**
-	 * Generates the S hash arrays of size H for values and keys.
+	 * Generates the S hash arrays of size H for values and keys. The keys are hashed in
+	 * batches and the sketches are built in parallel.
 	 * @throws NoSuchAlgorithmException
 	 * @throws IOException
 	 */
@@ -172,24 +196,96 @@ public class TopkPeer extends TopkBase {
 		keys = new long[S][H];
 		values = new long[S][H];
 
-		Hash h = new Hash(H);
+		HashMap<Integer, Integer> map = topkData.getDistribution();
+		int[] distinctKeys = new int[map.size()];
+		int[] weights = new int[map.size()];
+		int i = 0;
+		for (Entry<Integer, Integer> mapping : map.entrySet()) {
+			distinctKeys[i] = mapping.getKey();
+			weights[i] = mapping.getValue();
+			i++;
+		}
+
+		SketchTask[] tasks = new SketchTask[S];
 		for(int sketch=0; sketch<S; sketch++) {
+			Hash h = new Hash(H, hashAlgorithm);
 			/*
 			 * We need pairwise independent hash functions. Therefore we set the seed for the i-th hash
 			 * function to i*seed. If the hash function is good, this should be sufficient.
 			 */
 			h.setSeed((sketch + 1) * seed);
+			tasks[sketch] = new SketchTask(h, distinctKeys, weights, keys[sketch], values[sketch]);
+		}
+
+		if (S > 1 && distinctKeys.length >= MIN_PARALLEL_SKETCH_KEYS) {
+			getSketchPool().invoke(new SketchesTask(tasks));
+		} else {
+			for (SketchTask task : tasks) {
+				task.compute();
+			}
+		}
+	}
+
+	/**
+	 * @return the pool used to build the sketches
+	 */
+	private static synchronized ForkJoinPool getSketchPool() {
+		if (sketchPool == null) {
+			sketchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		return sketchPool;
+	}
+
+	/**
+	 * Builds all sketches in parallel.
+	 */
+	private static class SketchesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final SketchTask[] tasks;
 
-			HashMap<Integer, Integer> map = topkData.getDistribution();
-			for (Entry<Integer, Integer> mapping : map.entrySet()) {
-				int hashvalue = h.getHash(mapping.getKey());
+		SketchesTask(SketchTask[] tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
 
+	/**
+	 * Builds one sketch: hashes all keys and keeps the key with the largest value in each slot.
+	 */
+	private static class SketchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Hash hash;
+		private final int[] distinctKeys;
+		private final int[] weights;
+		private final long[] sketchKeys;
+		private final long[] sketchValues;
+
+		SketchTask(Hash hash, int[] distinctKeys, int[] weights, long[] sketchKeys, long[] sketchValues) {
+			this.hash = hash;
+			this.distinctKeys = distinctKeys;
+			this.weights = weights;
+			this.sketchKeys = sketchKeys;
+			this.sketchValues = sketchValues;
+		}
+
+		@Override
+		protected void compute() {
+			int[] hashvalues = new int[distinctKeys.length];
+			hash.getHashes(distinctKeys, hashvalues);
+			for (int i = 0; i < distinctKeys.length; i++) {
+				int hashvalue = hashvalues[i];
 				/*
 				 * Replace an entry if the value of the current entry is smaller than the one to be inserted.
 				 */
-				if (values[sketch][hashvalue] < mapping.getValue()) {
-					keys[sketch][hashvalue] = mapping.getKey();
-					values[sketch][hashvalue] = mapping.getValue();
+				if (sketchValues[hashvalue] < weights[i]) {
+					sketchKeys[hashvalue] = distinctKeys[i];
+					sketchValues[hashvalue] = weights[i];
 				}
 			}
 		}
@@ -250,15 +346,21 @@ public class TopkPeer extends TopkBase {
 					finalResultEvent.setVerificationSuccessful(true);
 					sendNotification(finalResultEvent);
 
-					writeOutputToFile();
+					if (Configuration.getInstance(myPeerName).getFinalResultsWriter() != null) {
+						writeOutputToConfiguration();
+					} else {
+						writeOutputToFile();
+					}
 
 					// check if there are more time slots to process
-					if(currentTimeSlot < timeSlotCount) {
+					if((timeSlotCount < 0 || currentTimeSlot < timeSlotCount)
+							&& !isGloballyStopped()) {
 						currentTimeSlot++;
 						initializeNewRound();
 					} else {
 						logger.info("No more data available... Stopping protocol threads...");
 						protocolStopper.stop();
+						notifyStopListener();
 					}
 				}
 			} else {
@@ -277,6 +379,12 @@ public class TopkPeer extends TopkBase {
 
 
 	public void openInputDirectory(String inputFolderName) throws Exception {
+		if (Configuration.getInstance(myPeerName).getInputDataReader() != null) {
+			// the distributions are delivered through the configuration
+			topkData = new TopkKeyWeightData();
+			return;
+		}
+
 		poller = new DirectoryPoller(stopper, new File(inputFolderName));
 
 		if(inputType.equals("TopkKeyWeightData")) {
@@ -300,9 +408,13 @@ public class TopkPeer extends TopkBase {
 		readOperationSuccessful = false;
 		try {
 			long start = System.currentTimeMillis();
-			topkData.setInputFile(poller.getNextFile());
-			topkData.openFile();
-			topkData.readNextTimeslot();
+			if (poller == null) {
+				readDataFromConfiguration();
+			} else {
+				topkData.setInputFile(poller.getNextFile());
+				topkData.openFile();
+				topkData.readNextTimeslot();
+			}
 			hashData();
 			readOperationSuccessful = true;
 			logger.info("INPUT: Time for reading and preprocessing distribution: "+(System.currentTimeMillis()-start)+"ms");
@@ -340,6 +452,32 @@ public class TopkPeer extends TopkBase {
 		Services.writeFile(line.toString(), fileName);
 	}
 
+	/**
+	 * Reads the distribution of the next time slot from the input data reader of the configuration.
+	 * A record is a list of key weight pairs: <code>key;weight;key;weight;...</code>
+	 */
+	protected void readDataFromConfiguration() {
+		String line = Configuration.getInstance(myPeerName).getInputDataReader().read();
+		logger.info(myPeerName + "  " + currentTimeSlot + " " + line);
+		((TopkKeyWeightData) topkData).readDistribution(line);
+	}
+
+	/**
+	 * Writes the output to the final results writer of the configuration.
+	 * The record has the same format as the input: <code>key;value;key;value;...</code>
+	 */
+	protected void writeOutputToConfiguration() {
+		StringBuilder sb = new StringBuilder();
+		for(Entry<Long, Long> entry:finalResults.entrySet()) {
+			if(sb.length() > 0) {
+				sb.append(";");
+			}
+			sb.append(entry.getKey()).append(";").append(entry.getValue());
+		}
+		logger.info(sb.toString());
+		Configuration.getInstance(myPeerName).getFinalResultsWriter().write(sb.toString());
+	}
+
 	/**
 	 * Infers from input file name whether it is a distribution of IP addresses or not.
 	 * @return true if keys are IP addresses.
@@ -353,13 +491,13 @@ public class TopkPeer extends TopkBase {
 	protected synchronized void initProperties() throws Exception {
 		super.initProperties();
 
-        // TODO: What is the right "peerName" here?
-        Properties properties = Configuration.getInstance("peerName").getProperties();
+        Properties properties = Configuration.getInstance(myPeerName).getProperties();
 
 		// Set properties specific to top-k input peers
         seed = Integer.valueOf(properties.getProperty(PROP_TOPK_SEED));
         inputType = properties.getProperty(PROP_TOPK_INPUT_TYPE, DEFAULT_TOPK_INPUT_TYPE);
-        logger.info("Top-k parameter seed="+seed);
+        hashAlgorithm = properties.getProperty(PROP_TOPK_HASH, DEFAULT_TOPK_HASH);
+        logger.info("Top-k parameter seed="+seed+", hash="+hashAlgorithm);
 	}
 
 	public CyclicBarrier getProtocolThreadsBarrier() {
@@ -16,6 +16,7 @@
 package ch.ethz.sepia.mpc.topk;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -27,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Observable;
 import java.util.Properties;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import org.slf4j.LoggerFactory;
@@ -37,6 +39,7 @@ import ch.ethz.sepia.events.FinalResultEvent;
 import ch.ethz.sepia.mpc.CountingBarrier;
 import ch.ethz.sepia.mpc.ShamirSharing;
 import ch.ethz.sepia.mpc.VectorData;
+import ch.ethz.sepia.mpc.protocolPrimitives.PredicateCache;
 import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
 import ch.ethz.sepia.mpc.protocolPrimitives.PrimitivesEnabledProtocol;
 import ch.ethz.sepia.services.Services;
@@ -81,7 +84,25 @@ public class TopkPrivacyPeer extends TopkBase {
 	private long[] ubound; // upper bound
 	private long[] lbound; // lower bound
 	private boolean[] bsFinished; // is the binary search finished?
-	private long[] biggercountShares; // [S]
+	private long[][] pivotTaus; // thresholds evaluated in the current round ([S][pivots])
+	protected long[][][] pivotLessThanShares; // shares of the lessThans of each threshold ([S][pivots][H])
+	private long[][] biggercountShares; // [S][pivots]
+	private long[][] lboundLessThanShares; // shares of the lessThans of the lower bound ([S][H])
+	private long[][] uboundLessThanShares; // shares of the lessThans of the upper bound ([S][H])
+
+	// state of the incremental mode, carried over from time slot to time slot ([S])
+	private boolean previousTauKnown; // was tau found in a previous time slot?
+	private long[] tauDrift; // change of tau between the last two time slots
+	private long[] searchStep; // step of the galloping search around the old tau (0: bisection)
+	private int[] searchDirection; // direction of the last decision (1: raise tau, -1: lower tau)
+	private long[] defaultStartTau; // the tau the non-incremental search would start with
+	private int[] bsRounds; // binary search rounds in this time slot
+	/** The slots that held the top-k candidates in the previous time slot [S][H] */
+	private boolean[][] previousCandidates;
+	/** Binary search rounds saved by the incremental and multi-pivot modes in this time slot (estimated) */
+	private int roundsSaved;
+	/** Binary search rounds saved by the incremental and multi-pivot modes in all time slots (estimated) */
+	private long totalRoundsSaved;
 
 	/** Shares of lessThans in binary search */
 	protected long[][] lessThanShares;
@@ -101,9 +122,24 @@ public class TopkPrivacyPeer extends TopkBase {
 	int collidingSlotCount;
 
 	public static final String PROP_TOPK_MAXTAU = "mpc.topk.maxtau"; // maximum value for tau
+	/** If true, the binary search starts at the tau of the previous time slot and searches
+	 * around it with a step adapted to the drift of tau (galloping search) */
+	public static final String PROP_TOPK_INCREMENTAL = "mpc.topk.incremental";
+	public static final String DEFAULT_TOPK_INCREMENTAL = "false";
+	/** The number of thresholds (pivots) evaluated per hash array in each round of the binary search.
+	 * With p pivots, each round shrinks the search interval by a factor of p+1. */
+	public static final String PROP_TOPK_PIVOTS = "mpc.topk.pivots";
+	public static final String DEFAULT_TOPK_PIVOTS = "1";
+
+	/** scope of the cached [aggregate<p/2] predicates of the binary search */
+	private static final String PREDICATE_SCOPE_AGGREGATES = "topk-aggregates";
 	/** The maximum tau to expect. This is used as the initial upper bound of the binary search for the
 	 * value separating the k-th from the (k+1)-th value. */
 	protected long maxTau;
+	/** Incremental mode (see {@link #PROP_TOPK_INCREMENTAL}) */
+	protected boolean incremental;
+	/** Pivots per round of the binary search (see {@link #PROP_TOPK_PIVOTS}) */
+	protected int pivots;
 
 
 	/**
@@ -115,7 +151,20 @@ public class TopkPrivacyPeer extends TopkBase {
 	 * @throws Exception
 	 */
 	public TopkPrivacyPeer(int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
-		super(myPeerIndex, cm, stopper);
+		this(makePeerName(myPeerIndex), myPeerIndex, cm, stopper);
+	}
+
+	/**
+	 * creates a new MPC topk privacy peer with the given name
+	 *
+	 * @param peerName		the name of this peer
+	 * @param myPeerIndex	This peer's number/index
+	 * @param stopper		Stopper (can be used to stop this thread)
+	 * @param cm 			the connection manager
+	 * @throws Exception
+	 */
+	public TopkPrivacyPeer(String peerName, int myPeerIndex, ConnectionManager cm, Stopper stopper) throws Exception {
+		super(peerName, myPeerIndex, cm, stopper);
 
 		peerInfos = new Vector<TopkPeerInfo>();
 		privacyPeerInfos = new Vector<TopkPeerInfo>();
@@ -126,12 +175,17 @@ public class TopkPrivacyPeer extends TopkBase {
 	protected synchronized void initProperties() throws Exception {
 		super.initProperties();
 
-        // TODO: What is the right "peerName" here?
-        Properties properties = Configuration.getInstance(makePeerName(getMyPeerIndex())).getProperties();
+        Properties properties = Configuration.getInstance(myPeerName).getProperties();
 
 		// Set properties specific to top-k privacy peers
         maxTau = Integer.valueOf(properties.getProperty(PROP_TOPK_MAXTAU));
-        logger.info("Top-k parameter maxTau="+maxTau);
+        incremental = Boolean.parseBoolean(properties.getProperty(PROP_TOPK_INCREMENTAL, DEFAULT_TOPK_INCREMENTAL));
+        pivots = Integer.valueOf(properties.getProperty(PROP_TOPK_PIVOTS, DEFAULT_TOPK_PIVOTS));
+        if (pivots < 1) {
+        	logger.warn("Invalid number of pivots: "+pivots+", using 1");
+        	pivots = 1;
+        }
+        logger.info("Top-k parameter maxTau="+maxTau+", incremental="+incremental+", pivots="+pivots);
 	}
 	/**
 	 * Initializes the privacy peer
@@ -168,6 +222,8 @@ public class TopkPrivacyPeer extends TopkBase {
 		aggregateValueShares = null;
 
 		primitives = new Primitives(randomAlgorithm, shamirSharesFieldOrder, degreeT, numberOfPrivacyPeers, myAlphaIndex, numberOfPrivacyPeers-1);
+		primitives.setWorkStealing(workStealing);
+		primitives.setEqualMethod(equalMethod);
 		createProtocolThreadsForInputPeers(inputPeerIDs);
 		createProtocolThreadsForPrivacyPeers(privacyPeerIDs, ppIndexMap);
 	}
@@ -494,13 +550,15 @@ public class TopkPrivacyPeer extends TopkBase {
 			finalResultEvent.setVerificationSuccessful(true);
 			sendNotification(finalResultEvent);
 			// check if there are more time slots to process
-			if(currentTimeSlot < timeSlotCount) {
+			if((timeSlotCount < 0 || currentTimeSlot < timeSlotCount)
+					&& !isGloballyStopped()) {
 				currentTimeSlot++;
 				logger.info("thread " + Thread.currentThread().getId() + " increased currentTimeSlot to "+currentTimeSlot+", will init new round now...");
 				initializeNewRound();
 			} else {
 				logger.info("No more data available... Stopping protocol threads...");
 				protocolStopper.stop();
+				notifyStopListener();
 			}
 		}
 	}
@@ -555,6 +613,14 @@ public class TopkPrivacyPeer extends TopkBase {
 		ubound = new long[S];
 		tau = new long[S];
 		lessThanShares = new long[S][H];
+		pivotTaus = new long[S][];
+		lboundLessThanShares = new long[S][];
+		uboundLessThanShares = new long[S][];
+		searchStep = new long[S];
+		searchDirection = new int[S];
+		defaultStartTau = new long[S];
+		bsRounds = new int[S];
+		previousTauKnown = oldtau!=null;
 		for(int s=0; s<S; s++) {
 			bsFinished[s] = false;
 			lbound[s] = 0;
@@ -562,17 +628,35 @@ public class TopkPrivacyPeer extends TopkBase {
 			if (oldtau==null) {
 				// maxTau must be big enough to ensure correctness.
 				// But initial tau can be smaller than maxTau/2 for faster search conversion
-				tau[s] = Math.round(maxTau/10.0);
+				defaultStartTau[s] = Math.round(maxTau/10.0);
 			} else {
 				// Use old tau as prediction for next round
-				tau[s] = oldtau[s]*2;
+				defaultStartTau[s] = oldtau[s]*2;
 			}
+			tau[s] = defaultStartTau[s];
+			if (incremental && previousTauKnown) {
+				// Start at the old tau and search around it. The step is the last drift of tau,
+				// or a quarter of the old tau if no drift is known yet (first incremental slot)
+				// or tau did not change.
+				tau[s] = oldtau[s];
+				long drift = Math.abs(tauDrift[s]);
+				if (drift == 0) {
+					drift = oldtau[s]/4;
+				}
+				searchStep[s] = Math.max(1, Math.min(drift, maxTau));
+			}
+			pivotTaus[s] = initialPivots(s);
 		}
 		if(oldtau==null) {
 			oldtau = new long[S];
+			tauDrift = new long[S];
 		}
 
-		primitives.getPredicateCache().clear();
+		PredicateCache cache = primitives.getPredicateCache();
+		logger.info("Predicate cache of previous binary search: " + cache
+				+ ", hit rate " + cache.getHitRate());
+		cache.clear(cache.scope(PREDICATE_SCOPE_AGGREGATES));
+		cache.resetStatistics();
 	}
 
 	/**
@@ -592,27 +676,38 @@ public class TopkPrivacyPeer extends TopkBase {
 	 * Schedules comparisons for a round of binary search.
 	 */
 	public void scheduleBinarySearchComparisons() {
-		int operationCount = getNumberOfOpenSearches()*H;
+		int operationCount = 0;
+		for(int s=0; s<S; s++) {
+			if (!bsFinished[s]) {
+				operationCount += pivotTaus[s].length*H;
+			}
+		}
 		initializeNewOperationSet(operationCount);
 		operationIDs = new int[operationCount];
 		int opCount=0;
+		int scope = primitives.getPredicateCache().scope(PREDICATE_SCOPE_AGGREGATES);
 
 		for(int s=0; s<S; s++) {
 			if (!bsFinished[s]) {
-				for(int elementCount=0; elementCount<H; elementCount++) {
-					operationIDs[opCount]=opCount;
-
-					long[] data = new long[5];
-					data[0] = aggregateValueShares[s][elementCount];
-					data[1] = tau[s];
-					data[2] = -1;
-					data[3] = (tau[s]<=primitives.getFieldSize()/2.0) ? 1 : 0;
-					data[4] = -1;
-
-					String keyA = "aggr-s+"+s+"e"+elementCount;
-					String keyB = null; // no secret value
-					String keyAB = null; // each value is only compared once to each tau
-					primitives.lessThan(opCount++, data, keyA, keyB, keyAB);
+				for(long pivot: pivotTaus[s]) {
+					for(int elementCount=0; elementCount<H; elementCount++) {
+						operationIDs[opCount]=opCount;
+
+						long[] data = new long[5];
+						data[0] = aggregateValueShares[s][elementCount];
+						data[1] = pivot;
+						data[2] = -1;
+						data[3] = (pivot<=primitives.getFieldSize()/2.0) ? 1 : 0;
+						data[4] = -1;
+
+						// the [aggregate<p/2] predicate is cached once it is computed and reused in
+						// the later rounds. The pivots of one round are scheduled concurrently, so
+						// each of them computes it in the first round.
+						long keyA = (long)s*H + elementCount;
+						long keyB = PredicateCache.NO_KEY; // no secret value
+						long keyAB = PredicateCache.NO_KEY; // each value is only compared once to each tau
+						primitives.lessThan(opCount++, data, scope, keyA, keyB, keyAB);
+					}
 				}
 			}
 		}
@@ -633,45 +728,54 @@ public class TopkPrivacyPeer extends TopkBase {
 
 	/**
 	 * Processes the comparison results and schedules comparisons of the number of values
-	 * above tau (biggercount). This is not very efficient as only a small number of lessThans
-	 * are performed in parallel.
+	 * above tau (biggercount). With a single pivot, this is not very efficient as only a small
+	 * number of lessThans are performed in parallel (see {@link #PROP_TOPK_PIVOTS}).
 	 */
 	public void scheduleBinarySearchBiggercount() {
-		biggercountShares = new long[S];
+		biggercountShares = new long[S][];
+		pivotLessThanShares = new long[S][][];
 
 		ShamirSharing ss = primitives.getMpcShamirSharing();
 		int opCount=0;
 		int failCount=0;
+		int operationCount=0;
 
 		// Retrieve the lessThans
 		for(int s=0; s<S; s++) {
 			if (!bsFinished[s]) {
-				for(int elementCount=0; elementCount<H; elementCount++) {
-					lessThanShares[s][elementCount] = primitives.getResult(opCount++)[0];
-					if (lessThanShares[s][elementCount] == -1) {
-						failCount++;
-					} else {
-						biggercountShares[s] = ss.modAdd(biggercountShares[s], ss.modSubtract(1, lessThanShares[s][elementCount]));
+				int pivotCount = pivotTaus[s].length;
+				biggercountShares[s] = new long[pivotCount];
+				pivotLessThanShares[s] = new long[pivotCount][H];
+				for(int p=0; p<pivotCount; p++) {
+					for(int elementCount=0; elementCount<H; elementCount++) {
+						pivotLessThanShares[s][p][elementCount] = primitives.getResult(opCount++)[0];
+						if (pivotLessThanShares[s][p][elementCount] == -1) {
+							failCount++;
+						} else {
+							biggercountShares[s][p] = ss.modAdd(biggercountShares[s][p], ss.modSubtract(1, pivotLessThanShares[s][p][elementCount]));
+						}
 					}
 				}
+				operationCount += 2*pivotCount;
 			}
 		}
 		if (failCount>0) {
 			logger.error("+++: LessThan failed for "+failCount+" of "+opCount+" operations.");
 		}
 
-		// Schedule comparison of [biggercount]<K and [biggercount]<K+1
-		int operationCount = getNumberOfOpenSearches()*2;
+		// Schedule comparison of [biggercount]<K and [biggercount]<K+1 for each pivot
 		initializeNewOperationSet(operationCount);
 		operationIDs = new int[operationCount];
 		opCount=0;
 
 		for(int s=0; s<S; s++) {
 			if (!bsFinished[s]) {
-				operationIDs[opCount]=opCount;
-
-				primitives.smallIntervalTest(opCount++, new long[]{biggercountShares[s], 0, K-1});
-				primitives.equal(opCount++, new long[]{biggercountShares[s], K});
+				for(int p=0; p<pivotTaus[s].length; p++) {
+					operationIDs[opCount]=opCount;
+					primitives.smallIntervalTest(opCount++, new long[]{biggercountShares[s][p], 0, K-1});
+					operationIDs[opCount]=opCount;
+					primitives.equal(opCount++, new long[]{biggercountShares[s][p], K});
+				}
 			}
 		}
 
@@ -681,29 +785,37 @@ public class TopkPrivacyPeer extends TopkBase {
 	 * Schedules the reconstruction of [biggercount]<K and [biggercount]<K+1.
 	 */
 	public void scheduleBinarySearchBiggercountReconstruction() {
-		long[] bcLessThanKShares = new long[S];
-		long[] bcEqualsKShares = new long[S];
+		long[][] bcLessThanKShares = new long[S][];
+		long[][] bcEqualsKShares = new long[S][];
 
 		int opCount=0;
+		int operationCount=0;
 		for(int s=0; s<S; s++) {
 			if (!bsFinished[s]) {
-				bcLessThanKShares[s] = primitives.getResult(opCount++)[0];
-				bcEqualsKShares[s] = primitives.getResult(opCount++)[0];
+				int pivotCount = pivotTaus[s].length;
+				bcLessThanKShares[s] = new long[pivotCount];
+				bcEqualsKShares[s] = new long[pivotCount];
+				for(int p=0; p<pivotCount; p++) {
+					bcLessThanKShares[s][p] = primitives.getResult(opCount++)[0];
+					bcEqualsKShares[s][p] = primitives.getResult(opCount++)[0];
+				}
+				operationCount += 2*pivotCount;
 			}
 		}
 
 		// Schedules reconstruction
-		int operationCount = 2*getNumberOfOpenSearches();
 		initializeNewOperationSet(operationCount);
 		operationIDs = new int[operationCount];
 
 		opCount=0;
 		for(int s=0; s<S; s++) {
 			if (!bsFinished[s]) {
-				operationIDs[opCount]=opCount;
-				primitives.reconstruct(opCount++, new long[]{bcLessThanKShares[s]});
-				operationIDs[opCount]=opCount;
-				primitives.reconstruct(opCount++, new long[]{bcEqualsKShares[s]});
+				for(int p=0; p<pivotTaus[s].length; p++) {
+					operationIDs[opCount]=opCount;
+					primitives.reconstruct(opCount++, new long[]{bcLessThanKShares[s][p]});
+					operationIDs[opCount]=opCount;
+					primitives.reconstruct(opCount++, new long[]{bcEqualsKShares[s][p]});
+				}
 			}
 		}
 
@@ -712,52 +824,279 @@ public class TopkPrivacyPeer extends TopkBase {
 
 	/**
 	 * Checks if the correct threshold tau was found. Adapts the upper and lower bounds if not finished.
+	 * The bounds are the highest pivot that is too low and the lowest pivot that is too high.
 	 */
 	public void binarySearchDecision() {
-		boolean[] bcLessThanK = new boolean[S];
-		boolean[] bcEqualsK = new boolean[S];
+		boolean[][] bcLessThanK = new boolean[S][];
+		boolean[][] bcEqualsK = new boolean[S][];
 		int opCount=0;
-		StringBuilder sb = new StringBuilder("+++: Finding Binary Search Decision...\n");
 		for(int s=0; s<S; s++) {
-			if (!bsFinished[s]) {
-				bcLessThanK[s] = primitives.getResult(opCount++)[0]==1;
-				bcEqualsK[s] = primitives.getResult(opCount++)[0]==1;
+			if(!bsFinished[s]) {
+				bcLessThanK[s] = new boolean[pivotTaus[s].length];
+				bcEqualsK[s] = new boolean[pivotTaus[s].length];
+				for(int p=0; p<pivotTaus[s].length; p++) {
+					bcLessThanK[s][p] = primitives.getResult(opCount++)[0]==1;
+					bcEqualsK[s][p] = primitives.getResult(opCount++)[0]==1;
+				}
 			}
+		}
+		binarySearchDecision(bcLessThanK, bcEqualsK);
+	}
 
-			sb.append("S="+s+", Tau="+tau[s]+", bc<K: "+bcLessThanK[s] + " bc==K: "+bcEqualsK[s]+"\n");
-
+	/**
+	 * Adapts the bounds and chooses the pivots of the next round from the reconstructed
+	 * comparisons of the biggercount of each pivot.
+	 * @param bcLessThanK	[biggercount]&lt;K of each pivot of the open searches ([S][pivots])
+	 * @param bcEqualsK		[biggercount]==K of each pivot of the open searches ([S][pivots])
+	 */
+	void binarySearchDecision(boolean[][] bcLessThanK, boolean[][] bcEqualsK) {
+		StringBuilder sb = new StringBuilder("+++: Finding Binary Search Decision...\n");
+		for(int s=0; s<S; s++) {
 			if(!bsFinished[s]) {
-				// Adapt bounds
-				if (bcEqualsK[s]) {
-					bsFinished[s] = true;
-				} else {
-					if (bcLessThanK[s]) {
+				bsRounds[s]++;
+				int found = -1;
+				int direction = 0;
+				for(int p=0; p<pivotTaus[s].length; p++) {
+					long pivot = pivotTaus[s][p];
+					sb.append("S="+s+", Tau="+pivot+", bc<K: "+bcLessThanK[s][p] + " bc==K: "+bcEqualsK[s][p]+"\n");
+
+					// Adapt bounds
+					if (bcEqualsK[s][p]) {
+						if (found < 0) {
+							found = p;
+						}
+					} else if (bcLessThanK[s][p]) {
 						// Tau is too high, lower it
-						ubound[s] = tau[s];
+						direction = -1;
+						if (pivot <= ubound[s] || uboundLessThanShares[s] == null) {
+							ubound[s] = pivot;
+							uboundLessThanShares[s] = pivotLessThanShares[s][p];
+						}
 					} else {
 						// Tau is too low, raise it
-						lbound[s] = tau[s];
+						direction = 1;
+						if (pivot >= lbound[s] || lboundLessThanShares[s] == null) {
+							lbound[s] = pivot;
+							lboundLessThanShares[s] = pivotLessThanShares[s][p];
+						}
 					}
+				}
+
+				if (found >= 0) {
+					tau[s] = pivotTaus[s][found];
+					lessThanShares[s] = pivotLessThanShares[s][found];
+					bsFinished[s] = true;
+				} else if (pivots == 1) {
 					long oldTau = tau[s];
-					tau[s] = Math.round((lbound[s]+ubound[s])/2.0);
+					tau[s] = nextTau(s, direction);
 
 					if(tau[s]==oldTau) {
 						// There are some items with the same values. Stop search.
+						lessThanShares[s] = pivotLessThanShares[s][0];
 						bsFinished[s] = true;
 						sb.append("Binary search STOPPED beacuse new Tau equals old Tau!\n");
+					} else {
+						pivotTaus[s] = new long[]{tau[s]};
+					}
+				} else {
+					pivotTaus[s] = evenlySpacedPivots(lbound[s], ubound[s], pivots);
+					if (pivotTaus[s].length == 0) {
+						// There are some items with the same values. Stop search at the lower bound,
+						// which keeps more than K candidates.
+						if (lboundLessThanShares[s] != null) {
+							tau[s] = lbound[s];
+							lessThanShares[s] = lboundLessThanShares[s];
+						} else {
+							tau[s] = ubound[s];
+							lessThanShares[s] = uboundLessThanShares[s];
+						}
+						bsFinished[s] = true;
+						sb.append("Binary search STOPPED beacuse no Tau is left between the bounds!\n");
 					}
 				}
 			}
 			if (bsFinished[s]) {
 				sb.append("Binary search FINISHED. Tau="+tau[s]+", bounds=["+lbound[s]+", "+ubound[s]+"]\n");
+				if (previousTauKnown) {
+					tauDrift[s] = tau[s]-oldtau[s];
+				}
 				oldtau[s] = tau[s];
 			}
 			else
-				sb.append("New Parameters: Tau="+tau[s]+", bounds=["+lbound[s]+", "+ubound[s]+"]\n");
+				sb.append("New Parameters: Tau="+Arrays.toString(pivotTaus[s])+", bounds=["+lbound[s]+", "+ubound[s]+"]\n");
 
 		}
 		logger.info(sb.toString());
 
+		if (isBinarySearchFinished()) {
+			reportBinarySearchRounds();
+		}
+	}
+
+	/**
+	 * Chooses the pivots of the first round. Besides the start tau, the pivots are spread evenly
+	 * over the search interval or, in the incremental mode, around the old tau with doubling
+	 * distances.
+	 * @param s the hash array
+	 * @return the pivots in ascending order
+	 */
+	private long[] initialPivots(int s) {
+		if (pivots == 1) {
+			return new long[]{tau[s]};
+		}
+		TreeSet<Long> chosen = new TreeSet<Long>();
+		chosen.add(tau[s]);
+		if (searchStep[s] > 0) {
+			for(long offset=searchStep[s]; chosen.size()<pivots && (tau[s]-offset>lbound[s] || tau[s]+offset<ubound[s]); offset*=2) {
+				if (tau[s]-offset > lbound[s]) {
+					chosen.add(tau[s]-offset);
+				}
+				if (chosen.size()<pivots && tau[s]+offset < ubound[s]) {
+					chosen.add(tau[s]+offset);
+				}
+			}
+			// the pivots bracket the old tau, subsequent rounds split the bracket evenly
+			searchStep[s] = 0;
+		}
+		for(long pivot: evenlySpacedPivots(lbound[s], ubound[s], pivots-1)) {
+			if (chosen.size() < pivots) {
+				chosen.add(pivot);
+			}
+		}
+		long[] result = new long[chosen.size()];
+		int i=0;
+		for(long pivot: chosen) {
+			result[i++] = pivot;
+		}
+		return result;
+	}
+
+	/**
+	 * Splits the interval (lower, upper) into count+1 parts of (nearly) equal size.
+	 * @param lower the lower bound (exclusive)
+	 * @param upper the upper bound (exclusive)
+	 * @param count the maximum number of pivots
+	 * @return distinct pivots in ascending order, fewer than count if the interval is too small
+	 */
+	static long[] evenlySpacedPivots(long lower, long upper, int count) {
+		int n = (int) Math.max(0, Math.min(count, upper-lower-1));
+		long[] result = new long[n];
+		for(int i=0; i<n; i++) {
+			result[i] = lower + Math.round((i+1)*(upper-lower)/(n+1.0));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the next tau of a binary search. In the incremental mode, the search first gallops
+	 * away from the old tau (doubling the step) until the decision changes direction, i.e., until
+	 * the threshold is bracketed. Then (and always in the normal mode) the interval is bisected.
+	 * @param s the hash array
+	 * @param direction 1 if tau has to be raised, -1 if it has to be lowered
+	 * @return the next tau
+	 */
+	private long nextTau(int s, int direction) {
+		if (searchStep[s] > 0 && searchDirection[s] != 0 && searchDirection[s] != direction) {
+			// the threshold is bracketed
+			searchStep[s] = 0;
+		}
+		searchDirection[s] = direction;
+		if (searchStep[s] > 0) {
+			long next = tau[s] + direction*searchStep[s];
+			searchStep[s] *= 2;
+			if (next > lbound[s] && next < ubound[s]) {
+				return next;
+			}
+			searchStep[s] = 0;
+		}
+		return Math.round((lbound[s]+ubound[s])/2.0);
+	}
+
+	/**
+	 * Logs the rounds of the binary search of this time slot. In the incremental and multi-pivot
+	 * modes, it also logs the rounds saved. These are estimated by replaying the normal search against the taus found.
+	 */
+	private void reportBinarySearchRounds() {
+		int rounds = 0;
+		int defaultRounds = 0;
+		for (int s=0; s<S; s++) {
+			rounds = Math.max(rounds, bsRounds[s]);
+			defaultRounds = Math.max(defaultRounds, simulateDefaultSearch(defaultStartTau[s], tau[s]));
+		}
+		boolean compared = incremental || pivots > 1;
+		roundsSaved = compared ? defaultRounds-rounds : 0;
+		totalRoundsSaved += roundsSaved;
+		logger.info(Services.getFilterPassingLogPrefix()+"Binary search of time slot "+currentTimeSlot+": "+rounds
+				+" rounds"+(compared ? " (normal search: ~"+defaultRounds+", saved: "+roundsSaved
+				+", saved in total: "+totalRoundsSaved+")" : ""));
+	}
+
+	/**
+	 * Replays the normal binary search (bisection of [0, maxTau]) for a known result.
+	 * @param startTau the tau the search starts with
+	 * @param resultTau the tau the search has to find
+	 * @return the number of rounds
+	 */
+	private int simulateDefaultSearch(long startTau, long resultTau) {
+		long l = 0;
+		long u = maxTau;
+		long t = startTau;
+		int rounds = 0;
+		while (true) {
+			rounds++;
+			if (t == resultTau) {
+				return rounds;
+			}
+			if (t > resultTau) {
+				u = t;
+			} else {
+				l = t;
+			}
+			long next = Math.round((l+u)/2.0);
+			if (next == t) {
+				return rounds;
+			}
+			t = next;
+		}
+	}
+
+	/**
+	 * @return the thresholds evaluated in the current round of the binary search ([S][pivots])
+	 */
+	long[][] getPivotTaus() {
+		return pivotTaus;
+	}
+
+	/**
+	 * @return the thresholds found by the binary search ([S])
+	 */
+	long[] getTau() {
+		return tau;
+	}
+
+	/**
+	 * @return the binary search rounds of the current time slot
+	 */
+	public int getBinarySearchRounds() {
+		int rounds = 0;
+		for (int s=0; s<S; s++) {
+			rounds = Math.max(rounds, bsRounds[s]);
+		}
+		return rounds;
+	}
+
+	/**
+	 * @return the binary search rounds saved by the incremental and multi-pivot modes in the last time slot (estimated)
+	 */
+	public int getRoundsSaved() {
+		return roundsSaved;
+	}
+
+	/**
+	 * @return the binary search rounds saved by the incremental and multi-pivot modes in all time slots (estimated)
+	 */
+	public long getTotalRoundsSaved() {
+		return totalRoundsSaved;
 	}
 
 	/**
@@ -787,9 +1126,29 @@ public class TopkPrivacyPeer extends TopkBase {
 		lessThans = new boolean[S][H];
 
 		int opCount=0;
+		int candidates=0;
+		int carriedOver=0;
 		for(int s=0; s<S; s++) {
 			for(int elementCount=0; elementCount<H; elementCount++) {
 				lessThans[s][elementCount] = primitives.getResult(opCount++)[0]==1;
+				if (!lessThans[s][elementCount]) {
+					candidates++;
+					if (previousCandidates!=null && previousCandidates[s][elementCount]) {
+						carriedOver++;
+					}
+				}
+			}
+		}
+
+		if (incremental) {
+			if (previousCandidates!=null) {
+				logger.info("Incremental top-k: "+carriedOver+" of "+candidates+" candidate slots were candidates in the previous time slot");
+			}
+			previousCandidates = new boolean[S][H];
+			for(int s=0; s<S; s++) {
+				for(int elementCount=0; elementCount<H; elementCount++) {
+					previousCandidates[s][elementCount] = !lessThans[s][elementCount];
+				}
 			}
 		}
 	}
@@ -947,143 +1306,48 @@ public class TopkPrivacyPeer extends TopkBase {
 	}
 
 	/**
-	 * Initializes the last step of the collision resolution: finding the key that
-	 * contributes most to each aggregate value.
+	 * Schedules the last step of the collision resolution: finding the key that
+	 * contributes most to each aggregate value. There is one argMax operation per
+	 * colliding slot over the aggregate values of all input peers, which
+	 * returns the maximum value together with the key of the input peer it
+	 * belongs to.
 	 */
-	public void initMaximumSearch() {
-		// Init the maximum variables
-		maxKeyPerSlotShares = new long[S][H];
-		maxValuePerSlotShares = new long[S][H];
-
-		// use values of this IP for initialization
-		int ipIndex = 0;
-
-		// Init all keys/values with the first key/value in each slot
-		for(int s=0; s<S; s++) {
-			for(int element=0; element<H; element++) {
-				if (!lessThans[s][element]) {
-					maxKeyPerSlotShares[s][element] = getPeerInfoByIndex(ipIndex).getInitialKeyShares()[s][element];
-					maxValuePerSlotShares[s][element] = aggrValuesPerKeyShares[s][element][ipIndex];
-				}
-			}
-		}
-	}
-
-	/**
-	 * Schedule one round of maximum comparisons across all slots.
-	 * @param ipIndex Compares the current maximum value with the one of input peer ipIndex.
-	 */
-	public void scheduleMaximumComparisons(int ipIndex) {
-
-		/*
-		 * TODO: For k<=17 (S=2), collision resolution takes around 15s. Then, for k=18 and
-		 * above, it takes only 4s and scales with k. Why is this gap between 17 and 18??
-		 * As a work-around, add dummy operations to sustain a minimum operation load.
-		 */
-		int operationCount = Math.max(collidingSlotCount, 40);
-//		int operationCount = collidingSlotCount;
-		initializeNewOperationSet(operationCount);
-		operationIDs = new int[operationCount];
+	public void scheduleMaximumSearch() {
+		initializeNewOperationSet(collidingSlotCount);
+		operationIDs = new int[collidingSlotCount];
 		int opCount=0;
 
-		int firstElementIndex=-1;
 		for (int s = 0; s < S; s++) {
 			for (int element = 0; element < H; element++) {
 				if (!lessThans[s][element]) {
-					operationIDs[opCount] = opCount;
-
-					long[] data = new long[5];
-					data[0] = maxValuePerSlotShares[s][element];
-					data[1] = aggrValuesPerKeyShares[s][element][ipIndex];
-					data[2] = -1;
-					data[3] = -1;
-					data[4] = -1;
-					primitives.lessThan(opCount++, data);
-
-					if (firstElementIndex<0) {
-						firstElementIndex = element;
+					long[] keyShares = new long[numberOfInputPeers];
+					for (int ip = 0; ip < numberOfInputPeers; ip++) {
+						keyShares[ip] = getPeerInfoByIndex(ip).getInitialKeyShares()[s][element];
 					}
-				}
-			}
-		}
-
-		// Add the dummy operations
-		while(opCount<operationCount) {
-			operationIDs[opCount] = opCount;
-
-			// We're reusing random numbers, so also use the same elements.
-			long[] data = new long[5];
-			data[0] = maxValuePerSlotShares[0][firstElementIndex];
-			data[1] = aggrValuesPerKeyShares[0][firstElementIndex][ipIndex];
-			data[2] = -1;
-			data[3] = -1;
-			data[4] = -1;
-
-			primitives.lessThan(opCount++, data);
-		}
-
-	}
-
-	/**
-	 * Schedule one round of maximum selection across all slots.
-	 * @param ipIndex the IP index.
-	 */
-	public void scheduleMaximumSelection(int ipIndex) {
-		// retrieve the lessThans
-		int opCount=0;
-		long compShares[][] = new long[S][H];
-		for (int s = 0; s < S; s++) {
-			for (int element = 0; element < H; element++) {
-				if (!lessThans[s][element]) {
-					compShares[s][element] = primitives.getResult(opCount++)[0];
-				}
-			}
-		}
-
-		// Schedule the condition selections. If a lessThan is true, we select the new IP's value/key,
-		// otherwise the old maximum value/key is selected.
-		int operationCount = collidingSlotCount*4;
-		initializeNewOperationSet(operationCount);
-		operationIDs = new int[operationCount];
-		opCount=0;
-
-		ShamirSharing ss = primitives.getMpcShamirSharing();
-		for (int s = 0; s < S; s++) {
-			for (int element = 0; element < H; element++) {
-				if (!lessThans[s][element]) {
 					operationIDs[opCount] = opCount;
-					long notCompShare = ss.modSubtract(1, compShares[s][element]);
-
-					primitives.multiply(opCount++, new long[]{compShares[s][element], aggrValuesPerKeyShares[s][element][ipIndex]});
-					primitives.multiply(opCount++, new long[]{compShares[s][element], getPeerInfoByIndex(ipIndex).getInitialKeyShares()[s][element]});
-					primitives.multiply(opCount++, new long[]{notCompShare, maxValuePerSlotShares[s][element]});
-					primitives.multiply(opCount++, new long[]{notCompShare, maxKeyPerSlotShares[s][element]});
+					primitives.argMax(opCount++, aggrValuesPerKeyShares[s][element], keyShares, -1);
 				}
 			}
 		}
 	}
 
 	/**
-	 * Retrieves one round of maximum selection across all slots. Computes the new maxima.
-	 * @param ipIndex the IP index.
+	 * Retrieves the maximum value and its key of each colliding slot.
 	 */
-	public void retrieveMaximumSelection(int ipIndex) {
+	public void retrieveMaximumSearch() {
+		maxKeyPerSlotShares = new long[S][H];
+		maxValuePerSlotShares = new long[S][H];
+
 		int opCount=0;
-		ShamirSharing ss = primitives.getMpcShamirSharing();
 		for (int s = 0; s < S; s++) {
 			for (int element = 0; element < H; element++) {
 				if (!lessThans[s][element]) {
-					long compNewValueShare =  primitives.getResult(opCount++)[0];
-					long compNewKeyShare =  primitives.getResult(opCount++)[0];
-					long notCompOldMaxValueShare =  primitives.getResult(opCount++)[0];
-					long notCompOldMaxKeyShare =  primitives.getResult(opCount++)[0];
-
-					maxValuePerSlotShares[s][element]= ss.modAdd(compNewValueShare, notCompOldMaxValueShare);
-					maxKeyPerSlotShares[s][element]= ss.modAdd(compNewKeyShare, notCompOldMaxKeyShare);
+					long[] result = primitives.getResult(opCount++);
+					maxValuePerSlotShares[s][element] = result[0];
+					maxKeyPerSlotShares[s][element] = result[1];
 				}
 			}
 		}
-
 	}
 
 	/**
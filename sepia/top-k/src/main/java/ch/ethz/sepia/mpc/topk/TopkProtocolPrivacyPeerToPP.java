@@ -208,43 +208,21 @@ public class TopkProtocolPrivacyPeerToPP extends TopkProtocol {
 			// 4b. Global collision resolution, find max key per slot
 			// ---------------------------
 
+			if (ppThreadsBarrier.await() == 0) {
+				privacyPeer.scheduleMaximumSearch();
+				logger.info(Services.getFilterPassingLogPrefix()
+						+ "Collision resolution: selecting the maximum value");
+			}
 			ppThreadsBarrier.await();
 			if (!doOperations()) {
-				logger.error("Random number generation for maximum search failed. returning!");
+				logger.error("Maximum value search failed. returning!");
 				return;
 			}
-			ppThreadsBarrier.await();
 
 			if (ppThreadsBarrier.await() == 0) {
-				privacyPeer.initMaximumSearch();
+				privacyPeer.retrieveMaximumSearch();
 			}
 			ppThreadsBarrier.await();
-			for (int ip = 1; ip < privacyPeer.getNumberOfInputPeers(); ip++) {
-				if (ppThreadsBarrier.await() == 0) {
-					privacyPeer.scheduleMaximumComparisons(ip);
-					logger.info(Services.getFilterPassingLogPrefix()
-							+ "Collision resolution: selecting the maximum value, IP=" + ip);
-				}
-				ppThreadsBarrier.await();
-				if (!doOperations()) {
-					logger.error("Maximum value comparison failed. returning!");
-					return;
-				}
-
-				if (ppThreadsBarrier.await() == 0) {
-					privacyPeer.scheduleMaximumSelection(ip);
-				}
-				ppThreadsBarrier.await();
-				if (!doOperations()) {
-					logger.error("Maximum value selection failed. returning!");
-					return;
-				}
-
-				if (ppThreadsBarrier.await() == 0) {
-					privacyPeer.retrieveMaximumSelection(ip);
-				}
-				ppThreadsBarrier.await();
-			}
 
 			// DEBUG code:
 			// if(ppThreadsBarrier.await()==0) {
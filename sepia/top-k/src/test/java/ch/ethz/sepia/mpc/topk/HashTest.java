@@ -0,0 +1,125 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.topk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the hash functions of the top-k sketches.
+ */
+public class HashTest extends TestCase {
+
+	/** ranges to test with */
+	private static final int[] RANGES = {1, 2, 3, 1000, 1024, 65537, 1 << 20, Integer.MAX_VALUE};
+
+	/**
+	 * SHA-1 stays the default, such that peers with and without an explicit
+	 * algorithm build the same sketches.
+	 */
+	public void testDefaultAlgorithm() throws Exception {
+		assertEquals(Hash.ALGORITHM_SHA1, Hash.DEFAULT_ALGORITHM);
+		assertEquals(Hash.ALGORITHM_SHA1, TopkPeer.DEFAULT_TOPK_HASH);
+
+		Hash defaultHash = new Hash(1024);
+		Hash sha1Hash = new Hash(1024, Hash.ALGORITHM_SHA1);
+		sha1Hash.setSeed(defaultHash.getSeed());
+		Random random = new Random(43);
+		for (int i = 0; i < 1000; i++) {
+			int value = random.nextInt();
+			assertEquals(sha1Hash.getHash(value), defaultHash.getHash(value));
+		}
+	}
+
+	/**
+	 * The SHA-1 mode has to produce the same hashes as the former implementation,
+	 * which wrote the seed and the value through a DataOutputStream.
+	 */
+	public void testSha1MatchesFormerImplementation() throws Exception {
+		Random random = new Random(1);
+		for (int H : RANGES) {
+			Hash hash = new Hash(H, Hash.ALGORITHM_SHA1);
+			for (int i = 0; i < 1000; i++) {
+				int seed = i < 10 ? i : random.nextInt();
+				int value = i < 10 ? -i : random.nextInt();
+				hash.setSeed(seed);
+				assertEquals("seed " + seed + ", value " + value + ", H " + H,
+						formerSha1Hash(seed, value, H), hash.getHash(value));
+			}
+		}
+	}
+
+	/**
+	 * All hashes of both algorithms have to be in [0, H).
+	 */
+	public void testRange() throws Exception {
+		Random random = new Random(2);
+		int[] values = new int[1000];
+		int[] hashes = new int[values.length];
+		for (String algorithm : new String[] {Hash.ALGORITHM_SHA1, Hash.ALGORITHM_TABULATION}) {
+			for (int H : RANGES) {
+				Hash hash = new Hash(H, algorithm);
+				for (int i = 0; i < values.length; i++) {
+					values[i] = i < 4 ? new int[] {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}[i] : random.nextInt();
+				}
+				hash.getHashes(values, hashes);
+				for (int i = 0; i < values.length; i++) {
+					assertTrue(algorithm + " hash " + hashes[i] + " of " + values[i] + " not in [0," + H + ")",
+							hashes[i] >= 0 && hashes[i] < H);
+					assertEquals(hashes[i], hash.getHash(values[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hashes with the same seed agree, such that all peers build the same sketches.
+	 */
+	public void testSameSeedSameHashes() throws Exception {
+		Hash hash1 = new Hash(4096, Hash.ALGORITHM_TABULATION);
+		Hash hash2 = new Hash(4096, Hash.ALGORITHM_TABULATION);
+		hash2.setSeed(hash1.getSeed());
+		for (int value = -1000; value < 1000; value++) {
+			assertEquals(hash1.getHash(value), hash2.getHash(value));
+		}
+	}
+
+	/**
+	 * The hash of the former SHA-1 implementation of {@link Hash}.
+	 */
+	private static int formerSha1Hash(int seed, int value, int H) throws Exception {
+		ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream(8);
+		DataOutputStream dataOutputStream = new DataOutputStream(arrayOutputStream);
+		dataOutputStream.writeInt(seed);
+		dataOutputStream.writeInt(value);
+		dataOutputStream.flush();
+		byte[] hashbytes = MessageDigest.getInstance("SHA-1").digest(arrayOutputStream.toByteArray());
+
+		int hash = 0;
+		for (int i = 0; i < 4; i++) {
+			hash += ((int) hashbytes[i]) << (i * 8);
+		}
+		hash = hash % H;
+		if (hash < 0) {
+			hash = -hash;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,247 @@
+// Copyright 2010-2012 Martin Burkhart (martibur@ethz.ch)
+//
+// This file is part of SEPIA. SEPIA is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation, either version 3
+// of the License, or (at your option) any later version.
+//
+// SEPIA is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with SEPIA.  If not, see <http://www.gnu.org/licenses/>.
+
+package ch.ethz.sepia.mpc.topk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.ethz.sepia.mpc.protocolPrimitives.Primitives;
+import ch.ethz.sepia.services.Stopper;
+
+/**
+ * Test cases for the binary search for tau of the top-k privacy peer. The
+ * comparisons of the biggercount with K are not computed by MPC but derived
+ * from known aggregate values, which drives the search decisions
+ * deterministically.
+ */
+public class TopkPrivacyPeerTest extends TestCase {
+
+	private static final long FIELD_SIZE = 2147352577;
+	private static final long MAX_TAU = 1000;
+	private static final int K = 3;
+
+	/**
+	 * A privacy peer without connections searching tau for given aggregate values.
+	 */
+	private static class TestPrivacyPeer extends TopkPrivacyPeer {
+		/** the pivots evaluated in each round of the last search */
+		private final List<long[]> rounds = new ArrayList<long[]>();
+
+		public TestPrivacyPeer(boolean incremental, int pivots) throws Exception {
+			super("PrivacyPeer-0", 0, null, new Stopper());
+			S = 1;
+			K = TopkPrivacyPeerTest.K;
+			maxTau = MAX_TAU;
+			this.incremental = incremental;
+			this.pivots = pivots;
+			primitives = new Primitives("SHA1PRNG", FIELD_SIZE, -1, 3, 0, 1);
+		}
+
+		/**
+		 * runs the binary search of one time slot
+		 *
+		 * @param values	the aggregate values of the hash array
+		 * @return			the tau found
+		 */
+		public long search(long... values) {
+			H = values.length;
+			rounds.clear();
+			initBinarySearch();
+			while (!isBinarySearchFinished()) {
+				long[] pivotTaus = getPivotTaus()[0];
+				rounds.add(pivotTaus.clone());
+				pivotLessThanShares = new long[1][pivotTaus.length][H];
+				boolean[][] bcLessThanK = new boolean[1][pivotTaus.length];
+				boolean[][] bcEqualsK = new boolean[1][pivotTaus.length];
+				for (int p = 0; p < pivotTaus.length; p++) {
+					int biggercount = 0;
+					for (long value : values) {
+						if (value >= pivotTaus[p]) {
+							biggercount++;
+						}
+					}
+					bcLessThanK[0][p] = biggercount < K;
+					bcEqualsK[0][p] = biggercount == K;
+				}
+				binarySearchDecision(bcLessThanK, bcEqualsK);
+			}
+			assertEquals(rounds.size(), getBinarySearchRounds());
+			return getTau()[0];
+		}
+
+		/**
+		 * @return the pivots of each round of the last search
+		 */
+		public List<long[]> getRounds() {
+			return rounds;
+		}
+
+		/**
+		 * @return the single pivot of each round of the last search
+		 */
+		public long[] getSearchedTaus() {
+			long[] taus = new long[rounds.size()];
+			for (int i = 0; i < taus.length; i++) {
+				assertEquals(1, rounds.get(i).length);
+				taus[i] = rounds.get(i)[0];
+			}
+			return taus;
+		}
+	}
+
+	/**
+	 * The incremental search starts at the old tau. Without a known drift it
+	 * gallops with a quarter of the old tau, then with the last drift, doubling
+	 * the step until the threshold is bracketed. Then it bisects the bracket.
+	 */
+	public void testIncrementalSearch() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(true, 1);
+
+		// first time slot: normal search starting at maxTau/10
+		assertEquals(100, peer.search(500, 400, 300, 10, 20, 30));
+		assertArrayEquals(new long[] {100}, peer.getSearchedTaus());
+		assertEquals(0, peer.getRoundsSaved());
+
+		// no drift known yet: step 100/4=25, bracketed at 125, bisection of (100, 125)
+		assertEquals(107, peer.search(500, 400, 110, 100, 10, 20));
+		assertArrayEquals(new long[] {100, 125, 113, 107}, peer.getSearchedTaus());
+		// the normal search from 2*oldtau=200 needs 200, 100, 150, 125, 113, 107
+		assertEquals(2, peer.getRoundsSaved());
+
+		// drift 7: steps 7, 14, 28 raise the lower bound to 128, 156 is too high
+		assertEquals(142, peer.search(500, 400, 150, 140, 10, 20));
+		assertArrayEquals(new long[] {107, 114, 128, 156, 142}, peer.getSearchedTaus());
+		// the normal search from 214 needs 214, 107, 161, 134, 148, 141, 145, 143, 142
+		assertEquals(4, peer.getRoundsSaved());
+		assertEquals(6, peer.getTotalRoundsSaved());
+	}
+
+	/**
+	 * Without the incremental mode, the search bisects from 2*oldtau and no
+	 * rounds are reported as saved.
+	 */
+	public void testNormalSearch() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(false, 1);
+		assertEquals(100, peer.search(500, 400, 300, 10, 20, 30));
+		assertEquals(107, peer.search(500, 400, 110, 100, 10, 20));
+		assertArrayEquals(new long[] {200, 100, 150, 125, 113, 107}, peer.getSearchedTaus());
+		assertEquals(0, peer.getRoundsSaved());
+		assertEquals(0, peer.getTotalRoundsSaved());
+	}
+
+	/**
+	 * A drift of 0 falls back to a quarter of the old tau as well.
+	 */
+	public void testIncrementalSearchWithoutDrift() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(true, 1);
+		assertEquals(100, peer.search(500, 400, 300, 10, 20, 30));
+		assertEquals(100, peer.search(500, 400, 300, 10, 20, 30));
+		assertArrayEquals(new long[] {100}, peer.getSearchedTaus());
+
+		// steps 25 and 50 lower tau to 75 and 25, which brackets the threshold in (25, 75)
+		assertEquals(38, peer.search(50, 45, 40, 30, 10, 20));
+		assertArrayEquals(new long[] {100, 75, 25, 50, 38}, peer.getSearchedTaus());
+	}
+
+	/**
+	 * The pivots split the open interval into equal parts and are distinct.
+	 */
+	public void testEvenlySpacedPivots() {
+		assertArrayEquals(new long[] {25, 50, 75}, TopkPrivacyPeer.evenlySpacedPivots(0, 100, 3));
+		assertArrayEquals(new long[] {3, 5, 8}, TopkPrivacyPeer.evenlySpacedPivots(0, 10, 3));
+		assertArrayEquals(new long[] {11}, TopkPrivacyPeer.evenlySpacedPivots(10, 12, 3));
+		assertArrayEquals(new long[] {}, TopkPrivacyPeer.evenlySpacedPivots(10, 11, 3));
+		assertArrayEquals(new long[] {}, TopkPrivacyPeer.evenlySpacedPivots(10, 10, 3));
+	}
+
+	/**
+	 * The next round searches between the highest pivot that is too low and
+	 * the lowest pivot that is too high.
+	 */
+	public void testMultiPivotSearch() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(false, 3);
+		assertEquals(254, peer.search(500, 400, 260, 250, 10, 20));
+		List<long[]> rounds = peer.getRounds();
+		assertEquals(4, rounds.size());
+		// the start tau and pivots splitting (0, 1000)
+		assertArrayEquals(new long[] {100, 333, 667}, rounds.get(0));
+		// 100 is too low, 333 and 667 are too high
+		assertArrayEquals(new long[] {158, 217, 275}, rounds.get(1));
+		// 158 and 217 are too low, 275 is too high
+		assertArrayEquals(new long[] {232, 246, 261}, rounds.get(2));
+		assertArrayEquals(new long[] {250, 254, 257}, rounds.get(3));
+	}
+
+	/**
+	 * If all pivots are too low, the upper bound is kept.
+	 */
+	public void testMultiPivotSearchAllTooLow() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(false, 3);
+		assertEquals(964, peer.search(990, 980, 970, 960, 1, 2));
+		List<long[]> rounds = peer.getRounds();
+		assertEquals(4, rounds.size());
+		assertArrayEquals(new long[] {100, 333, 667}, rounds.get(0));
+		assertArrayEquals(new long[] {750, 834, 917}, rounds.get(1));
+		assertArrayEquals(new long[] {938, 959, 979}, rounds.get(2));
+		assertArrayEquals(new long[] {964, 969, 974}, rounds.get(3));
+	}
+
+	/**
+	 * If all pivots are too high, the lower bound is kept.
+	 */
+	public void testMultiPivotSearchAllTooHigh() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(false, 3);
+		assertEquals(25, peer.search(50, 40, 30, 20, 1, 2));
+		List<long[]> rounds = peer.getRounds();
+		assertEquals(2, rounds.size());
+		assertArrayEquals(new long[] {25, 50, 75}, rounds.get(1));
+	}
+
+	/**
+	 * If no tau separates exactly K values, the search stops at the lower
+	 * bound, which keeps more than K candidates.
+	 */
+	public void testMultiPivotSearchWithTies() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(false, 3);
+		assertEquals(300, peer.search(500, 400, 300, 300, 10, 20));
+		List<long[]> rounds = peer.getRounds();
+		assertEquals(5, rounds.size());
+		// 297 is too low and 301 too high, 300 is the highest too low pivot
+		assertArrayEquals(new long[] {298, 299, 300}, rounds.get(4));
+	}
+
+	/**
+	 * In the incremental mode, the first round brackets the old tau with
+	 * doubling distances before spreading the remaining pivots evenly.
+	 */
+	public void testIncrementalMultiPivotSearch() throws Exception {
+		TestPrivacyPeer peer = new TestPrivacyPeer(true, 4);
+		assertEquals(100, peer.search(500, 400, 300, 10, 20, 30));
+		// offset 25: 75 and 125, offset 50: 50 (150 would exceed 4 pivots)
+		assertEquals(105, peer.search(500, 400, 110, 100, 10, 20));
+		List<long[]> rounds = peer.getRounds();
+		assertEquals(2, rounds.size());
+		assertArrayEquals(new long[] {50, 75, 100, 125}, rounds.get(0));
+		// 100 is too low and 125 too high, the next round splits (100, 125)
+		assertArrayEquals(new long[] {105, 110, 115, 120}, rounds.get(1));
+	}
+
+	private static void assertArrayEquals(long[] expected, long[] actual) {
+		assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+	}
+}